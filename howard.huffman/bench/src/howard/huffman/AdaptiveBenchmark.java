@@ -0,0 +1,212 @@
+package howard.huffman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A JMH benchmark of the adaptive Huffman streams against two-pass Huffman coding.
+ * This class is included in the Huffman encoding project.
+ * Each Corpus of English-like text, Zipf-distributed characters and drifting bytes,
+ * whose alphabet changes every megabyte as a log stream's might, is written to a
+ * temporary file, and encoding and decoding are timed with AdaptiveHuffmanOutputStream
+ * and AdaptiveHuffmanInputStream, and with Huffman_coder() and Huffman_decoder() in
+ * raw-byte mode.
+ * 
+ * Before the trial, each coder's compressed file is written once for its decoder, the
+ * round trip is checked, and the compressed size of each is printed as a ratio of the
+ * corpus. The library's own printing is silenced while the coders are timed.
+ * 
+ * Run with "java -jar howard.huffman/bench/target/benchmarks.jar AdaptiveBenchmark" after "mvn package" in the top folder.
+ * 
+ * @author Shaun Howard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class AdaptiveBenchmark {
+  
+  /** The kind of corpus the coders are compared on. */
+  @Param({ "ENGLISH", "ZIPF", "DRIFTING" })
+  public Corpus corpus;
+  
+  /** The number of bytes of the corpus. */
+  @Param({ "1048576", "16777216" })
+  public long size;
+  
+  /** The options of the two-pass coder, in raw-byte mode. */
+  private HuffmanOptions options;
+  
+  /** The corpus, the compressed corpus of each coder, and the file it is encoded or restored to. */
+  private File input, twoPass, adaptive, output, restored;
+  
+  /** The standard output of the JVM, put back after the trial. */
+  private PrintStream stdout;
+  
+  /**
+   * Writes the corpus, compresses it once with each coder and checks the round trips.
+   * 
+   * @throws IOException - if the files cannot be written or a coder does not restore the corpus
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    
+    stdout = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    
+    options = corpus.getOptions();
+    options.setBinary(true);
+    
+    input = File.createTempFile("adaptive", ".dat");
+    twoPass = File.createTempFile("adaptive", ".huf");
+    adaptive = File.createTempFile("adaptive", ".ahf");
+    output = File.createTempFile("adaptive", ".huf");
+    restored = File.createTempFile("adaptive", ".out");
+    
+    corpus.write(input, size);
+    byte[] original = Files.readAllBytes(input.toPath());
+    
+    HuffmanLibrary.Huffman_coder(input.getPath(), twoPass.getPath(), options);
+    HuffmanLibrary.Huffman_decoder(twoPass.getPath(), restored.getPath(), options);
+    check(original, "Two-pass", twoPass);
+    
+    compress(input, adaptive);
+    decompress(adaptive, restored);
+    check(original, "Adaptive", adaptive);
+  }
+  
+  /**
+   * Deletes the files and puts back the standard output.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown(){
+    
+    input.delete();
+    twoPass.delete();
+    adaptive.delete();
+    output.delete();
+    restored.delete();
+    System.setOut(stdout);
+  }
+  
+  /**
+   * Compresses the corpus file in two passes.
+   * 
+   * @return  the size of the compressed file
+   */
+  @Benchmark
+  public long twoPassEncode(){
+    
+    HuffmanLibrary.Huffman_coder(input.getPath(), output.getPath(), options);
+    return output.length();
+  }
+  
+  /**
+   * Restores the corpus file compressed in two passes.
+   * 
+   * @return  the size of the restored file
+   */
+  @Benchmark
+  public long twoPassDecode(){
+    
+    HuffmanLibrary.Huffman_decoder(twoPass.getPath(), restored.getPath(), options);
+    return restored.length();
+  }
+  
+  /**
+   * Compresses the corpus file with an adaptive Huffman output stream.
+   * 
+   * @return  the size of the compressed file
+   * @throws IOException - if a file cannot be read or written
+   */
+  @Benchmark
+  public long adaptiveEncode() throws IOException {
+    
+    compress(input, output);
+    return output.length();
+  }
+  
+  /**
+   * Restores the corpus file with an adaptive Huffman input stream.
+   * 
+   * @return  the size of the restored file
+   * @throws IOException - if a file cannot be read or written
+   */
+  @Benchmark
+  public long adaptiveDecode() throws IOException {
+    
+    decompress(adaptive, restored);
+    return restored.length();
+  }
+  
+  /**
+   * Checks that a coder restored the corpus and prints its compressed size.
+   * 
+   * @param original - the bytes of the corpus
+   * @param name - the name of the coder
+   * @param compressed - the coder's compressed file
+   * @throws IOException - if the restored file cannot be read, or it is not the corpus
+   */
+  private void check(byte[] original, String name, File compressed) throws IOException {
+    
+    if (!Arrays.equals(original, Files.readAllBytes(restored.toPath())))
+      throw new IOException(name + " did not restore the " + corpus + " corpus.");
+    
+    stdout.printf("%s on %s: %.1f%% of %d bytes%n", name, corpus, 100.0 * compressed.length() / size, size);
+  }
+  
+  /**
+   * Compresses a file with an adaptive Huffman output stream.
+   * 
+   * @param input - the file to compress
+   * @param output - the file to compress to
+   * @throws IOException - if a file cannot be read or written
+   */
+  private static void compress(File input, File output) throws IOException {
+    
+    try (InputStream in = Files.newInputStream(input.toPath());
+        OutputStream out = new AdaptiveHuffmanOutputStream(new BufferedOutputStream(Files.newOutputStream(output.toPath()), HuffmanLibrary.BUFFER_SIZE))) {
+      in.transferTo(out);
+    }
+  }
+  
+  /**
+   * Decompresses a file with an adaptive Huffman input stream.
+   * 
+   * @param input - the file to decompress
+   * @param output - the file to decompress to
+   * @throws IOException - if a file cannot be read or written
+   */
+  private static void decompress(File input, File output) throws IOException {
+    
+    try (InputStream in = new AdaptiveHuffmanInputStream(new BufferedInputStream(Files.newInputStream(input.toPath())));
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(output.toPath()), HuffmanLibrary.BUFFER_SIZE)) {
+      in.transferTo(out);
+    }
+  }
+  
+}
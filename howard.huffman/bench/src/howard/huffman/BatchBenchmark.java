@@ -0,0 +1,230 @@
+package howard.huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A JMH benchmark of a HuffmanBatch at several numbers of threads.
+ * This class is included in the Huffman encoding project.
+ * A Corpus of text is written once and split into a directory of small files, a
+ * hundred to a folder, and the directory is compressed in one JVM by a batch of 1, 2,
+ * 4 and 8 threads; one operation is the whole directory. For comparison, the first
+ * JVM_FILES files are compressed by starting a JVM for each, as HuffmanLibrary.main()
+ * was run before batches.
+ * 
+ * The threads are a parameter of the batch's own state, so the JVM for each file is
+ * timed once for each corpus rather than once for each number of threads. Before the
+ * trial, every file is checked to be compressed and the total compressed size is
+ * printed. The library's own printing is silenced while the batches are timed.
+ * 
+ * Run with "java -jar howard.huffman/bench/target/benchmarks.jar BatchBenchmark" after "mvn package" in the top folder.
+ * 
+ * @author Shaun Howard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+  
+  /** The number of files compressed by a JVM each, for comparison. */
+  private static final int JVM_FILES = 20;
+  
+  /** The kind of corpus the files are cut from. */
+  @Param({ "ENGLISH", "ZIPF" })
+  public Corpus corpus;
+  
+  /** The number of files in the directory. */
+  @Param({ "2000" })
+  public int files;
+  
+  /** The number of bytes of each file, give or take a character. */
+  @Param({ "16384" })
+  public int size;
+  
+  /** The directory of files and the directory they are compressed to. */
+  private Path input, output;
+  
+  /** The standard output of the JVM, put back after the trial. */
+  private PrintStream stdout;
+  
+  /** A batch of a number of threads, made once for the trial. */
+  @State(Scope.Benchmark)
+  public static class Batch {
+    
+    /** The number of threads of the batch. */
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+    
+    /** The batch. */
+    private HuffmanBatch batch;
+    
+    /**
+     * Makes the batch and checks that it compresses every file.
+     * 
+     * @param files - the state holding the directory of files
+     * @throws IOException - if a file is not compressed
+     * @throws InterruptedException - if the batch is interrupted
+     */
+    @Setup(Level.Trial)
+    public void setUp(BatchBenchmark files) throws IOException, InterruptedException {
+      
+      batch = new HuffmanBatch(files.corpus.getOptions(), threads, Runtime.getRuntime().maxMemory() / 2);
+      
+      long compressed = 0;
+      for (HuffmanBatch.Result result : batch.compress(files.input, files.output)){
+        
+        if (!result.isSuccess())
+          throw new IOException(result.getInput() + " was not compressed: " + result.getError());
+        
+        compressed += result.getCompressedSize();
+      }
+      
+      files.stdout.printf("%d files of %s on %d threads: %d bytes compressed%n", files.files, files.corpus, threads, compressed);
+    }
+  }
+  
+  /**
+   * Writes the corpus and splits it into the directory of files.
+   * 
+   * @throws IOException - if the files cannot be written
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    
+    stdout = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    
+    input = Files.createTempDirectory("batch");
+    output = Files.createTempDirectory("batch");
+    write();
+  }
+  
+  /**
+   * Deletes the directories and puts back the standard output.
+   * 
+   * @throws IOException - if a file cannot be deleted
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    
+    delete(input);
+    delete(output);
+    System.setOut(stdout);
+  }
+  
+  /**
+   * Compresses the directory of files with a batch.
+   * 
+   * @param batch - the batch of a number of threads
+   * @return  the results of the files
+   * @throws IOException - if the directory cannot be listed
+   * @throws InterruptedException - if the batch is interrupted
+   */
+  @Benchmark
+  public List<HuffmanBatch.Result> batch(Batch batch) throws IOException, InterruptedException {
+    return batch.batch.compress(input, output);
+  }
+  
+  /**
+   * Compresses the first JVM_FILES files by starting a JVM for each.
+   * 
+   * @return  the number of files compressed
+   * @throws IOException - if a JVM cannot be started
+   * @throws InterruptedException - if a JVM is interrupted
+   */
+  @Benchmark
+  public int jvmPerFile() throws IOException, InterruptedException {
+    
+    String java = ProcessHandle.current().info().command().orElse("java");
+    List<Path> paths = HuffmanBatch.listFiles(input).subList(0, Math.min(JVM_FILES, files));
+    
+    for (Path file : paths){
+      
+      Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "howard.huffman.HuffmanLibrary")
+          .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+      
+      try (OutputStream names = process.getOutputStream()) {
+        names.write((file + " " + output.resolve("jvm" + HuffmanBatch.SUFFIX) + "\n").getBytes());
+      }
+      
+      process.waitFor();
+    }
+    
+    return paths.size();
+  }
+  
+  /**
+   * Writes the corpus and cuts it into files of about the size each, a hundred to a
+   * folder, moving each cut past the rest of a character so no file starts inside one.
+   * 
+   * @throws IOException - if a file cannot be written
+   */
+  private void write() throws IOException {
+    
+    File file = File.createTempFile("batch", ".txt");
+    byte[] data;
+    
+    try {
+      corpus.write(file, (long) files * size);
+      data = Files.readAllBytes(file.toPath());
+    }
+    finally {
+      file.delete();
+    }
+    
+    int start = 0;
+    for (int n = 0; n < files; n++){
+      
+      /* The bytes 10xxxxxx continue a character of UTF-8. */
+      int end = n == files - 1 ? data.length : (n + 1) * size;
+      while (end < data.length && (data[end] & 0xC0) == 0x80)
+        end++;
+      
+      Path path = input.resolve(String.format("%03d/%05d.txt", n / 100, n));
+      Files.createDirectories(path.getParent());
+      Files.write(path, Arrays.copyOfRange(data, start, end));
+      start = end;
+    }
+  }
+  
+  /**
+   * Deletes a directory and everything under it.
+   * 
+   * @param directory - the directory to delete
+   * @throws IOException - if a file cannot be deleted
+   */
+  private static void delete(Path directory) throws IOException {
+    
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+        Files.delete(path);
+    }
+  }
+  
+}
@@ -0,0 +1,53 @@
+package howard.huffman;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * The main class of the benchmark jar, which runs the JMH benchmarks with allocation profiling.
+ * This class is included in the Huffman encoding project.
+ * Takes the same arguments as JMH's own main class, and adds the GC profiler, as "-prof gc"
+ * does, unless it was asked for already, so every run reports the bytes allocated per
+ * operation with its times. Listing and help are left to JMH.
+ * 
+ * Run with "java -jar howard.huffman/bench/target/benchmarks.jar [JMH options] [benchmarks]" after "mvn package" in the top folder.
+ * 
+ * @author Shaun Howard
+ */
+public class BenchmarkMain {
+  
+  /**
+   * The main method of the benchmark jar.
+   * 
+   * @param args - the JMH options and the patterns of the benchmarks to run
+   * @throws Exception - if the options are not valid or a benchmark fails
+   */
+  public static void main(String args[]) throws Exception {
+    
+    CommandLineOptions options = new CommandLineOptions(args);
+    
+    if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams()
+        || options.shouldListProfilers() || options.shouldListResultFormats()){
+      Main.main(args);
+      return;
+    }
+    
+    ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+    
+    /* Adds the GC profiler unless it was given with "-prof". */
+    boolean profiled = false;
+    for (ProfilerConfig profiler : options.getProfilers())
+      profiled |= profiler.getKlass().equals(GCProfiler.class.getName()) || profiler.getKlass().equals("gc");
+    
+    if (!profiled)
+      builder.addProfiler(GCProfiler.class);
+    
+    new Runner(builder.build()).run();
+  }
+  
+}
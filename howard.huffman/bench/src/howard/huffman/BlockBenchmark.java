@@ -0,0 +1,111 @@
+package howard.huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A JMH benchmark of encoding in blocks on several threads.
+ * This class is included in the Huffman encoding project.
+ * Each Corpus of text is written to a temporary file, and Huffman_coder() is timed on it
+ * as one stream, with 0 threads, and in blocks of HuffmanOptions.DEFAULT_BLOCK_SIZE
+ * with 1, 2, 4 and 8 threads; the speedup of the blocks is the time of one stream over
+ * theirs. Thread counts above the number of processors show the cost of the extra
+ * threads rather than a speedup.
+ * 
+ * Run with "java -jar howard.huffman/bench/target/benchmarks.jar BlockBenchmark" after "mvn package" in the top folder;
+ * add "-p threads=0,16" for other numbers of threads.
+ * 
+ * @author Shaun Howard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BlockBenchmark {
+  
+  /** The kind of corpus to encode. */
+  @Param({ "ENGLISH", "ZIPF" })
+  public Corpus corpus;
+  
+  /** The number of bytes of the corpus. */
+  @Param({ "67108864" })
+  public long size;
+  
+  /** The number of threads that encode blocks, or 0 to encode one stream. */
+  @Param({ "0", "1", "2", "4", "8" })
+  public int threads;
+  
+  /** The options of the encoder. */
+  private HuffmanOptions options;
+  
+  /** The corpus and the compressed corpus. */
+  private File input, output;
+  
+  /** The standard output of the JVM, put back after the trial. */
+  private PrintStream stdout;
+  
+  /**
+   * Writes the corpus and sets the options of the encoder.
+   * 
+   * @throws IOException - if the corpus cannot be written
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    
+    stdout = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    
+    options = corpus.getOptions();
+    if (threads > 0){
+      options.setBlockSize(HuffmanOptions.DEFAULT_BLOCK_SIZE);
+      options.setParallelism(threads);
+    }
+    
+    input = File.createTempFile("block", ".txt");
+    output = File.createTempFile("block", ".huf");
+    corpus.write(input, size);
+  }
+  
+  /**
+   * Deletes the files and puts back the standard output.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown(){
+    
+    input.delete();
+    output.delete();
+    System.setOut(stdout);
+  }
+  
+  /**
+   * Compresses the corpus file, as one stream or in blocks.
+   * 
+   * @return  the size of the compressed file
+   */
+  @Benchmark
+  public long huffmanCoder(){
+    
+    HuffmanLibrary.Huffman_coder(input.getPath(), output.getPath(), options);
+    return output.length();
+  }
+  
+}
@@ -0,0 +1,193 @@
+package howard.huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A JMH benchmark of a CodeTableCache on a batch of files alike.
+ * This class is included in the Huffman encoding project.
+ * A Corpus is written once and a batch of daily snapshots is made of it, each a copy
+ * of the last with one record in a hundred overwritten by another record of the
+ * corpus. The batch is coded in raw-byte mode without a cache and with one that starts
+ * empty for each batch, as a new batch job's would; one operation is the whole batch.
+ * 
+ * Before the trial, every file of the batch is restored and checked, and the hits of
+ * the cache on the batch are printed. The library's own printing is silenced while
+ * the batch is timed.
+ * 
+ * Run with "java -jar howard.huffman/bench/target/benchmarks.jar CacheBenchmark" after "mvn package" in the top folder.
+ * 
+ * @author Shaun Howard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CacheBenchmark {
+  
+  /** The number of bytes of a record of a snapshot. */
+  private static final int RECORD_SIZE = 48;
+  
+  /** The kind of corpus the snapshots are made of. */
+  @Param({ "ENGLISH", "ZIPF", "RANDOM" })
+  public Corpus corpus;
+  
+  /** The number of snapshots in the batch. */
+  @Param({ "200" })
+  public int files;
+  
+  /** The number of bytes of each snapshot. */
+  @Param({ "1048576" })
+  public int size;
+  
+  /** Whether the batch is coded with a cache. */
+  @Param({ "false", "true" })
+  public boolean cached;
+  
+  /** The snapshots of the batch. */
+  private File[] snapshots;
+  
+  /** The compressed snapshot and the file it is restored to. */
+  private File output, restored;
+  
+  /** The standard output of the JVM, put back after the trial. */
+  private PrintStream stdout;
+  
+  /**
+   * Writes the snapshots, then codes the batch once and checks that every file is restored.
+   * 
+   * @throws IOException - if a file cannot be written, or a snapshot is not restored
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    
+    stdout = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    
+    output = File.createTempFile("cache", ".huf");
+    restored = File.createTempFile("cache", ".out");
+    snapshots = write();
+    
+    HuffmanOptions options = getOptions();
+    
+    for (File snapshot : snapshots){
+      
+      HuffmanLibrary.Huffman_coder(snapshot.getPath(), output.getPath(), options);
+      HuffmanLibrary.Huffman_decoder(output.getPath(), restored.getPath());
+      
+      if (!Arrays.equals(Files.readAllBytes(snapshot.toPath()), Files.readAllBytes(restored.toPath())))
+        throw new IOException(snapshot + " was not restored.");
+    }
+    
+    if (cached)
+      stdout.printf("Cache hits on %s: %d/%d%n", corpus, options.getCodeTableCache().getHits(), files);
+  }
+  
+  /**
+   * Deletes the files and puts back the standard output.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown(){
+    
+    for (File snapshot : snapshots)
+      snapshot.delete();
+    
+    output.delete();
+    restored.delete();
+    System.setOut(stdout);
+  }
+  
+  /**
+   * Compresses every snapshot of the batch.
+   * 
+   * @return  the total size of the compressed snapshots
+   */
+  @Benchmark
+  public long batch(){
+    
+    HuffmanOptions options = getOptions();
+    long compressed = 0;
+    
+    for (File snapshot : snapshots){
+      HuffmanLibrary.Huffman_coder(snapshot.getPath(), output.getPath(), options);
+      compressed += output.length();
+    }
+    
+    return compressed;
+  }
+  
+  /**
+   * Gets the options of a batch, in raw-byte mode, with an empty cache if the batch is cached.
+   * 
+   * @return  new options for a batch
+   */
+  private HuffmanOptions getOptions(){
+    
+    HuffmanOptions options = corpus.getOptions();
+    options.setBinary(true);
+    options.setCodeTableCache(cached ? new CodeTableCache() : null);
+    return options;
+  }
+  
+  /**
+   * Writes the snapshots of the corpus, each changing one record in a hundred of the
+   * one before to a record from elsewhere in the corpus.
+   * 
+   * @return  the files of the snapshots
+   * @throws IOException - if a file cannot be written
+   */
+  private File[] write() throws IOException {
+    
+    File file = File.createTempFile("cache", ".dat");
+    byte[] data, original;
+    
+    try {
+      corpus.write(file, size);
+      data = Files.readAllBytes(file.toPath());
+      original = data.clone();
+    }
+    finally {
+      file.delete();
+    }
+    
+    Random random = new Random(233);
+    int records = size / RECORD_SIZE;
+    File[] written = new File[files];
+    
+    for (int n = 0; n < files; n++){
+      
+      for (int record = 0; record < records; record++){
+        if (random.nextInt(100) == 0)
+          System.arraycopy(original, random.nextInt(records) * RECORD_SIZE, data, record * RECORD_SIZE, RECORD_SIZE);
+      }
+      
+      written[n] = File.createTempFile("snapshot", ".dat");
+      Files.write(written[n].toPath(), data);
+    }
+    
+    return written;
+  }
+  
+}
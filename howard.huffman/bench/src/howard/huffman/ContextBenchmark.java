@@ -0,0 +1,151 @@
+package howard.huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A JMH benchmark of the order-1 context mode against order-0 Huffman coding.
+ * This class is included in the Huffman encoding project.
+ * Each Corpus is written to a temporary file and coded as raw bytes with one code table,
+ * with 0 context tables, and with the context mode at several numbers of tables up to
+ * HuffmanOptions.MAX_CONTEXT_TABLES, and encoding and decoding are timed on it.
+ * 
+ * Before the trial, the corpus is compressed once for the decoder, the round trip is
+ * checked, and the compressed size and the memory of the decoding tables are printed.
+ * The library's own printing is silenced while the coders are timed.
+ * 
+ * Run with "java -jar howard.huffman/bench/target/benchmarks.jar ContextBenchmark" after "mvn package" in the top folder.
+ * 
+ * @author Shaun Howard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ContextBenchmark {
+  
+  /** The kind of corpus to code. */
+  @Param({ "ENGLISH", "ZIPF" })
+  public Corpus corpus;
+  
+  /** The number of bytes of the corpus. */
+  @Param({ "16777216" })
+  public long size;
+  
+  /** The number of context tables, 0 being order-0 coding. */
+  @Param({ "0", "1", "4", "16", "32", "256" })
+  public int tables;
+  
+  /** The options of the coder. */
+  private HuffmanOptions options;
+  
+  /** The corpus, the compressed corpus, the file it is encoded to and the file it is restored to. */
+  private File input, compressed, output, restored;
+  
+  /** The metrics of the last decoding, for the memory of its tables. */
+  private HuffmanMetrics decoded;
+  
+  /** The standard output of the JVM, put back after the trial. */
+  private PrintStream stdout;
+  
+  /**
+   * Writes the corpus, compresses it once for the decoder and checks the round trip.
+   * 
+   * @throws IOException - if the files cannot be written, or the corpus is not restored
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    
+    stdout = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    
+    options = corpus.getOptions();
+    options.setBinary(true);
+    options.setContextTables(tables);
+    options.setListener(new HuffmanListener(){
+      
+      @Override
+      public void encoded(HuffmanMetrics metrics){
+      }
+      
+      @Override
+      public void decoded(HuffmanMetrics metrics){
+        decoded = metrics;
+      }
+    });
+    
+    input = File.createTempFile("context", ".dat");
+    compressed = File.createTempFile("context", ".huf");
+    output = File.createTempFile("context", ".huf");
+    restored = File.createTempFile("context", ".out");
+    
+    corpus.write(input, size);
+    HuffmanLibrary.Huffman_coder(input.getPath(), compressed.getPath(), options);
+    HuffmanLibrary.Huffman_decoder(compressed.getPath(), restored.getPath(), options);
+    
+    if (!Arrays.equals(Files.readAllBytes(input.toPath()), Files.readAllBytes(restored.toPath())))
+      throw new IOException("The coder with " + tables + " tables did not restore the " + corpus + " corpus.");
+    
+    stdout.printf("%s with %d tables: %.1f%% of %d bytes, %d table bytes%n", corpus, tables,
+        100.0 * compressed.length() / size, size, decoded.getTableBytes());
+  }
+  
+  /**
+   * Deletes the files and puts back the standard output.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown(){
+    
+    input.delete();
+    compressed.delete();
+    output.delete();
+    restored.delete();
+    System.setOut(stdout);
+  }
+  
+  /**
+   * Compresses the corpus file.
+   * 
+   * @return  the size of the compressed file
+   */
+  @Benchmark
+  public long encode(){
+    
+    HuffmanLibrary.Huffman_coder(input.getPath(), output.getPath(), options);
+    return output.length();
+  }
+  
+  /**
+   * Restores the compressed corpus file.
+   * 
+   * @return  the size of the restored file
+   */
+  @Benchmark
+  public long decode(){
+    
+    HuffmanLibrary.Huffman_decoder(compressed.getPath(), restored.getPath(), options);
+    return restored.length();
+  }
+  
+}
@@ -0,0 +1,139 @@
+package howard.huffman;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The generated corpora the stage benchmarks run on.
+ * This class is included in the Huffman encoding project.
+ * Each corpus is written from the same seed, so a corpus of a given kind and size is
+ * the same on every run: uniform printable characters, Zipf-distributed characters,
+ * English-like text of common words, random bytes, or bytes whose alphabet drifts.
+ * 
+ * @author Shaun Howard
+ */
+public enum Corpus {
+  
+  /** Printable ASCII characters, each as likely as the others. */
+  UNIFORM,
+  
+  /** 256 characters from the space up, the n-th most frequent occurring 1/n as often as the first. */
+  ZIPF,
+  
+  /** Common English words, skewed toward the most frequent, in lines of sentences. */
+  ENGLISH,
+  
+  /** Random bytes, coded as raw bytes rather than UTF-8 text. */
+  RANDOM,
+  
+  /** Bytes drawn from 16 values that change every megabyte, as a log stream's alphabet might, coded as raw bytes. */
+  DRIFTING;
+  
+  /** The common English words the English-like text is drawn from, most frequent first. */
+  private static final String[] WORDS = ("the of and to a in is you that it he was for on are as with his they "
+      + "I at be this have from or one had by word but not what all were we when your can said there use an each "
+      + "which she do how their if will up other about out many then them these so some her would make like him "
+      + "into time has look two more write go see number no way could people my than first water been call who "
+      + "oil its now find long down day did get come made may part over new sound take only little work know "
+      + "place year live me back give most very after thing our just name good sentence man think say great "
+      + "where help through much before line right too mean old any same tell boy follow came want show also "
+      + "around form three small set put end does another well large must big even such because turn here why "
+      + "ask went men read need land different home us move try kind hand picture again change off play spell "
+      + "air away animal house point page letter mother answer found study still learn should America world").split(" ");
+  
+  /**
+   * Writes a corpus of this kind and the given size to a file.
+   * 
+   * @param file - the file to write
+   * @param size - the number of bytes to write
+   * @throws IOException - if the file cannot be written
+   */
+  public void write(File file, long size) throws IOException {
+    
+    Random random = new Random(233);
+    
+    /* The cumulative Zipf weights of 256 characters, the most frequent first. */
+    double[] zipf = new double[256];
+    for (int i = 0; i < zipf.length; i++)
+      zipf[i] = (i > 0 ? zipf[i - 1] : 0) + 1.0 / (i + 1);
+    
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()), HuffmanLibrary.BUFFER_SIZE)) {
+      
+      for (long written = 0; written < size; ){
+        
+        /* The bytes of the next symbol, cut short at the end so the corpus is exactly the size given. */
+        byte[] bytes;
+        
+        switch (this){
+          case UNIFORM:
+            bytes = new byte[] { (byte) (' ' + random.nextInt(95)) };
+            break;
+          case ZIPF:
+            int rank = Arrays.binarySearch(zipf, random.nextDouble() * zipf[zipf.length - 1]);
+            bytes = String.valueOf((char) (0x20 + (rank < 0 ? -rank - 1 : rank))).getBytes(StandardCharsets.UTF_8);
+            break;
+          case ENGLISH:
+            String word = WORDS[(int) (WORDS.length * Math.pow(random.nextDouble(), 2.5))];
+            bytes = (word + (random.nextInt(10) == 0 ? ".\n" : " ")).getBytes(StandardCharsets.UTF_8);
+            break;
+          case DRIFTING:
+            bytes = new byte[] { (byte) ((written >> 20) * 16 + random.nextInt(16)) };
+            break;
+          default:
+            bytes = new byte[HuffmanLibrary.BUFFER_SIZE];
+            random.nextBytes(bytes);
+            break;
+        }
+        
+        /* Pads with spaces rather than cutting a character in two. */
+        if (bytes.length > size - written){
+          bytes = new byte[(int) (size - written)];
+          Arrays.fill(bytes, (byte) ' ');
+        }
+        
+        out.write(bytes);
+        written += bytes.length;
+      }
+    }
+  }
+  
+  /**
+   * Reads a corpus of this kind back as characters, one for each byte of a corpus of bytes.
+   * 
+   * @param file - the file the corpus was written to
+   * @return  the corpus as a String
+   * @throws IOException - if the file cannot be read
+   */
+  public String read(File file) throws IOException {
+    return new String(Files.readAllBytes(file.toPath()), isBinary() ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+  }
+  
+  /**
+   * Gets the options a corpus of this kind is coded with: raw bytes for a corpus of
+   * bytes, UTF-8 text otherwise.
+   * 
+   * @return  new options for the corpus
+   */
+  public HuffmanOptions getOptions(){
+    
+    HuffmanOptions options = new HuffmanOptions();
+    options.setBinary(isBinary());
+    return options;
+  }
+  
+  /**
+   * Determines whether a corpus of this kind is bytes rather than text.
+   * 
+   * @return  whether the corpus is coded as raw bytes
+   */
+  public boolean isBinary(){
+    return this == RANDOM || this == DRIFTING;
+  }
+  
+}
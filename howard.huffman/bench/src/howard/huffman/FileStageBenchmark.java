@@ -0,0 +1,136 @@
+package howard.huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A JMH benchmark of the stages of Huffman encoding and decoding that stream files.
+ * This class is included in the Huffman encoding project.
+ * Each Corpus is written to a temporary file at sizes from 1 KB to 1 GB, and counting
+ * (countCharacters(), or countBytes() for random bytes), encoding and writing
+ * (Huffman_coder()) and decoding (Huffman_decoder()) are timed on it. These stages
+ * never hold the whole file, so they run on every size; the in-memory stages are timed
+ * by StageBenchmark.
+ * 
+ * The library's own printing is silenced while the stages are timed. The compressed
+ * file is written once before the trial, so the decoder is timed on the coder's output.
+ * 
+ * Run with "java -jar howard.huffman/bench/target/benchmarks.jar FileStageBenchmark" after "mvn package" in the top folder;
+ * add "-p size=1024,1048576" to leave out the largest files.
+ * 
+ * @author Shaun Howard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class FileStageBenchmark {
+  
+  /** The kind of corpus the stages run on. */
+  @Param({ "UNIFORM", "ZIPF", "ENGLISH", "RANDOM" })
+  public Corpus corpus;
+  
+  /** The number of bytes of the corpus. */
+  @Param({ "1024", "32768", "1048576", "33554432", "1073741824" })
+  public long size;
+  
+  /** The options the corpus is coded with. */
+  private HuffmanOptions options;
+  
+  /** The corpus, the compressed corpus, and the file it is restored to. */
+  private File input, output, restored;
+  
+  /** The standard output of the JVM, put back after the trial. */
+  private PrintStream stdout;
+  
+  /**
+   * Writes the corpus and compresses it once for the decoder.
+   * 
+   * @throws IOException - if the files cannot be written
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    
+    stdout = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    
+    options = corpus.getOptions();
+    input = File.createTempFile("stage", ".dat");
+    output = File.createTempFile("stage", ".huf");
+    restored = File.createTempFile("stage", ".out");
+    
+    corpus.write(input, size);
+    HuffmanLibrary.Huffman_coder(input.getPath(), output.getPath(), options);
+  }
+  
+  /**
+   * Deletes the files and puts back the standard output.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown(){
+    
+    input.delete();
+    output.delete();
+    restored.delete();
+    System.setOut(stdout);
+  }
+  
+  /**
+   * Counts the characters, or the bytes, of the corpus file.
+   * 
+   * @return  the frequency table
+   * @throws IOException - if the file cannot be read
+   */
+  @Benchmark
+  public long[] count() throws IOException {
+    
+    if (options.isBinary())
+      return HuffmanLibrary.countBytes(input.getPath(), null);
+    
+    return HuffmanLibrary.countCharacters(input.getPath());
+  }
+  
+  /**
+   * Compresses the corpus file.
+   * 
+   * @return  the size of the compressed file
+   */
+  @Benchmark
+  public long huffmanCoder(){
+    
+    HuffmanLibrary.Huffman_coder(input.getPath(), output.getPath(), options);
+    return output.length();
+  }
+  
+  /**
+   * Restores the compressed corpus file.
+   * 
+   * @return  the size of the restored file
+   */
+  @Benchmark
+  public long huffmanDecoder(){
+    
+    HuffmanLibrary.Huffman_decoder(output.getPath(), restored.getPath());
+    return restored.length();
+  }
+  
+}
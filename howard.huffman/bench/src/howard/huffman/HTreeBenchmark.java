@@ -0,0 +1,153 @@
+package howard.huffman;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A JMH benchmark of Huffman tree construction.
+ * This class is included in the Huffman encoding project.
+ * Compares the merge by sorted linked-list insertion that HTree used to do, which
+ * is O(n^2) in the number of characters, with HTreeBuilder's two-queue merge over
+ * primitive arrays, at alphabet sizes of 256, 4K and 64K characters. The frequencies
+ * are random with a long tail, like the characters of real text, as no Corpus has an
+ * alphabet of 64K characters.
+ * 
+ * The insertion merge takes apart the list it is given, so a copy of the sorted list
+ * is made before each invocation, untimed.
+ * 
+ * Run with "java -jar howard.huffman/bench/target/benchmarks.jar HTreeBenchmark" after "mvn package" in the top folder.
+ * 
+ * @author Shaun Howard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HTreeBenchmark {
+  
+  /** The number of characters of the alphabet. */
+  @Param({ "256", "4096", "65536" })
+  public int alphabet;
+  
+  /** The frequency of each character. */
+  private long[] frequencies;
+  
+  /** The list sorted by frequency, which the insertion merge starts from a copy of. */
+  private HLinkedList sorted;
+  
+  /** A copy of the sorted list, made again before each invocation. */
+  @State(Scope.Thread)
+  public static class SortedList {
+    
+    /** The list, taken apart by the merge. */
+    private HLinkedList list;
+    
+    /**
+     * Copies the sorted list, linking each copied node after the last rather than
+     * walking the list to its end as insertAtEnd() does.
+     * 
+     * @param trees - the state holding the sorted list
+     */
+    @Setup(Level.Invocation)
+    public void setUp(HTreeBenchmark trees){
+      
+      list = new HLinkedList();
+      HTreeNode tail = null;
+      
+      for (HTreeNode node = trees.sorted.getHeadNode(); node != null; node = node.next()){
+        
+        HTreeNode copy = new HTreeNode(node);
+        if (tail == null)
+          list.setHead(copy);
+        else
+          tail.setNext(copy);
+        
+        tail = copy;
+      }
+    }
+  }
+  
+  /**
+   * Makes the frequencies and the sorted list of them.
+   */
+  @Setup(Level.Trial)
+  public void setUp(){
+    
+    Random random = new Random(233);
+    
+    frequencies = new long[alphabet];
+    for (int c = 0; c < alphabet; c++)
+      frequencies[c] = 1 + (long) (1000000 / Math.pow(1 + random.nextInt(alphabet), 1.1));
+    
+    sorted = HuffmanLibrary.getSortedLinkedList(new HLinkedList(frequencies));
+  }
+  
+  /**
+   * Merges a copy of the sorted list by sorted insertion.
+   * 
+   * @param copy - the copy of the sorted list
+   * @return  the root node of the tree
+   */
+  @Benchmark
+  public HTreeNode sortedInsertion(SortedList copy){
+    return mergeBySortedInsertion(copy.list);
+  }
+  
+  /**
+   * Merges the frequencies with two queues over primitive arrays.
+   * 
+   * @return  the code length of each character
+   */
+  @Benchmark
+  public byte[] twoQueueArrays(){
+    return new HTreeBuilder(frequencies).getCodeLengths(frequencies.length);
+  }
+  
+  /**
+   * Merges the nodes of a sorted list into a Huffman tree the way HTree used to:
+   * each merged node is re-inserted into the list by a scan from the head.
+   * 
+   * @param list - the list sorted by frequency, with at least two nodes
+   * @return  the root node of the tree
+   */
+  private static HTreeNode mergeBySortedInsertion(HLinkedList list){
+    
+    while (list.getHeadNode().next() != null){
+      
+      /* The two lightest nodes, merged into a new node. */
+      HTreeNode newRoot = new HTreeNode(new HTreeNode(list.getHeadNode()), new HTreeNode(list.getHeadNode().next()));
+      list.removeHead();
+      list.removeHead();
+      
+      /* The first node heavier than the new node. */
+      HTreeNode iterator = list.getHeadNode();
+      while (iterator != null && iterator.compareTo(newRoot) <= 0)
+        iterator = iterator.next();
+      
+      if (list.getHeadNode() == null)
+        list.setHead(newRoot);
+      else if (iterator == null)
+        list.insertAtEnd(newRoot);
+      else
+        list.insertBefore(iterator, newRoot);
+    }
+    
+    return list.getHeadNode();
+  }
+  
+}
@@ -0,0 +1,278 @@
+package howard.huffman;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A JMH benchmark of decoding interleaved streams against decoding one stream.
+ * This class is included in the Huffman encoding project.
+ * The bytes of each Corpus are encoded in memory as one stream and as
+ * BlockCoder.STREAM_COUNT interleaved streams with the same code table, and decoding
+ * each is timed on one thread. The same bytes are also coded as raw bytes to files in
+ * blocks of BLOCK_SIZE, with and without interleaving, and Huffman_decoder() is timed
+ * on each on one thread.
+ * 
+ * Before the trial, every decoder is checked to restore the bytes, and the sizes of
+ * the compressed files are printed. The library's own printing is silenced while the
+ * decoders are timed.
+ * 
+ * Run with "java -jar howard.huffman/bench/target/benchmarks.jar InterleavedBenchmark" after "mvn package" in the top folder.
+ * 
+ * @author Shaun Howard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterleavedBenchmark {
+  
+  /** The block size of the compressed files. */
+  private static final int BLOCK_SIZE = 1 << 20;
+  
+  /** The kind of corpus to decode. */
+  @Param({ "ZIPF", "ENGLISH", "RANDOM" })
+  public Corpus corpus;
+  
+  /** The number of bytes of the corpus. */
+  @Param({ "16777216" })
+  public int size;
+  
+  /** The bytes of the corpus. */
+  private byte[] data;
+  
+  /** The decoder of the code table of the bytes. */
+  private HuffmanDecoder decoder;
+  
+  /** The bytes encoded as one stream. */
+  private byte[] single;
+  
+  /** The bytes encoded as interleaved streams, one after another. */
+  private byte[] interleaved;
+  
+  /** The start and the end of each interleaved stream. */
+  private int[] starts, ends;
+  
+  /** The bytes a decoder in memory restores into. */
+  private byte[] restored;
+  
+  /** The options of the files, with and without interleaving. */
+  private HuffmanOptions singleOptions, interleavedOptions;
+  
+  /** The corpus in blocks of one stream, in blocks of interleaved streams, and the file they are restored to. */
+  private File singleFile, interleavedFile, restoredFile;
+  
+  /** The standard output of the JVM, put back after the trial. */
+  private PrintStream stdout;
+  
+  /**
+   * Writes the corpus, encodes it in memory and to files, and checks every decoder.
+   * 
+   * @throws IOException - if the files cannot be written, or a decoder does not restore the bytes
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    
+    stdout = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    
+    File input = File.createTempFile("interleaved", ".dat");
+    
+    try {
+      
+      corpus.write(input, size);
+      data = Files.readAllBytes(input.toPath());
+      restored = new byte[data.length];
+      
+      encode();
+      
+      check(decodeOneStream(), "One stream");
+      check(decodeInterleaved(), "Interleaved streams");
+      
+      singleFile = File.createTempFile("interleaved", ".huf");
+      interleavedFile = File.createTempFile("interleaved", ".huf");
+      restoredFile = File.createTempFile("interleaved", ".out");
+      
+      singleOptions = getOptions(false);
+      interleavedOptions = getOptions(true);
+      
+      HuffmanLibrary.Huffman_coder(input.getPath(), singleFile.getPath(), singleOptions);
+      HuffmanLibrary.Huffman_coder(input.getPath(), interleavedFile.getPath(), interleavedOptions);
+      
+      decodeFile();
+      check(Files.readAllBytes(restoredFile.toPath()), "The file of one stream");
+      decodeInterleavedFile();
+      check(Files.readAllBytes(restoredFile.toPath()), "The file of interleaved streams");
+      
+      stdout.printf("%s in blocks of %d KB: %d bytes as one stream, %d bytes as %d streams%n", corpus,
+          BLOCK_SIZE >> 10, singleFile.length(), interleavedFile.length(), BlockCoder.STREAM_COUNT);
+    }
+    finally {
+      input.delete();
+    }
+  }
+  
+  /**
+   * Deletes the files and puts back the standard output.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown(){
+    
+    singleFile.delete();
+    interleavedFile.delete();
+    restoredFile.delete();
+    System.setOut(stdout);
+  }
+  
+  /**
+   * Decodes the bytes of one stream in memory.
+   * 
+   * @return  the restored bytes
+   * @throws IOException - if the bits do not decode
+   */
+  @Benchmark
+  public byte[] decodeOneStream() throws IOException {
+    
+    BitReader bits = new BitReader(single, 0, single.length);
+    for (int i = 0; i < restored.length; i++)
+      restored[i] = (byte) decoder.decode(bits);
+    
+    return restored;
+  }
+  
+  /**
+   * Decodes the bytes of the interleaved streams in memory.
+   * 
+   * @return  the restored bytes
+   * @throws IOException - if the bits do not decode
+   */
+  @Benchmark
+  public byte[] decodeInterleaved() throws IOException {
+    
+    decoder.decode(interleaved, starts, ends, restored, 0, restored.length);
+    return restored;
+  }
+  
+  /**
+   * Restores the file in blocks of one stream.
+   * 
+   * @return  the size of the restored file
+   */
+  @Benchmark
+  public long decodeFile(){
+    
+    HuffmanLibrary.Huffman_decoder(singleFile.getPath(), restoredFile.getPath(), singleOptions);
+    return restoredFile.length();
+  }
+  
+  /**
+   * Restores the file in blocks of interleaved streams.
+   * 
+   * @return  the size of the restored file
+   */
+  @Benchmark
+  public long decodeInterleavedFile(){
+    
+    HuffmanLibrary.Huffman_decoder(interleavedFile.getPath(), restoredFile.getPath(), interleavedOptions);
+    return restoredFile.length();
+  }
+  
+  /**
+   * Encodes the bytes in memory as one stream and as interleaved streams with the same code table.
+   * 
+   * @throws IOException - if the bytes cannot be encoded
+   */
+  private void encode() throws IOException {
+    
+    long[] frequencies = new long[HuffmanLibrary.BYTE_ALPHABET_SIZE];
+    for (byte b : data)
+      frequencies[b & 0xFF]++;
+    
+    byte[] lengths = HuffmanLibrary.getCodeLengths(frequencies);
+    HuffmanEncoder encoder = new HuffmanEncoder(lengths);
+    decoder = new HuffmanDecoder(lengths);
+    
+    /* One stream. */
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    BitWriter writer = new BitWriter(stream);
+    encoder.encode(ByteBuffer.wrap(data), writer);
+    writer.finish();
+    single = stream.toByteArray();
+    
+    /* Interleaved streams, one after another in one array. */
+    ByteArrayOutputStream[] streams = new ByteArrayOutputStream[BlockCoder.STREAM_COUNT];
+    BitWriter[] writers = new BitWriter[streams.length];
+    
+    for (int s = 0; s < streams.length; s++){
+      streams[s] = new ByteArrayOutputStream();
+      writers[s] = new BitWriter(streams[s]);
+    }
+    
+    encoder.encode(ByteBuffer.wrap(data), writers);
+    
+    ByteArrayOutputStream joined = new ByteArrayOutputStream();
+    starts = new int[streams.length];
+    ends = new int[streams.length];
+    
+    for (int s = 0; s < streams.length; s++){
+      writers[s].finish();
+      starts[s] = joined.size();
+      streams[s].writeTo(joined);
+      ends[s] = joined.size();
+    }
+    
+    interleaved = joined.toByteArray();
+  }
+  
+  /**
+   * Gets the options of a file of the corpus as raw bytes in blocks, decoded on one thread.
+   * 
+   * @param interleaved - whether each block is coded as interleaved streams
+   * @return  new options for the file
+   */
+  private HuffmanOptions getOptions(boolean interleaved){
+    
+    HuffmanOptions options = corpus.getOptions();
+    options.setBinary(true);
+    options.setBlockSize(BLOCK_SIZE);
+    options.setParallelism(1);
+    options.setInterleaved(interleaved);
+    return options;
+  }
+  
+  /**
+   * Checks that bytes were restored.
+   * 
+   * @param actual - the restored bytes
+   * @param name - the name of the decoder
+   * @throws IOException - if the bytes are not the corpus
+   */
+  private void check(byte[] actual, String name) throws IOException {
+    
+    if (!Arrays.equals(data, actual))
+      throw new IOException(name + " did not restore the " + corpus + " corpus.");
+  }
+  
+}
@@ -0,0 +1,113 @@
+package howard.huffman;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * A JMH benchmark of toByteSequence() with the scalar loop, the word kernels and the
+ * vector kernels.
+ * This class is included in the Huffman encoding project.
+ * Packs random '0' and '1' strings of 1 KB up to 16 MB. Each kernel runs in a JVM of
+ * its own, set up the way a user would choose it: "-Dhoward.huffman.scalar=true" for
+ * the scalar loop, "-Dhoward.huffman.vector=false" for the word kernels alone, and
+ * "--add-modules jdk.incubator.vector" for the VectorKernels ahead of the words. Before
+ * each trial, the bytes are checked to be the same as the scalar loop's, and the fork
+ * is checked to run the kernel it is named for.
+ * 
+ * Run with "java -jar howard.huffman/bench/target/benchmarks.jar KernelBenchmark" after "mvn package" in the top folder.
+ * 
+ * @author Shaun Howard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KernelBenchmark {
+  
+  /** The number of '0' and '1' characters to pack. */
+  @Param({ "1024", "16384", "262144", "4194304", "16777216" })
+  public int size;
+  
+  /** The characters to pack. */
+  private String bits;
+  
+  /**
+   * Makes the characters and checks the kernel of the fork against the scalar loop.
+   * 
+   * @param params - the parameters of the benchmark, with its name
+   * @throws Exception - if the kernel is not the one named, or its bytes differ
+   */
+  @Setup(Level.Trial)
+  public void setUp(BenchmarkParams params) throws Exception {
+    
+    Random random = new Random(233);
+    char[] chars = new char[size];
+    for (int i = 0; i < size; i++)
+      chars[i] = random.nextBoolean() ? '1' : '0';
+    
+    bits = new String(chars);
+    
+    String kernel = params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1);
+    boolean expected = kernel.equals("vector") ? WordKernels.VECTOR
+        : kernel.equals("words") ? WordKernels.ENABLED && !WordKernels.VECTOR : !WordKernels.ENABLED;
+    
+    if (!expected)
+      throw new IllegalStateException("The fork does not run the " + kernel + " kernel.");
+    
+    if (!Arrays.equals(BinaryFileWriter.toByteSequence(bits, false), BinaryFileWriter.toByteSequence(bits)))
+      throw new IllegalStateException("The packed bytes differ.");
+  }
+  
+  /**
+   * Packs the characters one at a time.
+   * 
+   * @return  the packed bytes
+   * @throws Exception - if the characters are not all '0' and '1'
+   */
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = "-Dhoward.huffman.scalar=true")
+  public byte[] scalar() throws Exception {
+    return BinaryFileWriter.toByteSequence(bits);
+  }
+  
+  /**
+   * Packs the characters eight to a long.
+   * 
+   * @return  the packed bytes
+   * @throws Exception - if the characters are not all '0' and '1'
+   */
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = "-Dhoward.huffman.vector=false")
+  public byte[] words() throws Exception {
+    return BinaryFileWriter.toByteSequence(bits);
+  }
+  
+  /**
+   * Packs the characters a vector at a time, then the rest eight to a long.
+   * 
+   * @return  the packed bytes
+   * @throws Exception - if the characters are not all '0' and '1'
+   */
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+  public byte[] vector() throws Exception {
+    return BinaryFileWriter.toByteSequence(bits);
+  }
+  
+}
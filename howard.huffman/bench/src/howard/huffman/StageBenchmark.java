@@ -0,0 +1,190 @@
+package howard.huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A JMH benchmark of each in-memory stage of Huffman encoding on its own.
+ * This class is included in the Huffman encoding project.
+ * Each Corpus is generated at sizes from 1 KB to 32 MB and held in a String, and the
+ * stages are timed on it separately: counting (HLinkedList construction), sorting
+ * (getSortedLinkedList()), building (HTree construction), code lookup (getCharacterCode())
+ * and bit packing (toByteSequence()). The stages that read and write files are timed by
+ * FileStageBenchmark.
+ * 
+ * getSortedLinkedList() and the HTree constructor take apart the list they are given, so
+ * their lists are made again before each invocation, untimed; at the smallest sizes the
+ * times of these two stages include some of JMH's per-invocation overhead.
+ * 
+ * Run with "java -jar howard.huffman/bench/target/benchmarks.jar StageBenchmark" after "mvn package" in the top folder;
+ * BenchmarkMain turns on the allocation profiler, as "-prof gc" does.
+ * 
+ * @author Shaun Howard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageBenchmark {
+  
+  /** The largest number of '0' and '1' characters given to toByteSequence(). */
+  private static final int BIT_STRING_LIMIT = 16 << 20;
+  
+  /** The kind of corpus the stages run on. */
+  @Param({ "UNIFORM", "ZIPF", "ENGLISH", "RANDOM" })
+  public Corpus corpus;
+  
+  /** The number of bytes of the corpus. */
+  @Param({ "1024", "32768", "1048576", "33554432" })
+  public long size;
+  
+  /** The corpus as characters. */
+  private String text;
+  
+  /** The Huffman tree of the corpus. */
+  private HTree tree;
+  
+  /** The codes of the corpus as '0' and '1' characters, cut at BIT_STRING_LIMIT. */
+  private String bits;
+  
+  /** The unsorted list of the corpus, made again before each invocation. */
+  @State(Scope.Thread)
+  public static class UnsortedList {
+    
+    /** The list, taken apart by the stage. */
+    private HLinkedList list;
+    
+    /**
+     * Makes the list of the corpus.
+     * 
+     * @param stages - the state holding the corpus
+     */
+    @Setup(Level.Invocation)
+    public void setUp(StageBenchmark stages){
+      list = HuffmanLibrary.createHList(stages.text);
+    }
+  }
+  
+  /** The sorted list of the corpus, made again before each invocation. */
+  @State(Scope.Thread)
+  public static class SortedList {
+    
+    /** The list, taken apart by the stage. */
+    private HLinkedList list;
+    
+    /**
+     * Makes the sorted list of the corpus.
+     * 
+     * @param stages - the state holding the corpus
+     */
+    @Setup(Level.Invocation)
+    public void setUp(StageBenchmark stages){
+      list = HuffmanLibrary.getSortedLinkedList(HuffmanLibrary.createHList(stages.text));
+    }
+  }
+  
+  /**
+   * Generates the corpus and the inputs of the stages that do not take them apart.
+   * 
+   * @throws IOException - if the corpus cannot be written
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    
+    File file = File.createTempFile("stage", ".dat");
+    
+    try {
+      corpus.write(file, size);
+      text = corpus.read(file);
+    }
+    finally {
+      file.delete();
+    }
+    
+    tree = HuffmanLibrary.createHuffmanTree(HuffmanLibrary.createHList(text));
+    
+    Hashtable<String, String> codes = new Hashtable<String, String>();
+    HTree.getCharacterCode(tree.getRoot(), codes, "");
+    
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < text.length() && builder.length() < BIT_STRING_LIMIT; i++)
+      builder.append(codes.get(String.valueOf(text.charAt(i))));
+    
+    builder.setLength(Math.min(builder.length(), BIT_STRING_LIMIT));
+    bits = builder.toString();
+  }
+  
+  /**
+   * Counts the characters of the corpus into an unsorted list.
+   * 
+   * @return  the list
+   */
+  @Benchmark
+  public HLinkedList hLinkedList(){
+    return HuffmanLibrary.createHList(text);
+  }
+  
+  /**
+   * Sorts the list of the corpus by frequency.
+   * 
+   * @param unsorted - the list of the corpus
+   * @return  the sorted list
+   */
+  @Benchmark
+  public HLinkedList getSortedLinkedList(UnsortedList unsorted){
+    return HuffmanLibrary.getSortedLinkedList(unsorted.list);
+  }
+  
+  /**
+   * Builds the Huffman tree of the sorted list of the corpus.
+   * 
+   * @param sorted - the sorted list of the corpus
+   * @return  the tree
+   */
+  @Benchmark
+  public HTree hTree(SortedList sorted){
+    return new HTree(sorted.list);
+  }
+  
+  /**
+   * Gets the code of every character of the tree of the corpus.
+   * 
+   * @return  the codes by character
+   */
+  @Benchmark
+  public Hashtable<String, String> getCharacterCode(){
+    
+    Hashtable<String, String> codes = new Hashtable<String, String>();
+    HTree.getCharacterCode(tree.getRoot(), codes, "");
+    return codes;
+  }
+  
+  /**
+   * Packs the codes of the corpus, as '0' and '1' characters, into bytes.
+   * 
+   * @return  the packed bytes
+   * @throws Exception - if the codes are not all '0' and '1'
+   */
+  @Benchmark
+  public byte[] toByteSequence() throws Exception {
+    return BinaryFileWriter.toByteSequence(bits);
+  }
+  
+}
@@ -0,0 +1,177 @@
+package howard.huffman;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that decompresses the bytes of an AdaptiveHuffmanOutputStream.
+ * This class is included in the Huffman encoding project.
+ * The decoder keeps its own AdaptiveHuffmanTree, walking it a bit at a time and
+ * updating it with each symbol the same way the encoder did. Compressed bytes are only
+ * read from the underlying stream when a code needs them, so a reader of a socket gets
+ * every byte that was flushed without waiting for more to arrive.
+ * 
+ * @author Shaun Howard
+ */
+public class AdaptiveHuffmanInputStream extends InputStream {
+  
+  /** The stream the compressed bytes are read from. */
+  private final InputStream in;
+  
+  /** The block of compressed bytes read from the stream. */
+  private final byte[] buffer = new byte[HuffmanLibrary.BUFFER_SIZE];
+  
+  /** The position of the next compressed byte in the block. */
+  private int position;
+  
+  /** The number of compressed bytes in the block. */
+  private int limit;
+  
+  /** The compressed byte being read, and the number of its bits not yet read. */
+  private int bitBuffer, bitCount;
+  
+  /** The adaptive code. */
+  private final AdaptiveHuffmanTree tree = new AdaptiveHuffmanTree();
+  
+  /** Whether the END marker has been read. */
+  private boolean ended;
+  
+  /**
+   * Constructor for the adaptive Huffman input stream.
+   * 
+   * @param in - the stream to read the compressed bytes from
+   */
+  public AdaptiveHuffmanInputStream(InputStream in){
+    this.in = in;
+  }
+  
+  /**
+   * Decompresses one byte.
+   * 
+   * @return  the byte read, from 0 to 255, or -1 at the end of the stream
+   * @throws IOException - if the stream is truncated or corrupt
+   */
+  @Override
+  public int read() throws IOException {
+    
+    while (!ended){
+      
+      int symbol = decode();
+      
+      if (symbol == AdaptiveHuffmanOutputStream.END)
+        ended = true;
+      else if (symbol != AdaptiveHuffmanOutputStream.FLUSH)
+        return symbol;
+    }
+    
+    return -1;
+  }
+  
+  /**
+   * Decompresses bytes into part of an array. Reading stops early at a flush once at
+   * least one byte has been read, so that it does not wait for bytes not yet sent.
+   * 
+   * @param data - the array to read bytes into
+   * @param offset - the index of the first byte to read into
+   * @param length - the largest number of bytes to read
+   * @return  the number of bytes read, or -1 at the end of the stream
+   * @throws IOException - if the stream is truncated or corrupt
+   */
+  @Override
+  public int read(byte[] data, int offset, int length) throws IOException {
+    
+    if (length == 0)
+      return 0;
+    
+    int count = 0;
+    
+    while (count < length && !ended){
+      
+      int symbol = decode();
+      
+      if (symbol == AdaptiveHuffmanOutputStream.END)
+        ended = true;
+      else if (symbol != AdaptiveHuffmanOutputStream.FLUSH)
+        data[offset + count++] = (byte) symbol;
+      else if (count > 0)
+        break;
+    }
+    
+    return count == 0 && ended ? -1 : count;
+  }
+  
+  /**
+   * Closes the underlying stream.
+   * 
+   * @throws IOException - if the stream cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+  
+  /**
+   * Decodes the next symbol, a byte or a marker, and updates the tree with it.
+   * After the FLUSH marker the rest of the compressed byte is padding and is skipped.
+   * 
+   * @return  the symbol decoded
+   * @throws IOException - if the stream is truncated or corrupt
+   */
+  private int decode() throws IOException {
+    
+    /* Walks down the tree a bit at a time to a leaf. */
+    int node = tree.getRoot();
+    while (!tree.isLeaf(node))
+      node = tree.getChild(node, readBit());
+    
+    int symbol = tree.getSymbol(node);
+    
+    /* Reads a new symbol in plain bits after the NYT code. */
+    if (symbol < 0){
+      
+      symbol = 0;
+      for (int i = 0; i < AdaptiveHuffmanTree.SYMBOL_BITS; i++)
+        symbol = (symbol << 1) | readBit();
+      
+      if (symbol > AdaptiveHuffmanOutputStream.END)
+        throw new IOException("Compressed stream is corrupt.");
+    }
+    
+    tree.update(symbol);
+    
+    if (symbol == AdaptiveHuffmanOutputStream.FLUSH)
+      bitCount = 0;
+    
+    return symbol;
+  }
+  
+  /**
+   * Reads the next bit, reading compressed bytes from the stream only once the block is used up.
+   * 
+   * @return  the next bit, 0 or 1
+   * @throws IOException - if the stream ends
+   */
+  private int readBit() throws IOException {
+    
+    if (bitCount == 0){
+      
+      if (position == limit){
+        
+        limit = in.read(buffer);
+        position = 0;
+        
+        if (limit <= 0){
+          limit = 0;
+          throw new EOFException("Compressed stream is truncated.");
+        }
+      }
+      
+      bitBuffer = buffer[position++] & 0xFF;
+      bitCount = 8;
+    }
+    
+    return (bitBuffer >>> --bitCount) & 1;
+  }
+  
+}
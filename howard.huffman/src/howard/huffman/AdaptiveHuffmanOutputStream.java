@@ -0,0 +1,126 @@
+package howard.huffman;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream that compresses bytes with adaptive Huffman coding in a single pass.
+ * This class is included in the Huffman encoding project.
+ * Each byte is coded with an AdaptiveHuffmanTree as it is written, so nothing needs to
+ * be counted or buffered up front, which suits live streams such as sockets and log
+ * tails. Two markers follow the byte values in the alphabet: flush() codes FLUSH and pads
+ * the bits to a whole byte, so the reader can decode everything written so far, and
+ * close() codes END. The stream has no header; it is read by an AdaptiveHuffmanInputStream.
+ * 
+ * @author Shaun Howard
+ */
+public class AdaptiveHuffmanOutputStream extends OutputStream {
+  
+  /** The marker after which the reader skips to the next whole byte. */
+  public static final int FLUSH = 256;
+  
+  /** The marker of the end of the stream. */
+  public static final int END = 257;
+  
+  /** The stream the packed bits are written to. */
+  private final OutputStream out;
+  
+  /** The writer of the packed bits. */
+  private final BitWriter bits;
+  
+  /** The adaptive code. */
+  private final AdaptiveHuffmanTree tree = new AdaptiveHuffmanTree();
+  
+  /** Whether bytes have been written since the last flush. */
+  private boolean pending;
+  
+  /** Whether the stream is closed. */
+  private boolean closed;
+  
+  /**
+   * Constructor for the adaptive Huffman output stream.
+   * 
+   * @param out - the stream to write the compressed bytes to
+   */
+  public AdaptiveHuffmanOutputStream(OutputStream out){
+    this.out = out;
+    this.bits = new BitWriter(out);
+  }
+  
+  /**
+   * Compresses one byte.
+   * 
+   * @param b - the byte to write, in the low eight bits
+   * @throws IOException - if the stream is closed or cannot be written to
+   */
+  @Override
+  public void write(int b) throws IOException {
+    
+    if (closed)
+      throw new IOException("Stream is closed.");
+    
+    tree.encode(b & 0xFF, bits);
+    pending = true;
+  }
+  
+  /**
+   * Compresses bytes from part of an array.
+   * 
+   * @param data - the array of bytes to write
+   * @param offset - the index of the first byte to write
+   * @param length - the number of bytes to write
+   * @throws IOException - if the stream is closed or cannot be written to
+   */
+  @Override
+  public void write(byte[] data, int offset, int length) throws IOException {
+    
+    if (closed)
+      throw new IOException("Stream is closed.");
+    
+    for (int i = offset; i < offset + length; i++)
+      tree.encode(data[i] & 0xFF, bits);
+    
+    pending |= length > 0;
+  }
+  
+  /**
+   * Codes the FLUSH marker if bytes have been written since the last flush, pads the
+   * bits to a whole byte and flushes them to the underlying stream, so the reader can
+   * decode every byte written so far.
+   * 
+   * @throws IOException - if the stream is closed or cannot be written to
+   */
+  @Override
+  public void flush() throws IOException {
+    
+    if (closed)
+      throw new IOException("Stream is closed.");
+    
+    if (pending){
+      tree.encode(FLUSH, bits);
+      bits.finish();
+      pending = false;
+    }
+    
+    out.flush();
+  }
+  
+  /**
+   * Codes the END marker, writes the last bits and closes the underlying stream.
+   * 
+   * @throws IOException - if the stream cannot be written to or closed
+   */
+  @Override
+  public void close() throws IOException {
+    
+    if (closed)
+      return;
+    
+    closed = true;
+    
+    tree.encode(END, bits);
+    bits.finish();
+    out.close();
+  }
+  
+}
@@ -0,0 +1,349 @@
+package howard.huffman;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A class for an adaptive Huffman tree, updated one symbol at a time with the FGK algorithm.
+ * This class is included in the Huffman encoding project.
+ * The encoder and decoder each keep a tree and update it the same way after every
+ * symbol, so no code table is sent and the input is read only once. A symbol not seen
+ * before is sent as the code of the NYT ("not yet transmitted") leaf followed by the
+ * symbol in SYMBOL_BITS plain bits, after which it has a leaf of its own.
+ * 
+ * Nodes are indexes into parallel primitive arrays, numbered so that the weights never
+ * decrease from node to node and siblings are next to each other (the sibling property);
+ * the root is the last node and the NYT leaf the first in use. The highest node of a
+ * weight is then found by binary search. Once the root weight reaches MAX_WEIGHT all
+ * weights are halved and the tree is rebuilt, which bounds the depth of the tree, and
+ * with it the cost of coding and updating a symbol, to MAX_CODE_LENGTH; it also lets
+ * the code follow input whose statistics change.
+ * 
+ * @author Shaun Howard
+ */
+public class AdaptiveHuffmanTree {
+  
+  /** The number of plain bits of a symbol sent after the NYT code. */
+  public static final int SYMBOL_BITS = 9;
+  
+  /** The number of symbols: the 256 byte values and the markers after them. */
+  public static final int ALPHABET_SIZE = 1 << SYMBOL_BITS;
+  
+  /** The root weight at which the weights are halved. */
+  public static final int MAX_WEIGHT = 1 << 16;
+  
+  /** The longest code a tree of at most MAX_WEIGHT can have, by its Fibonacci bound. */
+  public static final int MAX_CODE_LENGTH = 25;
+  
+  /** The symbol of an inner node. */
+  private static final int INNER = -1;
+  
+  /** The symbol of the NYT leaf. */
+  private static final int NYT = -2;
+  
+  /** The number of nodes of a tree with a leaf for every symbol and the NYT leaf, and node 0, which is never used. */
+  private static final int NODE_COUNT = 2 * ALPHABET_SIZE + 2;
+  
+  /** The root node, which is always the last. */
+  private static final int ROOT = NODE_COUNT - 1;
+  
+  /** The weight of each node. */
+  private final int[] weight = new int[NODE_COUNT];
+  
+  /** The parent of each node. */
+  private final int[] parent = new int[NODE_COUNT];
+  
+  /** The left child of each inner node. */
+  private final int[] left = new int[NODE_COUNT];
+  
+  /** The right child of each inner node. */
+  private final int[] right = new int[NODE_COUNT];
+  
+  /** The symbol of each node, INNER for an inner node or NYT for the NYT leaf. */
+  private final int[] symbol = new int[NODE_COUNT];
+  
+  /** The leaf of each symbol, or 0 if it has none yet. */
+  private final int[] leaf = new int[ALPHABET_SIZE];
+  
+  /** The NYT leaf, below which no node is in use. */
+  private int nyt = ROOT;
+  
+  /**
+   * Constructor for the adaptive Huffman tree class.
+   * Creates a tree of the NYT leaf alone, in which no symbol has been seen.
+   */
+  public AdaptiveHuffmanTree(){
+    symbol[ROOT] = NYT;
+  }
+  
+  /**
+   * Writes the code of a symbol, then updates the tree with it.
+   * 
+   * @param s - the symbol to encode, from 0 to ALPHABET_SIZE - 1
+   * @param out - the writer of the code bits
+   * @throws IOException - if the code bits cannot be written
+   */
+  public void encode(int s, BitWriter out) throws IOException {
+    
+    if (leaf[s] == 0){
+      writeCode(nyt, out);
+      out.writeBits(s, SYMBOL_BITS);
+    } else {
+      writeCode(leaf[s], out);
+    }
+    
+    update(s);
+  }
+  
+  /**
+   * Gets the root node, where decoding a symbol starts.
+   * 
+   * @return  the root node
+   */
+  public int getRoot(){
+    return ROOT;
+  }
+  
+  /**
+   * Gets a child of an inner node, following one bit of a code.
+   * 
+   * @param node - the inner node
+   * @param bit - 0 for the left child, 1 for the right
+   * @return  the child node
+   */
+  public int getChild(int node, int bit){
+    return bit == 0 ? left[node] : right[node];
+  }
+  
+  /**
+   * Determines whether a node is a leaf, where decoding a symbol ends.
+   * 
+   * @param node - the node
+   * @return  whether the node is a leaf
+   */
+  public boolean isLeaf(int node){
+    return symbol[node] != INNER;
+  }
+  
+  /**
+   * Gets the symbol of a leaf.
+   * 
+   * @param node - the leaf
+   * @return  the symbol of the leaf, or -1 for the NYT leaf, after which the symbol follows in SYMBOL_BITS plain bits
+   */
+  public int getSymbol(int node){
+    return symbol[node] == NYT ? -1 : symbol[node];
+  }
+  
+  /**
+   * Updates the tree with a symbol that has been coded: gives the symbol a leaf if it
+   * has none, and adds one to the weight of its leaf and of every node above it,
+   * swapping each node first with the highest node of its weight to keep the sibling
+   * property.
+   * 
+   * @param s - the symbol that was coded
+   */
+  public void update(int s){
+    
+    /* The node whose weight is to be increased. */
+    int node;
+    
+    if (leaf[s] == 0){
+      
+      /* Splits the NYT leaf into a new NYT leaf on the left and the symbol's leaf on the right. */
+      int inner = nyt;
+      nyt = inner - 2;
+      
+      symbol[inner] = INNER;
+      left[inner] = nyt;
+      right[inner] = inner - 1;
+      
+      symbol[nyt] = NYT;
+      weight[nyt] = 0;
+      parent[nyt] = inner;
+      
+      symbol[inner - 1] = s;
+      weight[inner - 1] = 0;
+      parent[inner - 1] = inner;
+      leaf[s] = inner - 1;
+      
+      node = inner - 1;
+      
+    } else {
+      node = leaf[s];
+    }
+    
+    while (node != ROOT){
+      
+      /* Moves the node into the place of the highest node of its weight, unless that is its parent. */
+      int leader = getLeader(node);
+      if (leader != node && leader != parent[node]){
+        swap(node, leader);
+        node = leader;
+      }
+      
+      weight[node]++;
+      node = parent[node];
+    }
+    
+    if (++weight[ROOT] >= MAX_WEIGHT)
+      rescale();
+  }
+  
+  /**
+   * Writes the code of a node, from the root down.
+   * 
+   * @param node - the node
+   * @param out - the writer of the code bits
+   * @throws IOException - if the code bits cannot be written
+   */
+  private void writeCode(int node, BitWriter out) throws IOException {
+    
+    int code = 0;
+    int length = 0;
+    
+    /* Gathers the bits from the node up, so the bit below the root ends up highest. */
+    for (; node != ROOT; node = parent[node], length++){
+      if (right[parent[node]] == node)
+        code |= 1 << length;
+    }
+    
+    out.writeBits(code, length);
+  }
+  
+  /**
+   * Finds the highest node with the same weight as the given node. Since weights do
+   * not decrease from node to node, it is found by binary search above the node.
+   * 
+   * @param node - the node
+   * @return  the highest node of the node's weight
+   */
+  private int getLeader(int node){
+    
+    int w = weight[node];
+    int low = node, high = ROOT;
+    
+    /* The last node with the weight is in low to high. */
+    while (low < high){
+      
+      int middle = (low + high + 1) >>> 1;
+      
+      if (weight[middle] == w)
+        low = middle;
+      else
+        high = middle - 1;
+    }
+    
+    return low;
+  }
+  
+  /**
+   * Swaps the places of two nodes of equal weight, neither of which is above the
+   * other, moving their subtrees with them.
+   * 
+   * @param a - one node
+   * @param b - the other node
+   */
+  private void swap(int a, int b){
+    
+    int s = symbol[a]; symbol[a] = symbol[b]; symbol[b] = s;
+    int l = left[a]; left[a] = left[b]; left[b] = l;
+    int r = right[a]; right[a] = right[b]; right[b] = r;
+    
+    relink(a);
+    relink(b);
+  }
+  
+  /**
+   * Points the children or symbol of a node back at it after it has moved.
+   * 
+   * @param node - the node that has moved
+   */
+  private void relink(int node){
+    
+    if (symbol[node] == INNER){
+      parent[left[node]] = node;
+      parent[right[node]] = node;
+    } else if (symbol[node] == NYT){
+      nyt = node;
+    } else {
+      leaf[symbol[node]] = node;
+    }
+  }
+  
+  /**
+   * Halves the weight of every leaf, keeping it at least 1, and rebuilds the tree from
+   * the leaves. The two lightest nodes are merged at each step, as by HTreeBuilder, and
+   * nodes are numbered in the order they are merged, which keeps the sibling property.
+   * The encoder and decoder rebuild the same tree, since ties keep the order of the nodes.
+   */
+  private void rescale(){
+    
+    /* The leaves in the order of their nodes, which is in order of weight, NYT first. */
+    int leafCount = 0;
+    int[] leaves = new int[ALPHABET_SIZE + 1];
+    for (int node = nyt; node <= ROOT; node++){
+      if (symbol[node] != INNER)
+        leaves[leafCount++] = symbol[node];
+    }
+    
+    /* The nodes of the new tree by temporary id, the leaves first with their weights halved, which keeps their order. */
+    int nodeCount = 2 * leafCount - 1;
+    int[] tempWeight = new int[nodeCount];
+    int[] tempLeft = new int[nodeCount];
+    int[] tempRight = new int[nodeCount];
+    
+    for (int i = 0; i < leafCount; i++)
+      tempWeight[i] = leaves[i] == NYT ? 0 : (weight[leaf[leaves[i]]] + 1) / 2;
+    
+    /* The temporary ids in the order they are merged, which is the order of their node numbers. */
+    int[] order = new int[nodeCount];
+    
+    /* Merges with two queues, the sorted leaves and the inner nodes in the order they are made. */
+    int nextLeaf = 0, nextInner = leafCount, innerEnd = leafCount, ordered = 0;
+    
+    while (innerEnd < nodeCount){
+      
+      for (int k = 0; k < 2; k++){
+        if (nextLeaf < leafCount && (nextInner == innerEnd || tempWeight[nextLeaf] <= tempWeight[nextInner]))
+          order[ordered++] = nextLeaf++;
+        else
+          order[ordered++] = nextInner++;
+      }
+      
+      tempLeft[innerEnd] = order[ordered - 2];
+      tempRight[innerEnd] = order[ordered - 1];
+      tempWeight[innerEnd] = tempWeight[order[ordered - 2]] + tempWeight[order[ordered - 1]];
+      innerEnd++;
+    }
+    order[ordered] = nodeCount - 1;
+    
+    /* The node number of each temporary node, in the order the nodes were merged, ending at the root. */
+    int[] number = new int[nodeCount];
+    for (int i = 0; i < nodeCount; i++)
+      number[order[i]] = ROOT - nodeCount + 1 + i;
+    
+    Arrays.fill(leaf, 0);
+    
+    for (int t = 0; t < nodeCount; t++){
+      
+      int node = number[t];
+      weight[node] = tempWeight[t];
+      
+      if (t < leafCount){
+        symbol[node] = leaves[t];
+        if (leaves[t] != NYT)
+          leaf[leaves[t]] = node;
+        else
+          nyt = node;
+      } else {
+        symbol[node] = INNER;
+        left[node] = number[tempLeft[t]];
+        right[node] = number[tempRight[t]];
+        parent[left[node]] = node;
+        parent[right[node]] = node;
+      }
+    }
+  }
+  
+}
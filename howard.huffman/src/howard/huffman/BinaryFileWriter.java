@@ -1,7 +1,9 @@
 package howard.huffman;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 
 /**
  * A class that produces a binary file from input text files.
@@ -13,6 +15,8 @@ public class BinaryFileWriter {
   
   /**
    * Writes a binary file as output.
+   * The file is set to the length of the byte code and memory-mapped, and the byte
+   * code is put straight into the mapping rather than through an output stream.
    * 
    * @param fileName - the file to convert to binary
    * @param byteArray - the input byte code
@@ -20,10 +24,13 @@ public class BinaryFileWriter {
    */
   public static void writeBinaryFile(String fileName, byte[] byteArray) throws Exception{
     
-    /* The output stream for writing to the file. */
-    FileOutputStream output = new FileOutputStream (new File(fileName));
-    output.write(byteArray);
-    output.close();
+    /* The channel for writing to the file. */
+    try (FileChannel output = FileChannel.open(new File(fileName).toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      
+      if (byteArray.length > 0)
+        output.map(FileChannel.MapMode.READ_WRITE, 0, byteArray.length).put(byteArray);
+    }
   }
   
   /**
@@ -39,46 +46,51 @@ public class BinaryFileWriter {
   
   /**
    * Converts a String to a byte sequence.
+   * The '0' and '1' characters are packed eight at a time into a byte, the first one the
+   * most significant bit, by WordKernels when they are enabled; the last byte is padded
+   * with zeros on the right.
    * 
    * @param data - the String to convert to a byte sequence
    * @return  a new byte sequence from the given String 
    * @throws Exception - throws exception if parameter doesn't exist
    */
   public static byte[] toByteSequence(String data) throws Exception{
+    return toByteSequence(data, WordKernels.ENABLED);
+  }
+  
+  /**
+   * Converts a String to a byte sequence, with or without the word kernels, which give
+   * the same bytes.
+   * Package protected by default.
+   * 
+   * @param data - the String to convert to a byte sequence
+   * @param words - whether to pack eight characters at a time with WordKernels.pack()
+   * @return  a new byte sequence from the given String
+   * @throws Exception - throws exception if a character is not '0' or '1'
+   */
+  static byte[] toByteSequence(String data, boolean words) throws Exception{
     
-    /* Counter for making sequence. */
-    int j=-1;
-    
-    /* Size of the byte array. */
-    int byteArrSize = data.length()/8;
+    /* The characters as Latin-1 bytes; any other character becomes '?', which is not a bit. */
+    byte[] bits = data.getBytes(StandardCharsets.ISO_8859_1);
+    byte[] packed = new byte[(bits.length + 7) / 8];
     
-    /* Checks if the byte array size is adequate. */
-    if (data.length()%8 != 0)
-      byteArrSize++;
+    int i = words ? WordKernels.pack(bits, packed) : 0;
     
-    /* Byte array for output. */
-    byte[] byteSeq = new byte[byteArrSize];
+    if (i < 0)
+      throw new Exception ("error in format");
     
-    /* Converts the encoded file to byte code. */
-    for(int i=0;i< data.length();i++){
+    /* Packs the characters after the last whole word one at a time. */
+    for (; i < bits.length; i++){
       
-      if (i%8 == 0){
-        j++;
-        byteSeq[j] = 0x00;
-      }
+      byte bit = bits[i];
       
-      byte tmp;
-      
-      if (data.charAt(i) == '1'){
-        tmp = 0x01;
-      } else if (data.charAt(i) == '0') {
-        tmp = 0x00;
-      } else
+      if (bit != '0' && bit != '1')
         throw new Exception ("error in format");
-      byteSeq[j] = (byte) (tmp | ( byteSeq[j] << 1));
+      
+      packed[i >>> 3] |= (bit - '0') << (7 - (i & 7));
     }
     
-    return byteSeq;
+    return packed;
   }
   
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package howard.huffman;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A reader of packed bits with a 64-bit bit buffer.
+ * This class is included in the Huffman encoding project.
+ * Bits are read most significant bit first, as written by BitWriter.
+ * The buffer is refilled a byte at a time from a block of bytes read from the
+ * stream, so that a decoder can look at the next 57 bits or more at once and
+ * resolve a whole code with a table lookup instead of reading bit by bit.
+ * 
+ * @author Shaun Howard
+ */
+public class BitReader {
+  
+  /** The number of bits that can always be peeked after a refill. */
+  public static final int MAX_PEEK_BITS = 57;
+  
+  /** The stream to read packed bytes from, or null if they are all in the block. */
+  private final InputStream in;
+  
+  /** The block of bytes read from the stream. */
+  private final byte[] bytes;
+  
+  /** The position of the next byte to move into the bit buffer. */
+  private int position;
+  
+  /** The number of bytes in the block. */
+  private int limit;
+  
+  /** The buffered bits, left-aligned, so the next bit is the highest bit. */
+  private long bitBuffer;
+  
+  /** The number of bits in the bit buffer. */
+  private int bitCount;
+  
+  /** The number of zero bits added to the bit buffer past the end of the stream. */
+  private int paddingBits;
+  
+  /**
+   * Constructor for the bit reader.
+   * 
+   * @param in - the stream to read packed bytes from
+   */
+  public BitReader(InputStream in){
+    this.in = in;
+    this.bytes = new byte[HuffmanLibrary.BUFFER_SIZE];
+  }
+  
+  /**
+   * Constructor for a bit reader of packed bytes already in memory.
+   * The bytes are read in place, so they must not change while they are read.
+   * 
+   * @param data - the array of packed bytes
+   * @param offset - the index of the first packed byte
+   * @param length - the number of packed bytes
+   */
+  public BitReader(byte[] data, int offset, int length){
+    this.in = null;
+    this.bytes = data;
+    this.position = offset;
+    this.limit = offset + length;
+  }
+  
+  /**
+   * Fills the bit buffer with at least MAX_PEEK_BITS bits.
+   * Past the end of the stream the buffer is filled with zero bits, which
+   * cause an EOFException only if they are consumed by skipBits().
+   * 
+   * @throws IOException - if the stream cannot be read
+   */
+  public void refill() throws IOException {
+    
+    while (bitCount < MAX_PEEK_BITS){
+      
+      /* Reads the next block of bytes once the current block is used up. */
+      if (position == limit && in != null){
+        limit = Math.max(in.read(bytes), 0);
+        position = 0;
+      }
+      
+      /* Adds the next byte, or padding past the end of the stream. */
+      if (position < limit){
+        bitBuffer |= (long) (bytes[position++] & 0xFF) << (56 - bitCount);
+      } else {
+        paddingBits += 8;
+      }
+      
+      bitCount += 8;
+    }
+  }
+  
+  /**
+   * Gets the buffered bits without consuming them.
+   * Precondition - refill() was called since enough bits were last consumed.
+   * 
+   * @return  the buffered bits, left-aligned, so the next bit is the highest bit
+   */
+  public long peekWindow(){
+    return bitBuffer;
+  }
+  
+  /**
+   * Consumes bits from the bit buffer.
+   * Precondition - no more bits are consumed than are in the buffer.
+   * 
+   * @param n - the number of bits to consume
+   * @throws EOFException - if bits past the end of the stream are consumed
+   */
+  public void skipBits(int n) throws EOFException {
+    
+    bitBuffer <<= n;
+    bitCount -= n;
+    
+    if (bitCount < paddingBits)
+      throw new EOFException("Compressed file is truncated.");
+  }
+  
+}
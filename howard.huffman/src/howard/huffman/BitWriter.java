@@ -0,0 +1,144 @@
+package howard.huffman;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A writer of packed bits with a 64-bit bit register.
+ * This class is included in the Huffman encoding project.
+ * Codes are shifted into the register whole, and each time 32 bits have built up
+ * they are stored as one big-endian int in a byte buffer, which is written out to a
+ * channel when full. Bits are written most significant bit first, so the first
+ * code bit is the high bit of the first byte, and the last byte is padded with
+ * zeros on the right by finish(). Writing a code allocates nothing.
+ * 
+ * @author Shaun Howard
+ */
+public class BitWriter implements Closeable {
+  
+  /** The channel the packed bytes are written to. */
+  private final WritableByteChannel channel;
+  
+  /** The buffer of packed bytes not yet written to the channel. */
+  private final ByteBuffer buffer;
+  
+  /** The bits not yet stored in the buffer, right-aligned. */
+  private long bitRegister;
+  
+  /** The number of bits in the bit register, always less than 32 between writes. */
+  private int bitCount;
+  
+  /** The total number of bits written, not counting padding. */
+  private long bitsWritten;
+  
+  /**
+   * Constructor for the bit writer.
+   * 
+   * @param out - the stream to write the packed bytes to
+   */
+  public BitWriter(OutputStream out){
+    this(Channels.newChannel(out), ByteBuffer.allocate(HuffmanLibrary.BUFFER_SIZE));
+  }
+  
+  /**
+   * Constructor for the bit writer.
+   * The buffer may be a direct buffer, so that a file channel writes it without a copy.
+   * 
+   * @param channel - the channel to write the packed bytes to
+   * @param buffer - the buffer to collect packed bytes in, at least 8 bytes long
+   */
+  public BitWriter(WritableByteChannel channel, ByteBuffer buffer){
+    this.channel = channel;
+    this.buffer = buffer;
+    this.buffer.clear();
+    this.buffer.order(ByteOrder.BIG_ENDIAN);
+  }
+  
+  /**
+   * Writes the lowest bits of a code, most significant bit first.
+   * 
+   * @param code - the code to write, right-aligned; any bits above length must be 0
+   * @param length - the number of bits of the code to write, from 0 to 32
+   * @throws IOException - if the channel cannot be written to
+   */
+  public void writeBits(int code, int length) throws IOException {
+    
+    /* Shifts the code into the register, which cannot overflow since fewer than 32 bits are held. */
+    bitRegister = (bitRegister << length) | (code & 0xFFFFFFFFL);
+    bitCount += length;
+    bitsWritten += length;
+    
+    /* Stores the oldest 32 bits as a whole word once there are enough. */
+    if (bitCount >= 32){
+      
+      bitCount -= 32;
+      buffer.putInt((int) (bitRegister >>> bitCount));
+      
+      if (buffer.remaining() < 4)
+        drain();
+    }
+  }
+  
+  /**
+   * Gets the number of bits written so far.
+   * 
+   * @return  the number of bits written, not counting padding
+   */
+  public long getBitsWritten(){
+    return bitsWritten;
+  }
+  
+  /**
+   * Pads the last partial byte with zeros and writes everything buffered to the channel.
+   * The channel is left open, so more bytes may follow the packed bits.
+   * 
+   * @throws IOException - if the channel cannot be written to
+   */
+  public void finish() throws IOException {
+    
+    /* Stores the remaining whole and partial bytes of the register, left-aligned. */
+    while (bitCount > 0){
+      
+      if (!buffer.hasRemaining())
+        drain();
+      
+      buffer.put((byte) (bitCount >= 8 ? bitRegister >>> (bitCount - 8) : bitRegister << (8 - bitCount)));
+      bitCount = Math.max(bitCount - 8, 0);
+    }
+    
+    drain();
+  }
+  
+  /**
+   * Finishes the packed bits and closes the channel.
+   * 
+   * @throws IOException - if the channel cannot be written to or closed
+   */
+  @Override
+  public void close() throws IOException {
+    
+    finish();
+    channel.close();
+  }
+  
+  /**
+   * Writes the buffered bytes to the channel and empties the buffer.
+   * 
+   * @throws IOException - if the channel cannot be written to
+   */
+  private void drain() throws IOException {
+    
+    buffer.flip();
+    
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+    
+    buffer.clear();
+  }
+  
+}
@@ -0,0 +1,948 @@
+package howard.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A class for encoding and decoding files in independent blocks on several threads.
+ * This class is included in the Huffman encoding project.
+ * The input file is split into blocks of about the same number of bytes, each ending
+ * on a whole UTF-8 character, so that every block decodes to whole characters on its
+ * own. Blocks are memory-mapped and decoded straight from the mapped bytes. The blocks
+ * are counted in parallel on a ForkJoinPool and their counts are added together into
+ * one code table for the file, unless each block is to have its own. With a parallelism
+ * of 1, as in a HuffmanBatch, no pool is made and the blocks are counted and encoded
+ * one after another on the calling thread.
+ * Since the encoded size of every block follows from its counts, the BlockIndex is
+ * written in the header ahead of the blocks, and each block is then encoded in parallel
+ * straight to its place in the output file. Each block is read twice rather than kept,
+ * so memory use depends on the block size and the number of threads, not on the size
+ * of the file. Decoding uses the block index the same way: every block is decoded on
+ * its own thread straight into its place in the restored file.
+ * 
+ * With interleaved streams, the code bits of each block are split into STREAM_COUNT
+ * streams, the i-th symbol going to stream i % STREAM_COUNT. After the block's own
+ * code table, if any, come the byte lengths of all streams but the last as four byte
+ * ints, then the streams one after another, each padded to a whole byte. Since the
+ * padding of each stream is not known until the block is encoded, the block is given
+ * room for the most padding there can be, and the room the last stream does not need
+ * is left as zeros.
+ * 
+ * @author Shaun Howard
+ */
+public class BlockCoder {
+  
+  /** The number of interleaved streams of a block, as decoded by HuffmanDecoder. */
+  public static final int STREAM_COUNT = 4;
+  
+  /** The most bytes interleaving adds to a block: the lengths of the streams and their padding. */
+  private static final int STREAM_OVERHEAD = 5 * (STREAM_COUNT - 1);
+  
+  /**
+   * Encodes a text file in blocks, with the block size, code tables and number of
+   * threads of the given options. A file that would not shrink is stored as is,
+   * still in blocks, so that it can be restored in parallel too.
+   * 
+   * @param input_file - the name of the file to be compressed
+   * @param output_file - the name of the compressed output file
+   * @param options - the options of the encoder, with a block size that is not 0
+   * @throws IOException - if a file cannot be read or written
+   */
+  public static void encode(String input_file, String output_file, HuffmanOptions options) throws IOException {
+    
+    /* The pool of the count and encode tasks, or none to run them on this thread alone. */
+    ForkJoinPool pool = options.getParallelism() > 1 ? new ForkJoinPool(options.getParallelism()) : null;
+    
+    /* The sizes and stage timings of the encoding; the writes of the blocks are timed as part of ENCODE. */
+    HuffmanMetrics metrics = new HuffmanMetrics();
+    metrics.enter(HuffmanMetrics.Stage.COUNT);
+    
+    try (FileChannel input = FileChannel.open(Paths.get(input_file), StandardOpenOption.READ);
+        FileChannel output = FileChannel.open(Paths.get(output_file),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      
+      /* The number of distinct symbols, which are bytes or characters. */
+      int alphabetSize = options.isBinary() ? HuffmanLibrary.BYTE_ALPHABET_SIZE : HuffmanLibrary.ALPHABET_SIZE;
+      
+      /* The blocks of the input file. */
+      Block[] blocks = split(input, options.getBlockSize(), options.isBinary());
+      
+      /* Counts the blocks in parallel, adding up the counts of the whole file. */
+      CountTask count = new CountTask(input, blocks, 0, blocks.length, options);
+      long[] frequencies = pool != null ? pool.invoke(count) : count.compute();
+      
+      /* The code lengths shared by the blocks, or none if each block has its own. */
+      metrics.enter(HuffmanMetrics.Stage.BUILD);
+      byte[] lengths = options.isBlockTables() ? new byte[alphabetSize]
+          : HuffmanLibrary.getCodeLengths(frequencies, options.getMaxCodeLength());
+      
+      /* The number of characters of the file and the size of each encoded block. */
+      long symbolCount = 0;
+      for (Block block : blocks){
+        
+        if (!options.isBlockTables())
+          block.plan(lengths, null);
+        
+        symbolCount += block.symbolCount;
+      }
+      
+      /* The flags of the compressed file. */
+      int flags = HuffmanHeader.FLAG_BLOCKS | (options.isChecksum() ? HuffmanHeader.FLAG_CHECKSUM : 0)
+          | (options.isBlockTables() ? HuffmanHeader.FLAG_BLOCK_TABLES : 0)
+          | (options.isBinary() ? HuffmanHeader.FLAG_BYTES : 0)
+          | (options.isInterleaved() ? HuffmanHeader.FLAG_STREAMS : 0);
+      
+      /* The index of the encoded blocks. */
+      BlockIndex index = getIndex(blocks, false, options.isInterleaved());
+      
+      /* The header of the encoded file and of the file if it were stored as is. */
+      ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+      new HuffmanHeader(flags, symbolCount, lengths, index).write(headerBytes);
+      
+      ByteArrayOutputStream storedHeaderBytes = new ByteArrayOutputStream();
+      new HuffmanHeader((flags & ~HuffmanHeader.FLAG_STREAMS) | HuffmanHeader.FLAG_STORED, symbolCount, lengths,
+          getIndex(blocks, true, false)).write(storedHeaderBytes);
+      
+      /* Stores the file as is if encoding it would not save space. */
+      if (headerBytes.size() + index.getCompressedOffset(blocks.length)
+          >= storedHeaderBytes.size() + input.size()) {
+        
+        metrics.enter(HuffmanMetrics.Stage.WRITE);
+        output.write(ByteBuffer.wrap(storedHeaderBytes.toByteArray()));
+        
+        for (long position = 0, size = input.size(); position < size; )
+          position += input.transferTo(position, size - position, output);
+        
+      } else {
+        
+        metrics.enter(HuffmanMetrics.Stage.WRITE);
+        output.write(ByteBuffer.wrap(headerBytes.toByteArray()));
+        
+        /* The encoder of the code table shared by the blocks. */
+        metrics.enter(HuffmanMetrics.Stage.CODES);
+        HuffmanEncoder encoder = options.isBlockTables() ? null : new HuffmanEncoder(lengths);
+        
+        /* Encodes the blocks in parallel, each to its own place after the header. */
+        metrics.enter(HuffmanMetrics.Stage.ENCODE);
+        EncodeTask encode = new EncodeTask(input, output, headerBytes.size(), index, blocks, 0, blocks.length,
+            encoder, options.isBinary(), options.isInterleaved());
+        
+        if (pool != null)
+          pool.invoke(encode);
+        else
+          encode.compute();
+      }
+      
+      HuffmanLibrary.report(metrics, options, input_file, output_file, symbolCount, frequencies);
+      
+    } catch (UncheckedIOException e) {
+      
+      throw e.getCause();
+      
+    } finally {
+      
+      if (pool != null)
+        pool.shutdown();
+    }
+  }
+  
+  /**
+   * Decodes a file encoded in blocks, with the blocks decoded in parallel on a pool of
+   * the given number of threads. The output file is first extended to the length of the
+   * original file, and each block's region of it is memory-mapped, so each block is
+   * restored straight into its place in the output file with no further copy.
+   * The length and checksum of every block are verified against the block index, and
+   * the blocks are checked to fit in the compressed file before the output file is
+   * extended. If a block cannot be decoded, the output file is truncated to nothing.
+   * 
+   * @param input_file - the name of the compressed file
+   * @param output_file - the name of the restored output file
+   * @param header - the header of the compressed file, read by HuffmanHeader.read()
+   * @param parallelism - the number of threads that decode blocks
+   * @throws IOException - if a file cannot be read or written, or the compressed file is corrupt
+   */
+  public static void decode(String input_file, String output_file, HuffmanHeader header, int parallelism) throws IOException {
+    
+    /* The index of the blocks. */
+    BlockIndex index = header.getBlockIndex();
+    
+    /* The decoder of the code table shared by the blocks, if they do not have their own. */
+    HuffmanDecoder decoder = header.hasFlag(HuffmanHeader.FLAG_STORED) || header.hasFlag(HuffmanHeader.FLAG_BLOCK_TABLES)
+        ? null : new HuffmanDecoder(header.getCodeLengths());
+    
+    ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+    
+    try (FileChannel input = FileChannel.open(Paths.get(input_file), StandardOpenOption.READ);
+        FileChannel output = FileChannel.open(Paths.get(output_file), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      
+      /* The blocks must fit in the compressed file, so a corrupt length neither extends the output nor allocates a block. */
+      if (index.getCompressedOffset(index.getBlockCount()) > input.size() - header.getSize())
+        throw new IOException("Compressed file is corrupt.");
+      
+      /* Decodes each block on the pool. */
+      List<Future<Void>> results = new ArrayList<Future<Void>>();
+      
+      try {
+        
+        decodeBlocks(input, output, header, decoder, pool, results);
+        
+      } catch (InterruptedException | ExecutionException | IOException | RuntimeException e) {
+        
+        /* Waits for the blocks already started, as their mappings may not outlive the truncation. */
+        for (Future<Void> result : results)
+          result.cancel(false);
+        
+        pool.shutdown();
+        boolean interrupted = false;
+        
+        while (!pool.isTerminated()){
+          try {
+            pool.awaitTermination(1, TimeUnit.SECONDS);
+          } catch (InterruptedException again) {
+            interrupted = true;
+          }
+        }
+        
+        if (interrupted)
+          Thread.currentThread().interrupt();
+        
+        output.truncate(0);
+        throw e;
+      }
+      
+    } catch (InterruptedException e) {
+      
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Decoding was interrupted.");
+      
+    } catch (ExecutionException e) {
+      
+      if (e.getCause() instanceof IOException)
+        throw (IOException) e.getCause();
+      
+      throw new IOException(e.getCause());
+      
+    } finally {
+      
+      pool.shutdownNow();
+    }
+  }
+  
+  /**
+   * Extends the output file to the length of the original file and decodes the blocks
+   * into it on the pool, waiting for every block.
+   * 
+   * @param input - the compressed file
+   * @param output - the restored output file
+   * @param header - the header of the compressed file
+   * @param decoder - the decoder of the shared code table, or null if the file is stored or each block has its own
+   * @param pool - the pool that decodes the blocks
+   * @param results - the list the result of each block is added to as it is submitted
+   * @throws IOException - if a file cannot be read or written
+   * @throws InterruptedException - if the thread is interrupted while waiting for a block
+   * @throws ExecutionException - if a block could not be decoded
+   */
+  private static void decodeBlocks(FileChannel input, FileChannel output, HuffmanHeader header, HuffmanDecoder decoder,
+      ExecutorService pool, List<Future<Void>> results) throws IOException, InterruptedException, ExecutionException {
+    
+    /* The index of the blocks. */
+    BlockIndex index = header.getBlockIndex();
+    
+    /* Extends the output file to the length of the original file. */
+    long length = index.getOriginalOffset(index.getBlockCount());
+    if (length > 0)
+      output.write(ByteBuffer.allocate(1), length - 1);
+    
+    for (int i = 0; i < index.getBlockCount(); i++){
+      
+      final int block = i;
+      
+      results.add(pool.submit(() -> {
+        
+        /* The compressed bytes of the block. */
+        ByteBuffer compressed = read(input, header.getSize() + index.getCompressedOffset(block), (int) index.getCompressedLength(block));
+        
+        /* The block's place in the output file. */
+        MappedByteBuffer restored = output.map(FileChannel.MapMode.READ_WRITE,
+            index.getOriginalOffset(block), index.getOriginalLength(block));
+        
+        decodeBlock(compressed, header, block, decoder, restored);
+        return null;
+      }));
+    }
+    
+    /* Waits for every block, reporting the first that failed. */
+    for (Future<Void> result : results)
+      result.get();
+  }
+  
+  /**
+   * Decodes one block into the given buffer and verifies it against the block index.
+   * Package protected by default.
+   * 
+   * @param compressed - the compressed bytes of the block
+   * @param header - the header of the compressed file
+   * @param block - the index of the block
+   * @param decoder - the decoder of the shared code table, or null if the file is stored or each block has its own
+   * @param restored - the buffer to restore the block into, with room for exactly the original length of the block
+   * @throws IOException - if the block is corrupt
+   */
+  static void decodeBlock(ByteBuffer compressed, HuffmanHeader header, int block, HuffmanDecoder decoder,
+      ByteBuffer restored) throws IOException {
+    
+    /* The index of the blocks. */
+    BlockIndex index = header.getBlockIndex();
+    
+    /* The start of the block's restored bytes. */
+    ByteBuffer start = restored.duplicate();
+    
+    /* Whether the restored bytes are as long as the original block. */
+    boolean fits;
+    
+    if (header.hasFlag(HuffmanHeader.FLAG_STORED)){
+      
+      fits = compressed.remaining() == restored.remaining();
+      if (fits)
+        restored.put(compressed);
+      
+    } else {
+      
+      InputStream in = new ByteArrayInputStream(compressed.array(), compressed.arrayOffset() + compressed.position(), compressed.remaining());
+      
+      /* Reads the block's own code table. */
+      if (decoder == null)
+        decoder = new HuffmanDecoder(HuffmanHeader.readCodeTable(in, header.hasFlag(HuffmanHeader.FLAG_BYTES)
+            ? HuffmanLibrary.BYTE_ALPHABET_SIZE : HuffmanLibrary.ALPHABET_SIZE));
+      
+      /* The code bits of the block, unless they are split into streams. */
+      BitReader bits = header.hasFlag(HuffmanHeader.FLAG_STREAMS) ? null : new BitReader(in);
+      
+      if (header.hasFlag(HuffmanHeader.FLAG_STREAMS)){
+        
+        /* The bytes of the interleaved streams in the block's array, after their lengths. */
+        int[] starts = new int[STREAM_COUNT], ends = new int[STREAM_COUNT];
+        int end = compressed.arrayOffset() + compressed.limit();
+        int next = end - in.available() + 4 * (STREAM_COUNT - 1);
+        
+        for (int s = 0; s < STREAM_COUNT; s++){
+          
+          int length = s < STREAM_COUNT - 1 ? HuffmanHeader.readInt(in) : end - next;
+          if (length < 0 || length > end - next)
+            throw new IOException("Block " + block + " is corrupt.");
+          
+          starts[s] = next;
+          ends[s] = next += length;
+        }
+        
+        int symbolCount = (int) Math.min(index.getSymbolCount(block), Integer.MAX_VALUE - 8);
+        
+        if (header.hasFlag(HuffmanHeader.FLAG_BYTES)){
+          
+          /* Decodes the raw bytes, then copies them into the restored bytes. */
+          fits = symbolCount == restored.remaining();
+          if (fits){
+            byte[] bytes = new byte[symbolCount];
+            decoder.decode(compressed.array(), starts, ends, bytes, 0, bytes.length);
+            restored.put(bytes);
+          }
+          
+        } else {
+          
+          char[] characters = new char[symbolCount];
+          decoder.decode(compressed.array(), starts, ends, characters, 0, characters.length);
+          fits = encodeCharacters(characters, restored);
+        }
+        
+      } else if (header.hasFlag(HuffmanHeader.FLAG_BYTES)){
+        
+        /* Decodes the raw bytes straight into the restored bytes. */
+        fits = index.getSymbolCount(block) == restored.remaining();
+        while (fits && restored.hasRemaining())
+          restored.put((byte) decoder.decode(bits));
+        
+      } else {
+        
+        /* The characters of the block. */
+        char[] characters = new char[(int) index.getSymbolCount(block)];
+        for (int i = 0; i < characters.length; i++)
+          characters[i] = (char) decoder.decode(bits);
+        
+        fits = encodeCharacters(characters, restored);
+      }
+    }
+    
+    if (!fits)
+      throw new IOException("Block " + block + " does not match the length of the original file.");
+    
+    /* Verifies the block against the checksum of the original. */
+    if (header.hasFlag(HuffmanHeader.FLAG_CHECKSUM)){
+      
+      CRC32 crc = new CRC32();
+      crc.update(start);
+      
+      if ((int) crc.getValue() != index.getChecksum(block))
+        throw new IOException("Checksum does not match the original file in block " + block + ".");
+    }
+  }
+  
+  /**
+   * Splits a file into blocks of about the given size. Blocks of text each start on a
+   * whole UTF-8 character: a block boundary that falls on a continuation byte is moved
+   * forward to the next byte that starts a character.
+   * 
+   * @param input - the file to split
+   * @param blockSize - the number of bytes per block
+   * @param binary - whether the file is encoded as raw bytes, so blocks can end anywhere
+   * @return  the blocks of the file
+   * @throws IOException - if the file cannot be read
+   */
+  private static Block[] split(FileChannel input, int blockSize, boolean binary) throws IOException {
+    
+    /* The size of the file. */
+    long size = input.size();
+    
+    /* The blocks of the file. */
+    List<Block> blocks = new ArrayList<Block>();
+    
+    for (long start = 0; start < size; ){
+      
+      /* The end of the block, moved past the continuation bytes of a character. */
+      long end = Math.min(start + blockSize, size);
+      if (!binary)
+        end = MappedReader.getCharacterBoundary(input, end);
+      
+      blocks.add(new Block(start, (int) (end - start)));
+      start = end;
+    }
+    
+    return blocks.toArray(new Block[blocks.size()]);
+  }
+  
+  /**
+   * Reads bytes of a file at the given position.
+   * Package protected by default.
+   * 
+   * @param input - the file to read
+   * @param position - the position of the first byte to read
+   * @param length - the number of bytes to read
+   * @return  a buffer of the bytes read
+   * @throws IOException - if the file cannot be read or ends too soon
+   */
+  static ByteBuffer read(FileChannel input, long position, int length) throws IOException {
+    
+    ByteBuffer bytes = ByteBuffer.allocate(length);
+    
+    while (bytes.hasRemaining()){
+      if (input.read(bytes, position + bytes.position()) < 0)
+        throw new EOFException("File is truncated.");
+    }
+    
+    bytes.flip();
+    return bytes;
+  }
+  
+  /**
+   * Decodes characters from UTF-8 bytes. Malformed input is replaced in the same
+   * way as HuffmanLibrary.readFileAsString() does.
+   * 
+   * @param bytes - the bytes to decode
+   * @return  a buffer of the decoded characters
+   * @throws IOException - if the bytes cannot be decoded
+   */
+  private static CharBuffer decodeCharacters(ByteBuffer bytes) throws IOException {
+    
+    CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    
+    return utf8.decode(bytes);
+  }
+  
+  /**
+   * Encodes decoded characters as UTF-8 straight into the restored bytes.
+   * 
+   * @param characters - the characters of a block
+   * @param restored - the buffer to restore the block into
+   * @return  whether the characters fill the buffer exactly
+   */
+  private static boolean encodeCharacters(char[] characters, ByteBuffer restored){
+    
+    CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    
+    return !utf8.encode(CharBuffer.wrap(characters), restored, true).isOverflow()
+        && !utf8.flush(restored).isOverflow() && !restored.hasRemaining();
+  }
+  
+  /**
+   * Gets the block index of the blocks.
+   * 
+   * @param blocks - the blocks of the input file
+   * @param stored - whether the blocks are stored as is rather than encoded
+   * @param interleaved - whether each encoded block is coded as interleaved streams
+   * @return  the block index
+   */
+  private static BlockIndex getIndex(Block[] blocks, boolean stored, boolean interleaved){
+    
+    long[] compressedLengths = new long[blocks.length];
+    long[] originalLengths = new long[blocks.length];
+    long[] symbolCounts = new long[blocks.length];
+    int[] checksums = new int[blocks.length];
+    
+    for (int i = 0; i < blocks.length; i++){
+      compressedLengths[i] = stored ? blocks[i].length
+          : blocks[i].tableBytes.length + (blocks[i].bits + 7) / 8 + (interleaved ? STREAM_OVERHEAD : 0);
+      originalLengths[i] = blocks[i].length;
+      symbolCounts[i] = blocks[i].symbolCount;
+      checksums[i] = blocks[i].checksum;
+    }
+    
+    return new BlockIndex(compressedLengths, originalLengths, symbolCounts, checksums);
+  }
+  
+  /**
+   * A block of the input file, with what the encoder learns of it.
+   */
+  private static class Block {
+    
+    /** The position of the block in the input file. */
+    final long start;
+    
+    /** The number of bytes of the block. */
+    final int length;
+    
+    /** The characters that occur in the block. */
+    int[] characters;
+    
+    /** The number of occurrences of each character that occurs in the block. */
+    long[] counts;
+    
+    /** The number of characters in the block. */
+    long symbolCount;
+    
+    /** The CRC32 of the bytes of the block. */
+    int checksum;
+    
+    /** The block's own code table as written before its code bits, or no bytes if it shares the file's. */
+    byte[] tableBytes = new byte[0];
+    
+    /** The number of code bits of the block. */
+    long bits;
+    
+    /**
+     * Constructor for a block.
+     * 
+     * @param start - the position of the block in the input file
+     * @param length - the number of bytes of the block
+     */
+    Block(long start, int length){
+      this.start = start;
+      this.length = length;
+    }
+    
+    /**
+     * Keeps the counts of the characters that occur in the block.
+     * 
+     * @param frequencies - the number of occurrences of each character, indexed by character
+     */
+    void setCounts(long[] frequencies){
+      
+      int n = 0;
+      for (long f : frequencies){
+        if (f != 0)
+          n++;
+      }
+      
+      characters = new int[n];
+      counts = new long[n];
+      
+      for (int c = 0, i = 0; c < frequencies.length; c++){
+        if (frequencies[c] != 0){
+          characters[i] = c;
+          counts[i++] = frequencies[c];
+          symbolCount += frequencies[c];
+        }
+      }
+    }
+    
+    /**
+     * Finds the number of code bits of the block with the given code lengths.
+     * 
+     * @param lengths - the code length of each character, indexed by character
+     * @param tableBytes - the block's own code table as written, or null if it shares the file's
+     */
+    void plan(byte[] lengths, byte[] tableBytes){
+      
+      if (tableBytes != null)
+        this.tableBytes = tableBytes;
+      
+      bits = 0;
+      for (int i = 0; i < characters.length; i++)
+        bits += counts[i] * lengths[characters[i]];
+    }
+    
+  }
+  
+  /**
+   * A task that counts the characters of a range of blocks, splitting the range in half
+   * until there is one block per task. The counts of each block are kept in the block;
+   * the counts of the range are added up and returned.
+   */
+  private static class CountTask extends RecursiveTask<long[]> {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /** The input file. */
+    private final FileChannel input;
+    
+    /** The blocks of the input file. */
+    private final Block[] blocks;
+    
+    /** The first block of the range and the block after the last. */
+    private final int from, to;
+    
+    /** The options of the encoder. */
+    private final HuffmanOptions options;
+    
+    /**
+     * Constructor for the count task.
+     * 
+     * @param input - the input file
+     * @param blocks - the blocks of the input file
+     * @param from - the first block to count
+     * @param to - the block after the last one to count
+     * @param options - the options of the encoder
+     */
+    CountTask(FileChannel input, Block[] blocks, int from, int to, HuffmanOptions options){
+      this.input = input;
+      this.blocks = blocks;
+      this.from = from;
+      this.to = to;
+      this.options = options;
+    }
+    
+    @Override
+    protected long[] compute(){
+      
+      /* Counts the halves of the range in parallel, or in turn off a pool, and adds their counts together. */
+      if (to - from > 1){
+        
+        int middle = (from + to) >>> 1;
+        CountTask right = new CountTask(input, blocks, middle, to, options);
+        boolean parallel = inForkJoinPool();
+        
+        if (parallel)
+          right.fork();
+        
+        long[] frequencies = new CountTask(input, blocks, from, middle, options).compute();
+        long[] rightFrequencies = parallel ? right.join() : right.compute();
+        
+        for (int c = 0; c < frequencies.length; c++)
+          frequencies[c] += rightFrequencies[c];
+        
+        return frequencies;
+      }
+      
+      /* The counter of the characters or bytes of the block. */
+      FrequencyCounter counter = new FrequencyCounter(options.isBinary()
+          ? HuffmanLibrary.BYTE_ALPHABET_SIZE : HuffmanLibrary.ALPHABET_SIZE);
+      
+      try {
+        
+        if (from < to){
+          
+          Block block = blocks[from];
+          ByteBuffer bytes = input.map(FileChannel.MapMode.READ_ONLY, block.start, block.length);
+          
+          /* The checksum of the block's bytes. */
+          CRC32 crc = new CRC32();
+          crc.update(bytes.duplicate());
+          block.checksum = (int) crc.getValue();
+          
+          if (options.isBinary()){
+            counter.count(bytes);
+          } else {
+            CharBuffer characters = decodeCharacters(bytes);
+            counter.count(characters.array(), characters.arrayOffset() + characters.position(), characters.remaining());
+          }
+          
+          block.setCounts(counter.getFrequencies());
+          
+          /* Gives the block its own code table. */
+          if (options.isBlockTables()){
+            
+            byte[] lengths = HuffmanLibrary.getCodeLengths(counter.getFrequencies(), options.getMaxCodeLength());
+            ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+            HuffmanHeader.writeCodeTable(tableBytes, lengths);
+            
+            block.plan(lengths, tableBytes.toByteArray());
+          }
+        }
+        
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      
+      return counter.getFrequencies();
+    }
+    
+  }
+  
+  /**
+   * A task that encodes a range of blocks, splitting the range in half until there is
+   * one block per task. Each block is written at its own offset in the output file.
+   */
+  private static class EncodeTask extends RecursiveAction {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /** The input file and the output file. */
+    private final FileChannel input, output;
+    
+    /** The position of the first block in the output file. */
+    private final long dataOffset;
+    
+    /** The index of the blocks. */
+    private final BlockIndex index;
+    
+    /** The blocks of the input file. */
+    private final Block[] blocks;
+    
+    /** The first block of the range and the block after the last. */
+    private final int from, to;
+    
+    /** The encoder of the code table shared by the blocks, or null if each has its own. */
+    private final HuffmanEncoder encoder;
+    
+    /** Whether the blocks are encoded as raw bytes rather than characters. */
+    private final boolean binary;
+    
+    /** Whether each block is coded as interleaved streams. */
+    private final boolean interleaved;
+    
+    /**
+     * Constructor for the encode task.
+     * 
+     * @param input - the input file
+     * @param output - the output file
+     * @param dataOffset - the position of the first block in the output file
+     * @param index - the index of the blocks
+     * @param blocks - the blocks of the input file
+     * @param from - the first block to encode
+     * @param to - the block after the last one to encode
+     * @param encoder - the encoder of the shared code table, or null if each block has its own
+     * @param binary - whether the blocks are encoded as raw bytes rather than characters
+     * @param interleaved - whether each block is coded as interleaved streams
+     */
+    EncodeTask(FileChannel input, FileChannel output, long dataOffset, BlockIndex index,
+        Block[] blocks, int from, int to, HuffmanEncoder encoder, boolean binary, boolean interleaved){
+      this.input = input;
+      this.output = output;
+      this.dataOffset = dataOffset;
+      this.index = index;
+      this.blocks = blocks;
+      this.from = from;
+      this.to = to;
+      this.encoder = encoder;
+      this.binary = binary;
+      this.interleaved = interleaved;
+    }
+    
+    @Override
+    protected void compute(){
+      
+      /* Encodes the halves of the range in parallel, or in turn off a pool. */
+      if (to - from > 1){
+        
+        int middle = (from + to) >>> 1;
+        EncodeTask left = new EncodeTask(input, output, dataOffset, index, blocks, from, middle, encoder, binary, interleaved);
+        EncodeTask right = new EncodeTask(input, output, dataOffset, index, blocks, middle, to, encoder, binary, interleaved);
+        
+        if (inForkJoinPool()){
+          invokeAll(left, right);
+        } else {
+          left.compute();
+          right.compute();
+        }
+        return;
+      }
+      
+      if (from == to)
+        return;
+      
+      /* The block to encode. */
+      Block block = blocks[from];
+      
+      try {
+        
+        ByteBuffer bytes = input.map(FileChannel.MapMode.READ_ONLY, block.start, block.length);
+        
+        /* The channel that writes at the block's place, starting with its own code table. */
+        PositionedChannel channel = new PositionedChannel(output, dataOffset + index.getCompressedOffset(from));
+        channel.write(ByteBuffer.wrap(block.tableBytes));
+        
+        /* The encoder of the block's own code table, which is kept only as bytes between the passes. */
+        HuffmanEncoder blockEncoder = encoder != null ? encoder : new HuffmanEncoder(
+            HuffmanHeader.readCodeTable(new ByteArrayInputStream(block.tableBytes),
+                binary ? HuffmanLibrary.BYTE_ALPHABET_SIZE : HuffmanLibrary.ALPHABET_SIZE));
+        
+        if (interleaved){
+          encodeStreams(bytes, blockEncoder, block, channel);
+          return;
+        }
+        
+        BitWriter bits = new BitWriter(channel, ByteBuffer.allocateDirect(HuffmanLibrary.BUFFER_SIZE));
+        
+        if (binary){
+          blockEncoder.encode(bytes, bits);
+        } else {
+          CharBuffer characters = decodeCharacters(bytes);
+          blockEncoder.encode(characters.array(), characters.arrayOffset() + characters.position(), characters.remaining(), bits);
+        }
+        
+        bits.finish();
+        
+        if (bits.getBitsWritten() != block.bits)
+          throw new IOException("Input file changed while it was being encoded.");
+        
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    
+    /**
+     * Encodes a block as interleaved streams, gathered in memory until the lengths of
+     * all but the last are known, and writes them after their lengths, padded with
+     * zeros to the room the block index gives the block.
+     * 
+     * @param bytes - the bytes of the block
+     * @param blockEncoder - the encoder of the block's code table
+     * @param block - the block
+     * @param channel - the channel that writes at the block's place, after its code table
+     * @throws IOException - if the output file cannot be written or the input file changed
+     */
+    private void encodeStreams(ByteBuffer bytes, HuffmanEncoder blockEncoder, Block block, PositionedChannel channel)
+        throws IOException {
+      
+      ByteArrayOutputStream[] streams = new ByteArrayOutputStream[STREAM_COUNT];
+      BitWriter[] writers = new BitWriter[STREAM_COUNT];
+      
+      for (int s = 0; s < STREAM_COUNT; s++){
+        streams[s] = new ByteArrayOutputStream((int) (block.bits / 8 / STREAM_COUNT) + 8);
+        writers[s] = new BitWriter(streams[s]);
+      }
+      
+      if (binary){
+        blockEncoder.encode(bytes, writers);
+      } else {
+        CharBuffer characters = decodeCharacters(bytes);
+        blockEncoder.encode(characters.array(), characters.arrayOffset() + characters.position(), characters.remaining(), writers);
+      }
+      
+      /* The lengths of all streams but the last, then the streams. */
+      ByteArrayOutputStream body = new ByteArrayOutputStream((int) (block.bits / 8) + STREAM_OVERHEAD);
+      long bitsWritten = 0;
+      
+      for (int s = 0; s < STREAM_COUNT; s++){
+        
+        writers[s].finish();
+        bitsWritten += writers[s].getBitsWritten();
+        
+        if (s < STREAM_COUNT - 1)
+          HuffmanHeader.writeInt(body, streams[s].size());
+      }
+      
+      if (bitsWritten != block.bits)
+        throw new IOException("Input file changed while it was being encoded.");
+      
+      for (ByteArrayOutputStream stream : streams)
+        stream.writeTo(body);
+      
+      /* Pads the block to its room in the index. */
+      long room = index.getCompressedLength(from) - block.tableBytes.length;
+      while (body.size() < room)
+        body.write(0);
+      
+      channel.write(ByteBuffer.wrap(body.toByteArray()));
+    }
+    
+  }
+  
+  /**
+   * A channel that writes to a file channel from a given position onwards, so that
+   * several threads can write to their own parts of one file.
+   */
+  private static class PositionedChannel implements WritableByteChannel {
+    
+    /** The file channel to write to. */
+    private final FileChannel channel;
+    
+    /** The position of the next byte to write. */
+    private long position;
+    
+    /**
+     * Constructor for the positioned channel.
+     * 
+     * @param channel - the file channel to write to
+     * @param position - the position of the first byte to write
+     */
+    PositionedChannel(FileChannel channel, long position){
+      this.channel = channel;
+      this.position = position;
+    }
+    
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      
+      int written = 0;
+      while (src.hasRemaining())
+        written += channel.write(src, position + written);
+      
+      position += written;
+      return written;
+    }
+    
+    @Override
+    public boolean isOpen(){
+      return channel.isOpen();
+    }
+    
+    /**
+     * Does nothing, since the file channel is shared.
+     */
+    @Override
+    public void close(){
+    }
+    
+  }
+  
+}
@@ -0,0 +1,211 @@
+package howard.huffman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A class for the index of the blocks of a Huffman compressed file.
+ * This class is included in the Huffman encoding project.
+ * A file encoded in blocks is a sequence of independently decodable blocks, each
+ * starting on a whole byte, so the index lets any block be found and decoded on
+ * its own. It is written at the end of the HuffmanHeader as follows:
+ * 
+ *   block count  - varint, the number of blocks
+ *   per block    - varint number of compressed bytes, varint number of original
+ *                  bytes, varint number of characters, then a four byte CRC32 of the
+ *                  original bytes if the file has a checksum
+ * 
+ * The offset of each block, in the compressed data and in the original file, is the
+ * sum of the lengths of the blocks before it.
+ * 
+ * @author Shaun Howard
+ */
+public class BlockIndex {
+  
+  /** The number of entries the arrays of an index being read start with. */
+  private static final int INITIAL_CAPACITY = 1024;
+  
+  /** The number of compressed bytes of each block, including its code table if any. */
+  private final long[] compressedLengths;
+  
+  /** The number of bytes of the original file in each block. */
+  private final long[] originalLengths;
+  
+  /** The number of characters in each block. */
+  private final long[] symbolCounts;
+  
+  /** The CRC32 of the original bytes of each block. */
+  private final int[] checksums;
+  
+  /** The offset of each block in the compressed data, with the total length last. */
+  private final long[] compressedOffsets;
+  
+  /** The offset of each block in the original file, with the total length last. */
+  private final long[] originalOffsets;
+  
+  /**
+   * Constructor for the block index class.
+   * 
+   * @param compressedLengths - the number of compressed bytes of each block
+   * @param originalLengths - the number of bytes of the original file in each block
+   * @param symbolCounts - the number of characters in each block
+   * @param checksums - the CRC32 of the original bytes of each block
+   */
+  public BlockIndex(long[] compressedLengths, long[] originalLengths, long[] symbolCounts, int[] checksums){
+    
+    this.compressedLengths = compressedLengths;
+    this.originalLengths = originalLengths;
+    this.symbolCounts = symbolCounts;
+    this.checksums = checksums;
+    this.compressedOffsets = new long[compressedLengths.length + 1];
+    this.originalOffsets = new long[originalLengths.length + 1];
+    
+    for (int i = 0; i < compressedLengths.length; i++){
+      compressedOffsets[i + 1] = compressedOffsets[i] + compressedLengths[i];
+      originalOffsets[i + 1] = originalOffsets[i] + originalLengths[i];
+    }
+  }
+  
+  /**
+   * Gets the number of blocks.
+   * 
+   * @return  the number of blocks
+   */
+  public int getBlockCount(){
+    return compressedLengths.length;
+  }
+  
+  /**
+   * Gets the number of compressed bytes of a block.
+   * 
+   * @param block - the index of the block
+   * @return  the number of compressed bytes of the block
+   */
+  public long getCompressedLength(int block){
+    return compressedLengths[block];
+  }
+  
+  /**
+   * Gets the offset of a block from the start of the compressed data.
+   * 
+   * @param block - the index of the block, or the block count for the end of the data
+   * @return  the offset of the block in the compressed data
+   */
+  public long getCompressedOffset(int block){
+    return compressedOffsets[block];
+  }
+  
+  /**
+   * Gets the number of bytes of the original file in a block.
+   * 
+   * @param block - the index of the block
+   * @return  the number of original bytes of the block
+   */
+  public long getOriginalLength(int block){
+    return originalLengths[block];
+  }
+  
+  /**
+   * Gets the offset of a block in the original file.
+   * 
+   * @param block - the index of the block, or the block count for the length of the file
+   * @return  the offset of the block in the original file
+   */
+  public long getOriginalOffset(int block){
+    return originalOffsets[block];
+  }
+  
+  /**
+   * Gets the number of characters in a block.
+   * 
+   * @param block - the index of the block
+   * @return  the number of characters in the block
+   */
+  public long getSymbolCount(int block){
+    return symbolCounts[block];
+  }
+  
+  /**
+   * Gets the CRC32 of the original bytes of a block.
+   * 
+   * @param block - the index of the block
+   * @return  the CRC32 of the block, if the file has a checksum
+   */
+  public int getChecksum(int block){
+    return checksums[block];
+  }
+  
+  /**
+   * Writes this index to the given stream.
+   * 
+   * @param out - the stream to write the index to
+   * @param checksum - whether to write the CRC32 of each block
+   * @throws IOException - if the stream cannot be written to
+   */
+  public void write(OutputStream out, boolean checksum) throws IOException {
+    
+    HuffmanHeader.writeVarint(out, getBlockCount());
+    
+    for (int i = 0; i < getBlockCount(); i++){
+      
+      HuffmanHeader.writeVarint(out, compressedLengths[i]);
+      HuffmanHeader.writeVarint(out, originalLengths[i]);
+      HuffmanHeader.writeVarint(out, symbolCounts[i]);
+      
+      if (checksum)
+        HuffmanHeader.writeInt(out, checksums[i]);
+    }
+  }
+  
+  /**
+   * Reads an index from the given stream.
+   * 
+   * @param in - the stream to read the index from
+   * @param checksum - whether a CRC32 of each block was written
+   * @return  the index read from the stream
+   * @throws IOException - if the stream ends or the index is corrupt
+   */
+  public static BlockIndex read(InputStream in, boolean checksum) throws IOException {
+    
+    /* The number of blocks, which cannot be more than an array holds. */
+    long blockCount = HuffmanHeader.readVarint(in);
+    if (blockCount > Integer.MAX_VALUE - 1)
+      throw new IOException("Block index is corrupt.");
+    
+    /* The arrays grow as entries are read, so a corrupt count cannot allocate more than the stream holds. */
+    int capacity = (int) Math.min(blockCount, INITIAL_CAPACITY);
+    long[] compressedLengths = new long[capacity];
+    long[] originalLengths = new long[capacity];
+    long[] symbolCounts = new long[capacity];
+    int[] checksums = new int[capacity];
+    
+    for (int i = 0; i < blockCount; i++){
+      
+      if (i == compressedLengths.length){
+        capacity = (int) Math.min(blockCount, 2L * capacity);
+        compressedLengths = Arrays.copyOf(compressedLengths, capacity);
+        originalLengths = Arrays.copyOf(originalLengths, capacity);
+        symbolCounts = Arrays.copyOf(symbolCounts, capacity);
+        checksums = Arrays.copyOf(checksums, capacity);
+      }
+      
+      compressedLengths[i] = HuffmanHeader.readVarint(in);
+      originalLengths[i] = HuffmanHeader.readVarint(in);
+      symbolCounts[i] = HuffmanHeader.readVarint(in);
+      
+      if (checksum)
+        checksums[i] = HuffmanHeader.readInt(in);
+      
+      /* A block is decoded into arrays, so its lengths must fit in an int, and each character takes at least one bit. */
+      if (compressedLengths[i] > Integer.MAX_VALUE || originalLengths[i] > Integer.MAX_VALUE
+          || symbolCounts[i] > originalLengths[i] || symbolCounts[i] > 8 * compressedLengths[i])
+        throw new IOException("Block index is corrupt.");
+    }
+    
+    return new BlockIndex(compressedLengths, originalLengths, symbolCounts, checksums);
+    
+  }
+  
+}
@@ -0,0 +1,114 @@
+package howard.huffman;
+
+/**
+ * A class for assigning canonical Huffman codes.
+ * This class is included in the Huffman encoding project.
+ * A canonical code is fully described by the code length of each character:
+ * shorter codes come first, and codes of the same length are assigned in
+ * increasing order of character. Only the lengths have to be stored in
+ * a compressed file for the decoder to rebuild the same codes.
+ * 
+ * @author Shaun Howard
+ */
+public class CanonicalCode {
+  
+  /** The longest code length that can be stored in a compressed file header. */
+  public static final int MAX_CODE_LENGTH = 63;
+  
+  /**
+   * Assigns canonical codes to the characters with the given code lengths.
+   * Characters with a code length of 0 do not receive a code.
+   * Precondition - the lengths are at most MAX_CODE_LENGTH and form a
+   * prefix code; see isValid().
+   * 
+   * @param lengths - the code length of each character, indexed by character
+   * @return  the code of each character, right-aligned in a long
+   */
+  public static long[] assignCodes(byte[] lengths){
+    
+    /* The number of codes of each length. */
+    int[] lengthCount = new int[MAX_CODE_LENGTH + 1];
+    
+    for (int c = 0; c < lengths.length; c++)
+      lengthCount[lengths[c]]++;
+    
+    /* The first code of each length. */
+    long[] nextCode = new long[MAX_CODE_LENGTH + 1];
+    
+    /* Each length starts right after the last code of the previous length, shifted by one bit. */
+    long code = 0;
+    for (int length = 1; length <= MAX_CODE_LENGTH; length++){
+      code = (code + (length > 1 ? lengthCount[length - 1] : 0)) << 1;
+      nextCode[length] = code;
+    }
+    
+    /* The codes assigned to each character. */
+    long[] codes = new long[lengths.length];
+    
+    /* Hands out the codes of each length in increasing order of character. */
+    for (int c = 0; c < lengths.length; c++){
+      if (lengths[c] != 0)
+        codes[c] = nextCode[lengths[c]]++;
+    }
+    
+    return codes;
+    
+  }
+  
+  /**
+   * Determines whether the given code lengths describe a usable prefix code.
+   * The lengths must be within range, and must not claim more codes than
+   * there is room for at any length (the Kraft inequality).
+   * 
+   * @param lengths - the code length of each character, indexed by character
+   * @return  whether or not canonical codes can be assigned from the lengths
+   */
+  public static boolean isValid(byte[] lengths){
+    
+    /* The number of codes still available at the current length. */
+    long available = 1;
+    
+    /* The number of codes of each length. */
+    int[] lengthCount = new int[MAX_CODE_LENGTH + 1];
+    
+    for (int c = 0; c < lengths.length; c++){
+      if (lengths[c] < 0 || lengths[c] > MAX_CODE_LENGTH)
+        return false;
+      lengthCount[lengths[c]]++;
+    }
+    
+    /* Each length doubles the available codes, minus those used by shorter lengths. */
+    for (int length = 1; length <= MAX_CODE_LENGTH; length++){
+      available = (available << 1) - lengthCount[length];
+      if (available < 0)
+        return false;
+      
+      /* Once there is room for every character, no longer length can run out. */
+      if (available >= lengths.length)
+        return true;
+    }
+    
+    return true;
+    
+  }
+  
+  /**
+   * Converts a code to its String of '0' and '1' characters.
+   * 
+   * @param code - the code, right-aligned in a long
+   * @param length - the number of bits of the code
+   * @return  the bits of the code, most significant bit first
+   */
+  public static String toString(long code, int length){
+    
+    /* The characters of the code. */
+    char[] bits = new char[length];
+    
+    for (int i = 0; i < length; i++)
+      bits[i] = ((code >>> (length - 1 - i)) & 1) == 0 ? '0' : '1';
+    
+    return new String(bits);
+    
+  }
+  
+}
@@ -0,0 +1,145 @@
+package howard.huffman;
+
+import java.util.Arrays;
+
+/**
+ * A class for counting the frequencies of the Unicode code points of text.
+ * This class is included in the Huffman encoding project.
+ * A surrogate pair is counted as the one code point it stands for, so an emoji or a
+ * supplementary CJK character is one symbol rather than two. Code points of Latin-1
+ * are counted in a dense array indexed by code point. Any other code point is given
+ * the next index the first time it is seen, kept in a CodePointMap, and counted in an
+ * array by that index, so the alphabet only grows with the code points that occur.
+ * 
+ * @author Shaun Howard
+ */
+public class CodePointCounter {
+  
+  /** The number of occurrences of each Latin-1 code point, indexed by code point. */
+  private final long[] latin1 = new long[CodePointMap.DENSE_SIZE];
+  
+  /** The index of each other code point counted. */
+  private final CodePointMap indexes = new CodePointMap();
+  
+  /** The other code points counted, by index. */
+  private int[] codePoints = new int[64];
+  
+  /** The number of occurrences of the other code points, by index. */
+  private long[] counts = new long[64];
+  
+  /**
+   * Constructor for the code point counter class.
+   */
+  public CodePointCounter(){
+  }
+  
+  /**
+   * Counts the code points of the given characters. A surrogate pair split between two
+   * calls is counted as two code points, so each call should end on a whole code point,
+   * as the reads of a MappedReader do.
+   * 
+   * @param data - the characters to count
+   * @param offset - the index of the first character to count
+   * @param length - the number of characters to count
+   */
+  public void count(char[] data, int offset, int length){
+    
+    for (int i = offset, end = offset + length; i < end; i++){
+      
+      int c = data[i];
+      
+      /* Counts Latin-1 straight into the dense array. */
+      if (c < CodePointMap.DENSE_SIZE){
+        latin1[c]++;
+        continue;
+      }
+      
+      /* Joins a surrogate pair into its code point. */
+      if (Character.isHighSurrogate((char) c) && i + 1 < end && Character.isLowSurrogate(data[i + 1]))
+        c = Character.toCodePoint((char) c, data[++i]);
+      
+      int index = indexes.get(c);
+      
+      if (index == CodePointMap.NONE)
+        index = add(c);
+      
+      counts[index]++;
+    }
+  }
+  
+  /**
+   * Gets the code points counted so far.
+   * 
+   * @return  a new array of the code points that occurred, in increasing order
+   */
+  public int[] getCodePoints(){
+    
+    int[] sorted = new int[getSize()];
+    int n = 0;
+    
+    for (int c = 0; c < latin1.length; c++){
+      if (latin1[c] != 0)
+        sorted[n++] = c;
+    }
+    
+    System.arraycopy(codePoints, 0, sorted, n, indexes.size());
+    Arrays.sort(sorted, n, sorted.length);
+    
+    return sorted;
+  }
+  
+  /**
+   * Gets the number of occurrences of each code point counted so far.
+   * 
+   * @return  a new table of the frequency of each code point, in the order of getCodePoints()
+   */
+  public long[] getFrequencies(){
+    
+    int[] sorted = getCodePoints();
+    long[] frequencies = new long[sorted.length];
+    
+    for (int i = 0; i < sorted.length; i++){
+      int c = sorted[i];
+      frequencies[i] = c < CodePointMap.DENSE_SIZE ? latin1[c] : counts[indexes.get(c)];
+    }
+    
+    return frequencies;
+  }
+  
+  /**
+   * Gets the number of distinct code points counted so far.
+   * 
+   * @return  the size of the alphabet of the text
+   */
+  public int getSize(){
+    
+    int size = indexes.size();
+    for (long count : latin1){
+      if (count != 0)
+        size++;
+    }
+    
+    return size;
+  }
+  
+  /**
+   * Gives a code point outside Latin-1 the next index.
+   * 
+   * @param codePoint - the code point, not yet counted
+   * @return  the index of the code point
+   */
+  private int add(int codePoint){
+    
+    int index = indexes.size();
+    
+    if (index == codePoints.length){
+      codePoints = Arrays.copyOf(codePoints, index << 1);
+      counts = Arrays.copyOf(counts, index << 1);
+    }
+    
+    codePoints[index] = codePoint;
+    indexes.put(codePoint, index);
+    return index;
+  }
+  
+}
@@ -0,0 +1,215 @@
+package howard.huffman;
+
+import java.util.Arrays;
+
+/**
+ * A map from Unicode code points to ints, for sparse alphabets up to the whole of Unicode.
+ * This class is included in the Huffman encoding project.
+ * The code points of Latin-1, below DENSE_SIZE, are kept in a dense array indexed by
+ * code point, so most characters of most text are found with one array read. Other
+ * code points are kept in an open-addressing hash table of two primitive int arrays,
+ * probed linearly from a Fibonacci hash of the code point, so no key or value is ever
+ * boxed as it would be in a Hashtable. The table is doubled once it is half full, and
+ * an empty slot holds NONE as its key.
+ * 
+ * @author Shaun Howard
+ */
+public final class CodePointMap {
+  
+  /** The number of code points kept in the dense array, the Latin-1 range. */
+  public static final int DENSE_SIZE = 256;
+  
+  /** The value of a code point not in the map, which is also the key of an empty slot. */
+  public static final int NONE = -1;
+  
+  /** The number of slots of the hash table of a new map. */
+  private static final int INITIAL_CAPACITY = 16;
+  
+  /** The value of each Latin-1 code point, indexed by code point. */
+  private final int[] dense = new int[DENSE_SIZE];
+  
+  /** The code point of each slot of the hash table, or NONE. */
+  private int[] keys;
+  
+  /** The value of each slot of the hash table. */
+  private int[] values;
+  
+  /** The shift that takes a hash to a slot: 32 less the log2 of the number of slots. */
+  private int shift;
+  
+  /** The number of code points in the hash table. */
+  private int sparseSize;
+  
+  /** The number of code points in the map. */
+  private int size;
+  
+  /**
+   * Constructor for an empty code point map.
+   */
+  public CodePointMap(){
+    
+    Arrays.fill(dense, NONE);
+    
+    keys = new int[INITIAL_CAPACITY];
+    values = new int[INITIAL_CAPACITY];
+    shift = 32 - Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+    Arrays.fill(keys, NONE);
+  }
+  
+  /**
+   * Gets the value of a code point.
+   * Precondition - the code point is not negative.
+   * 
+   * @param codePoint - the code point to look up
+   * @return  the value of the code point, or NONE if it is not in the map
+   */
+  public int get(int codePoint){
+    
+    if (codePoint < DENSE_SIZE)
+      return dense[codePoint];
+    
+    int[] keys = this.keys;
+    int mask = keys.length - 1;
+    
+    for (int slot = slot(codePoint); ; slot = (slot + 1) & mask){
+      
+      int key = keys[slot];
+      
+      if (key == codePoint)
+        return values[slot];
+      
+      if (key == NONE)
+        return NONE;
+    }
+  }
+  
+  /**
+   * Sets the value of a code point, replacing any value it had.
+   * 
+   * @param codePoint - the code point, from 0 to Character.MAX_CODE_POINT
+   * @param value - the value, which must not be NONE
+   * @throws IllegalArgumentException - if the code point is not valid or the value is NONE
+   */
+  public void put(int codePoint, int value){
+    
+    if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT)
+      throw new IllegalArgumentException("Not a code point: " + codePoint + ".");
+    
+    if (value == NONE)
+      throw new IllegalArgumentException("The value must not be NONE.");
+    
+    if (codePoint < DENSE_SIZE){
+      
+      if (dense[codePoint] == NONE)
+        size++;
+      
+      dense[codePoint] = value;
+      return;
+    }
+    
+    if (insert(codePoint, value)){
+      
+      size++;
+      
+      /* Doubles the table once it is half full, so probes stay short. */
+      if (++sparseSize > keys.length >>> 1)
+        resize(keys.length << 1);
+    }
+  }
+  
+  /**
+   * Gets the number of code points in the map.
+   * 
+   * @return  the number of code points
+   */
+  public int size(){
+    return size;
+  }
+  
+  /**
+   * Gets the code points in the map.
+   * 
+   * @return  a new array of the code points, in increasing order
+   */
+  public int[] getCodePoints(){
+    
+    int[] codePoints = new int[size];
+    int n = 0;
+    
+    for (int c = 0; c < DENSE_SIZE; c++){
+      if (dense[c] != NONE)
+        codePoints[n++] = c;
+    }
+    
+    for (int key : keys){
+      if (key != NONE)
+        codePoints[n++] = key;
+    }
+    
+    Arrays.sort(codePoints);
+    return codePoints;
+  }
+  
+  /**
+   * Gets the number of bytes of memory of the arrays of the map.
+   * Package protected by default.
+   * 
+   * @return  the size of the arrays in bytes
+   */
+  long getTableBytes(){
+    return 4L * (dense.length + keys.length + values.length);
+  }
+  
+  /**
+   * Puts a code point in the hash table, which has a free slot.
+   * 
+   * @param codePoint - the code point, at least DENSE_SIZE
+   * @param value - the value
+   * @return  whether the code point was not in the table before
+   */
+  private boolean insert(int codePoint, int value){
+    
+    int mask = keys.length - 1;
+    int slot = slot(codePoint);
+    
+    while (keys[slot] != NONE && keys[slot] != codePoint)
+      slot = (slot + 1) & mask;
+    
+    boolean added = keys[slot] == NONE;
+    keys[slot] = codePoint;
+    values[slot] = value;
+    return added;
+  }
+  
+  /**
+   * Moves the hash table into a new one of the given number of slots.
+   * 
+   * @param capacity - the number of slots, a power of two
+   */
+  private void resize(int capacity){
+    
+    int[] oldKeys = keys, oldValues = values;
+    
+    keys = new int[capacity];
+    values = new int[capacity];
+    shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    Arrays.fill(keys, NONE);
+    
+    for (int i = 0; i < oldKeys.length; i++){
+      if (oldKeys[i] != NONE)
+        insert(oldKeys[i], oldValues[i]);
+    }
+  }
+  
+  /**
+   * Gets the first slot of the hash table probed for a code point, from the high bits
+   * of its product with the golden ratio, which spread neighbouring code points apart.
+   * 
+   * @param codePoint - the code point
+   * @return  the slot
+   */
+  private int slot(int codePoint){
+    return (codePoint * 0x9E3779B9) >>> shift;
+  }
+  
+}
@@ -0,0 +1,257 @@
+package howard.huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of code tables, for coding many files alike without counting each one.
+ * This class is included in the Huffman encoding project.
+ * When Huffman_coder() is given a cache in raw-byte mode, it first samples the file:
+ * SAMPLE_COUNT windows of SAMPLE_SIZE bytes spread evenly through it. The histogram of
+ * the sample is reduced to a fingerprint of the rough share of each byte value, and a
+ * table cached under the same fingerprint is reused if it codes the sample within the
+ * ratio loss of the sample's own table. The file is then encoded in a single pass,
+ * with no count and no tree build. Otherwise the file is counted and coded as usual,
+ * and a table of its frequencies is cached for the files after it.
+ * 
+ * Cached tables give every byte value a code, as a dictionary's do, so that a byte
+ * the sample missed can still be coded. The least recently used table is evicted
+ * once the cache is full. A cache can be shared by the threads of a batch job.
+ * 
+ * @author Shaun Howard
+ */
+public final class CodeTableCache {
+  
+  /** The number of windows of a file sampled for its fingerprint. */
+  public static final int SAMPLE_COUNT = 64;
+  
+  /** The number of bytes of each window sampled. */
+  public static final int SAMPLE_SIZE = 4096;
+  
+  /** The number of tables kept by the default constructor. */
+  public static final int DEFAULT_CAPACITY = 64;
+  
+  /** The largest estimated ratio loss of a reused table of the default constructor, 1%. */
+  public static final double DEFAULT_MAX_RATIO_LOSS = 0.01;
+  
+  /** The cached code lengths, by fingerprint, least recently used first. */
+  private final LinkedHashMap<Long, byte[]> tables;
+  
+  /** The largest estimated ratio loss of a reused table. */
+  private final double maxRatioLoss;
+  
+  /** The number of lookups that found a table, that did not, and of tables evicted. */
+  private long hits, misses, evictions;
+  
+  /**
+   * Constructor for a cache of DEFAULT_CAPACITY tables that reuses a table within
+   * DEFAULT_MAX_RATIO_LOSS.
+   */
+  public CodeTableCache(){
+    this(DEFAULT_CAPACITY, DEFAULT_MAX_RATIO_LOSS);
+  }
+  
+  /**
+   * Constructor for a cache of code tables.
+   * 
+   * @param capacity - the most tables kept
+   * @param maxRatioLoss - the largest estimated fraction of extra bits a reused table may cost, such as 0.01
+   * @throws IllegalArgumentException - if the capacity is not positive or the ratio loss is negative
+   */
+  public CodeTableCache(final int capacity, double maxRatioLoss){
+    
+    if (capacity < 1)
+      throw new IllegalArgumentException("Capacity must be at least 1.");
+    
+    if (!(maxRatioLoss >= 0))
+      throw new IllegalArgumentException("Ratio loss must not be negative.");
+    
+    this.maxRatioLoss = maxRatioLoss;
+    this.tables = new LinkedHashMap<Long, byte[]>(16, 0.75f, true){
+      
+      private static final long serialVersionUID = 1L;
+      
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest){
+        
+        if (size() <= capacity)
+          return false;
+        
+        evictions++;
+        return true;
+      }
+    };
+  }
+  
+  /**
+   * Samples the bytes of a file, the whole file if it is no larger than the sample.
+   * 
+   * @param fileName - the name of the file to sample
+   * @return  the number of occurrences of each byte value in the sample, indexed by byte value
+   * @throws IOException - if the file cannot be opened or read
+   */
+  public static long[] sample(String fileName) throws IOException {
+    
+    long[] sketch = new long[HuffmanLibrary.BYTE_ALPHABET_SIZE];
+    ByteBuffer window = ByteBuffer.allocate(SAMPLE_SIZE);
+    
+    try (FileChannel input = FileChannel.open(new File(fileName).toPath(), StandardOpenOption.READ)) {
+      
+      long size = input.size();
+      int windows = (int) Math.min(SAMPLE_COUNT, (size + SAMPLE_SIZE - 1) / SAMPLE_SIZE);
+      
+      for (int i = 0; i < windows; i++){
+        
+        /* The windows are spread evenly, the first at the start and the last at the end. */
+        long position = windows == 1 ? 0 : (size - SAMPLE_SIZE) * i / (windows - 1);
+        
+        window.clear();
+        while (window.hasRemaining() && input.read(window, position + window.position()) > 0);
+        
+        window.flip();
+        while (window.hasRemaining())
+          sketch[window.get() & 0xFF]++;
+      }
+    }
+    
+    return sketch;
+  }
+  
+  /**
+   * Gets a cached table for a file of the given sample, if one codes the sample within
+   * the ratio loss of the cache and would shrink it, and counts the hit or miss.
+   * 
+   * @param sketch - the sample of the file, from sample()
+   * @param maxCodeLength - the longest code length allowed
+   * @return  the code length of each byte value, or null if no table can be reused
+   */
+  public byte[] get(long[] sketch, int maxCodeLength){
+    
+    byte[] lengths;
+    synchronized (this){
+      lengths = tables.get(getFingerprint(sketch, maxCodeLength));
+    }
+    
+    /* The bits of the sample with the cached table, and with the sample's own. */
+    if (lengths != null){
+      
+      long cached = LengthLimitedCode.getEncodedBits(sketch, lengths);
+      long own = LengthLimitedCode.getEncodedBits(sketch, HuffmanLibrary.getCodeLengths(sketch, maxCodeLength));
+      
+      long bytes = 0;
+      for (long f : sketch)
+        bytes += f;
+      
+      if (cached > own * (1 + maxRatioLoss) || cached >= 8 * bytes)
+        lengths = null;
+    }
+    
+    synchronized (this){
+      if (lengths != null)
+        hits++;
+      else
+        misses++;
+    }
+    
+    return lengths;
+  }
+  
+  /**
+   * Caches a table of the given frequencies for files whose sample has the given
+   * fingerprint, in which every byte value has a code.
+   * 
+   * @param sketch - the sample of the file, from sample()
+   * @param maxCodeLength - the longest code length allowed
+   * @param frequencies - the number of occurrences of each byte value of the whole file
+   */
+  public void put(long[] sketch, int maxCodeLength, long[] frequencies){
+    
+    /* Every byte value is given a code, one that never occurred a long one. */
+    long[] smoothed = new long[frequencies.length];
+    for (int b = 0; b < frequencies.length; b++)
+      smoothed[b] = frequencies[b] + 1;
+    
+    byte[] lengths = HuffmanLibrary.getCodeLengths(smoothed, maxCodeLength);
+    
+    synchronized (this){
+      tables.put(getFingerprint(sketch, maxCodeLength), lengths);
+    }
+  }
+  
+  /**
+   * Gets the number of lookups that found a table to reuse.
+   * 
+   * @return  the number of hits
+   */
+  public synchronized long getHits(){
+    return hits;
+  }
+  
+  /**
+   * Gets the number of lookups that found no table to reuse, because none was cached
+   * under the fingerprint or it would lose too much ratio.
+   * 
+   * @return  the number of misses
+   */
+  public synchronized long getMisses(){
+    return misses;
+  }
+  
+  /**
+   * Gets the number of tables evicted to keep the cache within its capacity.
+   * 
+   * @return  the number of evictions
+   */
+  public synchronized long getEvictions(){
+    return evictions;
+  }
+  
+  /**
+   * Gets the number of tables in the cache.
+   * 
+   * @return  the number of tables
+   */
+  public synchronized int size(){
+    return tables.size();
+  }
+  
+  /**
+   * Removes every table from the cache. The counts of hits, misses and evictions are kept.
+   */
+  public synchronized void clear(){
+    tables.clear();
+  }
+  
+  /**
+   * Gets the fingerprint of a sample: a hash of the share of each byte value rounded
+   * down to a power of two, so that samples of files alike get the same one. Bytes
+   * rarer than 1 in 256 are only told apart from bytes that do not occur, since their
+   * shares in a sample are mostly noise.
+   * 
+   * @param sketch - the sample of the file
+   * @param maxCodeLength - the longest code length allowed, which tables are kept apart by
+   * @return  the fingerprint
+   */
+  private static long getFingerprint(long[] sketch, int maxCodeLength){
+    
+    long total = 0;
+    for (long f : sketch)
+      total += f;
+    
+    /* FNV-1a of the log2 share of each byte value, from 2 for 1/256; 1 for a rarer byte, 0 if it does not occur. */
+    long hash = 0xcbf29ce484222325L ^ maxCodeLength;
+    
+    for (long f : sketch){
+      int share = f == 0 ? 0 : Math.max(1, 64 - Long.numberOfLeadingZeros((f << 16) / total) - 7);
+      hash = (hash ^ share) * 0x100000001b3L;
+    }
+    
+    return hash;
+  }
+  
+}
@@ -0,0 +1,499 @@
+package howard.huffman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An order-1 context model: a set of code tables for bytes, one of which codes each
+ * byte according to the byte before it.
+ * This class is included in the Huffman encoding project.
+ * The 256 values of the previous byte are the contexts. Contexts whose next bytes are
+ * alike are clustered to share a table, so that the header holds a bounded number of
+ * tables: build() starts with a table per context and merges the two whose merged
+ * table costs the fewest extra bits, by order-0 entropy, until no more than the given
+ * number are left, and then goes on merging while a merge saves more header than it
+ * costs. The first byte of a file is coded in the context of a byte of 0.
+ * A model is immutable and can be used by many threads at once.
+ * 
+ * A model is written in the header of a file with FLAG_CONTEXTS as a varint number of
+ * tables, then, if there is more than one, the table of each context as one byte, then
+ * each table in the form of the HuffmanHeader's code table.
+ * 
+ * @author Shaun Howard
+ */
+public final class ContextModel {
+  
+  /** The number of contexts, one for each value of the previous byte. */
+  public static final int CONTEXT_COUNT = 256;
+  
+  /** The approximate number of header bits of one symbol of a code table: a varint gap and a length byte. */
+  private static final int TABLE_BITS_PER_SYMBOL = 16;
+  
+  /** The table of each context. */
+  private final byte[] tables;
+  
+  /** The code length of each byte in each table, indexed by table. */
+  private final byte[][] lengths;
+  
+  /** The code of each byte in each table, indexed by table * 256 + byte. */
+  private final int[] codes;
+  
+  /** The code length of each byte in each table, indexed by table * 256 + byte. */
+  private final byte[] codeLengths;
+  
+  /** The start of the codes of each context's table, indexed by context. */
+  private final int[] offsets = new int[CONTEXT_COUNT];
+  
+  /** The decoder of each context's table, indexed by context; contexts sharing a table share a decoder. */
+  private final HuffmanDecoder[] decoders = new HuffmanDecoder[CONTEXT_COUNT];
+  
+  /** The number of bytes of the encoding and decoding tables. */
+  private final long tableBytes;
+  
+  /**
+   * Constructor for a context model of the given tables.
+   * 
+   * @param tables - the table of each context, indexed by context
+   * @param lengths - the code length of each byte in each table, indexed by table
+   * @throws IllegalArgumentException - if a context has no table, or a table is not a prefix code of at most HuffmanOptions.MAX_CODE_LENGTH bits
+   */
+  public ContextModel(byte[] tables, byte[][] lengths){
+    
+    if (tables.length != CONTEXT_COUNT || lengths.length == 0 || lengths.length > CONTEXT_COUNT)
+      throw new IllegalArgumentException("A context model has a table for each of the " + CONTEXT_COUNT + " contexts.");
+    
+    this.tables = tables.clone();
+    this.lengths = new byte[lengths.length][];
+    this.codes = new int[lengths.length * HuffmanLibrary.BYTE_ALPHABET_SIZE];
+    this.codeLengths = new byte[codes.length];
+    
+    HuffmanDecoder[] tableDecoders = new HuffmanDecoder[lengths.length];
+    long bytes = 5L * codes.length;
+    
+    for (int t = 0; t < lengths.length; t++){
+      
+      if (lengths[t].length != HuffmanLibrary.BYTE_ALPHABET_SIZE)
+        throw new IllegalArgumentException("A table has a code length for each of the " + HuffmanLibrary.BYTE_ALPHABET_SIZE + " byte values.");
+      
+      this.lengths[t] = lengths[t].clone();
+      
+      try {
+        tableDecoders[t] = new HuffmanDecoder(this.lengths[t]);
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Code lengths of table " + t + " do not form a prefix code.", e);
+      }
+      
+      bytes += tableDecoders[t].getTableBytes();
+      
+      /* The canonical codes of the table, which fit in an int. */
+      long[] canonical = CanonicalCode.assignCodes(this.lengths[t]);
+      for (int b = 0; b < HuffmanLibrary.BYTE_ALPHABET_SIZE; b++){
+        codes[(t << 8) | b] = (int) canonical[b];
+        codeLengths[(t << 8) | b] = this.lengths[t][b];
+      }
+    }
+    
+    for (int context = 0; context < CONTEXT_COUNT; context++){
+      
+      int t = this.tables[context] & 0xFF;
+      if (t >= lengths.length)
+        throw new IllegalArgumentException("Context " + context + " has no table.");
+      
+      offsets[context] = t << 8;
+      decoders[context] = tableDecoders[t];
+    }
+    
+    this.tableBytes = bytes;
+  }
+  
+  /**
+   * Builds the context model of the given pair counts, with no more than the given
+   * number of tables and no code longer than the given length.
+   * 
+   * @param pairs - the number of occurrences of each byte after each byte, indexed by previous byte * 256 + byte
+   * @param maxTables - the most tables, from 1 to CONTEXT_COUNT
+   * @param maxCodeLength - the longest code length allowed
+   * @return  the context model
+   */
+  public static ContextModel build(long[] pairs, int maxTables, int maxCodeLength){
+    
+    int n = CONTEXT_COUNT;
+    
+    /* The histogram, total, entropy cost in bits and number of distinct bytes of each cluster, by its first context. */
+    long[][] histograms = new long[n][];
+    long[] totals = new long[n];
+    double[] costs = new double[n];
+    int[] distinct = new int[n];
+    
+    /* The cluster of each context, by the first context of the cluster. */
+    int[] clusters = new int[n];
+    
+    int clusterCount = 0;
+    
+    for (int context = 0; context < n; context++){
+      
+      histograms[context] = new long[HuffmanLibrary.BYTE_ALPHABET_SIZE];
+      System.arraycopy(pairs, context << 8, histograms[context], 0, HuffmanLibrary.BYTE_ALPHABET_SIZE);
+      
+      for (long f : histograms[context]){
+        totals[context] += f;
+        if (f != 0)
+          distinct[context]++;
+      }
+      
+      costs[context] = getCost(histograms[context], totals[context]);
+      clusters[context] = context;
+      
+      if (totals[context] != 0)
+        clusterCount++;
+    }
+    
+    /* The extra bits of merging each pair of clusters that occur, for a < b. */
+    double[][] deltas = new double[n][n];
+    for (int a = 0; a < n; a++){
+      for (int b = a + 1; b < n; b++){
+        if (totals[a] != 0 && totals[b] != 0)
+          deltas[a][b] = getMergedCost(histograms[a], histograms[b], totals[a] + totals[b]) - costs[a] - costs[b];
+      }
+    }
+    
+    while (clusterCount > 1){
+      
+      /* The merge of the fewest net extra bits, counting the header of the table it saves. */
+      int bestA = -1, bestB = -1;
+      double best = Double.MAX_VALUE;
+      
+      for (int a = 0; a < n; a++){
+        
+        if (totals[a] == 0)
+          continue;
+        
+        for (int b = a + 1; b < n; b++){
+          
+          if (totals[b] == 0)
+            continue;
+          
+          double net = deltas[a][b] - TABLE_BITS_PER_SYMBOL * Math.min(distinct[a], distinct[b]);
+          
+          if (net < best){
+            best = net;
+            bestA = a;
+            bestB = b;
+          }
+        }
+      }
+      
+      /* Stops once there are few enough tables and no merge saves bits. */
+      if (clusterCount <= maxTables && best >= 0)
+        break;
+      
+      /* Merges cluster b into cluster a. */
+      distinct[bestA] = 0;
+      for (int i = 0; i < HuffmanLibrary.BYTE_ALPHABET_SIZE; i++){
+        histograms[bestA][i] += histograms[bestB][i];
+        if (histograms[bestA][i] != 0)
+          distinct[bestA]++;
+      }
+      
+      totals[bestA] += totals[bestB];
+      costs[bestA] += costs[bestB] + deltas[bestA][bestB];
+      totals[bestB] = 0;
+      clusterCount--;
+      
+      for (int context = 0; context < n; context++){
+        if (clusters[context] == bestB)
+          clusters[context] = bestA;
+      }
+      
+      for (int other = 0; other < n; other++){
+        
+        if (other == bestA || totals[other] == 0)
+          continue;
+        
+        int a = Math.min(bestA, other), b = Math.max(bestA, other);
+        deltas[a][b] = getMergedCost(histograms[a], histograms[b], totals[a] + totals[b]) - costs[a] - costs[b];
+      }
+    }
+    
+    /* Numbers the tables in order of their first context; contexts that never occur use table 0. */
+    byte[] tables = new byte[n];
+    int[] numbers = new int[n];
+    int tableCount = 0;
+    
+    for (int context = 0; context < n; context++){
+      if (totals[context] != 0)
+        numbers[context] = tableCount++;
+    }
+    
+    byte[][] lengths = new byte[Math.max(tableCount, 1)][];
+    lengths[0] = new byte[HuffmanLibrary.BYTE_ALPHABET_SIZE];
+    
+    for (int context = 0; context < n; context++){
+      
+      int cluster = clusters[context];
+      
+      if (totals[cluster] == 0)
+        continue;
+      
+      tables[context] = (byte) numbers[cluster];
+      
+      if (cluster == context)
+        lengths[numbers[cluster]] = HuffmanLibrary.getCodeLengths(histograms[cluster], maxCodeLength);
+    }
+    
+    return new ContextModel(tables, lengths);
+  }
+  
+  /**
+   * Gets the entropy cost of a histogram, the fewest bits its symbols can be coded in
+   * by a code of single symbols.
+   * 
+   * @param histogram - the number of occurrences of each symbol
+   * @param total - the sum of the histogram
+   * @return  the cost in bits
+   */
+  private static double getCost(long[] histogram, long total){
+    
+    if (total == 0)
+      return 0;
+    
+    double cost = total * Math.log(total);
+    for (long f : histogram){
+      if (f != 0)
+        cost -= f * Math.log(f);
+    }
+    
+    return cost / Math.log(2);
+  }
+  
+  /**
+   * Gets the entropy cost of the sum of two histograms, without adding them up in an array.
+   * 
+   * @param a - one histogram
+   * @param b - the other histogram
+   * @param total - the sum of both histograms
+   * @return  the cost in bits
+   */
+  private static double getMergedCost(long[] a, long[] b, long total){
+    
+    double cost = total * Math.log(total);
+    for (int i = 0; i < a.length; i++){
+      long f = a[i] + b[i];
+      if (f != 0)
+        cost -= f * Math.log(f);
+    }
+    
+    return cost / Math.log(2);
+  }
+  
+  /**
+   * Gets the order-0 frequencies of the bytes from the pair counts.
+   * 
+   * @param pairs - the number of occurrences of each byte after each byte, indexed by previous byte * 256 + byte
+   * @return  the number of occurrences of each byte
+   */
+  public static long[] getFrequencies(long[] pairs){
+    
+    long[] frequencies = new long[HuffmanLibrary.BYTE_ALPHABET_SIZE];
+    for (int i = 0; i < pairs.length; i++)
+      frequencies[i & 0xFF] += pairs[i];
+    
+    return frequencies;
+  }
+  
+  /**
+   * Gets the number of tables of this model.
+   * 
+   * @return  the number of tables
+   */
+  public int getTableCount(){
+    return lengths.length;
+  }
+  
+  /**
+   * Gets the table that codes the bytes after the given byte.
+   * 
+   * @param context - the previous byte, from 0 to 255
+   * @return  the table of the context
+   */
+  public int getTable(int context){
+    return tables[context] & 0xFF;
+  }
+  
+  /**
+   * Gets the code lengths of a table.
+   * 
+   * @param table - the table
+   * @return  a copy of the code length of each byte, indexed by byte
+   */
+  public byte[] getCodeLengths(int table){
+    return lengths[table].clone();
+  }
+  
+  /**
+   * Gets the number of bytes of memory of the encoding and decoding tables of this model,
+   * to weigh against the bits the contexts save.
+   * 
+   * @return  the size of the tables in bytes
+   */
+  public long getTableBytes(){
+    return tableBytes;
+  }
+  
+  /**
+   * Gets the number of bits the given pairs encode to with this model.
+   * 
+   * @param pairs - the number of occurrences of each byte after each byte, indexed by previous byte * 256 + byte
+   * @return  the total number of encoded bits
+   */
+  public long getEncodedBits(long[] pairs){
+    
+    long bits = 0;
+    for (int i = 0; i < pairs.length; i++)
+      bits += pairs[i] * codeLengths[offsets[i >>> 8] | (i & 0xFF)];
+    
+    return bits;
+  }
+  
+  /**
+   * Writes this model to the given stream.
+   * 
+   * @param out - the stream to write the model to
+   * @throws IOException - if the stream cannot be written to
+   */
+  public void write(OutputStream out) throws IOException {
+    
+    HuffmanHeader.writeVarint(out, lengths.length);
+    
+    if (lengths.length > 1)
+      out.write(tables);
+    
+    for (byte[] table : lengths)
+      HuffmanHeader.writeCodeTable(out, table);
+  }
+  
+  /**
+   * Reads a model written by write() from the given stream.
+   * 
+   * @param in - the stream to read the model from
+   * @return  the model read from the stream
+   * @throws IOException - if the stream ends or the model is corrupt
+   */
+  public static ContextModel read(InputStream in) throws IOException {
+    
+    long tableCount = HuffmanHeader.readVarint(in);
+    if (tableCount < 1 || tableCount > CONTEXT_COUNT)
+      throw new IOException("Context model is corrupt.");
+    
+    byte[] tables = new byte[CONTEXT_COUNT];
+    if (tableCount > 1 && in.readNBytes(tables, 0, CONTEXT_COUNT) < CONTEXT_COUNT)
+      throw new IOException("Context model is truncated.");
+    
+    byte[][] lengths = new byte[(int) tableCount][];
+    for (int t = 0; t < tableCount; t++)
+      lengths[t] = HuffmanHeader.readCodeTable(in, HuffmanLibrary.BYTE_ALPHABET_SIZE);
+    
+    try {
+      return new ContextModel(tables, lengths);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Context model is corrupt.", e);
+    }
+  }
+  
+  /**
+   * Counts the pairs of each remaining byte of a buffer and the byte before it.
+   * The buffer's position is moved to its limit.
+   * Package protected by default.
+   * 
+   * @param data - the bytes to count
+   * @param previous - the byte before the first one, or 0 at the start of a file
+   * @param counts - the number of occurrences of each pair, indexed by previous byte * 256 + byte, to add to
+   * @return  the last byte of the buffer, or the previous byte if it is empty
+   */
+  static int count(ByteBuffer data, int previous, int[] counts){
+    
+    /* Reads the bytes in order, first byte highest, eight at a time from one long. */
+    ByteBuffer words = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+    
+    while (words.remaining() >= 8){
+      
+      long word = words.getLong();
+      
+      for (int shift = 56; shift >= 0; shift -= 8){
+        int b = (int) (word >>> shift) & 0xFF;
+        counts[(previous << 8) | b]++;
+        previous = b;
+      }
+    }
+    
+    while (words.hasRemaining()){
+      int b = words.get() & 0xFF;
+      counts[(previous << 8) | b]++;
+      previous = b;
+    }
+    
+    data.position(data.limit());
+    return previous;
+  }
+  
+  /**
+   * Encodes the remaining bytes of the given buffer, each with the table of the byte before it.
+   * The buffer's position is moved to its limit.
+   * Precondition - every byte has a code in the table of its context.
+   * 
+   * @param data - the bytes to encode
+   * @param previous - the byte before the first one, or 0 at the start of a file
+   * @param out - the writer of the code bits
+   * @return  the last byte of the buffer, the context of the next one
+   * @throws IOException - if the code bits cannot be written
+   */
+  public int encode(ByteBuffer data, int previous, BitWriter out) throws IOException {
+    
+    /* Reads the bytes in order, first byte highest, eight at a time from one long. */
+    ByteBuffer words = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+    
+    while (words.remaining() >= 8){
+      
+      long word = words.getLong();
+      
+      for (int shift = 56; shift >= 0; shift -= 8){
+        int i = offsets[previous] | ((int) (word >>> shift) & 0xFF);
+        out.writeBits(codes[i], codeLengths[i]);
+        previous = i & 0xFF;
+      }
+    }
+    
+    while (words.hasRemaining()){
+      int i = offsets[previous] | (words.get() & 0xFF);
+      out.writeBits(codes[i], codeLengths[i]);
+      previous = i & 0xFF;
+    }
+    
+    data.position(data.limit());
+    return previous;
+  }
+  
+  /**
+   * Decodes bytes into the start of a buffer, each with the table of the byte before it.
+   * 
+   * @param in - the bits to decode
+   * @param buffer - the buffer to decode into
+   * @param count - the number of bytes to decode
+   * @param previous - the byte before the first one, or 0 at the start of a file
+   * @return  the last byte decoded, the context of the next one
+   * @throws IOException - if the bits end or do not form a code
+   */
+  public int decode(BitReader in, byte[] buffer, int count, int previous) throws IOException {
+    
+    for (int i = 0; i < count; i++){
+      previous = decoders[previous].decode(in);
+      buffer[i] = (byte) previous;
+    }
+    
+    return previous;
+  }
+  
+}
@@ -0,0 +1,223 @@
+package howard.huffman;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A class for counting the frequencies of characters or bytes.
+ * This class is included in the Huffman encoding project.
+ * Counts are kept in primitive arrays indexed by symbol, so counting is a single
+ * array increment per symbol with no search and no allocation. The counts are
+ * spread over four interleaved sub-histograms, one per position modulo 4, so that
+ * a run of the same symbol does not make each increment wait for the one before
+ * it to be stored. The sub-histograms are added together by getFrequencies().
+ * 
+ * @author Shaun Howard
+ */
+public class FrequencyCounter {
+  
+  /** The number of interleaved sub-histograms. */
+  private static final int LANES = 4;
+  
+  /** Inputs shorter than this are counted in the first sub-histogram only. */
+  private static final int INTERLEAVE_THRESHOLD = 1024;
+  
+  /** The number of distinct symbols counted. */
+  private final int alphabetSize;
+  
+  /** The interleaved sub-histograms; all but the first are created on first use. */
+  private final int[][] lanes = new int[LANES][];
+  
+  /** The counts already added together from the sub-histograms. */
+  private final long[] totals;
+  
+  /** The number of symbols counted in the sub-histograms since they were last added up. */
+  private long pending;
+  
+  /**
+   * Constructor for the frequency counter class.
+   * 
+   * @param alphabetSize - the number of distinct symbols, such as 256 for bytes
+   */
+  public FrequencyCounter(int alphabetSize){
+    this.alphabetSize = alphabetSize;
+    this.lanes[0] = new int[alphabetSize];
+    this.totals = new long[alphabetSize];
+  }
+  
+  /**
+   * Counts the given bytes as symbols from 0 to 255.
+   * Precondition - the alphabet size is at least 256.
+   * 
+   * @param data - the bytes to count
+   * @param offset - the index of the first byte to count
+   * @param length - the number of bytes to count
+   */
+  public void count(byte[] data, int offset, int length){
+    
+    reserve(length);
+    
+    /* The index of the byte after the last one to count. */
+    int end = offset + length;
+    int i = offset;
+    
+    if (length >= INTERLEAVE_THRESHOLD){
+      
+      int[] c0 = lanes[0], c1 = lanes[1], c2 = lanes[2], c3 = lanes[3];
+      
+      /* Counts four bytes at a time, each in its own sub-histogram. */
+      for (int end4 = offset + (length & ~3); i < end4; i += 4){
+        c0[data[i] & 0xFF]++;
+        c1[data[i + 1] & 0xFF]++;
+        c2[data[i + 2] & 0xFF]++;
+        c3[data[i + 3] & 0xFF]++;
+      }
+    }
+    
+    int[] c0 = lanes[0];
+    for (; i < end; i++)
+      c0[data[i] & 0xFF]++;
+  }
+  
+  /**
+   * Counts the remaining bytes of the given buffer as symbols from 0 to 255.
+   * The buffer's position is moved to its limit. A buffer without a backing array,
+   * such as a direct or memory-mapped buffer, is read eight bytes at a time.
+   * Precondition - the alphabet size is at least 256.
+   * 
+   * @param buffer - the bytes to count
+   */
+  public void count(ByteBuffer buffer){
+    
+    /* Counts the backing array directly when there is one. */
+    if (buffer.hasArray()){
+      count(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      buffer.position(buffer.limit());
+      return;
+    }
+    
+    reserve(buffer.remaining());
+    
+    if (buffer.remaining() >= INTERLEAVE_THRESHOLD){
+      
+      int[] c0 = lanes[0], c1 = lanes[1], c2 = lanes[2], c3 = lanes[3];
+      
+      /* Counts eight bytes at a time from one long, spread over the sub-histograms. */
+      while (buffer.remaining() >= 8){
+        long word = buffer.getLong();
+        c0[(int) word & 0xFF]++;
+        c1[(int) (word >>> 8) & 0xFF]++;
+        c2[(int) (word >>> 16) & 0xFF]++;
+        c3[(int) (word >>> 24) & 0xFF]++;
+        c0[(int) (word >>> 32) & 0xFF]++;
+        c1[(int) (word >>> 40) & 0xFF]++;
+        c2[(int) (word >>> 48) & 0xFF]++;
+        c3[(int) (word >>> 56)]++;
+      }
+    }
+    
+    int[] c0 = lanes[0];
+    while (buffer.hasRemaining())
+      c0[buffer.get() & 0xFF]++;
+  }
+  
+  /**
+   * Counts the given characters.
+   * Precondition - the alphabet size is ALPHABET_SIZE.
+   * 
+   * @param data - the characters to count
+   * @param offset - the index of the first character to count
+   * @param length - the number of characters to count
+   */
+  public void count(char[] data, int offset, int length){
+    
+    reserve(length);
+    
+    /* The index of the character after the last one to count. */
+    int end = offset + length;
+    int i = offset;
+    
+    if (length >= INTERLEAVE_THRESHOLD){
+      
+      int[] c0 = lanes[0], c1 = lanes[1], c2 = lanes[2], c3 = lanes[3];
+      
+      /* Counts four characters at a time, each in its own sub-histogram. */
+      for (int end4 = offset + (length & ~3); i < end4; i += 4){
+        c0[data[i]]++;
+        c1[data[i + 1]]++;
+        c2[data[i + 2]]++;
+        c3[data[i + 3]]++;
+      }
+    }
+    
+    int[] c0 = lanes[0];
+    for (; i < end; i++)
+      c0[data[i]]++;
+  }
+  
+  /**
+   * Counts the characters of the given text.
+   * Precondition - the alphabet size is ALPHABET_SIZE.
+   * 
+   * @param text - the characters to count
+   */
+  public void count(CharSequence text){
+    
+    reserve(text.length());
+    
+    int[] c0 = lanes[0];
+    for (int i = 0; i < text.length(); i++)
+      c0[text.charAt(i)]++;
+  }
+  
+  /**
+   * Gets the number of occurrences of each symbol counted so far.
+   * 
+   * @return  a new table of the frequency of each symbol, indexed by symbol
+   */
+  public long[] getFrequencies(){
+    
+    flush();
+    return totals.clone();
+    
+  }
+  
+  /**
+   * Makes room in the sub-histograms for the given number of symbols, adding them to
+   * the totals first if the int counts could overflow, and creates the remaining
+   * sub-histograms if the symbols will be interleaved.
+   * 
+   * @param length - the number of symbols about to be counted
+   */
+  private void reserve(long length){
+    
+    if (pending + length > Integer.MAX_VALUE)
+      flush();
+    
+    pending += length;
+    
+    if (length >= INTERLEAVE_THRESHOLD && lanes[1] == null){
+      for (int lane = 1; lane < LANES; lane++)
+        lanes[lane] = new int[alphabetSize];
+    }
+  }
+  
+  /**
+   * Adds the sub-histograms to the totals and clears them.
+   */
+  private void flush(){
+    
+    for (int[] lane : lanes){
+      
+      if (lane == null)
+        continue;
+      
+      for (int s = 0; s < alphabetSize; s++){
+        totals[s] += lane[s];
+        lane[s] = 0;
+      }
+    }
+    
+    pending = 0;
+  }
+  
+}
@@ -40,23 +40,64 @@ public class HLinkedList{
    * Constructor for the Huffman Linked List class.
    * Specifically useful for creating the initial, unsorted linked list
    * of characters and their frequencies from the read String. 
+   * The characters are counted with a FrequencyCounter, and the list holds
+   * them in increasing order of character.
    * 
    * @param fileContents - the String to read characters from
    */
   public HLinkedList(String fileContents){
     
-    /* Inserts characters into the HLinkedList one by one. */
-    for (int i = 0; i < fileContents.length(); i++){
+    this(countCharacters(fileContents));
+    
+  }
+  
+  /**
+   * Counts the characters of the given String.
+   * 
+   * @param fileContents - the String to read characters from
+   * @return  the number of occurrences of each character, indexed by character
+   */
+  private static long[] countCharacters(String fileContents){
+    
+    /* The counter of the characters of the String. */
+    FrequencyCounter counter = new FrequencyCounter(HuffmanLibrary.ALPHABET_SIZE);
+    counter.count(fileContents.toCharArray(), 0, fileContents.length());
+    
+    return counter.getFrequencies();
+    
+  }
+  
+  /**
+   * Constructor for the Huffman Linked List class.
+   * Creates the unsorted linked list of characters and their frequencies from
+   * a frequency table indexed by character, as counted while streaming a file.
+   * Characters with a frequency of 0 are left out of the list.
+   * Precondition - the sum of all frequencies fits in an int, the range of HTreeNode frequencies.
+   * 
+   * @param frequencies - the number of occurrences of each character
+   */
+  public HLinkedList(long[] frequencies){
+    
+    /* The last node of the list, so each node is appended without a traversal. */
+    HTreeNode tail = null;
+    
+    for (int c = 0; c < frequencies.length; c++){
       
-      /* The node containing the current character, if it exists. */
-      HTreeNode contentNode = find(fileContents.charAt(i));
+      /* Skips characters that never occur. */
+      if (frequencies[c] == 0)
+        continue;
       
-      /* If the character is not in the list, add it. */
-      if (contentNode == null){
-        insertAtEnd(new HTreeNode(fileContents.charAt(i), null));
-      } else { //else increment its frequency
-        contentNode.incrementFrequency();
-      }
+      /* The node for the current character and its frequency. */
+      HTreeNode node = new HTreeNode((char) c, null);
+      node.setFrequency((int) frequencies[c]);
+      
+      if (tail == null)
+        setHead(node);
+      else
+        tail.setNext(node);
+      
+      tail = node;
+      this.length++;
     }
     
   }
@@ -1,5 +1,6 @@
 package howard.huffman;
 
+import java.util.Arrays;
 import java.util.Hashtable;
 
 /**
@@ -10,12 +11,32 @@ import java.util.Hashtable;
  * Characters are assigned specific codes through their location in the tree.
  * The characters and codes are then put into a hash table for quick search upon encoding.
  * 
+ * The tree is kept in two int arrays rather than as a graph of HTreeNode objects, so
+ * building it allocates no node per character and walking it stays within a few cache
+ * lines: each inner node takes three ints of the inner array (its left child, its right
+ * child and its frequency) and each leaf two ints of the leaf array (its character and
+ * its frequency). A child is the index of an inner node, or the complement ~i of leaf i.
+ * The HTreeNode view of getRoot() is only built on demand, for debugging and for the
+ * methods that walk HTreeNodes.
+ * 
  * @author Shaun Howard
  */
 public class HTree {
   
-  /** The root node of the Huffman encoding tree. */
-  private HTreeNode root;
+  /** The child of an inner node that has none, which only an incomplete code can have. */
+  private static final int NONE = Integer.MIN_VALUE;
+  
+  /** The left child, right child and frequency of each inner node, three ints per node. */
+  private int[] inner;
+  
+  /** The character and frequency of each leaf, two ints per leaf. */
+  private int[] leaves;
+  
+  /** The root: an inner node, the complement of a lone leaf, or NONE if the tree is empty. */
+  private int root = NONE;
+  
+  /** The HTreeNode view of the tree, built by getRoot() when first asked for. */
+  private HTreeNode rootNode;
   
   /**
    * The constructor for the Huffman tree class.
@@ -23,21 +44,278 @@ public class HTree {
    * of characters and frequencies, as read from a text file.
    * Precondition - the input linked list must be sorted in increasing
    * order with respect to character frequencies.
+   * Postcondition - the list is left as it is.
    * 
    * @param list - the list to create the Huffman tree from
    */
   public HTree(HLinkedList list){
     mergeNodes(list);
-    this.root = list.getHeadNode();
   }
   
   /**
-   * Gets the root node of the Huffman tree. 
+   * Additional constructor for the Huffman tree class.
+   * Rebuilds a Huffman decoding tree from canonical code lengths, as read
+   * from the header of a compressed file. Each character is placed at the
+   * end of the path of its canonical code, 0 for left and 1 for right.
+   * Precondition - the lengths form a prefix code; see CanonicalCode.isValid().
+   * 
+   * @param codeLengths - the code length of each character, indexed by character
+   */
+  public HTree(byte[] codeLengths){
+    buildTree(codeLengths);
+  }
+  
+  /**
+   * Additional constructor for the Huffman tree class.
+   * Creates a Huffman encoding tree with no code longer than the given length.
+   * If the Huffman tree of the list has longer codes, the code lengths are found
+   * with LengthLimitedCode instead, and the tree is rebuilt from those lengths.
+   * Precondition - the input linked list must be sorted in increasing
+   * order with respect to character frequencies.
+   * 
+   * @param list - the list to create the Huffman tree from
+   * @param maxCodeLength - the longest code length allowed
+   * @throws IllegalArgumentException - if the characters do not all fit in codes of maxCodeLength bits
+   */
+  public HTree(HLinkedList list, int maxCodeLength){
+    
+    mergeNodes(list);
+    
+    /* Rebuilds the tree from length-limited code lengths if any code is too long. */
+    if (getMaxCodeLength() > maxCodeLength){
+      
+      long[] frequencies = new long[HuffmanLibrary.ALPHABET_SIZE];
+      for (HTreeNode node = list.getHeadNode(); node != null; node = node.next())
+        frequencies[node.getElement()] = node.getFrequency();
+      
+      buildTree(LengthLimitedCode.getCodeLengths(frequencies, maxCodeLength));
+    }
+  }
+  
+  /**
+   * Builds a Huffman decoding tree from canonical code lengths.
+   * 
+   * @param codeLengths - the code length of each character, indexed by character
+   */
+  private void buildTree(byte[] codeLengths){
+    
+    /* The canonical code of each character. */
+    long[] codes = CanonicalCode.assignCodes(codeLengths);
+    
+    int leafCount = 0;
+    for (byte length : codeLengths){
+      if (length != 0)
+        leafCount++;
+    }
+    
+    this.leaves = new int[2 * leafCount];
+    this.inner = new int[3 * Math.max(leafCount, 1)];
+    this.root = NONE;
+    
+    /* The number of inner nodes created so far. */
+    int innerCount = 0;
+    
+    for (int c = 0, leaf = 0; c < codeLengths.length; c++){
+      
+      /* Skips characters without a code. */
+      if (codeLengths[c] == 0)
+        continue;
+      
+      leaves[2 * leaf] = c;
+      
+      /* The root inner node, created with the first code. */
+      if (root == NONE){
+        innerCount = addInnerNode(innerCount);
+        root = 0;
+      }
+      
+      /* Walks the code from the root, creating the inner nodes along the path. */
+      int node = root;
+      for (int bit = codeLengths[c] - 1; bit > 0; bit--){
+        
+        int slot = 3 * node + (int) ((codes[c] >>> bit) & 1);
+        
+        if (inner[slot] == NONE){
+          inner[slot] = innerCount;
+          innerCount = addInnerNode(innerCount);
+        }
+        
+        node = inner[slot];
+      }
+      
+      /* Places the character's leaf at the end of the path. */
+      inner[3 * node + (int) (codes[c] & 1)] = ~leaf++;
+    }
+    
+    this.rootNode = null;
+  }
+  
+  /**
+   * Adds an inner node with no children to the end of the inner array, growing it if full.
+   * 
+   * @param innerCount - the number of inner nodes so far
+   * @return  the number of inner nodes with the new one
+   */
+  private int addInnerNode(int innerCount){
+    
+    if (3 * innerCount == inner.length)
+      inner = Arrays.copyOf(inner, 2 * inner.length);
+    
+    inner[3 * innerCount] = NONE;
+    inner[3 * innerCount + 1] = NONE;
+    inner[3 * innerCount + 2] = 0;
+    
+    return innerCount + 1;
+  }
+  
+  /**
+   * Gets the longest code length of this tree, which is the depth of its deepest leaf.
+   * A tree of a lone character has a code length of 1.
+   * 
+   * @return  the longest code length of the tree, or 0 if the tree is empty
+   */
+  public int getMaxCodeLength(){
+    
+    byte[] depths = getLeafDepths();
+    
+    int max = 0;
+    for (byte depth : depths)
+      max = Math.max(max, depth);
+    
+    return max;
+  }
+  
+  /**
+   * Gets the depth of each leaf, walking the tree from the root with a stack of nodes
+   * and their depths rather than by recursion. A lone leaf is given a depth of 1.
+   * 
+   * @return  the depth of each leaf, indexed by leaf
+   */
+  private byte[] getLeafDepths(){
+    
+    byte[] depths = new byte[leaves.length / 2];
+    
+    if (root == NONE)
+      return depths;
+    
+    if (root < 0){
+      depths[~root] = 1;
+      return depths;
+    }
+    
+    /* The inner nodes still to visit and their depths; each is pushed once, so the stack holds them all. */
+    int[] stack = new int[2 * (inner.length / 3)];
+    int size = 0;
+    
+    stack[size++] = root;
+    stack[size++] = 0;
+    
+    while (size > 0){
+      
+      int depth = stack[--size] + 1;
+      int node = stack[--size];
+      
+      for (int side = 0; side < 2; side++){
+        
+        int child = inner[3 * node + side];
+        
+        if (child == NONE)
+          continue;
+        
+        if (child < 0){
+          depths[~child] = (byte) depth;
+        } else {
+          stack[size++] = child;
+          stack[size++] = depth;
+        }
+      }
+    }
+    
+    return depths;
+  }
+  
+  /**
+   * Gets the longest code length of the tree, which is the depth of its deepest leaf node.
+   * A tree of a lone character has a code length of 1.
    * 
-   * @return  the root node of the Huffman tree
+   * @param root - the root of the H Tree we are measuring
+   * @return  the longest code length of the tree, or 0 if the tree is empty
+   */
+  public static int getMaxCodeLength(HTreeNode root){
+    
+    if (root != null && root.isLeafNode())
+      return 1;
+    
+    return getMaxDepth(root, 0);
+  }
+  
+  /**
+   * Gets the depth of the deepest leaf node through recursion.
+   * 
+   * @param root - the root of the subtree we are measuring
+   * @param depth - the depth of the node we are at
+   * @return  the depth of the deepest leaf node of the subtree
+   */
+  private static int getMaxDepth(HTreeNode root, int depth){
+    
+    if (root == null)
+      return 0;
+    
+    if (root.isLeafNode())
+      return depth;
+    
+    return Math.max(getMaxDepth(root.getLeft(), depth + 1), getMaxDepth(root.getRight(), depth + 1));
+  }
+  
+  /**
+   * Gets the root node of the Huffman tree, as a graph of HTreeNode objects.
+   * The nodes are built from the arrays of the tree the first time this is called,
+   * with their characters, frequencies and codes, 0 for left and 1 for right.
+   * Meant for debugging; the tree itself does not use them.
+   * 
+   * @return  the root node of the Huffman tree, or null if the tree is empty
    */
   public HTreeNode getRoot(){
-    return this.root;
+    
+    if (rootNode == null && root != NONE){
+      rootNode = toNode(root);
+      rootNode.setCode(0);
+    }
+    
+    return this.rootNode;
+  }
+  
+  /**
+   * Builds the HTreeNode of a node of the tree and of its subtree, through recursion.
+   * 
+   * @param node - an inner node, or the complement of a leaf
+   * @return  the HTreeNode of the node
+   */
+  private HTreeNode toNode(int node){
+    
+    if (node < 0){
+      
+      HTreeNode leaf = new HTreeNode((char) leaves[2 * ~node], null);
+      leaf.setFrequency(leaves[2 * ~node + 1]);
+      
+      return leaf;
+    }
+    
+    /* An inner node of an incomplete code may lack a child. */
+    HTreeNode treeNode = new HTreeNode((char) 0, null);
+    treeNode.setFrequency(inner[3 * node + 2]);
+    
+    if (inner[3 * node] != NONE){
+      treeNode.setLeft(toNode(inner[3 * node]));
+      treeNode.getLeft().setCode(0);
+    }
+    
+    if (inner[3 * node + 1] != NONE){
+      treeNode.setRight(toNode(inner[3 * node + 1]));
+      treeNode.getRight().setCode(1);
+    }
+    
+    return treeNode;
   }
   
   /**
@@ -69,9 +347,6 @@ public class HTree {
       /* Checks if both subtrees are null. */
       if (root.isLeafNode()){
         
-        /* Prints out the root character and its code as a reference in testing. */
-        System.out.println(root.getElement() + ": " + code);
-        
         /* Adds the character and its code to the hash table. */
         codes.put(String.valueOf(root.getElement()), code);          
       }      
@@ -79,80 +354,125 @@ public class HTree {
   }
   
   /**
-   * Merges the nodes of the sorted Huffman Linked List until top is reached.
+   * Gets the code length of each character in this tree.
+   * A tree of a lone character gives it a code length of 1.
+   * 
+   * @param alphabetSize - the number of distinct characters of the alphabet
+   * @return  the code length of each character, indexed by character
+   */
+  public byte[] getCodeLengths(int alphabetSize){
+    
+    /* The code length of each character. */
+    byte[] lengths = new byte[alphabetSize];
+    
+    byte[] depths = getLeafDepths();
+    for (int leaf = 0; leaf < depths.length; leaf++)
+      lengths[leaves[2 * leaf]] = depths[leaf];
+    
+    return lengths;
+  }
+  
+  /**
+   * Gets the characters and their canonical codes.
+   * Unlike getCharacterCode(), the codes do not depend on the shape of the tree,
+   * only on the code length of each character. Codes of the same length are
+   * assigned in increasing order of character, so the same lengths always give
+   * the same codes, and only the lengths need to be stored to reproduce them.
+   * 
+   * @param codes - the hash table of this tree's characters and codes
+   */
+  public void getCanonicalCharacterCodes(Hashtable<String, String> codes){
+    
+    /* The code length and canonical code of each character. */
+    byte[] lengths = getCodeLengths(HuffmanLibrary.ALPHABET_SIZE);
+    long[] canonical = CanonicalCode.assignCodes(lengths);
+    
+    /* Adds each character and its code to the hash table. */
+    for (int c = 0; c < lengths.length; c++){
+      if (lengths[c] != 0)
+        codes.put(String.valueOf((char) c), CanonicalCode.toString(canonical[c], lengths[c]));
+    }
+  }
+  
+  /**
+   * Gets the code length of each character through recursion, which is the
+   * depth of the character's leaf node in the tree. These lengths are all
+   * that is needed to assign canonical codes to the characters.
+   * 
+   * @param root - the root of the H Tree we are searching
+   * @param lengths - the code length of each character, indexed by character
+   * @param depth - the depth of the node we are at
+   */
+  public static void getCodeLengths(HTreeNode root, byte[] lengths, int depth){
+    
+    /* Checks if the root is null. */
+    if (root != null)
+    {
+      /* Explore the left and right subtrees. */
+      getCodeLengths(root.getLeft(), lengths, depth + 1);
+      getCodeLengths(root.getRight(), lengths, depth + 1);
+      
+      /* Checks if both subtrees are null, if so records the depth of the character. */
+      if (root.isLeafNode())
+        lengths[root.getElement()] = (byte) depth;
+    }
+  }
+  
+  /**
+   * Merges the nodes of the sorted Huffman Linked List into the arrays of the tree.
+   * The merging is done by HTreeBuilder, in O(n log n) time rather than by
+   * re-inserting each merged node into the sorted list, and the builder's nodes are
+   * copied into the arrays of the tree, so no HTreeNode is created or copied.
    * Precondition - the input linked list must be sorted first with getSortedLinkedList()
-   * Postcondition - the linked list will have only a root node, and next() link
-   * is null for all nodes within tree.
+   * Postcondition - the list is left as it is.
    *
    * @param list - the list to sort into a Huffman Tree
    */
   private void mergeNodes(HLinkedList list){
     
-    /* Runs through the nodes and merges them. */
-    while(list.getHeadNode().next().next() != null){
-      
-      /* The node of the left subtree. */
-      HTreeNode left = new HTreeNode(list.getHeadNode());
-      
-      /* The node of the right subtree. */
-      HTreeNode right = new HTreeNode(list.getHeadNode().next());
-      
-      /* Remove the two first nodes from the list. */
-      list.removeHead();
-      list.removeHead();
-      
-      /* The new root node with nodes of the left and right subtrees. */
-      HTreeNode newRoot = new HTreeNode(left, right);
-      
-      /* Assign code values. */
-      newRoot.getLeft().setCode(0);
-      newRoot.getRight().setCode(1);
-      
-      /* Reference to the list head for iteration. */
-      HTreeNode iterator;
-      
-      /* Tracks insertion of new root node into list. */
-      boolean insert = false;
-      
-      /* Inserts the node into list in ascending order of frequency. */
-      for(iterator = list.getHeadNode(); iterator != null && insert == false; iterator = iterator.next()){
-        
-        /* Compares the iterator with the new root, inserts new root before iterator node. */
-        if (iterator.compareTo(newRoot) > 0) {
-          list.insertBefore(iterator, newRoot);
-          insert = true;
-        }
-        /* Otherwise inserts at end. */
-        else if (iterator.next() == null && insert == false) {
-          list.insertAtEnd(newRoot);
-          insert = true;
-        }
-      }
-      
-    }
-    
-    /* The node of the left subtree. */
-    HTreeNode left = new HTreeNode(list.getHeadNode());
+    /* The characters and frequencies of the list, in the list's order. */
+    int[] characters = new int[list.length()];
+    long[] frequencies = new long[list.length()];
     
-    /* The node of the right subtree. */
-    HTreeNode right = new HTreeNode(list.getHeadNode().next());
+    int i = 0;
+    for (HTreeNode node = list.getHeadNode(); node != null; node = node.next(), i++){
+      characters[i] = node.getElement();
+      frequencies[i] = node.getFrequency();
+    }
     
-    /* Remove the head node from the list to attain Huffman Tree root node. */
-    list.removeHead();
+    /* Builds the tree in arrays with the two-queue method. */
+    HTreeBuilder builder = new HTreeBuilder(characters, frequencies);
+    int n = builder.getLeafCount();
     
-    /* The Huffman Tree root node with nodes of left and right subtrees. */
-    HTreeNode newRoot = new HTreeNode(left, right);
+    this.leaves = new int[2 * n];
+    this.inner = new int[3 * Math.max(n - 1, 0)];
+    this.rootNode = null;
     
-    /* Assign code values. */
-    newRoot.getLeft().setCode(0);
-    newRoot.getRight().setCode(1);
+    /* The builder's leaves are nodes 0 to n - 1, and its inner nodes n to 2n - 2. */
+    for (int leaf = 0; leaf < n; leaf++){
+      leaves[2 * leaf] = builder.getCharacter(leaf);
+      leaves[2 * leaf + 1] = (int) builder.getFrequency(leaf);
+    }
     
-    /* Set the root node code to 0. */
-    newRoot.setCode(0);
+    for (int node = n; node < 2 * n - 1; node++){
+      inner[3 * (node - n)] = toChild(builder.getLeft(node), n);
+      inner[3 * (node - n) + 1] = toChild(builder.getRight(node), n);
+      inner[3 * (node - n) + 2] = (int) builder.getFrequency(node);
+    }
     
-    /* Set head node of list to the root of the H Tree. */
-    list.setHead(newRoot);
+    this.root = n == 0 ? NONE : toChild(builder.getRoot(), n);
     
   }
   
-}
\ No newline at end of file
+  /**
+   * Converts a node of an HTreeBuilder to a child of this tree.
+   * 
+   * @param node - the builder's node
+   * @param leafCount - the number of leaves of the builder
+   * @return  the index of the inner node, or the complement of the leaf
+   */
+  private static int toChild(int node, int leafCount){
+    return node < leafCount ? ~node : node - leafCount;
+  }
+  
+}
@@ -0,0 +1,252 @@
+package howard.huffman;
+
+import java.util.Arrays;
+
+/**
+ * A class for building Huffman trees in parallel primitive arrays.
+ * This class is included in the Huffman encoding project.
+ * Nodes are indexes rather than objects: the n leaves are nodes 0 to n - 1 in
+ * increasing order of frequency, and the n - 1 inner nodes are nodes n to 2n - 2
+ * in the order they are merged, so the root is the last node. Since merged nodes
+ * are created in increasing order of frequency, the two lightest nodes are always
+ * at the front of either the sorted leaves or the inner nodes (the two-queue
+ * method), and the tree is built in linear time after one sort of the leaves.
+ * 
+ * Ties are broken the same way as HTree's sorted linked list: leaves of equal
+ * frequency keep their order (by character, when built from a frequency table),
+ * and a leaf comes before an inner node of equal frequency. The tree is therefore
+ * the same as the linked-list merge would build.
+ * 
+ * @author Shaun Howard
+ */
+public class HTreeBuilder {
+  
+  /** The character of each leaf. */
+  private final int[] characters;
+  
+  /** The frequency of each node. */
+  private final long[] frequencies;
+  
+  /** The left child of each inner node, indexed by node - n. */
+  private final int[] left;
+  
+  /** The right child of each inner node, indexed by node - n. */
+  private final int[] right;
+  
+  /** The number of leaves. */
+  private final int leafCount;
+  
+  /**
+   * Constructor for the Huffman tree builder class.
+   * Builds the Huffman tree of the characters that occur in the given frequency table.
+   * 
+   * @param characterFrequencies - the number of occurrences of each character, indexed by character
+   * @throws IllegalArgumentException - if a frequency is too large to sort with the character
+   */
+  public HTreeBuilder(long[] characterFrequencies){
+    
+    this(getOccurringCharacters(characterFrequencies), getOccurringFrequencies(characterFrequencies));
+    
+  }
+  
+  /**
+   * Constructor for the Huffman tree builder class.
+   * Builds the Huffman tree of the given characters and their frequencies.
+   * Characters of equal frequency keep the order they are given in.
+   * 
+   * @param leafCharacters - the characters of the leaves
+   * @param leafFrequencies - the frequency of each character, all greater than 0
+   * @throws IllegalArgumentException - if a frequency is too large to sort with its index
+   */
+  public HTreeBuilder(int[] leafCharacters, long[] leafFrequencies){
+    
+    int n = leafCharacters.length;
+    
+    this.leafCount = n;
+    this.characters = new int[n];
+    this.frequencies = new long[Math.max(2 * n - 1, 0)];
+    this.left = new int[Math.max(n - 1, 0)];
+    this.right = new int[Math.max(n - 1, 0)];
+    
+    /* The number of bits of a leaf's index. */
+    int indexBits = 32 - Integer.numberOfLeadingZeros(Math.max(n - 1, 1));
+    
+    /* Sort keys of the frequency above the index, so equal frequencies keep their order. */
+    long[] keys = new long[n];
+    for (int i = 0; i < n; i++){
+      
+      if (leafFrequencies[i] >>> (63 - indexBits) != 0)
+        throw new IllegalArgumentException("Frequency of character " + leafCharacters[i] + " is too large.");
+      
+      keys[i] = (leafFrequencies[i] << indexBits) | i;
+    }
+    
+    Arrays.sort(keys);
+    
+    /* Places the leaves in sorted order. */
+    for (int i = 0; i < n; i++){
+      characters[i] = leafCharacters[(int) (keys[i] & ((1L << indexBits) - 1))];
+      frequencies[i] = keys[i] >>> indexBits;
+    }
+    
+    /* The next leaf and the next inner node that have not been merged yet. */
+    int nextLeaf = 0;
+    int nextInner = n;
+    
+    /* Merges the two lightest nodes until only the root is left, taking a leaf first on ties. */
+    for (int node = n; node < 2 * n - 1; node++){
+      
+      int a = (nextLeaf < n && (nextInner == node || frequencies[nextLeaf] <= frequencies[nextInner]))
+          ? nextLeaf++ : nextInner++;
+      int b = (nextLeaf < n && (nextInner == node || frequencies[nextLeaf] <= frequencies[nextInner]))
+          ? nextLeaf++ : nextInner++;
+      
+      left[node - n] = a;
+      right[node - n] = b;
+      frequencies[node] = frequencies[a] + frequencies[b];
+    }
+  }
+  
+  /**
+   * Gets the characters that occur in a frequency table, in increasing order.
+   * 
+   * @param characterFrequencies - the number of occurrences of each character, indexed by character
+   * @return  the characters with a frequency greater than 0
+   */
+  private static int[] getOccurringCharacters(long[] characterFrequencies){
+    
+    int n = 0;
+    for (long f : characterFrequencies){
+      if (f != 0)
+        n++;
+    }
+    
+    int[] occurring = new int[n];
+    for (int c = 0, i = 0; c < characterFrequencies.length; c++){
+      if (characterFrequencies[c] != 0)
+        occurring[i++] = c;
+    }
+    
+    return occurring;
+  }
+  
+  /**
+   * Gets the frequencies greater than 0 of a frequency table, in increasing order of character.
+   * 
+   * @param characterFrequencies - the number of occurrences of each character, indexed by character
+   * @return  the frequencies greater than 0
+   */
+  private static long[] getOccurringFrequencies(long[] characterFrequencies){
+    
+    int[] occurring = getOccurringCharacters(characterFrequencies);
+    
+    long[] occurringFrequencies = new long[occurring.length];
+    for (int i = 0; i < occurring.length; i++)
+      occurringFrequencies[i] = characterFrequencies[occurring[i]];
+    
+    return occurringFrequencies;
+  }
+  
+  /**
+   * Gets the number of leaves of the tree, which is the number of characters that occur.
+   * 
+   * @return  the number of leaves
+   */
+  public int getLeafCount(){
+    return leafCount;
+  }
+  
+  /**
+   * Gets the root node of the tree.
+   * 
+   * @return  the root node, or -1 if the tree is empty
+   */
+  public int getRoot(){
+    return frequencies.length - 1;
+  }
+  
+  /**
+   * Determines if the given node is a leaf node.
+   * 
+   * @param node - the node to check
+   * @return  whether or not the node is a leaf node
+   */
+  public boolean isLeafNode(int node){
+    return node < leafCount;
+  }
+  
+  /**
+   * Gets the character of a leaf node.
+   * 
+   * @param node - the leaf node
+   * @return  the character of the leaf node
+   */
+  public int getCharacter(int node){
+    return characters[node];
+  }
+  
+  /**
+   * Gets the frequency of a node.
+   * 
+   * @param node - the node
+   * @return  the frequency of the node
+   */
+  public long getFrequency(int node){
+    return frequencies[node];
+  }
+  
+  /**
+   * Gets the left child of an inner node.
+   * 
+   * @param node - the inner node
+   * @return  the left child of the node
+   */
+  public int getLeft(int node){
+    return left[node - leafCount];
+  }
+  
+  /**
+   * Gets the right child of an inner node.
+   * 
+   * @param node - the inner node
+   * @return  the right child of the node
+   */
+  public int getRight(int node){
+    return right[node - leafCount];
+  }
+  
+  /**
+   * Gets the code length of each character, which is the depth of its leaf node.
+   * Since children are always created before their parents, the depths are found
+   * in one pass from the root down, without recursion.
+   * A lone character is given a code length of 1.
+   * 
+   * @param alphabetSize - the number of distinct characters of the alphabet
+   * @return  the code length of each character, indexed by character
+   */
+  public byte[] getCodeLengths(int alphabetSize){
+    
+    /* The code length of each character. */
+    byte[] lengths = new byte[alphabetSize];
+    
+    if (leafCount == 1)
+      lengths[characters[0]] = 1;
+    
+    if (leafCount < 2)
+      return lengths;
+    
+    /* The depth of each node. */
+    int[] depths = new int[frequencies.length];
+    
+    for (int node = getRoot(); node >= leafCount; node--){
+      depths[getLeft(node)] = depths[node] + 1;
+      depths[getRight(node)] = depths[node] + 1;
+    }
+    
+    for (int node = 0; node < leafCount; node++)
+      lengths[characters[node]] = (byte) depths[node];
+    
+    return lengths;
+  }
+  
+}
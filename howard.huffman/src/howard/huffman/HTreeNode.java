@@ -1,5 +1,7 @@
 package howard.huffman;
 
+import java.util.Comparator;
+
 /**
  * A class for the Huffman encoding tree node.
  * This is included in the Huffman encoding project.
@@ -12,6 +14,25 @@ package howard.huffman;
  */
 public class HTreeNode implements Comparable<HTreeNode>{
   
+  /**
+   * Orders nodes by frequency like compareTo(), and nodes of the same frequency by character.
+   * Sorting with this order makes the Huffman tree, and so its code lengths, depend only
+   * on the character frequencies.
+   */
+  public static final Comparator<HTreeNode> FREQUENCY_THEN_CHARACTER = new Comparator<HTreeNode>(){
+    
+    @Override
+    public int compare(HTreeNode a, HTreeNode b){
+      
+      int order = a.compareTo(b);
+      
+      if (order != 0)
+        return order;
+      
+      return Character.compare(a.getElement(), b.getElement());
+    }
+  };
+  
   /** The character signified by the leaf node. */
   private char character;
   
@@ -0,0 +1,466 @@
+package howard.huffman;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A compressor of many files in one run, on a bounded pool of threads.
+ * This class is included in the Huffman encoding project.
+ * The files of a directory, or of a list of paths, are each given to Huffman_coder()
+ * on a fixed pool of worker threads, so a batch of thousands of files pays for one JVM
+ * and warms up one set of code. The coder maps its input and writes its output through
+ * channels, so a worker spends little of its time blocked on I/O, and one worker per
+ * processor keeps the processors busy.
+ * 
+ * The batch holds back files while their estimated working memory would exceed the
+ * memory budget: a file's memory is reserved before it is handed to the pool, and the
+ * caller waits for earlier files to finish once the budget is used up. The queue of
+ * the pool is bounded by the budget too. Each file is compressed to the output
+ * directory under its path relative to the input, with SUFFIX appended, and its size,
+ * ratio and time are given back as a Result and can be written as a summary.
+ * 
+ * @author Shaun Howard
+ */
+public final class HuffmanBatch {
+  
+  /** The suffix appended to the name of each compressed file. */
+  public static final String SUFFIX = ".huf";
+  
+  /** The name of the summary written to the output directory by the "-m" option of HuffmanLibrary.main(). */
+  public static final String SUMMARY_NAME = "summary.tsv";
+  
+  /** The estimated working memory of coding one file as a whole: its counts, tables and buffers. */
+  public static final long FILE_MEMORY = 4L << 20;
+  
+  /** The options every file is compressed with, with the listener of the batch. */
+  private final HuffmanOptions options;
+  
+  /** The number of worker threads. */
+  private final int threads;
+  
+  /** The memory budget of the files being compressed at once, in kilobytes. */
+  private final int budget;
+  
+  /** The metrics of the file the current thread last compressed, set by the listener of the batch. */
+  private final ThreadLocal<HuffmanMetrics> metrics = new ThreadLocal<HuffmanMetrics>();
+  
+  /**
+   * Constructor for a batch on one thread per processor, with half of the largest heap
+   * of the JVM as its memory budget.
+   * 
+   * @param options - the options every file is compressed with
+   */
+  public HuffmanBatch(HuffmanOptions options){
+    this(options, Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() / 2);
+  }
+  
+  /**
+   * Constructor for a batch compressor. The options are copied; a file compressed in
+   * blocks is compressed on its worker thread alone, as the pool already runs one
+   * file per thread.
+   * 
+   * @param options - the options every file is compressed with
+   * @param threads - the number of worker threads, at least 1
+   * @param memoryBudget - the most estimated working memory of the files being compressed at once, in bytes
+   * @throws IllegalArgumentException - if there are no threads or the budget is less than FILE_MEMORY
+   */
+  public HuffmanBatch(HuffmanOptions options, int threads, long memoryBudget){
+    
+    if (threads < 1)
+      throw new IllegalArgumentException("Threads must be at least 1.");
+    
+    if (memoryBudget < FILE_MEMORY)
+      throw new IllegalArgumentException("Memory budget must be at least " + FILE_MEMORY + " bytes.");
+    
+    this.threads = threads;
+    this.budget = (int) Math.min(memoryBudget >> 10, Integer.MAX_VALUE);
+    
+    /* Passes the metrics of each file on to the listener of the options, keeping them for its Result. */
+    final HuffmanListener listener = options.getListener();
+    
+    this.options = new HuffmanOptions(options);
+    this.options.setParallelism(1);
+    this.options.setListener(new HuffmanListener(){
+      
+      @Override
+      public void encoded(HuffmanMetrics encoded){
+        metrics.set(encoded);
+        listener.encoded(encoded);
+      }
+      
+      @Override
+      public void decoded(HuffmanMetrics decoded){
+        listener.decoded(decoded);
+      }
+    });
+  }
+  
+  /**
+   * Lists the files of a batch: the regular files under a directory, in order of path,
+   * or the paths of a list file, one on each line, relative to the directory of the list.
+   * Blank lines of a list are skipped.
+   * 
+   * @param input - a directory, or a file listing the paths of the files
+   * @return  the paths of the files
+   * @throws IOException - if the directory or list cannot be read
+   */
+  public static List<Path> listFiles(Path input) throws IOException {
+    
+    if (Files.isDirectory(input)) {
+      try (Stream<Path> paths = Files.walk(input)) {
+        return paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+      }
+    }
+    
+    /* The directory the paths of the list are relative to. */
+    Path base = input.toAbsolutePath().getParent();
+    
+    List<Path> files = new ArrayList<Path>();
+    for (String line : Files.readAllLines(input, StandardCharsets.UTF_8)){
+      if (!line.trim().isEmpty())
+        files.add(base.resolve(line.trim()));
+    }
+    
+    return files;
+  }
+  
+  /**
+   * Compresses a directory or the files of a list into the output directory, skipping
+   * any file already inside the output directory.
+   * 
+   * @param input - a directory, or a file listing the paths of the files, see listFiles()
+   * @param outputDirectory - the directory the compressed files are written under
+   * @return  the result of each file, in the order of listFiles()
+   * @throws IOException - if the input cannot be listed or the output directory cannot be made
+   * @throws InterruptedException - if the thread is interrupted while waiting for memory or a result
+   */
+  public List<Result> compress(Path input, Path outputDirectory) throws IOException, InterruptedException {
+    
+    Path root = Files.isDirectory(input) ? input : input.toAbsolutePath().getParent();
+    Path output = outputDirectory.toAbsolutePath().normalize();
+    
+    List<Path> files = new ArrayList<Path>();
+    for (Path file : listFiles(input)){
+      if (!file.toAbsolutePath().normalize().startsWith(output))
+        files.add(file);
+    }
+    
+    return compress(root, files, outputDirectory);
+  }
+  
+  /**
+   * Compresses the given files into the output directory, each under its path relative
+   * to the root, or under its name alone if it is not under the root. A file whose
+   * compressed file would be the same as that of an earlier file is not compressed, and
+   * its Result gives the clash as its error.
+   * 
+   * @param root - the directory the paths under the output directory are relative to
+   * @param files - the files to compress
+   * @param outputDirectory - the directory the compressed files are written under
+   * @return  the result of each file, in the order given
+   * @throws IOException - if the output directory cannot be made
+   * @throws InterruptedException - if the thread is interrupted while waiting for memory or a result
+   */
+  public List<Result> compress(Path root, List<Path> files, Path outputDirectory) throws IOException, InterruptedException {
+    
+    Files.createDirectories(outputDirectory);
+    Path base = root.toAbsolutePath().normalize();
+    
+    /* The compressed file of each file, worked out before any is written, and whether an earlier file has it. */
+    List<Path> outputs = new ArrayList<Path>(files.size());
+    boolean[] clashes = new boolean[files.size()];
+    Set<Path> taken = new HashSet<Path>();
+    
+    for (int i = 0; i < files.size(); i++){
+      
+      Path path = files.get(i).toAbsolutePath().normalize();
+      Path relative = path.startsWith(base) ? base.relativize(path) : path.getFileName();
+      Path compressed = outputDirectory.resolve(relative.toString() + SUFFIX);
+      
+      outputs.add(compressed);
+      clashes[i] = !taken.add(compressed.toAbsolutePath().normalize());
+    }
+    
+    /* The memory not yet reserved by a file, in kilobytes. */
+    Semaphore memory = new Semaphore(budget);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<Result>> futures = new ArrayList<Future<Result>>(files.size());
+    
+    try {
+      
+      for (int i = 0; i < files.size(); i++){
+        
+        Path file = files.get(i);
+        Path compressed = outputs.get(i);
+        
+        /* Fails a file whose compressed file is an earlier file's, rather than writing over it. */
+        if (clashes[i]) {
+          futures.add(CompletableFuture.completedFuture(new Result(file, compressed, null,
+              "Compressed file " + compressed + " is also the compressed file of an earlier file.", 0)));
+          continue;
+        }
+        
+        /* Waits for earlier files to finish while this one's memory would exceed the budget. */
+        int permits = (int) Math.min(getMemoryEstimate(options, Files.isRegularFile(file) ? Files.size(file) : 0) >> 10, budget);
+        memory.acquire(permits);
+        
+        try {
+          futures.add(pool.submit(() -> {
+            try {
+              return compressFile(file, compressed);
+            } finally {
+              memory.release(permits);
+            }
+          }));
+        } catch (RuntimeException e) {
+          memory.release(permits);
+          throw e;
+        }
+      }
+      
+      List<Result> results = new ArrayList<Result>(futures.size());
+      for (Future<Result> future : futures)
+        results.add(future.get());
+      
+      return results;
+      
+    } catch (ExecutionException e) {
+      
+      throw new IOException(e.getCause());
+      
+    } finally {
+      
+      pool.shutdownNow();
+    }
+  }
+  
+  /**
+   * Gets the estimated working memory of compressing a file: FILE_MEMORY, and for a file
+   * compressed in blocks on one thread, four bytes for each byte of a block, for the
+   * block, its characters and its code bits.
+   * 
+   * @param options - the options the file is compressed with
+   * @param size - the size of the file in bytes
+   * @return  the estimated memory in bytes
+   */
+  public static long getMemoryEstimate(HuffmanOptions options, long size){
+    
+    if (options.getBlockSize() == 0)
+      return FILE_MEMORY;
+    
+    return FILE_MEMORY + 4 * Math.min(options.getBlockSize(), size);
+  }
+  
+  /**
+   * Writes a summary of the results of a batch as tab-separated lines: the path, size,
+   * compressed size, ratio, time in milliseconds, status and error of each file, and a
+   * last line of the totals. The error is empty for a file that was compressed.
+   * 
+   * @param results - the results of the batch
+   * @param out - the writer of the summary
+   */
+  public static void writeSummary(List<Result> results, Writer out){
+    
+    PrintWriter summary = new PrintWriter(out);
+    summary.println("file\tsize\tcompressed\tratio\tmillis\tstatus\terror");
+    
+    long size = 0, compressed = 0, nanos = 0;
+    int failed = 0;
+    
+    for (Result result : results){
+      
+      /* The error on one line, so it stays in its column. */
+      String error = result.getError() == null ? "" : result.getError().replaceAll("\\s+", " ");
+      
+      summary.printf("%s\t%d\t%d\t%.4f\t%.1f\t%s\t%s%n", result.getInput(), result.getSize(), result.getCompressedSize(),
+          result.getRatio(), result.getTime() / 1e6, result.isSuccess() ? "ok" : "failed", error);
+      
+      size += result.getSize();
+      compressed += result.getCompressedSize();
+      nanos += result.getTime();
+      
+      if (!result.isSuccess())
+        failed++;
+    }
+    
+    summary.printf("total\t%d\t%d\t%.4f\t%.1f\t%s\t%n", size, compressed, size == 0 ? 1.0 : (double) compressed / size,
+        nanos / 1e6, failed == 0 ? "ok" : failed + " failed");
+    summary.flush();
+  }
+  
+  /**
+   * Compresses one file on the current thread. If the file cannot be compressed, the
+   * problem is kept in its Result and any part of the compressed file is deleted.
+   * 
+   * @param file - the file to compress
+   * @param compressed - the compressed file to write
+   * @return  the result of the file
+   */
+  private Result compressFile(Path file, Path compressed){
+    
+    long start = System.nanoTime();
+    metrics.remove();
+    
+    try {
+      
+      if (compressed.getParent() != null)
+        Files.createDirectories(compressed.getParent());
+      
+      HuffmanLibrary.encodeFile(file.toString(), compressed.toString(), options);
+      return new Result(file, compressed, metrics.get(), null, System.nanoTime() - start);
+      
+    } catch (Exception e) {
+      
+      try {
+        Files.deleteIfExists(compressed);
+      } catch (IOException deleteError) {
+        e.addSuppressed(deleteError);
+      }
+      
+      String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+      return new Result(file, compressed, null, error, System.nanoTime() - start);
+    }
+  }
+  
+  /**
+   * The result of compressing one file of a batch.
+   * This class is included in the Huffman encoding project.
+   * 
+   * @author Shaun Howard
+   */
+  public static final class Result {
+    
+    /** The file that was compressed. */
+    private final Path input;
+    
+    /** The compressed file. */
+    private final Path output;
+    
+    /** The metrics of the encoding, or null if the file could not be compressed. */
+    private final HuffmanMetrics metrics;
+    
+    /** The message of the problem that stopped the file being compressed, or null. */
+    private final String error;
+    
+    /** The time of compressing the file, in nanoseconds. */
+    private final long time;
+    
+    /**
+     * Constructor for the result of a file.
+     * 
+     * @param input - the file that was compressed
+     * @param output - the compressed file
+     * @param metrics - the metrics of the encoding, or null if it failed
+     * @param error - the message of the problem if it failed, or null
+     * @param time - the time of compressing the file, in nanoseconds
+     */
+    Result(Path input, Path output, HuffmanMetrics metrics, String error, long time){
+      this.input = input;
+      this.output = output;
+      this.metrics = metrics;
+      this.error = error;
+      this.time = time;
+    }
+    
+    /**
+     * Gets the file that was compressed.
+     * 
+     * @return  the path of the file
+     */
+    public Path getInput(){
+      return input;
+    }
+    
+    /**
+     * Gets the compressed file.
+     * 
+     * @return  the path of the compressed file
+     */
+    public Path getOutput(){
+      return output;
+    }
+    
+    /**
+     * Determines whether the file was compressed.
+     * 
+     * @return  whether or not the coder finished the file
+     */
+    public boolean isSuccess(){
+      return metrics != null && error == null;
+    }
+    
+    /**
+     * Gets the problem that stopped the file being compressed, such as a file that
+     * could not be read or that shares its compressed file with an earlier file. The
+     * compressed file is deleted when there is one, unless it is the earlier file's.
+     * 
+     * @return  the message of the problem, or null if the file was compressed
+     */
+    public String getError(){
+      return error;
+    }
+    
+    /**
+     * Gets the metrics of the encoding, with its stage timings.
+     * 
+     * @return  the metrics, or null if the file could not be compressed
+     */
+    public HuffmanMetrics getMetrics(){
+      return metrics;
+    }
+    
+    /**
+     * Gets the size of the file.
+     * 
+     * @return  the number of bytes of the file, or 0 if it could not be compressed
+     */
+    public long getSize(){
+      return metrics == null ? 0 : metrics.getOriginalBytes();
+    }
+    
+    /**
+     * Gets the size of the compressed file.
+     * 
+     * @return  the number of bytes of the compressed file, or 0 if it could not be compressed
+     */
+    public long getCompressedSize(){
+      return metrics == null ? 0 : metrics.getCompressedBytes();
+    }
+    
+    /**
+     * Gets the compression ratio, as the size of the compressed file over the size of the original.
+     * 
+     * @return  the compression ratio, or NaN if the file could not be compressed
+     */
+    public double getRatio(){
+      return metrics == null ? Double.NaN : metrics.getRatio();
+    }
+    
+    /**
+     * Gets the time of compressing the file on its worker thread, not counting the
+     * time it waited for memory or a thread.
+     * 
+     * @return  the time in nanoseconds
+     */
+    public long getTime(){
+      return time;
+    }
+  }
+  
+}
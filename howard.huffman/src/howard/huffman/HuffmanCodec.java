@@ -0,0 +1,341 @@
+package howard.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+/**
+ * An immutable Huffman code for encoding and decoding many small messages.
+ * This class is included in the Huffman encoding project.
+ * A codec is built once, from symbol frequencies or from canonical code lengths, and
+ * holds the codes of a HuffmanEncoder and the lookup tables of a HuffmanDecoder.
+ * None of its state changes after construction, so one codec can be shared by any
+ * number of threads encoding and decoding at once, with no tree, list or hash table
+ * built per message. Symbols are characters, or bytes taken as the characters 0 to 255.
+ * 
+ * An encoded message is a varint number of symbols followed by the packed code bits,
+ * most significant bit first, with the last byte padded by zeros. The code table is not
+ * part of the message; it can be shared with writeCodeTable() and readCodeTable().
+ * 
+ * @author Shaun Howard
+ */
+public final class HuffmanCodec {
+  
+  /** The code length of each symbol, indexed by symbol. */
+  private final byte[] lengths;
+  
+  /** The encoder of the codes. */
+  private final HuffmanEncoder encoder;
+  
+  /** The decoder of the codes. */
+  private final HuffmanDecoder decoder;
+  
+  /**
+   * Constructor for a codec of the Huffman code of the given frequencies.
+   * 
+   * @param frequencies - the number of occurrences of each symbol, indexed by symbol
+   */
+  public HuffmanCodec(long[] frequencies){
+    this(frequencies, HuffmanOptions.MAX_CODE_LENGTH);
+  }
+  
+  /**
+   * Constructor for a codec of the Huffman code of the given frequencies, with no code
+   * longer than the given length.
+   * 
+   * @param frequencies - the number of occurrences of each symbol, indexed by symbol
+   * @param maxCodeLength - the longest code length allowed, from 1 to HuffmanOptions.MAX_CODE_LENGTH
+   * @throws IllegalArgumentException - if the symbols do not all fit in codes of maxCodeLength bits
+   */
+  public HuffmanCodec(long[] frequencies, int maxCodeLength){
+    this(HuffmanLibrary.getCodeLengths(frequencies, maxCodeLength));
+  }
+  
+  /**
+   * Constructor for a codec of the given canonical code lengths, as read from a
+   * HuffmanHeader or by readCodeTable(). The lengths are copied.
+   * 
+   * @param lengths - the code length of each symbol, indexed by symbol
+   * @throws IllegalArgumentException - if the lengths do not form a prefix code of at most HuffmanOptions.MAX_CODE_LENGTH bits
+   */
+  public HuffmanCodec(byte[] lengths){
+    
+    this.lengths = lengths.clone();
+    this.encoder = new HuffmanEncoder(this.lengths);
+    
+    try {
+      this.decoder = new HuffmanDecoder(this.lengths);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Code lengths do not form a prefix code.", e);
+    }
+  }
+  
+  /**
+   * Gets the code length of each symbol.
+   * 
+   * @return  a copy of the code length of each symbol, indexed by symbol
+   */
+  public byte[] getCodeLengths(){
+    return lengths.clone();
+  }
+  
+  /**
+   * Gets the number of symbols of the alphabet of this codec, coded or not.
+   * 
+   * @return  the alphabet size
+   */
+  public int getAlphabetSize(){
+    return lengths.length;
+  }
+  
+  /**
+   * Writes the code table of this codec, in the form of the HuffmanHeader.
+   * 
+   * @param out - the stream to write the code table to
+   * @throws IOException - if the stream cannot be written to
+   */
+  public void writeCodeTable(OutputStream out) throws IOException {
+    HuffmanHeader.writeCodeTable(out, lengths);
+  }
+  
+  /**
+   * Reads a code table written by writeCodeTable() and builds a codec of it.
+   * 
+   * @param in - the stream to read the code table from
+   * @param alphabetSize - the number of symbols of the alphabet of the codec
+   * @return  the codec of the code table
+   * @throws IOException - if the stream ends or the code table is corrupt
+   */
+  public static HuffmanCodec readCodeTable(InputStream in, int alphabetSize) throws IOException {
+    
+    try {
+      return new HuffmanCodec(HuffmanHeader.readCodeTable(in, alphabetSize));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Code table is corrupt.", e);
+    }
+  }
+  
+  /**
+   * Encodes a message of characters.
+   * 
+   * @param text - the characters to encode
+   * @return  the encoded message
+   * @throws IllegalArgumentException - if a character has no code
+   */
+  public byte[] encode(CharSequence text){
+    
+    /* The number of code bits, found first so the output is allocated once at its size. */
+    long bits = 0;
+    for (int i = 0; i < text.length(); i++)
+      bits += getLength(text.charAt(i));
+    
+    char[] characters = new char[text.length()];
+    for (int i = 0; i < characters.length; i++)
+      characters[i] = text.charAt(i);
+    
+    ByteArrayOutputStream out = new ByteArrayOutputStream((int) ((bits + 7) / 8) + 10);
+    
+    try {
+      
+      HuffmanHeader.writeVarint(out, characters.length);
+      BitWriter writer = newWriter(out, bits);
+      encoder.encode(characters, 0, characters.length, writer);
+      writer.finish();
+      
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    
+    return out.toByteArray();
+  }
+  
+  /**
+   * Encodes a message of bytes, as the symbols 0 to 255.
+   * 
+   * @param data - the bytes to encode
+   * @return  the encoded message
+   * @throws IllegalArgumentException - if a byte has no code
+   */
+  public byte[] encode(byte[] data){
+    return encode(data, 0, data.length);
+  }
+  
+  /**
+   * Encodes a message of bytes from part of an array, as the symbols 0 to 255.
+   * 
+   * @param data - the array of bytes to encode
+   * @param offset - the index of the first byte to encode
+   * @param length - the number of bytes to encode
+   * @return  the encoded message
+   * @throws IllegalArgumentException - if a byte has no code
+   */
+  public byte[] encode(byte[] data, int offset, int length){
+    
+    /* The number of code bits, found first so the output is allocated once at its size. */
+    long bits = getEncodedBits(data, offset, length);
+    
+    ByteArrayOutputStream out = new ByteArrayOutputStream((int) ((bits + 7) / 8) + 10);
+    
+    try {
+      encode(data, offset, length, bits, out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    
+    return out.toByteArray();
+  }
+  
+  /**
+   * Gets the number of code bits of bytes from part of an array.
+   * Package protected by default.
+   * 
+   * @param data - the array of bytes to encode
+   * @param offset - the index of the first byte to encode
+   * @param length - the number of bytes to encode
+   * @return  the number of code bits of the bytes
+   * @throws IllegalArgumentException - if a byte has no code
+   */
+  long getEncodedBits(byte[] data, int offset, int length){
+    
+    long bits = 0;
+    for (int i = offset; i < offset + length; i++)
+      bits += getLength(data[i] & 0xFF);
+    
+    return bits;
+  }
+  
+  /**
+   * Writes a message of bytes from part of an array to a stream.
+   * Package protected by default.
+   * 
+   * @param data - the array of bytes to encode
+   * @param offset - the index of the first byte to encode
+   * @param length - the number of bytes to encode
+   * @param bits - the number of code bits of the bytes, from getEncodedBits()
+   * @param out - the stream to write the encoded message to
+   * @throws IOException - if the stream cannot be written to
+   */
+  void encode(byte[] data, int offset, int length, long bits, OutputStream out) throws IOException {
+    
+    HuffmanHeader.writeVarint(out, length);
+    
+    BitWriter writer = newWriter(out, bits);
+    encoder.encode(ByteBuffer.wrap(data, offset, length), writer);
+    writer.finish();
+  }
+  
+  /**
+   * Decodes a message of characters encoded by encode(CharSequence).
+   * 
+   * @param message - the encoded message
+   * @return  the decoded characters
+   * @throws IOException - if the message is truncated or corrupt
+   */
+  public String decodeString(byte[] message) throws IOException {
+    
+    ByteArrayInputStream in = new ByteArrayInputStream(message);
+    int count = readCount(in);
+    
+    BitReader bits = new BitReader(message, message.length - in.available(), in.available());
+    
+    char[] characters = new char[count];
+    for (int i = 0; i < count; i++)
+      characters[i] = (char) decoder.decode(bits);
+    
+    return new String(characters);
+  }
+  
+  /**
+   * Decodes a message of bytes encoded by encode(byte[]).
+   * 
+   * @param message - the encoded message
+   * @return  the decoded bytes
+   * @throws IOException - if the message is truncated or corrupt, or decodes to a symbol that is not a byte
+   */
+  public byte[] decode(byte[] message) throws IOException {
+    return decode(message, 0, message.length);
+  }
+  
+  /**
+   * Decodes a message of bytes from part of an array.
+   * Package protected by default.
+   * 
+   * @param message - the array of the encoded message
+   * @param offset - the index of the first byte of the message
+   * @param length - the number of bytes of the message
+   * @return  the decoded bytes
+   * @throws IOException - if the message is truncated or corrupt, or decodes to a symbol that is not a byte
+   */
+  byte[] decode(byte[] message, int offset, int length) throws IOException {
+    
+    ByteArrayInputStream in = new ByteArrayInputStream(message, offset, length);
+    int count = readCount(in);
+    
+    BitReader bits = new BitReader(message, offset + length - in.available(), in.available());
+    
+    byte[] data = new byte[count];
+    for (int i = 0; i < count; i++){
+      
+      int symbol = decoder.decode(bits);
+      if (symbol > 0xFF)
+        throw new IOException("Message is not of bytes.");
+      
+      data[i] = (byte) symbol;
+    }
+    
+    return data;
+  }
+  
+  /**
+   * Gets the code length of a symbol that is to be encoded.
+   * 
+   * @param symbol - the symbol to encode
+   * @return  the code length of the symbol
+   * @throws IllegalArgumentException - if the symbol has no code
+   */
+  private int getLength(int symbol){
+    
+    if (symbol >= lengths.length || lengths[symbol] == 0)
+      throw new IllegalArgumentException("Symbol " + symbol + " has no code.");
+    
+    return lengths[symbol];
+  }
+  
+  /**
+   * Creates a bit writer to a stream, with a buffer that holds all the given bits.
+   * 
+   * @param out - the stream to write the packed bytes to
+   * @param bits - the number of bits to be written
+   * @return  the bit writer
+   */
+  private static BitWriter newWriter(OutputStream out, long bits){
+    
+    /* Room for the packed bytes rounded up to whole words, so the buffer is written out once. */
+    int size = (int) Math.min(HuffmanLibrary.BUFFER_SIZE, (bits + 7) / 8 + 8);
+    
+    return new BitWriter(Channels.newChannel(out), ByteBuffer.allocate(size));
+  }
+  
+  /**
+   * Reads the number of symbols of a message, which each take at least one bit.
+   * 
+   * @param in - the message
+   * @return  the number of symbols of the message
+   * @throws IOException - if the number is missing or more than the message or an array can hold
+   */
+  private static int readCount(ByteArrayInputStream in) throws IOException {
+    
+    long count = HuffmanHeader.readVarint(in);
+    
+    if (count > 8L * in.available() || count > Integer.MAX_VALUE)
+      throw new IOException("Message is corrupt.");
+    
+    return (int) count;
+  }
+  
+}
@@ -0,0 +1,392 @@
+package howard.huffman;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * A table-driven decoder for canonical Huffman codes.
+ * This class is included in the Huffman encoding project.
+ * Instead of walking the Huffman tree one bit at a time, the decoder looks at the
+ * next PRIMARY_BITS bits of the input and resolves the whole code with one lookup
+ * in a flat table. Codes longer than PRIMARY_BITS lead to a second-level table
+ * for their prefix, and the rare codes that are longer still are resolved with
+ * the canonical code ranges of each length.
+ * 
+ * Each table entry is an int holding the character above the low 8 bits and the
+ * code length in the low 8 bits. A primary entry for a long prefix instead holds
+ * the offset of its second-level table above the low 8 bits, and LINK plus the
+ * number of bits indexing the second-level table in the low 8 bits. An entry of 0
+ * sends the decoder to the canonical ranges.
+ * 
+ * @author Shaun Howard
+ */
+public class HuffmanDecoder {
+  
+  /** The number of bits resolved by the primary table. */
+  public static final int PRIMARY_BITS = 11;
+  
+  /** The most bits a second-level table is indexed by. */
+  private static final int MAX_SECONDARY_BITS = 12;
+  
+  /** Marks a primary table entry that links to a second-level table. */
+  private static final int LINK = 0x80;
+  
+  /** Reads eight bytes of an array as a big-endian long, from any index. */
+  private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+  
+  /** The primary table followed by the second-level tables. */
+  private final int[] table;
+  
+  /** The longest code length. */
+  private final int maxLength;
+  
+  /** The first canonical code of each length. */
+  private final long[] firstCode;
+  
+  /** The number of codes of each length. */
+  private final int[] lengthCount;
+  
+  /** The index in sortedCharacters of the first character of each length. */
+  private final int[] firstIndex;
+  
+  /** The characters with a code, in canonical order. */
+  private final int[] sortedCharacters;
+  
+  /**
+   * Constructor for the Huffman decoder class.
+   * Builds the decoding tables from canonical code lengths alone.
+   * 
+   * @param lengths - the code length of each character, indexed by character
+   * @throws IOException - if the lengths do not form a prefix code the decoder supports
+   */
+  public HuffmanDecoder(byte[] lengths) throws IOException {
+    
+    if (!CanonicalCode.isValid(lengths))
+      throw new IOException("Code table is corrupt.");
+    
+    /* The canonical code of each character. */
+    long[] codes = CanonicalCode.assignCodes(lengths);
+    
+    /* Counts the codes of each length and finds the longest. */
+    int longest = 0;
+    int coded = 0;
+    lengthCount = new int[CanonicalCode.MAX_CODE_LENGTH + 1];
+    
+    for (int c = 0; c < lengths.length; c++){
+      if (lengths[c] != 0){
+        lengthCount[lengths[c]]++;
+        longest = Math.max(longest, lengths[c]);
+        coded++;
+      }
+    }
+    
+    if (longest > BitReader.MAX_PEEK_BITS)
+      throw new IOException("Code lengths over " + BitReader.MAX_PEEK_BITS + " bits are not supported.");
+    
+    this.maxLength = longest;
+    
+    /* Lays out the canonical ranges of each length. */
+    firstCode = new long[CanonicalCode.MAX_CODE_LENGTH + 1];
+    firstIndex = new int[CanonicalCode.MAX_CODE_LENGTH + 1];
+    sortedCharacters = new int[coded];
+    
+    long code = 0;
+    int index = 0;
+    for (int length = 1; length <= CanonicalCode.MAX_CODE_LENGTH; length++){
+      code = (code + (length > 1 ? lengthCount[length - 1] : 0)) << 1;
+      firstCode[length] = code;
+      firstIndex[length] = index;
+      index += lengthCount[length];
+    }
+    
+    /* Places the characters in canonical order, by length and then by character. */
+    int[] nextIndex = firstIndex.clone();
+    for (int c = 0; c < lengths.length; c++){
+      if (lengths[c] != 0)
+        sortedCharacters[nextIndex[lengths[c]]++] = c;
+    }
+    
+    /* The longest code under each primary prefix. */
+    int[] prefixLength = new int[1 << PRIMARY_BITS];
+    
+    for (int c = 0; c < lengths.length; c++){
+      if (lengths[c] > PRIMARY_BITS){
+        int prefix = (int) (codes[c] >>> (lengths[c] - PRIMARY_BITS));
+        prefixLength[prefix] = Math.max(prefixLength[prefix], lengths[c]);
+      }
+    }
+    
+    /* Sizes the table and links each long prefix to its second-level table. */
+    int size = 1 << PRIMARY_BITS;
+    int[] links = new int[1 << PRIMARY_BITS];
+    
+    for (int prefix = 0; prefix < prefixLength.length; prefix++){
+      if (prefixLength[prefix] != 0){
+        int bits = Math.min(prefixLength[prefix] - PRIMARY_BITS, MAX_SECONDARY_BITS);
+        links[prefix] = (size << 8) | LINK | bits;
+        size += 1 << bits;
+      }
+    }
+    
+    table = new int[size];
+    
+    for (int prefix = 0; prefix < links.length; prefix++){
+      if (links[prefix] != 0)
+        table[prefix] = links[prefix];
+    }
+    
+    /* Fills every table slot whose leading bits are a character's code. */
+    for (int c = 0; c < lengths.length; c++){
+      
+      int length = lengths[c];
+      int entry = (c << 8) | length;
+      
+      if (length == 0)
+        continue;
+      
+      if (length <= PRIMARY_BITS){
+        
+        /* A short code fills every primary slot it is a prefix of. */
+        int start = (int) (codes[c] << (PRIMARY_BITS - length));
+        int end = start + (1 << (PRIMARY_BITS - length));
+        for (int i = start; i < end; i++)
+          table[i] = entry;
+        
+      } else {
+        
+        /* A long code fills the slots of its prefix's second-level table, if it fits. */
+        int link = links[(int) (codes[c] >>> (length - PRIMARY_BITS))];
+        int bits = link & 0x7F;
+        int rest = length - PRIMARY_BITS;
+        
+        if (rest <= bits){
+          int suffix = (int) (codes[c] & ((1L << rest) - 1));
+          int start = (link >>> 8) + (suffix << (bits - rest));
+          int end = start + (1 << (bits - rest));
+          for (int i = start; i < end; i++)
+            table[i] = entry;
+        }
+      }
+    }
+  }
+  
+  /**
+   * Decodes the next character from the given bits.
+   * 
+   * @param in - the bits to decode
+   * @return  the decoded character
+   * @throws IOException - if the bits end or do not form a code
+   */
+  public int decode(BitReader in) throws IOException {
+    
+    in.refill();
+    
+    /* The next bits of the input, left-aligned. */
+    long window = in.peekWindow();
+    
+    /* Looks up the primary table entry for the leading bits. */
+    int entry = table[(int) (window >>> (64 - PRIMARY_BITS))];
+    
+    /* Follows a link to the second-level table for the bits after the prefix. */
+    if ((entry & LINK) != 0){
+      int bits = entry & 0x7F;
+      entry = table[(entry >>> 8) + (int) ((window << PRIMARY_BITS) >>> (64 - bits))];
+    }
+    
+    /* Falls back to the canonical ranges for codes too long for the tables. */
+    if (entry == 0)
+      return decodeLong(in, window);
+    
+    in.skipBits(entry & 0xFF);
+    return entry >>> 8;
+  }
+  
+  /**
+   * Decodes bytes interleaved over four streams, the i-th byte from stream i % 4.
+   * The four streams are decoded in one loop, each from a bit position of its own kept
+   * in a local variable, so the lookups of the four streams do not depend on each other
+   * and the processor can overlap them. Each lookup reads the eight bytes at the
+   * stream's position at once, instead of refilling a bit buffer a byte at a time.
+   * The last few codes of each stream, and codes too long for the tables, are decoded
+   * by a BitReader.
+   * 
+   * @param data - the array holding the code bits of the streams
+   * @param starts - the index of the first byte of each stream
+   * @param ends - the index after the last byte of each stream
+   * @param out - the array to decode into
+   * @param offset - the index of the first byte to decode
+   * @param length - the number of bytes to decode
+   * @throws IOException - if the bits of a stream end or do not form a code
+   */
+  public void decode(byte[] data, int[] starts, int[] ends, byte[] out, int offset, int length) throws IOException {
+    
+    /* The bit position of each stream in the array, and the last one eight whole bytes can be read at. */
+    long p0 = (long) starts[0] << 3, p1 = (long) starts[1] << 3, p2 = (long) starts[2] << 3, p3 = (long) starts[3] << 3;
+    long l0 = (long) (ends[0] - 8) << 3, l1 = (long) (ends[1] - 8) << 3, l2 = (long) (ends[2] - 8) << 3, l3 = (long) (ends[3] - 8) << 3;
+    
+    int i = offset, end = offset + length;
+    
+    while (i + 4 <= end && p0 <= l0 && p1 <= l1 && p2 <= l2 && p3 <= l3){
+      
+      int e0 = lookup(window(data, p0)), e1 = lookup(window(data, p1)), e2 = lookup(window(data, p2)), e3 = lookup(window(data, p3));
+      
+      if (e0 == 0 || e1 == 0 || e2 == 0 || e3 == 0)
+        break;
+      
+      out[i] = (byte) (e0 >>> 8);
+      out[i + 1] = (byte) (e1 >>> 8);
+      out[i + 2] = (byte) (e2 >>> 8);
+      out[i + 3] = (byte) (e3 >>> 8);
+      
+      p0 += e0 & 0xFF;
+      p1 += e1 & 0xFF;
+      p2 += e2 & 0xFF;
+      p3 += e3 & 0xFF;
+      i += 4;
+    }
+    
+    /* Decodes the rest with readers from where each stream got to. */
+    BitReader[] streams = getReaders(data, new long[] { p0, p1, p2, p3 }, ends);
+    
+    for (int s = 0; i < end; i++, s = (s + 1) & 3)
+      out[i] = (byte) decode(streams[s]);
+  }
+  
+  /**
+   * Decodes characters interleaved over four streams, the i-th character from stream i % 4,
+   * in the same way as the bytes of decode(byte[], int[], int[], byte[], int, int).
+   * 
+   * @param data - the array holding the code bits of the streams
+   * @param starts - the index of the first byte of each stream
+   * @param ends - the index after the last byte of each stream
+   * @param out - the array to decode into
+   * @param offset - the index of the first character to decode
+   * @param length - the number of characters to decode
+   * @throws IOException - if the bits of a stream end or do not form a code
+   */
+  public void decode(byte[] data, int[] starts, int[] ends, char[] out, int offset, int length) throws IOException {
+    
+    long p0 = (long) starts[0] << 3, p1 = (long) starts[1] << 3, p2 = (long) starts[2] << 3, p3 = (long) starts[3] << 3;
+    long l0 = (long) (ends[0] - 8) << 3, l1 = (long) (ends[1] - 8) << 3, l2 = (long) (ends[2] - 8) << 3, l3 = (long) (ends[3] - 8) << 3;
+    
+    int i = offset, end = offset + length;
+    
+    while (i + 4 <= end && p0 <= l0 && p1 <= l1 && p2 <= l2 && p3 <= l3){
+      
+      int e0 = lookup(window(data, p0)), e1 = lookup(window(data, p1)), e2 = lookup(window(data, p2)), e3 = lookup(window(data, p3));
+      
+      if (e0 == 0 || e1 == 0 || e2 == 0 || e3 == 0)
+        break;
+      
+      out[i] = (char) (e0 >>> 8);
+      out[i + 1] = (char) (e1 >>> 8);
+      out[i + 2] = (char) (e2 >>> 8);
+      out[i + 3] = (char) (e3 >>> 8);
+      
+      p0 += e0 & 0xFF;
+      p1 += e1 & 0xFF;
+      p2 += e2 & 0xFF;
+      p3 += e3 & 0xFF;
+      i += 4;
+    }
+    
+    BitReader[] streams = getReaders(data, new long[] { p0, p1, p2, p3 }, ends);
+    
+    for (int s = 0; i < end; i++, s = (s + 1) & 3)
+      out[i] = (char) decode(streams[s]);
+  }
+  
+  /**
+   * Gets the 64 bits of an array from a bit position, of which at least 57 are the
+   * array's and the rest zeros.
+   * Precondition - there are eight bytes from the byte of the position.
+   * 
+   * @param data - the array
+   * @param position - the bit position in the array
+   * @return  the bits from the position, left-aligned
+   */
+  private static long window(byte[] data, long position){
+    return (long) LONGS.get(data, (int) (position >>> 3)) << (position & 7);
+  }
+  
+  /**
+   * Looks up the table entry of the code at the start of a window, following a link
+   * to a second-level table.
+   * 
+   * @param window - the next bits of the input, left-aligned
+   * @return  the character above the low 8 bits and the code length in the low 8 bits, or 0 for a code too long for the tables
+   */
+  private int lookup(long window){
+    
+    int entry = table[(int) (window >>> (64 - PRIMARY_BITS))];
+    
+    if ((entry & LINK) != 0){
+      int bits = entry & 0x7F;
+      entry = table[(entry >>> 8) + (int) ((window << PRIMARY_BITS) >>> (64 - bits))];
+    }
+    
+    return entry;
+  }
+  
+  /**
+   * Gets readers of the rest of each stream, from the bit position it got to.
+   * 
+   * @param data - the array holding the code bits of the streams
+   * @param positions - the bit position each stream got to
+   * @param ends - the index after the last byte of each stream
+   * @return  the readers of the streams
+   * @throws IOException - if a stream ended before its position
+   */
+  private static BitReader[] getReaders(byte[] data, long[] positions, int[] ends) throws IOException {
+    
+    BitReader[] streams = new BitReader[positions.length];
+    
+    for (int s = 0; s < streams.length; s++){
+      
+      int start = (int) (positions[s] >>> 3);
+      streams[s] = new BitReader(data, start, ends[s] - start);
+      streams[s].refill();
+      streams[s].skipBits((int) (positions[s] & 7));
+    }
+    
+    return streams;
+  }
+  
+  /**
+   * Gets the number of bytes of memory of the decoding tables.
+   * Package protected by default.
+   * 
+   * @return  the size of the tables in bytes
+   */
+  long getTableBytes(){
+    return 4L * (table.length + lengthCount.length + firstIndex.length + sortedCharacters.length) + 8L * firstCode.length;
+  }
+  
+  /**
+   * Decodes a code too long for the tables, by checking the canonical code range
+   * of each length in turn.
+   * 
+   * @param in - the bits to decode
+   * @param window - the next bits of the input, left-aligned
+   * @return  the decoded character
+   * @throws IOException - if the bits do not form a code
+   */
+  private int decodeLong(BitReader in, long window) throws IOException {
+    
+    for (int length = 1; length <= maxLength; length++){
+      
+      /* The leading bits of the window as a code of this length. */
+      long offset = (window >>> (64 - length)) - firstCode[length];
+      
+      if (offset >= 0 && offset < lengthCount[length]){
+        in.skipBits(length);
+        return sortedCharacters[firstIndex[length] + (int) offset];
+      }
+    }
+    
+    throw new IOException("Compressed file is corrupt.");
+  }
+  
+}
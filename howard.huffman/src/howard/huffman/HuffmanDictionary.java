@@ -0,0 +1,272 @@
+package howard.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A pre-trained code table for encoding small messages, with an ID.
+ * This class is included in the Huffman encoding project.
+ * Building a tree per message and shipping its code table costs more than Huffman
+ * coding saves on messages of tens or hundreds of bytes. A dictionary is instead
+ * trained once on a sample corpus by a HuffmanTrainer, and shared by the encoder and
+ * decoder ahead of time; each message then only carries the dictionary's ID.
+ * A dictionary is immutable and can be used by many threads at once.
+ * 
+ * A message encoded with a dictionary is laid out as follows:
+ * 
+ *   header       - varint of the dictionary ID shifted left by one, with the low bit
+ *                  set if the message is stored; one byte for IDs below 64
+ *   body         - the HuffmanCodec message of the bytes: a varint number of bytes,
+ *                  then the packed code bits; or the bytes as is if stored
+ * 
+ * A message that would not shrink is stored, so it grows by the header alone.
+ * A dictionary is saved by write() as the bytes 'H', 'U', 'D', a version byte, the
+ * varint ID and the code table in the form of the HuffmanHeader.
+ * 
+ * @author Shaun Howard
+ */
+public final class HuffmanDictionary {
+  
+  /** The magic bytes at the start of a saved dictionary. */
+  private static final byte[] MAGIC = { 'H', 'U', 'D' };
+  
+  /** The version of the format written by write(). */
+  public static final int VERSION = 1;
+  
+  /** The ID of this dictionary. */
+  private final int id;
+  
+  /** The codec of the code table of this dictionary. */
+  private final HuffmanCodec codec;
+  
+  /**
+   * Constructor for a dictionary of the given code lengths, in which every byte value has a code.
+   * 
+   * @param id - the ID of the dictionary, from 0 to Integer.MAX_VALUE
+   * @param lengths - the code length of each byte value, indexed by byte value
+   * @throws IllegalArgumentException - if the ID is negative, or a byte value has no code or the lengths do not form a prefix code
+   */
+  public HuffmanDictionary(int id, byte[] lengths){
+    
+    if (id < 0)
+      throw new IllegalArgumentException("Dictionary ID must not be negative.");
+    
+    if (lengths.length != HuffmanLibrary.BYTE_ALPHABET_SIZE)
+      throw new IllegalArgumentException("A dictionary has a code length for each of the " + HuffmanLibrary.BYTE_ALPHABET_SIZE + " byte values.");
+    
+    for (byte length : lengths){
+      if (length == 0)
+        throw new IllegalArgumentException("Every byte value of a dictionary must have a code.");
+    }
+    
+    this.id = id;
+    this.codec = new HuffmanCodec(lengths);
+  }
+  
+  /**
+   * Gets the ID of this dictionary, which is written at the start of each message.
+   * 
+   * @return  the ID of the dictionary
+   */
+  public int getId(){
+    return id;
+  }
+  
+  /**
+   * Gets the codec of the code table of this dictionary.
+   * 
+   * @return  the codec of the dictionary
+   */
+  public HuffmanCodec getCodec(){
+    return codec;
+  }
+  
+  /**
+   * Encodes a message of bytes.
+   * 
+   * @param message - the bytes to encode
+   * @return  the encoded message, with its header
+   */
+  public byte[] encode(byte[] message){
+    return encode(message, 0, message.length);
+  }
+  
+  /**
+   * Encodes a message of text, as its UTF-8 bytes.
+   * 
+   * @param message - the text to encode
+   * @return  the encoded message, with its header
+   */
+  public byte[] encode(CharSequence message){
+    return encode(message.toString().getBytes(StandardCharsets.UTF_8));
+  }
+  
+  /**
+   * Encodes a message of bytes from part of an array.
+   * 
+   * @param message - the array of the bytes to encode
+   * @param offset - the index of the first byte to encode
+   * @param length - the number of bytes to encode
+   * @return  the encoded message, with its header
+   */
+  public byte[] encode(byte[] message, int offset, int length){
+    
+    /* The number of code bits, and whether they would not be fewer than the bytes themselves. */
+    long bits = codec.getEncodedBits(message, offset, length);
+    boolean stored = getVarintSize(length) + (bits + 7) / 8 >= length;
+    
+    ByteArrayOutputStream out = new ByteArrayOutputStream(length + 10);
+    
+    try {
+      
+      HuffmanHeader.writeVarint(out, ((long) id << 1) | (stored ? 1 : 0));
+      
+      if (stored)
+        out.write(message, offset, length);
+      else
+        codec.encode(message, offset, length, bits, out);
+      
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    
+    return out.toByteArray();
+  }
+  
+  /**
+   * Decodes a message of bytes encoded with this dictionary.
+   * 
+   * @param message - the encoded message, with its header
+   * @return  the decoded bytes
+   * @throws IOException - if the message was encoded with another dictionary, or is truncated or corrupt
+   */
+  public byte[] decode(byte[] message) throws IOException {
+    
+    ByteArrayInputStream in = new ByteArrayInputStream(message);
+    long header = HuffmanHeader.readVarint(in);
+    
+    if (header >>> 1 != id)
+      throw new IOException("Message was encoded with dictionary " + (header >>> 1) + ", not " + id + ".");
+    
+    /* The start of the body, after the header. */
+    int start = message.length - in.available();
+    
+    if ((header & 1) != 0)
+      return Arrays.copyOfRange(message, start, message.length);
+    
+    return codec.decode(message, start, message.length - start);
+  }
+  
+  /**
+   * Decodes a message of text encoded with this dictionary.
+   * 
+   * @param message - the encoded message, with its header
+   * @return  the decoded text
+   * @throws IOException - if the message was encoded with another dictionary, or is truncated or corrupt
+   */
+  public String decodeString(byte[] message) throws IOException {
+    return new String(decode(message), StandardCharsets.UTF_8);
+  }
+  
+  /**
+   * Gets the ID of the dictionary a message was encoded with, to choose the dictionary to decode it with.
+   * 
+   * @param message - the encoded message, with its header
+   * @return  the ID of the message's dictionary
+   * @throws IOException - if the message has no header
+   */
+  public static int getDictionaryId(byte[] message) throws IOException {
+    
+    long header = HuffmanHeader.readVarint(new ByteArrayInputStream(message));
+    
+    if (header >>> 1 > Integer.MAX_VALUE)
+      throw new IOException("Message header is corrupt.");
+    
+    return (int) (header >>> 1);
+  }
+  
+  /**
+   * Writes this dictionary to the given stream, to be read back by read().
+   * 
+   * @param out - the stream to write the dictionary to
+   * @throws IOException - if the stream cannot be written to
+   */
+  public void write(OutputStream out) throws IOException {
+    
+    out.write(MAGIC);
+    out.write(VERSION);
+    HuffmanHeader.writeVarint(out, id);
+    codec.writeCodeTable(out);
+  }
+  
+  /**
+   * Reads a dictionary written by write() from the given stream.
+   * 
+   * @param in - the stream to read the dictionary from
+   * @return  the dictionary read from the stream
+   * @throws IOException - if the stream ends or is not a valid dictionary
+   */
+  public static HuffmanDictionary read(InputStream in) throws IOException {
+    
+    /* Checks the magic bytes and the version. */
+    for (byte b : MAGIC){
+      if (readByte(in) != b)
+        throw new IOException("Not a Huffman dictionary.");
+    }
+    
+    int version = readByte(in);
+    if (version != VERSION)
+      throw new IOException("Unsupported dictionary version " + version + ".");
+    
+    long id = HuffmanHeader.readVarint(in);
+    if (id > Integer.MAX_VALUE)
+      throw new IOException("Dictionary is corrupt.");
+    
+    byte[] lengths = HuffmanHeader.readCodeTable(in, HuffmanLibrary.BYTE_ALPHABET_SIZE);
+    
+    try {
+      return new HuffmanDictionary((int) id, lengths);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Dictionary is corrupt.", e);
+    }
+  }
+  
+  /**
+   * Reads one byte from the given stream.
+   * 
+   * @param in - the stream to read from
+   * @return  the byte read, from 0 to 255
+   * @throws IOException - if the stream ends
+   */
+  private static int readByte(InputStream in) throws IOException {
+    
+    int b = in.read();
+    if (b < 0)
+      throw new EOFException("Dictionary is truncated.");
+    
+    return b;
+  }
+  
+  /**
+   * Gets the number of bytes of a varint.
+   * 
+   * @param value - the value of the varint
+   * @return  the number of bytes the varint is written in
+   */
+  private static int getVarintSize(long value){
+    
+    int size = 1;
+    while ((value >>>= 7) != 0)
+      size++;
+    
+    return size;
+  }
+  
+}
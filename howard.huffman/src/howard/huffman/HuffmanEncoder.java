@@ -0,0 +1,202 @@
+package howard.huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An encoder for canonical Huffman codes.
+ * This class is included in the Huffman encoding project.
+ * The code and code length of each character are kept in primitive arrays
+ * indexed by character, so encoding a character is two array reads and one
+ * BitWriter call, with no hash table lookup and no String.
+ * 
+ * @author Shaun Howard
+ */
+public class HuffmanEncoder {
+  
+  /** The canonical code of each character, right-aligned. */
+  private final int[] codes;
+  
+  /** The code length of each character. */
+  private final byte[] lengths;
+  
+  /**
+   * Constructor for the Huffman encoder class.
+   * 
+   * @param lengths - the code length of each character, indexed by character
+   * @throws IllegalArgumentException - if a code is longer than HuffmanOptions.MAX_CODE_LENGTH
+   */
+  public HuffmanEncoder(byte[] lengths){
+    
+    for (byte length : lengths){
+      if (length > HuffmanOptions.MAX_CODE_LENGTH)
+        throw new IllegalArgumentException("Code lengths over " + HuffmanOptions.MAX_CODE_LENGTH + " bits cannot be encoded.");
+    }
+    
+    /* The canonical codes, which fit in an int at this length. */
+    long[] canonical = CanonicalCode.assignCodes(lengths);
+    
+    this.lengths = lengths.clone();
+    this.codes = new int[lengths.length];
+    
+    for (int c = 0; c < lengths.length; c++)
+      codes[c] = (int) canonical[c];
+  }
+  
+  /**
+   * Gets the code length of each character.
+   * 
+   * @return  the code length of each character, indexed by character
+   */
+  public byte[] getCodeLengths(){
+    return lengths.clone();
+  }
+  
+  /**
+   * Encodes the given characters.
+   * Precondition - every character has a code.
+   * 
+   * @param data - the characters to encode
+   * @param offset - the index of the first character to encode
+   * @param length - the number of characters to encode
+   * @param out - the writer of the code bits
+   * @throws IOException - if the code bits cannot be written
+   */
+  public void encode(char[] data, int offset, int length, BitWriter out) throws IOException {
+    
+    for (int i = offset, end = offset + length; i < end; i++)
+      out.writeBits(codes[data[i]], lengths[data[i]]);
+  }
+  
+  /**
+   * Encodes the code points of the given characters, each as the symbol of its index
+   * in the given map, joining each surrogate pair into one code point as a
+   * CodePointCounter does.
+   * Precondition - every code point has an index, and every index has a code.
+   * 
+   * @param data - the characters to encode
+   * @param offset - the index of the first character to encode
+   * @param length - the number of characters to encode
+   * @param indexes - the symbol of each code point
+   * @param out - the writer of the code bits
+   * @throws IOException - if the code bits cannot be written
+   */
+  public void encode(char[] data, int offset, int length, CodePointMap indexes, BitWriter out) throws IOException {
+    
+    for (int i = offset, end = offset + length; i < end; i++){
+      
+      int c = data[i];
+      
+      if (Character.isHighSurrogate((char) c) && i + 1 < end && Character.isLowSurrogate(data[i + 1]))
+        c = Character.toCodePoint((char) c, data[++i]);
+      
+      int symbol = indexes.get(c);
+      out.writeBits(codes[symbol], lengths[symbol]);
+    }
+  }
+  
+  /**
+   * Encodes the remaining bytes of the given buffer as symbols from 0 to 255.
+   * The buffer's position is moved to its limit. A buffer without a backing array,
+   * such as a memory-mapped buffer, is read eight bytes at a time.
+   * Precondition - every byte has a code.
+   * 
+   * @param data - the bytes to encode
+   * @param out - the writer of the code bits
+   * @throws IOException - if the code bits cannot be written
+   */
+  public void encode(ByteBuffer data, BitWriter out) throws IOException {
+    
+    /* Encodes the backing array directly when there is one. */
+    if (data.hasArray()){
+      
+      byte[] bytes = data.array();
+      
+      for (int i = data.arrayOffset() + data.position(), end = data.arrayOffset() + data.limit(); i < end; i++)
+        out.writeBits(codes[bytes[i] & 0xFF], lengths[bytes[i] & 0xFF]);
+      
+      data.position(data.limit());
+      return;
+    }
+    
+    /* Reads the bytes in order, first byte highest, eight at a time from one long. */
+    ByteBuffer words = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+    
+    while (words.remaining() >= 8){
+      
+      long word = words.getLong();
+      
+      for (int shift = 56; shift >= 0; shift -= 8){
+        int b = (int) (word >>> shift) & 0xFF;
+        out.writeBits(codes[b], lengths[b]);
+      }
+    }
+    
+    while (words.hasRemaining()){
+      int b = words.get() & 0xFF;
+      out.writeBits(codes[b], lengths[b]);
+    }
+    
+    data.position(data.limit());
+  }
+  
+  /**
+   * Encodes the given characters interleaved over several streams, the i-th character
+   * to stream i % out.length.
+   * Precondition - every character has a code.
+   * 
+   * @param data - the characters to encode
+   * @param offset - the index of the first character to encode
+   * @param length - the number of characters to encode
+   * @param out - the writers of the code bits of each stream
+   * @throws IOException - if the code bits cannot be written
+   */
+  public void encode(char[] data, int offset, int length, BitWriter[] out) throws IOException {
+    
+    for (int i = 0; i < length; i++){
+      char c = data[offset + i];
+      out[i % out.length].writeBits(codes[c], lengths[c]);
+    }
+  }
+  
+  /**
+   * Encodes the remaining bytes of the given buffer interleaved over several streams,
+   * the i-th byte to stream i % out.length. The buffer's position is moved to its limit.
+   * Precondition - every byte has a code.
+   * 
+   * @param data - the bytes to encode
+   * @param out - the writers of the code bits of each stream
+   * @throws IOException - if the code bits cannot be written
+   */
+  public void encode(ByteBuffer data, BitWriter[] out) throws IOException {
+    
+    for (int i = 0, n = data.remaining(); i < n; i++){
+      int b = data.get() & 0xFF;
+      out[i % out.length].writeBits(codes[b], lengths[b]);
+    }
+  }
+  
+  /**
+   * Gets the number of bits the characters of a frequency table encode to.
+   * 
+   * @param frequencies - the number of occurrences of each character, indexed by character
+   * @return  the total number of encoded bits
+   */
+  public long getEncodedBits(long[] frequencies){
+    
+    return LengthLimitedCode.getEncodedBits(frequencies, lengths);
+    
+  }
+  
+  /**
+   * Gets the number of bytes of memory of the encoding tables.
+   * Package protected by default.
+   * 
+   * @return  the size of the tables in bytes
+   */
+  long getTableBytes(){
+    return 4L * codes.length + lengths.length;
+  }
+  
+}
@@ -0,0 +1,582 @@
+package howard.huffman;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A class for the header of a Huffman compressed file.
+ * This class is included in the Huffman encoding project.
+ * The header makes a compressed file self-describing, so that it can be decoded
+ * without any other information. It is laid out as follows:
+ * 
+ *   magic        - the bytes 'H', 'U', 'F'
+ *   version      - one byte, currently 1
+ *   flags        - one byte, see the FLAG constants
+ *   symbol count - varint, the number of characters in the original file, or the
+ *                  number of bytes if FLAG_BYTES is set, or of code points if
+ *                  FLAG_CODE_POINTS is set
+ *   code table   - varint number of coded characters, then for each character in
+ *                  increasing order a varint gap from the previous character and
+ *                  a one byte canonical code length
+ *                  (omitted for stored files and files with FLAG_BLOCK_TABLES, and
+ *                  replaced by the ContextModel of the tables for FLAG_CONTEXTS;
+ *                  the characters are code points for FLAG_CODE_POINTS)
+ *   checksum     - four byte CRC32 of the original file, if FLAG_CHECKSUM is set
+ *                  and FLAG_BLOCKS is not
+ *   block index  - the BlockIndex of the blocks, if FLAG_BLOCKS is set
+ * 
+ * The packed code bits follow the header, most significant bit first, with the last
+ * byte padded by zeros. If FLAG_STORED is set, the original bytes follow instead,
+ * which keeps files that would not shrink from growing by more than a few bytes.
+ * If FLAG_BLOCKS is set, independently encoded blocks follow instead, as described
+ * by the block index; with FLAG_BLOCK_TABLES each block starts with its own code table.
+ * If FLAG_CONTEXTS is set, each byte is coded with the table of the byte before it.
+ * If FLAG_STREAMS is set, the code bits of each block are split into interleaved streams.
+ * If FLAG_CODE_POINTS is set, the code table is held as the code points that occur and
+ * the code length of each, rather than by a length for every character of the alphabet.
+ * Varints are unsigned, seven bits per byte, low bits first.
+ * 
+ * @author Shaun Howard
+ */
+public class HuffmanHeader {
+  
+  /** The magic bytes at the start of every compressed file. */
+  private static final byte[] MAGIC = { 'H', 'U', 'F' };
+  
+  /** The version of the format written by this class. */
+  public static final int VERSION = 1;
+  
+  /** Flag set when a CRC32 of the original file follows the code table. */
+  public static final int FLAG_CHECKSUM = 0x01;
+  
+  /** Flag set when the original bytes are stored without encoding. */
+  public static final int FLAG_STORED = 0x02;
+  
+  /** Flag set when the file is encoded in independent blocks listed by a block index. */
+  public static final int FLAG_BLOCKS = 0x04;
+  
+  /** Flag set when each block has its own code table instead of the header's. */
+  public static final int FLAG_BLOCK_TABLES = 0x08;
+  
+  /** Flag set when the symbols are the raw bytes of the original file rather than UTF-8 characters. */
+  public static final int FLAG_BYTES = 0x10;
+  
+  /** Flag set with FLAG_BYTES when the bytes are coded by an order-1 ContextModel instead of one code table. */
+  public static final int FLAG_CONTEXTS = 0x20;
+  
+  /** Flag set with FLAG_BLOCKS when each block is coded as interleaved streams. */
+  public static final int FLAG_STREAMS = 0x40;
+  
+  /** Flag set when the symbols are the Unicode code points of the text rather than its UTF-16 characters. */
+  public static final int FLAG_CODE_POINTS = 0x80;
+  
+  /** The flags of the compressed file. */
+  private int flags;
+  
+  /** The number of characters in the original file. */
+  private long symbolCount;
+  
+  /** The canonical code length of each character, indexed by character. */
+  private byte[] codeLengths;
+  
+  /** The code points with a code in increasing order, if FLAG_CODE_POINTS is set. */
+  private int[] codePoints;
+  
+  /** The code tables of the contexts, if FLAG_CONTEXTS is set. */
+  private ContextModel contextModel;
+  
+  /** The CRC32 of the original file, if FLAG_CHECKSUM is set. */
+  private int checksum;
+  
+  /** The index of the blocks, if FLAG_BLOCKS is set. */
+  private BlockIndex blockIndex;
+  
+  /** The number of bytes of the header, once it has been read. */
+  private long size;
+  
+  /**
+   * The constructor for the Huffman header class.
+   * 
+   * @param flags - the flags of the compressed file
+   * @param symbolCount - the number of characters in the original file
+   * @param codeLengths - the canonical code length of each character, indexed by character
+   * @param checksum - the CRC32 of the original file, ignored without FLAG_CHECKSUM
+   */
+  public HuffmanHeader(int flags, long symbolCount, byte[] codeLengths, int checksum){
+    this.flags = flags;
+    this.symbolCount = symbolCount;
+    this.codeLengths = codeLengths;
+    this.checksum = checksum;
+  }
+  
+  /**
+   * The constructor for the Huffman header class of a file encoded in blocks.
+   * 
+   * @param flags - the flags of the compressed file, including FLAG_BLOCKS
+   * @param symbolCount - the number of characters in the original file
+   * @param codeLengths - the canonical code length of each character, indexed by character
+   * @param blockIndex - the index of the blocks
+   */
+  public HuffmanHeader(int flags, long symbolCount, byte[] codeLengths, BlockIndex blockIndex){
+    this(flags, symbolCount, codeLengths, 0);
+    this.blockIndex = blockIndex;
+  }
+  
+  /**
+   * The constructor for the Huffman header class of a file coded by context.
+   * 
+   * @param flags - the flags of the compressed file, including FLAG_BYTES and FLAG_CONTEXTS
+   * @param symbolCount - the number of bytes in the original file
+   * @param contextModel - the code tables of the contexts
+   * @param checksum - the CRC32 of the original file, ignored without FLAG_CHECKSUM
+   */
+  public HuffmanHeader(int flags, long symbolCount, ContextModel contextModel, int checksum){
+    this(flags, symbolCount, new byte[HuffmanLibrary.BYTE_ALPHABET_SIZE], checksum);
+    this.contextModel = contextModel;
+  }
+  
+  /**
+   * The constructor for the Huffman header class of text coded as code points.
+   * 
+   * @param flags - the flags of the compressed file, including FLAG_CODE_POINTS
+   * @param symbolCount - the number of code points in the original file
+   * @param codePoints - the code points with a code, in increasing order
+   * @param codeLengths - the canonical code length of each code point, in the order of codePoints
+   * @param checksum - the CRC32 of the original file, ignored without FLAG_CHECKSUM
+   */
+  public HuffmanHeader(int flags, long symbolCount, int[] codePoints, byte[] codeLengths, int checksum){
+    this(flags, symbolCount, codeLengths, checksum);
+    this.codePoints = codePoints;
+  }
+  
+  /**
+   * Gets the flags of the compressed file.
+   * 
+   * @return  the flags of the compressed file
+   */
+  public int getFlags(){
+    return flags;
+  }
+  
+  /**
+   * Determines whether the given flag is set.
+   * 
+   * @param flag - the flag to check
+   * @return  whether or not the flag is set
+   */
+  public boolean hasFlag(int flag){
+    return (flags & flag) != 0;
+  }
+  
+  /**
+   * Gets the number of characters in the original file.
+   * 
+   * @return  the number of characters in the original file
+   */
+  public long getSymbolCount(){
+    return symbolCount;
+  }
+  
+  /**
+   * Gets the canonical code lengths of the characters.
+   * 
+   * @return  the code length of each character, indexed by character
+   */
+  public byte[] getCodeLengths(){
+    return codeLengths;
+  }
+  
+  /**
+   * Gets the code points of the code table of text coded as code points. The code
+   * lengths of getCodeLengths() are then in the same order, rather than indexed by character.
+   * 
+   * @return  the code points with a code in increasing order, or null if FLAG_CODE_POINTS is not set
+   */
+  public int[] getCodePoints(){
+    return codePoints;
+  }
+  
+  /**
+   * Gets the CRC32 of the original file.
+   * 
+   * @return  the CRC32 of the original file, if FLAG_CHECKSUM is set
+   */
+  public int getChecksum(){
+    return checksum;
+  }
+  
+  /**
+   * Gets the index of the blocks of the compressed file.
+   * 
+   * @return  the block index, or null if FLAG_BLOCKS is not set
+   */
+  public BlockIndex getBlockIndex(){
+    return blockIndex;
+  }
+  
+  /**
+   * Gets the code tables of the contexts of the compressed file.
+   * 
+   * @return  the context model, or null if FLAG_CONTEXTS is not set
+   */
+  public ContextModel getContextModel(){
+    return contextModel;
+  }
+  
+  /**
+   * Gets the number of bytes of the header, which is where the encoded data starts.
+   * 
+   * @return  the size of the header read by read(), or 0 for a header not read
+   */
+  public long getSize(){
+    return size;
+  }
+  
+  /**
+   * Writes this header to the given stream.
+   * 
+   * @param out - the stream to write the header to
+   * @throws IOException - if the stream cannot be written to
+   */
+  public void write(OutputStream out) throws IOException {
+    
+    out.write(MAGIC);
+    out.write(VERSION);
+    out.write(flags);
+    writeVarint(out, symbolCount);
+    
+    /* Writes the code lengths of the characters that have a code. */
+    if (hasFlag(FLAG_CONTEXTS) && !hasFlag(FLAG_STORED))
+      contextModel.write(out);
+    else if (hasFlag(FLAG_CODE_POINTS) && !hasFlag(FLAG_STORED))
+      writeCodeTable(out, codePoints, codeLengths);
+    else if (!hasFlag(FLAG_STORED) && !hasFlag(FLAG_BLOCK_TABLES))
+      writeCodeTable(out, codeLengths);
+    
+    if (hasFlag(FLAG_BLOCKS))
+      blockIndex.write(out, hasFlag(FLAG_CHECKSUM));
+    else if (hasFlag(FLAG_CHECKSUM))
+      writeInt(out, checksum);
+  }
+  
+  /**
+   * Writes a code table: the number of characters with a code, then for each of them
+   * in increasing order a varint gap from the previous character and a one byte code length.
+   * Package protected by default.
+   * 
+   * @param out - the stream to write the code table to
+   * @param codeLengths - the canonical code length of each character, indexed by character
+   * @throws IOException - if the stream cannot be written to
+   */
+  static void writeCodeTable(OutputStream out, byte[] codeLengths) throws IOException {
+    
+    /* The number of characters with a code. */
+    int coded = 0;
+    for (byte length : codeLengths){
+      if (length != 0)
+        coded++;
+    }
+    
+    writeVarint(out, coded);
+    
+    /* The character after the last one written. */
+    int next = 0;
+    
+    for (int c = 0; c < codeLengths.length; c++){
+      if (codeLengths[c] != 0){
+        writeVarint(out, c - next);
+        out.write(codeLengths[c]);
+        next = c + 1;
+      }
+    }
+  }
+  
+  /**
+   * Writes the code table of a sparse alphabet, in the same layout as writeCodeTable().
+   * Package protected by default.
+   * 
+   * @param out - the stream to write the code table to
+   * @param symbols - the symbols with a code, in increasing order
+   * @param codeLengths - the canonical code length of each symbol, in the order of symbols
+   * @throws IOException - if the stream cannot be written to
+   */
+  static void writeCodeTable(OutputStream out, int[] symbols, byte[] codeLengths) throws IOException {
+    
+    writeVarint(out, symbols.length);
+    
+    /* The symbol after the last one written. */
+    int next = 0;
+    
+    for (int i = 0; i < symbols.length; i++){
+      writeVarint(out, symbols[i] - next);
+      out.write(codeLengths[i]);
+      next = symbols[i] + 1;
+    }
+  }
+  
+  /**
+   * Reads a header from the given stream.
+   * 
+   * @param in - the stream to read the header from
+   * @param alphabetSize - the number of distinct characters of the alphabet, which
+   *                       is BYTE_ALPHABET_SIZE instead if FLAG_BYTES is set
+   * @return  the header read from the stream
+   * @throws IOException - if the stream does not start with a valid header
+   */
+  public static HuffmanHeader read(InputStream in, int alphabetSize) throws IOException {
+    
+    /* Counts the bytes of the header as they are read. */
+    CountingInputStream counted = new CountingInputStream(in);
+    in = counted;
+    
+    /* Checks the magic bytes. */
+    for (byte b : MAGIC){
+      if (readByte(in) != b)
+        throw new IOException("Not a Huffman compressed file.");
+    }
+    
+    /* Checks the version. */
+    int version = readByte(in);
+    if (version != VERSION)
+      throw new IOException("Unsupported format version " + version + ".");
+    
+    int flags = readByte(in);
+    long symbolCount = readVarint(in);
+    
+    /* The alphabet of the symbols. */
+    if ((flags & FLAG_BYTES) != 0)
+      alphabetSize = HuffmanLibrary.BYTE_ALPHABET_SIZE;
+    
+    /* The code length of each character. */
+    byte[] codeLengths = new byte[alphabetSize];
+    ContextModel contextModel = null;
+    
+    if ((flags & FLAG_CONTEXTS) != 0 && (flags & (FLAG_BYTES | FLAG_BLOCKS)) != FLAG_BYTES)
+      throw new IOException("Compressed file is corrupt.");
+    
+    if ((flags & FLAG_STREAMS) != 0 && (flags & FLAG_BLOCKS) == 0)
+      throw new IOException("Compressed file is corrupt.");
+    
+    if ((flags & FLAG_CODE_POINTS) != 0 && (flags & (FLAG_BYTES | FLAG_BLOCKS)) != 0)
+      throw new IOException("Compressed file is corrupt.");
+    
+    /* The code points of the code table, if the symbols are code points. */
+    int[] codePoints = null;
+    
+    if ((flags & (FLAG_CONTEXTS | FLAG_STORED)) == FLAG_CONTEXTS) {
+      contextModel = ContextModel.read(in);
+    } else if ((flags & (FLAG_CODE_POINTS | FLAG_STORED)) == FLAG_CODE_POINTS) {
+      
+      /* The code table of the code points, read as written by writeCodeTable(). */
+      long coded = readVarint(in);
+      if (coded > Character.MAX_CODE_POINT + 1)
+        throw new IOException("Code table is corrupt.");
+      
+      codePoints = new int[(int) coded];
+      codeLengths = new byte[(int) coded];
+      
+      for (int i = 0, next = 0; i < coded; i++){
+        
+        long c = next + readVarint(in);
+        if (c > Character.MAX_CODE_POINT)
+          throw new IOException("Code table is corrupt.");
+        
+        codePoints[i] = (int) c;
+        codeLengths[i] = (byte) readByte(in);
+        next = (int) c + 1;
+      }
+      
+      if (!CanonicalCode.isValid(codeLengths))
+        throw new IOException("Code table is corrupt.");
+      
+    } else if ((flags & (FLAG_STORED | FLAG_BLOCK_TABLES)) == 0) {
+      codeLengths = readCodeTable(in, alphabetSize);
+    }
+    
+    /* The header, with the checksum of the original file or the block index. */
+    HuffmanHeader header;
+    
+    if ((flags & FLAG_BLOCKS) != 0)
+      header = new HuffmanHeader(flags, symbolCount, codeLengths,
+          BlockIndex.read(in, (flags & FLAG_CHECKSUM) != 0));
+    else
+      header = new HuffmanHeader(flags, symbolCount, codeLengths,
+          (flags & FLAG_CHECKSUM) != 0 ? readInt(in) : 0);
+    
+    header.contextModel = contextModel;
+    header.codePoints = codePoints;
+    header.size = counted.count;
+    return header;
+    
+  }
+  
+  /**
+   * Reads a code table written by writeCodeTable().
+   * Package protected by default.
+   * 
+   * @param in - the stream to read the code table from
+   * @param alphabetSize - the number of distinct characters of the alphabet
+   * @return  the code length of each character, indexed by character
+   * @throws IOException - if the stream ends or the code table is corrupt
+   */
+  static byte[] readCodeTable(InputStream in, int alphabetSize) throws IOException {
+    
+    /* The code length of each character. */
+    byte[] codeLengths = new byte[alphabetSize];
+    
+    /* The number of characters with a code. */
+    long coded = readVarint(in);
+    
+    /* The character after the last one read. */
+    long next = 0;
+    
+    for (long i = 0; i < coded; i++){
+      
+      long c = next + readVarint(in);
+      if (c >= alphabetSize)
+        throw new IOException("Code table is corrupt.");
+      
+      codeLengths[(int) c] = (byte) readByte(in);
+      next = c + 1;
+    }
+    
+    if (!CanonicalCode.isValid(codeLengths))
+      throw new IOException("Code table is corrupt.");
+    
+    return codeLengths;
+  }
+  
+  /**
+   * Writes a four byte int to the given stream, high byte first.
+   * Package protected by default.
+   * 
+   * @param out - the stream to write to
+   * @param value - the value to write
+   * @throws IOException - if the stream cannot be written to
+   */
+  static void writeInt(OutputStream out, int value) throws IOException {
+    out.write(value >>> 24);
+    out.write(value >>> 16);
+    out.write(value >>> 8);
+    out.write(value);
+  }
+  
+  /**
+   * Reads a four byte int from the given stream, high byte first.
+   * Package protected by default.
+   * 
+   * @param in - the stream to read from
+   * @return  the value read
+   * @throws IOException - if the stream ends
+   */
+  static int readInt(InputStream in) throws IOException {
+    
+    int value = 0;
+    for (int i = 0; i < 4; i++)
+      value = (value << 8) | readByte(in);
+    
+    return value;
+  }
+  
+  /**
+   * Writes an unsigned varint to the given stream.
+   * Package protected by default.
+   * 
+   * @param out - the stream to write to
+   * @param value - the non-negative value to write
+   * @throws IOException - if the stream cannot be written to
+   */
+  static void writeVarint(OutputStream out, long value) throws IOException {
+    
+    while ((value & ~0x7FL) != 0){
+      out.write((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    
+    out.write((int) value);
+  }
+  
+  /**
+   * Reads an unsigned varint from the given stream.
+   * Package protected by default.
+   * 
+   * @param in - the stream to read from
+   * @return  the value read
+   * @throws IOException - if the stream ends or the varint is too long
+   */
+  static long readVarint(InputStream in) throws IOException {
+    
+    long value = 0;
+    
+    for (int shift = 0; shift < 64; shift += 7){
+      
+      int b = readByte(in);
+      value |= (long) (b & 0x7F) << shift;
+      
+      if ((b & 0x80) == 0)
+        return value;
+    }
+    
+    throw new IOException("Varint is too long.");
+  }
+  
+  /**
+   * Reads a single byte from the given stream.
+   * 
+   * @param in - the stream to read from
+   * @return  the byte read, from 0 to 255
+   * @throws IOException - if the stream ends
+   */
+  private static int readByte(InputStream in) throws IOException {
+    
+    int b = in.read();
+    
+    if (b == -1)
+      throw new EOFException("Compressed file is truncated.");
+    
+    return b;
+  }
+  
+  /**
+   * A stream that counts the bytes read through it, to find the size of a header.
+   */
+  private static class CountingInputStream extends FilterInputStream {
+    
+    /** The number of bytes read. */
+    private long count;
+    
+    /**
+     * Constructor for the counting stream.
+     * 
+     * @param in - the stream to count the bytes of
+     */
+    CountingInputStream(InputStream in){
+      super(in);
+    }
+    
+    @Override
+    public int read() throws IOException {
+      
+      int b = in.read();
+      if (b != -1)
+        count++;
+      
+      return b;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      
+      int read = in.read(b, off, len);
+      if (read > 0)
+        count += read;
+      
+      return read;
+    }
+    
+  }
+  
+}
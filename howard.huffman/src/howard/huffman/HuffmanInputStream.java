@@ -0,0 +1,251 @@
+package howard.huffman;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * An input stream that decompresses the blocks of a HuffmanOutputStream.
+ * This class is included in the Huffman encoding project.
+ * One block is read and decoded at a time, with the code table it carries, so memory
+ * stays bounded by the block size written at the start of the stream. Nothing past the
+ * block being decoded is read from the underlying stream, so a block written by a sync
+ * flush can be read as soon as it arrives.
+ * 
+ * @author Shaun Howard
+ */
+public class HuffmanInputStream extends InputStream {
+  
+  /** The stream the compressed blocks are read from. */
+  private final InputStream in;
+  
+  /** The largest number of bytes of a block, from the start of the stream. */
+  private int blockSize;
+  
+  /** Whether each block is followed by its CRC-32. */
+  private boolean checksum;
+  
+  /** The body of the block being read. */
+  private byte[] body = new byte[0];
+  
+  /** The bytes of the block being read. */
+  private byte[] block = new byte[0];
+  
+  /** The position of the next byte in the block. */
+  private int position;
+  
+  /** The number of bytes of the block. */
+  private int limit;
+  
+  /** The checksum of the block being read. */
+  private final CRC32 crc = new CRC32();
+  
+  /** Whether the start of the stream has been read. */
+  private boolean started;
+  
+  /** Whether the end of the stream has been read. */
+  private boolean ended;
+  
+  /**
+   * Constructor for a Huffman input stream. Nothing is read until the first byte is.
+   * 
+   * @param in - the stream to read the compressed blocks from
+   */
+  public HuffmanInputStream(InputStream in){
+    this.in = in;
+  }
+  
+  /**
+   * Reads one byte.
+   * 
+   * @return  the byte read, from 0 to 255, or -1 at the end of the stream
+   * @throws IOException - if the stream is truncated or corrupt
+   */
+  @Override
+  public int read() throws IOException {
+    
+    if (position == limit && !readBlock())
+      return -1;
+    
+    return block[position++] & 0xFF;
+  }
+  
+  /**
+   * Reads bytes into part of an array, from the block being read, reading the next
+   * block only if none are left.
+   * 
+   * @param data - the array to read bytes into
+   * @param offset - the index of the first byte to read into
+   * @param length - the largest number of bytes to read
+   * @return  the number of bytes read, or -1 at the end of the stream
+   * @throws IOException - if the stream is truncated or corrupt
+   */
+  @Override
+  public int read(byte[] data, int offset, int length) throws IOException {
+    
+    if (length == 0)
+      return 0;
+    
+    if (position == limit && !readBlock())
+      return -1;
+    
+    int n = Math.min(length, limit - position);
+    System.arraycopy(block, position, data, offset, n);
+    position += n;
+    
+    return n;
+  }
+  
+  /**
+   * Reads bytes into the remaining space of a buffer, from the block being read, reading
+   * the next block only if none are left.
+   * Package protected by default.
+   * 
+   * @param dst - the buffer to read bytes into
+   * @return  the number of bytes read, or -1 at the end of the stream
+   * @throws IOException - if the stream is truncated or corrupt
+   */
+  int read(ByteBuffer dst) throws IOException {
+    
+    if (!dst.hasRemaining())
+      return 0;
+    
+    if (position == limit && !readBlock())
+      return -1;
+    
+    int n = Math.min(dst.remaining(), limit - position);
+    dst.put(block, position, n);
+    position += n;
+    
+    return n;
+  }
+  
+  /**
+   * Gets the number of bytes left in the block being read, which can be read without blocking.
+   * 
+   * @return  the number of bytes left in the block
+   */
+  @Override
+  public int available(){
+    return limit - position;
+  }
+  
+  /**
+   * Closes the underlying stream.
+   * 
+   * @throws IOException - if the stream cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+  
+  /**
+   * Reads and decodes the next block that has bytes.
+   * 
+   * @return  whether a block was read, or false at the end of the stream
+   * @throws IOException - if the stream is truncated or corrupt
+   */
+  private boolean readBlock() throws IOException {
+    
+    if (!started)
+      readStart();
+    
+    while (!ended){
+      
+      long header = HuffmanHeader.readVarint(in);
+      long length = header >>> 1;
+      
+      if (length > blockSize)
+        throw new IOException("Block is larger than the block size of the stream.");
+      
+      if (header == 1){
+        ended = true;
+        break;
+      }
+      
+      if ((header & 1) != 0){
+        
+        /* Reads a stored block as is. */
+        if (block.length < length)
+          block = new byte[blockSize];
+        
+        readFully(block, (int) length);
+        limit = (int) length;
+        
+      } else {
+        
+        HuffmanCodec codec = HuffmanCodec.readCodeTable(in, HuffmanLibrary.BYTE_ALPHABET_SIZE);
+        
+        if (body.length < length)
+          body = new byte[blockSize];
+        
+        readFully(body, (int) length);
+        block = codec.decode(body, 0, (int) length);
+        limit = block.length;
+        
+        if (limit > blockSize)
+          throw new IOException("Block is larger than the block size of the stream.");
+      }
+      
+      position = 0;
+      
+      if (checksum){
+        crc.reset();
+        crc.update(block, 0, limit);
+        if (HuffmanHeader.readInt(in) != (int) crc.getValue())
+          throw new IOException("Checksum mismatch: block is corrupt.");
+      }
+      
+      if (limit > 0)
+        return true;
+    }
+    
+    return false;
+  }
+  
+  /**
+   * Reads the start of the stream before the first block.
+   * 
+   * @throws IOException - if the stream is truncated or not a Huffman stream
+   */
+  private void readStart() throws IOException {
+    
+    started = true;
+    
+    byte[] start = new byte[HuffmanOutputStream.MAGIC.length + 2];
+    readFully(start, start.length);
+    
+    for (int i = 0; i < HuffmanOutputStream.MAGIC.length; i++){
+      if (start[i] != HuffmanOutputStream.MAGIC[i])
+        throw new IOException("Not a Huffman stream.");
+    }
+    
+    if (start[3] != HuffmanOutputStream.VERSION)
+      throw new IOException("Unsupported stream version " + start[3] + ".");
+    
+    checksum = (start[4] & HuffmanHeader.FLAG_CHECKSUM) != 0;
+    
+    long size = HuffmanHeader.readVarint(in);
+    if (size < 1 || size > HuffmanOptions.MAX_BLOCK_SIZE)
+      throw new IOException("Stream is corrupt.");
+    
+    blockSize = (int) size;
+  }
+  
+  /**
+   * Reads the given number of bytes into the start of an array.
+   * 
+   * @param data - the array to read into
+   * @param length - the number of bytes to read
+   * @throws IOException - if the stream ends first
+   */
+  private void readFully(byte[] data, int length) throws IOException {
+    
+    if (in.readNBytes(data, 0, length) < length)
+      throw new EOFException("Compressed stream is truncated.");
+  }
+  
+}
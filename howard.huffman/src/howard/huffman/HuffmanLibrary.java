@@ -1,13 +1,33 @@
 package howard.huffman;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.String;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
-import java.util.Hashtable;
+import java.util.List;
 import java.util.Scanner;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
 
 /** 
  * A class for the Huffman encoding library.
@@ -21,27 +41,39 @@ import java.util.Scanner;
  */
 public class HuffmanLibrary {
   
+  /** The number of distinct characters a text file may contain. */
+  public static final int ALPHABET_SIZE = Character.MAX_VALUE + 1;
+  
+  /** The number of distinct symbols of a file encoded as raw bytes. */
+  public static final int BYTE_ALPHABET_SIZE = 256;
+  
+  /** The size of the buffers used to stream files, in characters or bytes. */
+  public static final int BUFFER_SIZE = 1 << 16;
+  
   /**
    * Reads the input file as a String.
+   * The file is memory-mapped and decoded straight from the mapped bytes by a MappedReader,
+   * so its bytes are not copied into an array first.
    * 
    * @param fileName - the name of the file to read 
    * @return  the contents of the file as a String
    */
   public static String readFileAsString(String fileName){
     
-    /* A new file from the file name. */
-    File f = new File(fileName);
-    
-    /* Read file as bytes and return as String. */
-    try {
+    /* Maps the file and decodes its characters straight from the mapped bytes. */
+    try (MappedReader reader = new MappedReader(fileName)) {
       
-      /* Byte array of file. */
-      byte[] bytes = Files.readAllBytes(f.toPath());
+      /* The characters of the file. */
+      StringBuilder contents = new StringBuilder((int) Math.min(reader.size(), Integer.MAX_VALUE - 8));
       
-      /* String returned from byte array of file. */
-      return new String(bytes,"UTF-8");
+      /* String returned from the characters of the file. */
+      char[] buffer = new char[BUFFER_SIZE];
+      for (int read = reader.read(buffer); read != -1; read = reader.read(buffer))
+        contents.append(buffer, 0, read);
       
-    } catch (FileNotFoundException e) {
+      return contents.toString();
+      
+    } catch (FileNotFoundException | NoSuchFileException e) {
       System.out.println("File does not exist.");
       e.printStackTrace();
     } catch (IOException e) {
@@ -72,7 +104,8 @@ public class HuffmanLibrary {
    * is sorted by ascending character frequency. Since the HTreeNode
    * class implements the Comparable interface, these nodes can be 
    * placed in an array and sorted through the Arrays class of the Collections
-   * framework in regards to their frequency.
+   * framework in regards to their frequency. Nodes of the same frequency are
+   * sorted by character.
    * 
    * @param list - the linked list to sort
    * @return  the linked list sorted by character frequencies
@@ -104,8 +137,11 @@ public class HuffmanLibrary {
       hNode = hNode.next();
     }
     
-    /* Sorts the nodes in ascending order based on their frequency. */
-    Arrays.sort(nodeArray);
+    /* 
+     * Sorts the nodes in ascending order based on their frequency, then their character,
+     * so that the tree depends only on the frequencies and not on the order of the text.
+     */
+    Arrays.sort(nodeArray, HTreeNode.FREQUENCY_THEN_CHARACTER);
     
     /* 
      * Checks for and eliminates any duplicates from the sorted node array by checking next node.
@@ -148,6 +184,21 @@ public class HuffmanLibrary {
     
   }
   
+  /**
+   * Creates a Huffman tree with no code longer than the given length from the given
+   * linked list of characters and their frequencies.
+   * Precondition - input linked list does not have to be sorted.
+   * 
+   * @param list - a linked list of characters and their frequencies
+   * @param maxCodeLength - the longest code length allowed
+   * @return  the length-limited Huffman encoding tree of the given linked list
+   */
+  public static HTree createHuffmanTree(HLinkedList list, int maxCodeLength){
+    
+    return new HTree(getSortedLinkedList(list), maxCodeLength);
+    
+  }
+  
   /**
    * Updates the codes of nodes in the Huffman tree through recursion.
    * Calls the setCodeValues(root) method, which recursively updates the
@@ -212,41 +263,704 @@ public class HuffmanLibrary {
   }
   
   /**
-   * Reads an input text file and returns a Huffman encoded binary file. 
+   * Counts the characters of a text file without reading the whole file into memory.
+   * The file is memory-mapped in chunks and decoded as UTF-8 through a fixed-size buffer,
+   * so memory use does not depend on the size of the file.
+   * 
+   * @param fileName - the name of the file to count characters of
+   * @return  the number of occurrences of each character, indexed by character
+   * @throws IOException - if the file cannot be opened or read
+   */
+  public static long[] countCharacters(String fileName) throws IOException {
+    
+    return countCharacters(fileName, new CRC32());
+    
+  }
+  
+  /**
+   * Counts the characters of a text file without reading the whole file into memory,
+   * while updating a checksum with the bytes of the file.
+   * 
+   * @param fileName - the name of the file to count characters of
+   * @param checksum - the checksum to update with the bytes of the file
+   * @return  the number of occurrences of each character, indexed by character
+   * @throws IOException - if the file cannot be opened or read
+   */
+  public static long[] countCharacters(String fileName, Checksum checksum) throws IOException {
+    
+    /* The counter of the characters of the file. */
+    FrequencyCounter counter = new FrequencyCounter(ALPHABET_SIZE);
+    
+    /* The buffer the file is decoded into. */
+    char[] buffer = new char[BUFFER_SIZE];
+    
+    /* Reads the file through the buffer and counts each character. */
+    try (Reader reader = new MappedReader(fileName, checksum)) {
+      
+      for (int read = reader.read(buffer); read != -1; read = reader.read(buffer))
+        counter.count(buffer, 0, read);
+    }
+    
+    return counter.getFrequencies();
+    
+  }
+  
+  /**
+   * Counts the Unicode code points of a text file, while updating a checksum with the
+   * bytes of the file. The file is decoded through a fixed-size buffer as by
+   * countCharacters(), and each surrogate pair is counted as one code point.
+   * 
+   * @param fileName - the name of the file to count code points of
+   * @param checksum - the checksum to update with the bytes of the file
+   * @return  the counter of the code points of the file
+   * @throws IOException - if the file cannot be opened or read
+   */
+  public static CodePointCounter countCodePoints(String fileName, Checksum checksum) throws IOException {
+    
+    CodePointCounter counter = new CodePointCounter();
+    char[] buffer = new char[BUFFER_SIZE];
+    
+    try (Reader reader = new MappedReader(fileName, checksum)) {
+      
+      for (int read = reader.read(buffer); read != -1; read = reader.read(buffer))
+        counter.count(buffer, 0, read);
+    }
+    
+    return counter;
+    
+  }
+  
+  /**
+   * Counts the raw bytes of a file, while updating a checksum with them. The file is
+   * memory-mapped in chunks and counted straight from the mapped bytes, without
+   * decoding any characters, so any file can be counted, text or not.
+   * 
+   * @param fileName - the name of the file to count bytes of
+   * @param checksum - the checksum to update with the bytes of the file
+   * @return  the number of occurrences of each byte value, indexed by byte value
+   * @throws IOException - if the file cannot be opened or read
+   */
+  public static long[] countBytes(String fileName, Checksum checksum) throws IOException {
+    
+    /* The counter of the bytes of the file. */
+    FrequencyCounter counter = new FrequencyCounter(BYTE_ALPHABET_SIZE);
+    
+    try (FileChannel input = FileChannel.open(new File(fileName).toPath(), StandardOpenOption.READ)) {
+      
+      /* Maps the file a chunk at a time and counts each byte. */
+      for (long position = 0, size = input.size(); position < size; position += MappedReader.CHUNK_SIZE){
+        
+        ByteBuffer chunk = input.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MappedReader.CHUNK_SIZE, size - position));
+        checksum.update(chunk.duplicate());
+        counter.count(chunk);
+      }
+    }
+    
+    return counter.getFrequencies();
+    
+  }
+  
+  /**
+   * Counts each raw byte of a file together with the byte before it, for the order-1
+   * context mode, while updating a checksum with the bytes. The file is memory-mapped
+   * in chunks like countBytes(); the first byte is counted after a byte of 0.
+   * 
+   * @param fileName - the name of the file to count byte pairs of
+   * @param checksum - the checksum to update with the bytes of the file
+   * @return  the number of occurrences of each byte after each byte, indexed by previous byte * 256 + byte
+   * @throws IOException - if the file cannot be opened or read
+   */
+  public static long[] countPairs(String fileName, Checksum checksum) throws IOException {
+    
+    long[] pairs = new long[ContextModel.CONTEXT_COUNT * BYTE_ALPHABET_SIZE];
+    
+    /* The counts of one chunk, which cannot overflow an int. */
+    int[] counts = new int[pairs.length];
+    int previous = 0;
+    
+    try (FileChannel input = FileChannel.open(new File(fileName).toPath(), StandardOpenOption.READ)) {
+      
+      /* Maps the file a chunk at a time and counts each pair of bytes. */
+      for (long position = 0, size = input.size(); position < size; position += MappedReader.CHUNK_SIZE){
+        
+        ByteBuffer chunk = input.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MappedReader.CHUNK_SIZE, size - position));
+        checksum.update(chunk.duplicate());
+        previous = ContextModel.count(chunk, previous, counts);
+        
+        for (int i = 0; i < counts.length; i++){
+          pairs[i] += counts[i];
+          counts[i] = 0;
+        }
+      }
+    }
+    
+    return pairs;
+    
+  }
+  
+  /**
+   * Gets the canonical code length of each character from the character frequencies.
+   * A lone character is given a code length of 1, since a tree of one node has no branches.
+   * 
+   * @param frequencies - the number of occurrences of each character, indexed by character
+   * @return  the code length of each character, indexed by character
+   */
+  public static byte[] getCodeLengths(long[] frequencies){
+    
+    return getCodeLengths(frequencies, CanonicalCode.MAX_CODE_LENGTH);
+    
+  }
+  
+  /**
+   * Gets the canonical code length of each character from the character frequencies,
+   * with no code longer than the given length.
+   * 
+   * @param frequencies - the number of occurrences of each character, indexed by character
+   * @param maxCodeLength - the longest code length allowed
+   * @return  the code length of each character, indexed by character
+   */
+  public static byte[] getCodeLengths(long[] frequencies, int maxCodeLength){
+    
+    /* The code lengths of the Huffman tree, built in arrays without tree node objects. */
+    byte[] lengths = new HTreeBuilder(frequencies).getCodeLengths(frequencies.length);
+    
+    /* Finds length-limited code lengths instead if any code is too long. */
+    for (byte length : lengths){
+      if (length > maxCodeLength)
+        return LengthLimitedCode.getCodeLengths(frequencies, maxCodeLength);
+    }
+    
+    return lengths;
+    
+  }
+  
+  /**
+   * Gets the compression penalty of limiting the code length, as the fraction of extra
+   * encoded bits compared to the unrestricted Huffman code. This helps to choose a limit:
+   * a penalty of 0.001 means the limited encoding is 0.1% larger.
+   * 
+   * @param frequencies - the number of occurrences of each character, indexed by character
+   * @param maxCodeLength - the longest code length allowed
+   * @return  the fraction of extra bits encoded with the limit
+   */
+  public static double getLengthLimitPenalty(long[] frequencies, int maxCodeLength){
+    
+    return LengthLimitedCode.getCompressionPenalty(frequencies,
+        getCodeLengths(frequencies, maxCodeLength), getCodeLengths(frequencies));
+    
+  }
+  
+  /**
+   * Reads an input text file and returns a Huffman encoded binary file.
    * 
    * @param input_file - the name of the file to be compressed
    * @param output_file - the name of the compressed output file
    */
   public static void Huffman_coder(String input_file, String output_file){
     
-    /* The String to read the file to for encoding. */
-    String file;
+    Huffman_coder(input_file, output_file, new HuffmanOptions());
     
-    /* The root of the Huffman tree created by the input file. */
-    HTreeNode root = createHuffmanTree(createHList(file = readFileAsString(input_file))).getRoot();
+  }
+  
+  /**
+   * Reads an input text file and returns a Huffman encoded binary file with the given options.
+   * With the binary option, any file is encoded as raw bytes instead of UTF-8 characters.
+   * The file is read twice through a fixed-size buffer: once to count the characters,
+   * then again to write each character's code straight to the packed output file.
+   * The file is memory-mapped, and the packed bits are written to the output file's
+   * channel from a direct buffer, so neither side is copied through a heap array.
+   * The file contents are never held in memory as a whole.
+   * The output starts with a HuffmanHeader, so it can be restored by Huffman_decoder().
+   * A file that would not shrink is stored as is after the header.
+   * If the options have a block size, the file is encoded in blocks on several threads
+   * by BlockCoder instead. If the options have context tables, the raw bytes are coded
+   * by an order-1 ContextModel built from a count of byte pairs instead of one table.
+   * If the options have a CodeTableCache, raw bytes are coded in one pass with a cached
+   * table of files alike when the file's sample finds one. If the options code text as
+   * code points, the symbols are the code points that occur, found by a CodePointCounter.
+   * The sizes and stage timings of the encoding are given to the listener of the options.
+   * A file that cannot be compressed is reported to System.err; see encodeFile().
+   * 
+   * @param input_file - the name of the file to be compressed
+   * @param output_file - the name of the compressed output file
+   * @param options - the options of the encoder
+   */
+  public static void Huffman_coder(String input_file, String output_file, HuffmanOptions options){
+    
+    try {
+      
+      encodeFile(input_file, output_file, options);
+      
+    } catch (Exception e) {
+      
+      System.err.println("Problem writing to the binary file.");
+      System.err.println(e.getMessage());
+    }
+  }
+  
+  /**
+   * Compresses a file as Huffman_coder() does, throwing the problem if it cannot rather
+   * than reporting it, so a caller such as a HuffmanBatch can record why each file failed.
+   * Package protected by default.
+   * 
+   * @param input_file - the name of the file to be compressed
+   * @param output_file - the name of the compressed output file
+   * @param options - the options of the encoder
+   * @throws IOException - if a file cannot be read or written
+   */
+  static void encodeFile(String input_file, String output_file, HuffmanOptions options) throws IOException {
     
-    /* Hash table of the characters and their frequencies. */
-    Hashtable<String, String> codeTable = new Hashtable<String, String>();
+    /* Encodes the file in blocks on several threads. */
+    if (options.getBlockSize() > 0){
+      BlockCoder.encode(input_file, output_file, options);
+      return;
+    }
     
-    /* Call to the recursive method for attaining character-code combinations. */
-    HTree.getCharacterCode(root, codeTable, "0");
+    /* The sizes and stage timings of the encoding. */
+    HuffmanMetrics metrics = new HuffmanMetrics();
+    metrics.enter(HuffmanMetrics.Stage.COUNT);
     
-    /* StringBuilder for the encoded String file. */
-    StringBuilder builder = new StringBuilder();
+    /* The checksum of the input file. */
+    CRC32 crc = new CRC32();
     
-    /* Traverse through contents of file, writing the encoding to output String. */
-    for(int i = 0; i < file.length(); i++)
-      builder.append(codeTable.get(String.valueOf(file.charAt(i))));
+    /* The cache of code tables, which only holds tables of raw bytes coded as a whole. */
+    CodeTableCache cache = options.isBinary() && options.getContextTables() == 0 ? options.getCodeTableCache() : null;
+    long[] sketch = null;
     
-    /* Create a binary file from the output String of encoded characters. */
-    try {
+    /* Codes the file in one pass with the cached table of files alike, if its sample finds one. */
+    if (cache != null) {
       
-      /* Creates binary file in place of output_file. */
-      BinaryFileWriter.createBinaryFile(builder.toString(), output_file);
+      sketch = CodeTableCache.sample(input_file);
+      byte[] cached = cache.get(sketch, options.getMaxCodeLength());
+      
+      if (cached != null) {
+        encodeCached(input_file, output_file, options, metrics, cached);
+        return;
+      }
+    }
+    
+    /* Whether the raw bytes are coded by context, and whether they are coded as raw bytes at all. */
+    boolean contexts = options.getContextTables() > 0;
+    boolean binary = options.isBinary() || contexts;
+    
+    /* Whether the text is coded as code points, and the code points that occur in it. */
+    boolean codePoints = options.isCodePoints() && !binary;
+    CodePointCounter codePointCounter = codePoints ? countCodePoints(input_file, crc) : null;
+    int[] symbols = codePoints ? codePointCounter.getCodePoints() : null;
+    
+    /* The counts of the byte pairs in the input file, in context mode. */
+    long[] pairs = contexts ? countPairs(input_file, crc) : null;
+    
+    /* The frequencies of the characters in the input file. */
+    long[] frequencies = contexts ? ContextModel.getFrequencies(pairs) : codePoints ? codePointCounter.getFrequencies()
+        : binary ? countBytes(input_file, crc) : countCharacters(input_file, crc);
+    
+    /* The canonical code length and code of each character, or the tables of the contexts. */
+    metrics.enter(HuffmanMetrics.Stage.BUILD);
+    ContextModel model = contexts ? ContextModel.build(pairs, options.getContextTables(), options.getMaxCodeLength()) : null;
+    byte[] lengths = contexts ? new byte[BYTE_ALPHABET_SIZE] : getCodeLengths(frequencies, options.getMaxCodeLength());
+    
+    metrics.enter(HuffmanMetrics.Stage.CODES);
+    HuffmanEncoder encoder = new HuffmanEncoder(lengths);
+    
+    /* The symbol of each code point, its index in the code table. */
+    CodePointMap indexes = new CodePointMap();
+    for (int i = 0; codePoints && i < symbols.length; i++)
+      indexes.put(symbols[i], i);
+    
+    metrics.setTableBytes(contexts ? model.getTableBytes()
+        : encoder.getTableBytes() + (codePoints ? indexes.getTableBytes() : 0));
+    
+    /* The number of characters and the number of encoded bits. */
+    long symbolCount = 0;
+    long bitCount = 0;
+    for (int c = 0; c < frequencies.length; c++){
+      symbolCount += frequencies[c];
+      bitCount += frequencies[c] * lengths[c];
+    }
+    
+    if (contexts)
+      bitCount = model.getEncodedBits(pairs);
+    
+    /* The flags of the compressed file. */
+    int flags = (options.isChecksum() ? HuffmanHeader.FLAG_CHECKSUM : 0)
+        | (binary ? HuffmanHeader.FLAG_BYTES : 0) | (codePoints ? HuffmanHeader.FLAG_CODE_POINTS : 0);
+    
+    /* The header of the encoded file. */
+    HuffmanHeader header = contexts
+        ? new HuffmanHeader(flags | HuffmanHeader.FLAG_CONTEXTS, symbolCount, model, (int) crc.getValue())
+        : codePoints ? new HuffmanHeader(flags, symbolCount, symbols, lengths, (int) crc.getValue())
+        : new HuffmanHeader(flags, symbolCount, lengths, (int) crc.getValue());
+    ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+    header.write(headerBytes);
+    
+    /* The header of the file if it were stored as is. */
+    HuffmanHeader storedHeader = new HuffmanHeader(flags | HuffmanHeader.FLAG_STORED, symbolCount, lengths, (int) crc.getValue());
+    ByteArrayOutputStream storedHeaderBytes = new ByteArrayOutputStream();
+    storedHeader.write(storedHeaderBytes);
+    
+    /* Stores the file as is if encoding it would not save space. */
+    if (headerBytes.size() + (bitCount + 7) / 8 >= storedHeaderBytes.size() + new File(input_file).length()) {
+      
+      metrics.enter(HuffmanMetrics.Stage.WRITE);
+      
+      try (FileChannel input = FileChannel.open(new File(input_file).toPath(), StandardOpenOption.READ);
+          FileChannel output = FileChannel.open(new File(output_file).toPath(),
+              StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        
+        output.write(ByteBuffer.wrap(storedHeaderBytes.toByteArray()));
+        
+        /* Copies the file from channel to channel, without a copy through the heap. */
+        for (long position = 0, size = input.size(); position < size; )
+          position += input.transferTo(position, size - position, output);
+      }
+      
+      report(metrics, options, input_file, output_file, symbolCount, frequencies);
+      return;
+    }
+    
+    metrics.enter(HuffmanMetrics.Stage.ENCODE);
+    
+    /* Traverse through contents of file, writing the encoding to the output file. */
+    try (WritableByteChannel channel = new HuffmanMetrics.TimedChannel(FileChannel.open(new File(output_file).toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), metrics)) {
+      
+      channel.write(ByteBuffer.wrap(headerBytes.toByteArray()));
+      
+      /* The writer of the packed code bits after the header. */
+      BitWriter output = new BitWriter(channel, ByteBuffer.allocateDirect(BUFFER_SIZE));
+      
+      if (contexts) {
+        
+        /* Encodes the raw bytes from the mapped chunks, each with the table of the byte before it. */
+        try (FileChannel input = FileChannel.open(new File(input_file).toPath(), StandardOpenOption.READ)) {
+          int previous = 0;
+          for (long position = 0, size = input.size(); position < size; position += MappedReader.CHUNK_SIZE)
+            previous = model.encode(input.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(MappedReader.CHUNK_SIZE, size - position)), previous, output);
+        }
+        
+      } else if (binary) {
+        
+        /* Encodes the raw bytes straight from the mapped chunks of the file. */
+        try (FileChannel input = FileChannel.open(new File(input_file).toPath(), StandardOpenOption.READ)) {
+          for (long position = 0, size = input.size(); position < size; position += MappedReader.CHUNK_SIZE)
+            encoder.encode(input.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(MappedReader.CHUNK_SIZE, size - position)), output);
+        }
+        
+      } else if (codePoints) {
+        
+        /* The buffer the input file is decoded into. */
+        char[] buffer = new char[BUFFER_SIZE];
+        
+        try (Reader reader = new MappedReader(input_file)) {
+          for (int read = reader.read(buffer); read != -1; read = reader.read(buffer))
+            encoder.encode(buffer, 0, read, indexes, output);
+        }
+        
+      } else {
+        
+        /* The buffer the input file is decoded into. */
+        char[] buffer = new char[BUFFER_SIZE];
+        
+        try (Reader reader = new MappedReader(input_file)) {
+          for (int read = reader.read(buffer); read != -1; read = reader.read(buffer))
+            encoder.encode(buffer, 0, read, output);
+        }
+      }
+      
+      output.finish();
+    }
+    
+    /* Caches a table of the file for the files alike after it. */
+    if (cache != null)
+      cache.put(sketch, options.getMaxCodeLength(), frequencies);
+    
+    report(metrics, options, input_file, output_file, symbolCount, frequencies);
+  }
+  
+  /**
+   * Encodes the raw bytes of a file with a cached code table in a single pass, without
+   * counting them. The checksum is worked out as the file is encoded, and the header is
+   * written in front of the code bits last; its size does not depend on the checksum.
+   * 
+   * @param input_file - the name of the file to be compressed
+   * @param output_file - the name of the compressed output file
+   * @param options - the options of the encoder
+   * @param metrics - the metrics of the encoding, in the COUNT stage
+   * @param lengths - the cached code length of each byte value, every one of them coded
+   * @throws IOException - if a file cannot be read or written
+   */
+  private static void encodeCached(String input_file, String output_file, HuffmanOptions options,
+      HuffmanMetrics metrics, byte[] lengths) throws IOException {
+    
+    metrics.setCacheHit(true);
+    metrics.enter(HuffmanMetrics.Stage.CODES);
+    HuffmanEncoder encoder = new HuffmanEncoder(lengths);
+    metrics.setTableBytes(encoder.getTableBytes());
+    
+    long symbolCount = new File(input_file).length();
+    int flags = (options.isChecksum() ? HuffmanHeader.FLAG_CHECKSUM : 0) | HuffmanHeader.FLAG_BYTES;
+    
+    /* The header with a checksum yet to be worked out, for its size. */
+    ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+    new HuffmanHeader(flags, symbolCount, lengths, 0).write(headerBytes);
+    
+    metrics.enter(HuffmanMetrics.Stage.ENCODE);
+    
+    CRC32 crc = new CRC32();
+    
+    try (FileChannel input = FileChannel.open(new File(input_file).toPath(), StandardOpenOption.READ);
+        FileChannel file = FileChannel.open(new File(output_file).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      
+      /* Writes the code bits after the room for the header. */
+      file.position(headerBytes.size());
+      BitWriter output = new BitWriter(new HuffmanMetrics.TimedChannel(file, metrics), ByteBuffer.allocateDirect(BUFFER_SIZE));
+      
+      for (long position = 0, size = input.size(); position < size; position += MappedReader.CHUNK_SIZE){
+        
+        ByteBuffer chunk = input.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MappedReader.CHUNK_SIZE, size - position));
+        crc.update(chunk.duplicate());
+        encoder.encode(chunk, output);
+      }
+      
+      output.finish();
+      
+      /* Writes the header with the checksum in front of the code bits. */
+      headerBytes.reset();
+      new HuffmanHeader(flags, symbolCount, lengths, (int) crc.getValue()).write(headerBytes);
+      
+      HuffmanMetrics.Stage previous = metrics.enter(HuffmanMetrics.Stage.WRITE);
+      file.write(ByteBuffer.wrap(headerBytes.toByteArray()), 0);
+      metrics.enter(previous);
+    }
+    
+    report(metrics, options, input_file, output_file, symbolCount, null);
+  }
+  
+  /**
+   * Stops timing the encoding and gives its metrics to the listener of the options.
+   * Package protected by default.
+   * 
+   * @param metrics - the metrics of the encoding
+   * @param options - the options of the encoder
+   * @param input_file - the name of the file that was compressed
+   * @param output_file - the name of the compressed output file
+   * @param symbolCount - the number of characters or bytes of the input file
+   * @param frequencies - the number of occurrences of each character or byte
+   */
+  static void report(HuffmanMetrics metrics, HuffmanOptions options, String input_file, String output_file,
+      long symbolCount, long[] frequencies){
+    
+    metrics.enter(null);
+    metrics.setSizes(new File(input_file).length(), new File(output_file).length(), symbolCount);
+    metrics.setFrequencies(frequencies);
+    
+    options.getListener().encoded(metrics);
+  }
+  
+  /**
+   * Reads a Huffman encoded binary file and restores the original text file.
+   * A file encoded as raw bytes is restored byte for byte.
+   * The code table is read from the file's HuffmanHeader, and the file's
+   * checksum is verified if one was stored. The codes are resolved with the
+   * lookup tables of a HuffmanDecoder rather than by walking the Huffman tree.
+   * A file encoded in blocks is decoded by BlockCoder, on all available processors.
+   * 
+   * @param input_file - the name of the compressed file
+   * @param output_file - the name of the restored output file
+   */
+  public static void Huffman_decoder(String input_file, String output_file){
+    
+    Huffman_decoder(input_file, output_file, new HuffmanOptions());
+    
+  }
+  
+  /**
+   * Reads a Huffman encoded binary file and restores the original text file with the given options.
+   * A file encoded in blocks is decoded on the number of threads of the options' parallelism,
+   * each block straight into its place in the output file.
+   * 
+   * @param input_file - the name of the compressed file
+   * @param output_file - the name of the restored output file
+   * @param options - the options of the decoder
+   */
+  public static void Huffman_decoder(String input_file, String output_file, HuffmanOptions options){
+    
+    /* The sizes and stage timings of the decoding. */
+    HuffmanMetrics metrics = new HuffmanMetrics();
+    metrics.enter(HuffmanMetrics.Stage.BUILD);
+    
+    try (InputStream input = new BufferedInputStream(new FileInputStream(input_file), BUFFER_SIZE)) {
+      
+      /* The header of the compressed file. */
+      HuffmanHeader header = HuffmanHeader.read(input, ALPHABET_SIZE);
+      
+      /* Decodes a file encoded in blocks with the block index. */
+      if (header.hasFlag(HuffmanHeader.FLAG_BLOCKS)) {
+        
+        metrics.enter(HuffmanMetrics.Stage.DECODE);
+        BlockCoder.decode(input_file, output_file, header, options.getParallelism());
+        
+        metrics.enter(null);
+        metrics.setSizes(new File(output_file).length(), new File(input_file).length(), header.getSymbolCount());
+        options.getListener().decoded(metrics);
+        return;
+      }
+      
+      /* The checksum of the restored file. */
+      CRC32 crc = new CRC32();
+      
+      /* Copies a stored file as is. */
+      if (header.hasFlag(HuffmanHeader.FLAG_STORED)) {
+        
+        metrics.enter(HuffmanMetrics.Stage.DECODE);
+        
+        try (OutputStream output = new CheckedOutputStream(
+            new BufferedOutputStream(new FileOutputStream(output_file), BUFFER_SIZE), crc)) {
+          
+          /* Copies the bytes after the header to the output file. */
+          byte[] buffer = new byte[BUFFER_SIZE];
+          for (int read = input.read(buffer); read != -1; read = input.read(buffer))
+            output.write(buffer, 0, read);
+        }
+        
+      } else if (header.hasFlag(HuffmanHeader.FLAG_CONTEXTS)) {
+        
+        /* The tables of the contexts, whose decoders were built with the header. */
+        ContextModel model = header.getContextModel();
+        metrics.setTableBytes(model.getTableBytes());
+        
+        metrics.enter(HuffmanMetrics.Stage.DECODE);
+        
+        /* The code bits after the header. */
+        BitReader bits = new BitReader(input);
+        
+        /* The buffer the bytes are decoded into. */
+        byte[] buffer = new byte[BUFFER_SIZE];
+        
+        try (OutputStream output = new CheckedOutputStream(new FileOutputStream(output_file), crc)) {
+          
+          /* Decodes the bytes a buffer at a time, carrying the context from one buffer to the next. */
+          int previous = 0;
+          for (long remaining = header.getSymbolCount(); remaining > 0; ){
+            
+            int count = (int) Math.min(remaining, buffer.length);
+            previous = model.decode(bits, buffer, count, previous);
+            
+            output.write(buffer, 0, count);
+            remaining -= count;
+          }
+        }
+        
+      } else if (header.hasFlag(HuffmanHeader.FLAG_BYTES)) {
+        
+        /* The table-driven decoder built from the code lengths. */
+        metrics.enter(HuffmanMetrics.Stage.CODES);
+        HuffmanDecoder decoder = new HuffmanDecoder(header.getCodeLengths());
+        metrics.setTableBytes(decoder.getTableBytes());
+        
+        metrics.enter(HuffmanMetrics.Stage.DECODE);
+        
+        /* The code bits after the header. */
+        BitReader bits = new BitReader(input);
+        
+        /* The buffer the bytes are decoded into. */
+        byte[] buffer = new byte[BUFFER_SIZE];
+        
+        try (OutputStream output = new CheckedOutputStream(new FileOutputStream(output_file), crc)) {
+          
+          /* Decodes the bytes a buffer at a time. */
+          for (long remaining = header.getSymbolCount(); remaining > 0; ){
+            
+            int count = (int) Math.min(remaining, buffer.length);
+            
+            for (int i = 0; i < count; i++)
+              buffer[i] = (byte) decoder.decode(bits);
+            
+            output.write(buffer, 0, count);
+            remaining -= count;
+          }
+        }
+        
+      } else if (header.hasFlag(HuffmanHeader.FLAG_CODE_POINTS)) {
+        
+        /* The table-driven decoder of the symbols, and the code point of each symbol. */
+        metrics.enter(HuffmanMetrics.Stage.CODES);
+        HuffmanDecoder decoder = new HuffmanDecoder(header.getCodeLengths());
+        int[] symbols = header.getCodePoints();
+        metrics.setTableBytes(decoder.getTableBytes() + 4L * symbols.length);
+        
+        metrics.enter(HuffmanMetrics.Stage.DECODE);
+        
+        /* The code bits after the header. */
+        BitReader bits = new BitReader(input);
+        
+        /* The buffer the characters are decoded into, two for each code point outside the BMP. */
+        char[] buffer = new char[BUFFER_SIZE];
+        
+        try (Writer output = new OutputStreamWriter(new CheckedOutputStream(
+            new BufferedOutputStream(new FileOutputStream(output_file), BUFFER_SIZE), crc), StandardCharsets.UTF_8)) {
+          
+          /* Decodes the code points half a buffer at a time, so that every one fits. */
+          for (long remaining = header.getSymbolCount(); remaining > 0; ){
+            
+            int count = (int) Math.min(remaining, buffer.length / 2);
+            int length = 0;
+            
+            for (int i = 0; i < count; i++)
+              length += Character.toChars(symbols[decoder.decode(bits)], buffer, length);
+            
+            output.write(buffer, 0, length);
+            remaining -= count;
+          }
+        }
+        
+      } else {
+        
+        /* The table-driven decoder built from the code lengths. */
+        metrics.enter(HuffmanMetrics.Stage.CODES);
+        HuffmanDecoder decoder = new HuffmanDecoder(header.getCodeLengths());
+        metrics.setTableBytes(decoder.getTableBytes());
+        
+        metrics.enter(HuffmanMetrics.Stage.DECODE);
+        
+        /* The code bits after the header. */
+        BitReader bits = new BitReader(input);
+        
+        /* The buffer the characters are decoded into. */
+        char[] buffer = new char[BUFFER_SIZE];
+        
+        try (Writer output = new OutputStreamWriter(new CheckedOutputStream(
+            new BufferedOutputStream(new FileOutputStream(output_file), BUFFER_SIZE), crc), StandardCharsets.UTF_8)) {
+          
+          /* Decodes the characters a buffer at a time. */
+          for (long remaining = header.getSymbolCount(); remaining > 0; ){
+            
+            int count = (int) Math.min(remaining, buffer.length);
+            
+            for (int i = 0; i < count; i++)
+              buffer[i] = (char) decoder.decode(bits);
+            
+            output.write(buffer, 0, count);
+            remaining -= count;
+          }
+        }
+      }
+      
+      /* Verifies the restored file against the checksum of the original. */
+      if (header.hasFlag(HuffmanHeader.FLAG_CHECKSUM) && (int) crc.getValue() != header.getChecksum())
+        throw new IOException("Checksum does not match the original file.");
+      
+      metrics.enter(null);
+      metrics.setSizes(new File(output_file).length(), new File(input_file).length(), header.getSymbolCount());
+      options.getListener().decoded(metrics);
       
     } catch (Exception e) {
       
-      System.err.println("Problem writing to the binary file.");
+      System.err.println("Problem decoding the binary file.");
       System.err.println(e.getMessage());
     }
   }
@@ -255,8 +969,16 @@ public class HuffmanLibrary {
    * The main method of the Huffman encoding Library class.
    * Allows user to compress a given text file to binary with Huffman encoding.
    * This method takes an input file location and an output file location.
+   * If the argument "-d" is given, the input file is decompressed instead.
+   * If the argument "-b" is given, the input file is compressed in blocks on all processors.
+   * If the argument "-r" is given, the input file is compressed as raw bytes, for files that are not text.
+   * If the argument "-c" is given, the raw bytes are coded with a table chosen by the byte before each one.
+   * If the argument "-u" is given, the text is coded as Unicode code points rather than UTF-16 characters.
+   * If the argument "-m" is given, the input is a directory or a file listing paths, and the output is a
+   * directory: the files are compressed by a HuffmanBatch, and a summary of them is written to the output directory.
    * 
-   * @param args - the input file and output file locations, separated by a space
+   * @param args - "-d" to decompress, "-b" to compress in blocks, "-r" to compress raw bytes, "-c" to compress by context,
+   *               "-u" to compress code points, "-m" to compress many files, otherwise no arguments
    * @throws java.io.IOException - file may not be accessible
    * @throws java.io.FileNotFoundException - file may not exist
    */
@@ -269,10 +991,42 @@ public class HuffmanLibrary {
     
     scanner.close();
     
-    /* Encodes the given file to binary with Huffman encoding. */
+    /* Encodes or decodes the given file with Huffman encoding. */
     try{
       
-      Huffman_coder(fileName, file2Name);
+      /* The options given by the arguments. */
+      HuffmanOptions options = new HuffmanOptions();
+      boolean decode = false;
+      boolean batch = false;
+      
+      for (String arg : args){
+        if (arg.equals("-d"))
+          decode = true;
+        else if (arg.equals("-b"))
+          options.setBlockSize(HuffmanOptions.DEFAULT_BLOCK_SIZE);
+        else if (arg.equals("-r"))
+          options.setBinary(true);
+        else if (arg.equals("-c"))
+          options.setContextTables(HuffmanOptions.DEFAULT_CONTEXT_TABLES);
+        else if (arg.equals("-u"))
+          options.setCodePoints(true);
+        else if (arg.equals("-m"))
+          batch = true;
+      }
+      
+      if (batch) {
+        
+        /* Compresses the files on a bounded pool of threads and writes a summary of them. */
+        List<HuffmanBatch.Result> results = new HuffmanBatch(options).compress(Paths.get(fileName), Paths.get(file2Name));
+        
+        try (Writer summary = Files.newBufferedWriter(Paths.get(file2Name, HuffmanBatch.SUMMARY_NAME), StandardCharsets.UTF_8)) {
+          HuffmanBatch.writeSummary(results, summary);
+        }
+        
+      } else if (decode)
+        Huffman_decoder(fileName, file2Name, options);
+      else
+        Huffman_coder(fileName, file2Name, options);
       
     } catch (Exception e) {
       
@@ -0,0 +1,35 @@
+package howard.huffman;
+
+/**
+ * The interface for a listener to the metrics of the Huffman coder.
+ * This interface is included in the Huffman encoding project.
+ * A listener is set on the HuffmanOptions of the coder, which calls it once each file
+ * has been encoded or decoded, on the thread that called the coder. Both methods do
+ * nothing unless overridden, and NONE, the default, overrides neither.
+ * See JfrHuffmanListener for a listener that records the metrics as JFR events.
+ * 
+ * @author Shaun Howard
+ */
+public interface HuffmanListener {
+  
+  /** The listener that ignores the metrics, used by default. */
+  HuffmanListener NONE = new HuffmanListener(){};
+  
+  /**
+   * Called when a file has been encoded.
+   * 
+   * @param metrics - the sizes and timings of the encoding
+   */
+  default void encoded(HuffmanMetrics metrics){
+  }
+  
+  /**
+   * Called when a file has been decoded. The entropy of the metrics is not known
+   * to the decoder, so it is NaN.
+   * 
+   * @param metrics - the sizes and timings of the decoding
+   */
+  default void decoded(HuffmanMetrics metrics){
+  }
+  
+}
@@ -0,0 +1,348 @@
+package howard.huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A class for the sizes and timings of encoding or decoding one file.
+ * This class is included in the Huffman encoding project.
+ * The coder fills in the metrics as it goes and hands them to the HuffmanListener of
+ * its options when the file is done. The time of the coder is split between the
+ * stages of the Stage enum: every nanosecond is charged to the stage the coder was in,
+ * so the stage times add up to the total time. Writes to the output file are charged
+ * to WRITE wherever they happen, except in the parallel tasks of block mode, whose
+ * writes are part of ENCODE.
+ * Metrics cost a few reads of the clock per file and per buffer of output; the entropy
+ * is only worked out if it is asked for.
+ * 
+ * @author Shaun Howard
+ */
+public class HuffmanMetrics {
+  
+  /** The stages of encoding and decoding, in the order they happen. */
+  public enum Stage {
+    
+    /** Counting the characters or bytes of the input file. */
+    COUNT,
+    
+    /** Building the Huffman code lengths, or reading the header when decoding. */
+    BUILD,
+    
+    /** Generating the canonical codes, or the lookup tables when decoding. */
+    CODES,
+    
+    /** Encoding the input file into packed code bits. */
+    ENCODE,
+    
+    /** Writing the header and the packed code bits to the output file. */
+    WRITE,
+    
+    /** Decoding the packed code bits and writing the restored file. */
+    DECODE
+  }
+  
+  /** The nanoseconds spent in each stage, indexed by ordinal. */
+  private final long[] times = new long[Stage.values().length];
+  
+  /** The stage the coder is in, or null if it is not timing. */
+  private Stage stage;
+  
+  /** The time the current stage was entered, from System.nanoTime(). */
+  private long since;
+  
+  /** The number of bytes of the original file. */
+  private long originalBytes;
+  
+  /** The number of bytes of the compressed file. */
+  private long compressedBytes;
+  
+  /** The number of characters or bytes in the original file. */
+  private long symbolCount;
+  
+  /** The number of occurrences of each symbol, or null if they were not counted. */
+  private long[] frequencies;
+  
+  /** The number of bytes of memory of the code tables, or 0 if they were not measured. */
+  private long tableBytes;
+  
+  /** Whether the code table was reused from a CodeTableCache. */
+  private boolean cacheHit;
+  
+  /**
+   * Constructor for the metrics class.
+   * Package protected by default.
+   */
+  HuffmanMetrics(){
+  }
+  
+  /**
+   * Charges the time since the last stage was entered to that stage, and enters the given one.
+   * Package protected by default.
+   * 
+   * @param next - the stage to enter, or null to stop timing
+   * @return  the stage that was left, or null if none
+   */
+  Stage enter(Stage next){
+    
+    long now = System.nanoTime();
+    
+    if (stage != null)
+      times[stage.ordinal()] += now - since;
+    
+    Stage previous = stage;
+    stage = next;
+    since = now;
+    
+    return previous;
+  }
+  
+  /**
+   * Sets the sizes of the original and compressed files.
+   * Package protected by default.
+   * 
+   * @param originalBytes - the number of bytes of the original file
+   * @param compressedBytes - the number of bytes of the compressed file
+   * @param symbolCount - the number of characters or bytes in the original file
+   */
+  void setSizes(long originalBytes, long compressedBytes, long symbolCount){
+    this.originalBytes = originalBytes;
+    this.compressedBytes = compressedBytes;
+    this.symbolCount = symbolCount;
+  }
+  
+  /**
+   * Sets the frequencies the entropy of the original file is worked out from.
+   * The array is kept, not copied.
+   * Package protected by default.
+   * 
+   * @param frequencies - the number of occurrences of each symbol, indexed by symbol
+   */
+  void setFrequencies(long[] frequencies){
+    this.frequencies = frequencies;
+  }
+  
+  /**
+   * Sets the memory of the code tables the coder used.
+   * Package protected by default.
+   * 
+   * @param tableBytes - the number of bytes of the encoding or decoding tables
+   */
+  void setTableBytes(long tableBytes){
+    this.tableBytes = tableBytes;
+  }
+  
+  /**
+   * Sets whether the code table was reused from a CodeTableCache.
+   * Package protected by default.
+   * 
+   * @param cacheHit - whether the table was found in the cache
+   */
+  void setCacheHit(boolean cacheHit){
+    this.cacheHit = cacheHit;
+  }
+  
+  /**
+   * Gets the number of bytes of the original file, which are the bytes into the
+   * encoder or out of the decoder.
+   * 
+   * @return  the size of the original file
+   */
+  public long getOriginalBytes(){
+    return originalBytes;
+  }
+  
+  /**
+   * Gets the number of bytes of the compressed file, header included, which are the
+   * bytes out of the encoder or into the decoder.
+   * 
+   * @return  the size of the compressed file
+   */
+  public long getCompressedBytes(){
+    return compressedBytes;
+  }
+  
+  /**
+   * Gets the number of characters, or bytes in binary mode, of the original file.
+   * 
+   * @return  the number of symbols
+   */
+  public long getSymbolCount(){
+    return symbolCount;
+  }
+  
+  /**
+   * Gets the compression ratio, as the size of the compressed file over the size of the original.
+   * 
+   * @return  the compression ratio, or 1 for an empty file
+   */
+  public double getRatio(){
+    return originalBytes == 0 ? 1 : (double) compressedBytes / originalBytes;
+  }
+  
+  /**
+   * Gets the order-0 entropy of the original file, the fewest bits per symbol that any
+   * code of single symbols can average.
+   * 
+   * @return  the entropy in bits per symbol, or NaN if the symbols were not counted
+   */
+  public double getEntropy(){
+    
+    if (frequencies == null)
+      return Double.NaN;
+    
+    if (symbolCount == 0)
+      return 0;
+    
+    double entropy = 0;
+    for (long f : frequencies){
+      if (f != 0)
+        entropy -= f * Math.log((double) f / symbolCount);
+    }
+    
+    return entropy / Math.log(2) / symbolCount;
+  }
+  
+  /**
+   * Gets the number of bits per symbol the compressed file achieves, header included,
+   * to compare with the entropy.
+   * 
+   * @return  the bits of the compressed file per symbol, or 0 for an empty file
+   */
+  public double getBitsPerSymbol(){
+    return symbolCount == 0 ? 0 : 8.0 * compressedBytes / symbolCount;
+  }
+  
+  /**
+   * Gets the time spent in a stage.
+   * 
+   * @param stage - the stage
+   * @return  the time spent in the stage in nanoseconds
+   */
+  public long getTime(Stage stage){
+    return times[stage.ordinal()];
+  }
+  
+  /**
+   * Gets the time spent in all stages.
+   * 
+   * @return  the total time in nanoseconds
+   */
+  public long getTotalTime(){
+    
+    long total = 0;
+    for (long time : times)
+      total += time;
+    
+    return total;
+  }
+  
+  /**
+   * Gets the throughput of the coder, in bytes of the original file per second of
+   * the total time, so that encoding and decoding compare alike.
+   * 
+   * @return  the throughput in megabytes per second, or 0 if no time was spent
+   */
+  public double getThroughput(){
+    
+    long total = getTotalTime();
+    return total == 0 ? 0 : originalBytes * 1e3 / total;
+  }
+  
+  /**
+   * Gets the memory of the code tables the coder used, to weigh against the ratio
+   * they bought: a context model holds many tables where one would do otherwise.
+   * 
+   * @return  the number of bytes of the encoding or decoding tables, or 0 if not measured
+   */
+  public long getTableBytes(){
+    return tableBytes;
+  }
+  
+  /**
+   * Determines whether the code table was reused from a CodeTableCache, in which case
+   * the file was not counted and its entropy is not known. The hits and misses of a
+   * whole batch are kept by the cache.
+   * 
+   * @return  whether the table was found in the cache
+   */
+  public boolean isCacheHit(){
+    return cacheHit;
+  }
+  
+  /**
+   * Gets the sizes, ratio, entropy, table memory, throughput and stage times as one line, for logging.
+   * 
+   * @return  the metrics as a String
+   */
+  @Override
+  public String toString(){
+    
+    StringBuilder text = new StringBuilder(String.format("%d -> %d bytes (%.1f%%), %.3f bits/symbol, entropy %.3f",
+        originalBytes, compressedBytes, 100 * getRatio(), getBitsPerSymbol(), getEntropy()));
+    
+    if (tableBytes != 0)
+      text.append(String.format(", tables %d bytes", tableBytes));
+    
+    if (cacheHit)
+      text.append(", cached table");
+    
+    if (getTotalTime() != 0)
+      text.append(String.format(", %.1f MB/s", getThroughput()));
+    
+    for (Stage s : Stage.values()){
+      if (times[s.ordinal()] != 0)
+        text.append(String.format(", %s %.1f ms", s.name().toLowerCase(), times[s.ordinal()] / 1e6));
+    }
+    
+    return text.toString();
+  }
+  
+  /**
+   * A channel that charges the time of its writes to the WRITE stage of the metrics,
+   * then goes back to the stage the coder was in.
+   */
+  static class TimedChannel implements WritableByteChannel {
+    
+    /** The channel written to. */
+    private final WritableByteChannel channel;
+    
+    /** The metrics the writes are timed in. */
+    private final HuffmanMetrics metrics;
+    
+    /**
+     * Constructor for the timed channel.
+     * 
+     * @param channel - the channel to write to
+     * @param metrics - the metrics to time the writes in
+     */
+    TimedChannel(WritableByteChannel channel, HuffmanMetrics metrics){
+      this.channel = channel;
+      this.metrics = metrics;
+    }
+    
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+      
+      Stage previous = metrics.enter(Stage.WRITE);
+      
+      try {
+        return channel.write(source);
+      } finally {
+        metrics.enter(previous);
+      }
+    }
+    
+    @Override
+    public boolean isOpen(){
+      return channel.isOpen();
+    }
+    
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+    
+  }
+  
+}
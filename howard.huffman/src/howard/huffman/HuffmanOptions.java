@@ -0,0 +1,346 @@
+package howard.huffman;
+
+/**
+ * A class for the options of the Huffman encoder.
+ * This class is included in the Huffman encoding project.
+ * The default options are used by Huffman_coder(input_file, output_file);
+ * an options object can be passed to choose otherwise.
+ * 
+ * @author Shaun Howard
+ */
+public class HuffmanOptions {
+  
+  /** The longest code length the encoder can be limited to, so that every code fits in an int. */
+  public static final int MAX_CODE_LENGTH = 32;
+  
+  /** The block size used by the "-b" option of HuffmanLibrary.main(), in bytes of the input file. */
+  public static final int DEFAULT_BLOCK_SIZE = 1 << 22;
+  
+  /** The largest block size, so that a block and its characters fit in arrays. */
+  public static final int MAX_BLOCK_SIZE = 1 << 30;
+  
+  /** The number of order-1 code tables used by the "-c" option of HuffmanLibrary.main(). */
+  public static final int DEFAULT_CONTEXT_TABLES = 32;
+  
+  /** The most order-1 code tables, one for each value of the previous byte. */
+  public static final int MAX_CONTEXT_TABLES = 256;
+  
+  /** Whether a CRC32 of the original file is stored in the compressed file. */
+  private boolean checksum = true;
+  
+  /** Whether the input file is encoded as raw bytes rather than as UTF-8 characters. */
+  private boolean binary = false;
+  
+  /** Whether the characters of the input file are coded as whole Unicode code points rather than UTF-16 chars. */
+  private boolean codePoints = false;
+  
+  /** The longest code length the encoder may assign. */
+  private int maxCodeLength = MAX_CODE_LENGTH;
+  
+  /** The number of bytes of the input file per block, or 0 to encode the file as one stream. */
+  private int blockSize = 0;
+  
+  /** Whether each block has its own code table rather than sharing one for the file. */
+  private boolean blockTables = false;
+  
+  /** Whether each block is coded as interleaved streams rather than one. */
+  private boolean interleaved = false;
+  
+  /** The most order-1 code tables, or 0 to code every byte with the same table. */
+  private int contextTables = 0;
+  
+  /** The cache of code tables reused for files alike, or null to count every file. */
+  private CodeTableCache codeTableCache = null;
+  
+  /** The number of threads that encode and decode blocks. */
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  
+  /** The listener to the metrics of each file encoded or decoded. */
+  private HuffmanListener listener = HuffmanListener.NONE;
+  
+  /**
+   * Constructor for the Huffman options class.
+   * Creates options with every option set to its default.
+   */
+  public HuffmanOptions(){
+  }
+  
+  /**
+   * Constructor for a copy of the given options, which can then be changed on its own.
+   * The code table cache and the listener are shared with the original.
+   * 
+   * @param options - the options to copy
+   */
+  public HuffmanOptions(HuffmanOptions options){
+    this.checksum = options.checksum;
+    this.binary = options.binary;
+    this.codePoints = options.codePoints;
+    this.maxCodeLength = options.maxCodeLength;
+    this.blockSize = options.blockSize;
+    this.blockTables = options.blockTables;
+    this.interleaved = options.interleaved;
+    this.contextTables = options.contextTables;
+    this.codeTableCache = options.codeTableCache;
+    this.parallelism = options.parallelism;
+    this.listener = options.listener;
+  }
+  
+  /**
+   * Determines whether a CRC32 of the original file is stored in the compressed file,
+   * which the decoder then verifies. Enabled by default.
+   * 
+   * @return  whether or not a checksum is stored
+   */
+  public boolean isChecksum(){
+    return checksum;
+  }
+  
+  /**
+   * Sets whether a CRC32 of the original file is stored in the compressed file.
+   * 
+   * @param checksum - whether or not to store a checksum
+   */
+  public void setChecksum(boolean checksum){
+    this.checksum = checksum;
+  }
+  
+  /**
+   * Determines whether the input file is encoded as raw bytes, with an alphabet of
+   * the 256 byte values, rather than decoded as UTF-8 text. This is the mode for files
+   * that are not UTF-8 text, such as images or protobuf dumps, which it restores byte
+   * for byte; it also skips decoding the charset. Disabled by default.
+   * 
+   * @return  whether or not the input file is encoded as raw bytes
+   */
+  public boolean isBinary(){
+    return binary;
+  }
+  
+  /**
+   * Sets whether the input file is encoded as raw bytes rather than as UTF-8 characters.
+   * 
+   * @param binary - whether or not to encode the input file as raw bytes
+   */
+  public void setBinary(boolean binary){
+    this.binary = binary;
+  }
+  
+  /**
+   * Determines whether the text of the input file is coded as Unicode code points,
+   * with a sparse alphabet of the code points that occur, rather than as UTF-16 chars.
+   * An emoji or a supplementary CJK character is then one symbol with one code instead
+   * of two surrogates with a code each. The option applies to text coded as a whole;
+   * it is ignored with the binary option, context tables or a block size. Disabled
+   * by default.
+   * 
+   * @return  whether or not the text is coded as code points
+   */
+  public boolean isCodePoints(){
+    return codePoints;
+  }
+  
+  /**
+   * Sets whether the text of the input file is coded as Unicode code points.
+   * 
+   * @param codePoints - whether or not to code the text as code points
+   */
+  public void setCodePoints(boolean codePoints){
+    this.codePoints = codePoints;
+  }
+  
+  /**
+   * Gets the longest code length the encoder may assign. Codes of a Huffman tree that
+   * would be longer are shortened with LengthLimitedCode, at a small cost in compression;
+   * see HuffmanLibrary.getLengthLimitPenalty(). Defaults to MAX_CODE_LENGTH.
+   * 
+   * @return  the longest code length allowed
+   */
+  public int getMaxCodeLength(){
+    return maxCodeLength;
+  }
+  
+  /**
+   * Sets the longest code length the encoder may assign, for example 15 or 24.
+   * A file with more distinct characters than codes of this length is not encoded.
+   * 
+   * @param maxCodeLength - the longest code length allowed, from 1 to MAX_CODE_LENGTH
+   * @throws IllegalArgumentException - if the length is out of range
+   */
+  public void setMaxCodeLength(int maxCodeLength){
+    
+    if (maxCodeLength < 1 || maxCodeLength > MAX_CODE_LENGTH)
+      throw new IllegalArgumentException("Max code length must be from 1 to " + MAX_CODE_LENGTH + ".");
+    
+    this.maxCodeLength = maxCodeLength;
+  }
+  
+  /**
+   * Gets the number of bytes of the input file per block. A file encoded in blocks is
+   * counted and encoded on several threads, and can be decoded on several threads,
+   * at the cost of a few bytes of block index per block. Defaults to 0, which encodes
+   * the file as one stream.
+   * 
+   * @return  the block size in bytes, or 0 for no blocks
+   */
+  public int getBlockSize(){
+    return blockSize;
+  }
+  
+  /**
+   * Sets the number of bytes of the input file per block, for example DEFAULT_BLOCK_SIZE.
+   * Blocks of text are made a few bytes longer where needed to end on a whole UTF-8 character.
+   * 
+   * @param blockSize - the block size in bytes, from 1 to MAX_BLOCK_SIZE, or 0 for no blocks
+   * @throws IllegalArgumentException - if the block size is out of range
+   */
+  public void setBlockSize(int blockSize){
+    
+    if (blockSize < 0 || blockSize > MAX_BLOCK_SIZE)
+      throw new IllegalArgumentException("Block size must be from 0 to " + MAX_BLOCK_SIZE + ".");
+    
+    this.blockSize = blockSize;
+  }
+  
+  /**
+   * Determines whether each block has its own code table. Separate tables adapt to
+   * text that changes over the file, but cost the size of a table per block.
+   * Only used when the block size is not 0. Disabled by default.
+   * 
+   * @return  whether or not each block has its own code table
+   */
+  public boolean isBlockTables(){
+    return blockTables;
+  }
+  
+  /**
+   * Sets whether each block has its own code table.
+   * 
+   * @param blockTables - whether or not each block has its own code table
+   */
+  public void setBlockTables(boolean blockTables){
+    this.blockTables = blockTables;
+  }
+  
+  /**
+   * Determines whether each block is split into BlockCoder.STREAM_COUNT interleaved
+   * code streams, the i-th symbol going to stream i % STREAM_COUNT. The decoder then
+   * follows as many independent chains of code lengths in one loop, which the processor
+   * can overlap, for a few bytes more per block. Only used when the block size is not 0.
+   * Disabled by default.
+   * 
+   * @return  whether or not each block is coded as interleaved streams
+   */
+  public boolean isInterleaved(){
+    return interleaved;
+  }
+  
+  /**
+   * Sets whether each block is coded as interleaved streams.
+   * 
+   * @param interleaved - whether or not each block is coded as interleaved streams
+   */
+  public void setInterleaved(boolean interleaved){
+    this.interleaved = interleaved;
+  }
+  
+  /**
+   * Gets the most code tables of the order-1 context mode. In this mode the file is
+   * coded as raw bytes, and each byte with the code table chosen by the byte before it.
+   * Previous bytes whose next bytes are alike share a table, so that there are no more
+   * tables than this, and fewer where a table would cost more in the header than it
+   * saves. Only used when the block size is 0. Defaults to 0, which codes every symbol
+   * with one table.
+   * 
+   * @return  the most order-1 code tables, or 0 for order-0 coding
+   */
+  public int getContextTables(){
+    return contextTables;
+  }
+  
+  /**
+   * Sets the most code tables of the order-1 context mode, for example DEFAULT_CONTEXT_TABLES.
+   * 
+   * @param contextTables - the most code tables, from 1 to MAX_CONTEXT_TABLES, or 0 for order-0 coding
+   * @throws IllegalArgumentException - if the number of tables is out of range
+   */
+  public void setContextTables(int contextTables){
+    
+    if (contextTables < 0 || contextTables > MAX_CONTEXT_TABLES)
+      throw new IllegalArgumentException("Context tables must be from 0 to " + MAX_CONTEXT_TABLES + ".");
+    
+    this.contextTables = contextTables;
+  }
+  
+  /**
+   * Gets the cache of code tables of raw-byte files. With a cache, a file is sampled
+   * first, and coded in one pass with a cached table of files alike if one is close
+   * enough, instead of being counted and given a table of its own. Only used in
+   * raw-byte mode, when the block size and the context tables are 0. Defaults to null,
+   * which counts every file.
+   * 
+   * @return  the cache of code tables, or null
+   */
+  public CodeTableCache getCodeTableCache(){
+    return codeTableCache;
+  }
+  
+  /**
+   * Sets the cache of code tables of raw-byte files, which may be shared by many options
+   * and threads to code a batch of files alike.
+   * 
+   * @param codeTableCache - the cache of code tables, or null to count every file
+   */
+  public void setCodeTableCache(CodeTableCache codeTableCache){
+    this.codeTableCache = codeTableCache;
+  }
+  
+  /**
+   * Gets the number of threads that encode and decode blocks.
+   * Defaults to the number of available processors.
+   * 
+   * @return  the number of threads
+   */
+  public int getParallelism(){
+    return parallelism;
+  }
+  
+  /**
+   * Sets the number of threads that encode and decode blocks.
+   * 
+   * @param parallelism - the number of threads, at least 1
+   * @throws IllegalArgumentException - if the number of threads is less than 1
+   */
+  public void setParallelism(int parallelism){
+    
+    if (parallelism < 1)
+      throw new IllegalArgumentException("Parallelism must be at least 1.");
+    
+    this.parallelism = parallelism;
+  }
+  
+  /**
+   * Gets the listener that is given the sizes and stage timings of each file encoded
+   * or decoded with these options. Defaults to HuffmanListener.NONE.
+   * 
+   * @return  the listener to the metrics of the coder
+   */
+  public HuffmanListener getListener(){
+    return listener;
+  }
+  
+  /**
+   * Sets the listener that is given the sizes and stage timings of each file encoded
+   * or decoded with these options, for example a JfrHuffmanListener.
+   * 
+   * @param listener - the listener to the metrics of the coder
+   * @throws IllegalArgumentException - if the listener is null
+   */
+  public void setListener(HuffmanListener listener){
+    
+    if (listener == null)
+      throw new IllegalArgumentException("Listener must not be null; use HuffmanListener.NONE.");
+    
+    this.listener = listener;
+  }
+  
+}
\ No newline at end of file
@@ -0,0 +1,298 @@
+package howard.huffman;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+
+/**
+ * An output stream that compresses bytes with Huffman coding in blocks of bounded size.
+ * This class is included in the Huffman encoding project.
+ * Bytes written are gathered into a block, and each full block is counted, given a code
+ * table of its own and written out, so the stream can sit anywhere in an I/O stack
+ * (around an HTTP body or a batch of records) and uses no more memory than about two
+ * blocks, however much is written. The stream is read by a HuffmanInputStream.
+ * 
+ * By default flush() only flushes the underlying stream, and bytes still in the block
+ * wait until it is full, which keeps the blocks large. With sync flush, flush() also
+ * writes the block so far, so the reader can decode every byte written before it.
+ * 
+ * A stream is laid out as follows:
+ * 
+ *   magic        - the bytes 'H', 'U', 'S'
+ *   version      - one byte, VERSION
+ *   flags        - one byte, HuffmanHeader.FLAG_CHECKSUM if each block has a CRC-32
+ *   block size   - varint, the largest number of bytes of a block
+ *   blocks       - for each block a varint of the length of its body shifted left by
+ *                  one, with the low bit set if the block is stored; then, unless
+ *                  stored, the code table in the form of the HuffmanHeader; then the
+ *                  body, which is the HuffmanCodec message of the bytes or the bytes as
+ *                  is if stored; then the CRC-32 of the bytes, if checksummed
+ *   end          - the varint 1, an empty stored block
+ * 
+ * @author Shaun Howard
+ */
+public class HuffmanOutputStream extends OutputStream {
+  
+  /** The magic bytes at the start of a stream. */
+  static final byte[] MAGIC = { 'H', 'U', 'S' };
+  
+  /** The version of the format written by this stream. */
+  public static final int VERSION = 1;
+  
+  /** The block size used when the options do not set one, small enough for a message body. */
+  public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+  
+  /** The stream the compressed blocks are written to. */
+  private final OutputStream out;
+  
+  /** The options of the encoder. */
+  private final HuffmanOptions options;
+  
+  /** Whether flush() writes the block so far. */
+  private final boolean syncFlush;
+  
+  /** The bytes of the block being gathered. */
+  private final byte[] block;
+  
+  /** The number of bytes in the block. */
+  private int count;
+  
+  /** The code table and body of the block being written. */
+  private final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+  
+  /** The channel the code bits of a block are written to the frame through. */
+  private final WritableByteChannel frameChannel = Channels.newChannel(frame);
+  
+  /** The buffer the code bits of a block are packed in, kept from block to block. */
+  private final ByteBuffer bitBuffer;
+  
+  /** The checksum of the block being written. */
+  private final CRC32 crc = new CRC32();
+  
+  /** Whether the start of the stream has been written. */
+  private boolean started;
+  
+  /** Whether the stream is closed. */
+  private boolean closed;
+  
+  /**
+   * Constructor for a Huffman output stream with the default options.
+   * 
+   * @param out - the stream to write the compressed blocks to
+   */
+  public HuffmanOutputStream(OutputStream out){
+    this(out, new HuffmanOptions(), false);
+  }
+  
+  /**
+   * Constructor for a Huffman output stream with the given options. The block size,
+   * the maximum code length and the checksum are taken from the options; a block size
+   * of 0 means DEFAULT_BLOCK_SIZE.
+   * 
+   * @param out - the stream to write the compressed blocks to
+   * @param options - the options of the encoder
+   * @param syncFlush - whether flush() writes the block so far, so that the reader can decode every byte written
+   */
+  public HuffmanOutputStream(OutputStream out, HuffmanOptions options, boolean syncFlush){
+    this.out = out;
+    this.options = options;
+    this.syncFlush = syncFlush;
+    this.block = new byte[options.getBlockSize() > 0 ? options.getBlockSize() : DEFAULT_BLOCK_SIZE];
+    this.bitBuffer = ByteBuffer.allocate(Math.min(HuffmanLibrary.BUFFER_SIZE, block.length + 8));
+  }
+  
+  /**
+   * Writes one byte to the block.
+   * 
+   * @param b - the byte to write, in the low eight bits
+   * @throws IOException - if the stream is closed or cannot be written to
+   */
+  @Override
+  public void write(int b) throws IOException {
+    
+    ensureOpen();
+    
+    if (count == block.length)
+      writeBlock();
+    
+    block[count++] = (byte) b;
+  }
+  
+  /**
+   * Writes bytes from part of an array to the block, writing each block as it fills.
+   * 
+   * @param data - the array of bytes to write
+   * @param offset - the index of the first byte to write
+   * @param length - the number of bytes to write
+   * @throws IOException - if the stream is closed or cannot be written to
+   */
+  @Override
+  public void write(byte[] data, int offset, int length) throws IOException {
+    
+    ensureOpen();
+    
+    while (length > 0){
+      
+      if (count == block.length)
+        writeBlock();
+      
+      int n = Math.min(length, block.length - count);
+      System.arraycopy(data, offset, block, count, n);
+      
+      count += n;
+      offset += n;
+      length -= n;
+    }
+  }
+  
+  /**
+   * Writes the remaining bytes of a buffer to the block, writing each block as it fills.
+   * Package protected by default.
+   * 
+   * @param src - the buffer of bytes to write
+   * @throws IOException - if the stream is closed or cannot be written to
+   */
+  void write(ByteBuffer src) throws IOException {
+    
+    ensureOpen();
+    
+    while (src.hasRemaining()){
+      
+      if (count == block.length)
+        writeBlock();
+      
+      int n = Math.min(src.remaining(), block.length - count);
+      src.get(block, count, n);
+      count += n;
+    }
+  }
+  
+  /**
+   * Flushes the underlying stream, after writing the block so far if sync flush is on.
+   * 
+   * @throws IOException - if the stream is closed or cannot be written to
+   */
+  @Override
+  public void flush() throws IOException {
+    
+    ensureOpen();
+    
+    if (syncFlush && count > 0)
+      writeBlock();
+    
+    out.flush();
+  }
+  
+  /**
+   * Writes the last block and the end of the stream, and closes the underlying stream.
+   * 
+   * @throws IOException - if the stream cannot be written to or closed
+   */
+  @Override
+  public void close() throws IOException {
+    
+    if (closed)
+      return;
+    
+    try {
+      
+      if (count > 0)
+        writeBlock();
+      
+      writeStart();
+      HuffmanHeader.writeVarint(out, 1);
+      
+    } finally {
+      closed = true;
+      out.close();
+    }
+  }
+  
+  /**
+   * Determines whether the stream is still open.
+   * Package protected by default.
+   * 
+   * @return  whether the stream is open
+   */
+  boolean isOpen(){
+    return !closed;
+  }
+  
+  /**
+   * Encodes the block and writes it out, stored if it would not shrink, then empties it.
+   * 
+   * @throws IOException - if the underlying stream cannot be written to
+   */
+  private void writeBlock() throws IOException {
+    
+    writeStart();
+    
+    long[] frequencies = new long[HuffmanLibrary.BYTE_ALPHABET_SIZE];
+    for (int i = 0; i < count; i++)
+      frequencies[block[i] & 0xFF]++;
+    
+    /* Only the encoder is built; the decoding tables of a HuffmanCodec would go unused. */
+    byte[] lengths = HuffmanLibrary.getCodeLengths(frequencies, options.getMaxCodeLength());
+    HuffmanEncoder encoder = new HuffmanEncoder(lengths);
+    
+    /* Writes the code table and the codec message, to be compared with the block's own size. */
+    frame.reset();
+    HuffmanHeader.writeCodeTable(frame, lengths);
+    int table = frame.size();
+    HuffmanHeader.writeVarint(frame, count);
+    
+    BitWriter writer = new BitWriter(frameChannel, bitBuffer);
+    encoder.encode(ByteBuffer.wrap(block, 0, count), writer);
+    writer.finish();
+    
+    if (frame.size() < count){
+      HuffmanHeader.writeVarint(out, (long) (frame.size() - table) << 1);
+      frame.writeTo(out);
+    } else {
+      HuffmanHeader.writeVarint(out, ((long) count << 1) | 1);
+      out.write(block, 0, count);
+    }
+    
+    if (options.isChecksum()){
+      crc.reset();
+      crc.update(block, 0, count);
+      HuffmanHeader.writeInt(out, (int) crc.getValue());
+    }
+    
+    count = 0;
+  }
+  
+  /**
+   * Writes the start of the stream before the first block.
+   * 
+   * @throws IOException - if the underlying stream cannot be written to
+   */
+  private void writeStart() throws IOException {
+    
+    if (started)
+      return;
+    
+    started = true;
+    
+    out.write(MAGIC);
+    out.write(VERSION);
+    out.write(options.isChecksum() ? HuffmanHeader.FLAG_CHECKSUM : 0);
+    HuffmanHeader.writeVarint(out, block.length);
+  }
+  
+  /**
+   * Checks that the stream is open.
+   * 
+   * @throws IOException - if the stream is closed
+   */
+  private void ensureOpen() throws IOException {
+    
+    if (closed)
+      throw new IOException("Stream is closed.");
+  }
+  
+}
@@ -0,0 +1,73 @@
+package howard.huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A channel that decompresses the blocks of a HuffmanWritableChannel or HuffmanOutputStream.
+ * This class is included in the Huffman encoding project.
+ * One block is read from the underlying channel and decoded at a time, as by a
+ * HuffmanInputStream, and bytes are copied from it straight into the buffers read.
+ * The underlying channel must be in blocking mode.
+ * 
+ * @author Shaun Howard
+ */
+public class HuffmanReadableChannel implements ReadableByteChannel {
+  
+  /** The stream of blocks read from the underlying channel. */
+  private final HuffmanInputStream stream;
+  
+  /** Whether the channel is open. */
+  private boolean open = true;
+  
+  /**
+   * Constructor for a Huffman readable channel. Nothing is read until the first byte is.
+   * 
+   * @param channel - the channel to read the compressed blocks from
+   */
+  public HuffmanReadableChannel(ReadableByteChannel channel){
+    this.stream = new HuffmanInputStream(Channels.newInputStream(channel));
+  }
+  
+  /**
+   * Reads bytes into the remaining space of a buffer, from the block being read, reading
+   * the next block only if none are left.
+   * 
+   * @param dst - the buffer to read bytes into
+   * @return  the number of bytes read, or -1 at the end of the stream
+   * @throws IOException - if the channel is closed, or the stream is truncated or corrupt
+   */
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    
+    if (!open)
+      throw new ClosedChannelException();
+    
+    return stream.read(dst);
+  }
+  
+  /**
+   * Determines whether the channel is open.
+   * 
+   * @return  whether the channel is open
+   */
+  @Override
+  public boolean isOpen(){
+    return open;
+  }
+  
+  /**
+   * Closes the underlying channel.
+   * 
+   * @throws IOException - if the underlying channel cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    open = false;
+    stream.close();
+  }
+  
+}
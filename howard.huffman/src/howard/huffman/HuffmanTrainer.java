@@ -0,0 +1,124 @@
+package howard.huffman;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * A trainer of a HuffmanDictionary from a sample corpus.
+ * This class is included in the Huffman encoding project.
+ * The byte frequencies of every sample added are summed, the same way HLinkedList
+ * counts the characters of a file, and train() turns them into the code table of a
+ * dictionary. Samples should be typical of the messages the dictionary will encode,
+ * for example a few thousand recorded RPC payloads. Every byte value is counted once
+ * more than it occurs, so a byte that never occurs in the corpus still has a code.
+ * 
+ * @author Shaun Howard
+ */
+public class HuffmanTrainer {
+  
+  /** The number of occurrences of each byte value in the samples. */
+  private final long[] frequencies = new long[HuffmanLibrary.BYTE_ALPHABET_SIZE];
+  
+  /** The number of samples added. */
+  private long sampleCount;
+  
+  /**
+   * Constructor for the Huffman trainer class.
+   * Creates a trainer with no samples.
+   */
+  public HuffmanTrainer(){
+  }
+  
+  /**
+   * Adds a sample message to the corpus.
+   * 
+   * @param sample - the bytes of the sample
+   */
+  public void add(byte[] sample){
+    add(sample, 0, sample.length);
+  }
+  
+  /**
+   * Adds a sample message from part of an array to the corpus.
+   * 
+   * @param sample - the array of the sample
+   * @param offset - the index of the first byte of the sample
+   * @param length - the number of bytes of the sample
+   */
+  public void add(byte[] sample, int offset, int length){
+    
+    for (int i = offset; i < offset + length; i++)
+      frequencies[sample[i] & 0xFF]++;
+    
+    sampleCount++;
+  }
+  
+  /**
+   * Adds a sample message of text to the corpus, as its UTF-8 bytes.
+   * 
+   * @param sample - the text of the sample
+   */
+  public void add(CharSequence sample){
+    add(sample.toString().getBytes(StandardCharsets.UTF_8));
+  }
+  
+  /**
+   * Adds a whole file to the corpus as one sample, without reading it into memory.
+   * 
+   * @param fileName - the name of the file to add
+   * @throws IOException - if the file cannot be opened or read
+   */
+  public void addFile(String fileName) throws IOException {
+    
+    long[] counts = HuffmanLibrary.countBytes(fileName, new CRC32());
+    
+    for (int b = 0; b < frequencies.length; b++)
+      frequencies[b] += counts[b];
+    
+    sampleCount++;
+  }
+  
+  /**
+   * Gets the number of samples added.
+   * 
+   * @return  the number of samples
+   */
+  public long getSampleCount(){
+    return sampleCount;
+  }
+  
+  /**
+   * Trains a dictionary with the given ID from the samples added so far.
+   * 
+   * @param id - the ID of the dictionary, from 0 to Integer.MAX_VALUE; IDs below 64 keep the message header to one byte
+   * @return  the trained dictionary
+   * @throws IllegalArgumentException - if the ID is negative
+   */
+  public HuffmanDictionary train(int id){
+    return train(id, HuffmanOptions.MAX_CODE_LENGTH);
+  }
+  
+  /**
+   * Trains a dictionary with the given ID from the samples added so far, with no code
+   * longer than the given length.
+   * 
+   * @param id - the ID of the dictionary, from 0 to Integer.MAX_VALUE
+   * @param maxCodeLength - the longest code length allowed, from 8 to HuffmanOptions.MAX_CODE_LENGTH
+   * @return  the trained dictionary
+   * @throws IllegalArgumentException - if the ID is negative or the length is out of range
+   */
+  public HuffmanDictionary train(int id, int maxCodeLength){
+    
+    if (maxCodeLength < 8 || maxCodeLength > HuffmanOptions.MAX_CODE_LENGTH)
+      throw new IllegalArgumentException("Max code length must be from 8 to " + HuffmanOptions.MAX_CODE_LENGTH + ".");
+    
+    /* The frequencies with every byte value counted once more, so that each has a code. */
+    long[] smoothed = new long[frequencies.length];
+    for (int b = 0; b < frequencies.length; b++)
+      smoothed[b] = frequencies[b] + 1;
+    
+    return new HuffmanDictionary(id, HuffmanLibrary.getCodeLengths(smoothed, maxCodeLength));
+  }
+  
+}
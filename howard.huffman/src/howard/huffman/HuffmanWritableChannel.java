@@ -0,0 +1,97 @@
+package howard.huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A channel that compresses bytes with Huffman coding in blocks of bounded size.
+ * This class is included in the Huffman encoding project.
+ * The channel writes the same blocks as a HuffmanOutputStream, to another channel, and
+ * is read by a HuffmanReadableChannel or a HuffmanInputStream. Bytes are copied from the
+ * buffers written straight into the block, and blocks are written to the underlying
+ * channel whole, so it must be in blocking mode.
+ * 
+ * @author Shaun Howard
+ */
+public class HuffmanWritableChannel implements WritableByteChannel {
+  
+  /** The stream of blocks written to the underlying channel. */
+  private final HuffmanOutputStream stream;
+  
+  /**
+   * Constructor for a Huffman writable channel with the default options.
+   * 
+   * @param channel - the channel to write the compressed blocks to
+   */
+  public HuffmanWritableChannel(WritableByteChannel channel){
+    this(channel, new HuffmanOptions(), false);
+  }
+  
+  /**
+   * Constructor for a Huffman writable channel with the given options, as for a HuffmanOutputStream.
+   * 
+   * @param channel - the channel to write the compressed blocks to
+   * @param options - the options of the encoder
+   * @param syncFlush - whether flush() writes the block so far, so that the reader can decode every byte written
+   */
+  public HuffmanWritableChannel(WritableByteChannel channel, HuffmanOptions options, boolean syncFlush){
+    this.stream = new HuffmanOutputStream(Channels.newOutputStream(channel), options, syncFlush);
+  }
+  
+  /**
+   * Writes the remaining bytes of a buffer, writing each block to the underlying channel as it fills.
+   * 
+   * @param src - the buffer of bytes to write
+   * @return  the number of bytes written, which is all that remained
+   * @throws IOException - if the channel is closed or the underlying channel cannot be written to
+   */
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    
+    if (!stream.isOpen())
+      throw new ClosedChannelException();
+    
+    int n = src.remaining();
+    stream.write(src);
+    
+    return n;
+  }
+  
+  /**
+   * Writes the block so far to the underlying channel if sync flush is on, so that the
+   * reader can decode every byte written. Does nothing otherwise.
+   * 
+   * @throws IOException - if the channel is closed or the underlying channel cannot be written to
+   */
+  public void flush() throws IOException {
+    
+    if (!stream.isOpen())
+      throw new ClosedChannelException();
+    
+    stream.flush();
+  }
+  
+  /**
+   * Determines whether the channel is open.
+   * 
+   * @return  whether the channel is open
+   */
+  @Override
+  public boolean isOpen(){
+    return stream.isOpen();
+  }
+  
+  /**
+   * Writes the last block and the end of the stream, and closes the underlying channel.
+   * 
+   * @throws IOException - if the underlying channel cannot be written to or closed
+   */
+  @Override
+  public void close() throws IOException {
+    stream.close();
+  }
+  
+}
@@ -0,0 +1,136 @@
+package howard.huffman;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A listener that records the metrics of the Huffman coder as JDK Flight Recorder events.
+ * This class is included in the Huffman encoding project.
+ * Each encoded or decoded file commits one "howard.huffman.Coding" event, which can be
+ * recorded with -XX:StartFlightRecording and graphed in JDK Mission Control. Nothing is
+ * filled in unless a recording has the event enabled.
+ * 
+ * @author Shaun Howard
+ */
+public class JfrHuffmanListener implements HuffmanListener {
+  
+  /**
+   * Records the metrics of an encoded file.
+   * 
+   * @param metrics - the sizes and timings of the encoding
+   */
+  @Override
+  public void encoded(HuffmanMetrics metrics){
+    commit("encode", metrics);
+  }
+  
+  /**
+   * Records the metrics of a decoded file.
+   * 
+   * @param metrics - the sizes and timings of the decoding
+   */
+  @Override
+  public void decoded(HuffmanMetrics metrics){
+    commit("decode", metrics);
+  }
+  
+  /**
+   * Commits an event of the given metrics, if the event is enabled.
+   * 
+   * @param operation - "encode" or "decode"
+   * @param metrics - the sizes and timings to record
+   */
+  private static void commit(String operation, HuffmanMetrics metrics){
+    
+    CodingEvent event = new CodingEvent();
+    
+    if (!event.shouldCommit())
+      return;
+    
+    event.operation = operation;
+    event.originalBytes = metrics.getOriginalBytes();
+    event.compressedBytes = metrics.getCompressedBytes();
+    event.ratio = metrics.getRatio();
+    event.entropy = metrics.getEntropy();
+    event.bitsPerSymbol = metrics.getBitsPerSymbol();
+    event.tableBytes = metrics.getTableBytes();
+    event.cacheHit = metrics.isCacheHit();
+    event.countTime = metrics.getTime(HuffmanMetrics.Stage.COUNT);
+    event.buildTime = metrics.getTime(HuffmanMetrics.Stage.BUILD);
+    event.codesTime = metrics.getTime(HuffmanMetrics.Stage.CODES);
+    event.encodeTime = metrics.getTime(HuffmanMetrics.Stage.ENCODE);
+    event.writeTime = metrics.getTime(HuffmanMetrics.Stage.WRITE);
+    event.decodeTime = metrics.getTime(HuffmanMetrics.Stage.DECODE);
+    event.commit();
+  }
+  
+  /**
+   * The JFR event of one encoded or decoded file.
+   */
+  @Name("howard.huffman.Coding")
+  @Label("Huffman Coding")
+  @Category("Huffman")
+  @Description("The sizes and stage timings of a file encoded or decoded by the Huffman coder")
+  static class CodingEvent extends Event {
+    
+    @Label("Operation")
+    String operation;
+    
+    @Label("Original Size")
+    @DataAmount
+    long originalBytes;
+    
+    @Label("Compressed Size")
+    @DataAmount
+    long compressedBytes;
+    
+    @Label("Compression Ratio")
+    double ratio;
+    
+    @Label("Entropy")
+    @Description("Bits per symbol of the order-0 entropy of the original file")
+    double entropy;
+    
+    @Label("Bits Per Symbol")
+    double bitsPerSymbol;
+    
+    @Label("Table Size")
+    @Description("Memory of the encoding or decoding tables")
+    @DataAmount
+    long tableBytes;
+    
+    @Label("Cache Hit")
+    @Description("Whether the code table was reused from a code table cache")
+    boolean cacheHit;
+    
+    @Label("Count Time")
+    @Timespan
+    long countTime;
+    
+    @Label("Build Time")
+    @Timespan
+    long buildTime;
+    
+    @Label("Codes Time")
+    @Timespan
+    long codesTime;
+    
+    @Label("Encode Time")
+    @Timespan
+    long encodeTime;
+    
+    @Label("Write Time")
+    @Timespan
+    long writeTime;
+    
+    @Label("Decode Time")
+    @Timespan
+    long decodeTime;
+  }
+  
+}
@@ -0,0 +1,175 @@
+package howard.huffman;
+
+import java.util.Arrays;
+
+/**
+ * A class for building Huffman code lengths that do not exceed a maximum length.
+ * This class is included in the Huffman encoding project.
+ * A Huffman tree built from skewed frequencies can have very long codes, which do
+ * not fit the words of a bit writer or the tables of a decoder. The package-merge
+ * algorithm finds the code lengths of the smallest encoding among all codes whose
+ * lengths are within the limit.
+ * 
+ * @author Shaun Howard
+ */
+public class LengthLimitedCode {
+  
+  /**
+   * Gets the optimal code length of each character with no code longer than the given limit,
+   * using the package-merge algorithm. The characters are sorted by frequency; then, for each
+   * length up to the limit, the cheapest pairs of the previous list are packaged and merged
+   * with the characters. Each character's code length is the number of times it appears in
+   * the cheapest 2n - 2 items of the final list, n being the number of characters.
+   * A lone character is given a code length of 1.
+   * 
+   * @param frequencies - the number of occurrences of each character, indexed by character
+   * @param maxLength - the longest code length allowed
+   * @return  the code length of each character, indexed by character
+   * @throws IllegalArgumentException - if the characters do not all fit in codes of maxLength bits
+   */
+  public static byte[] getCodeLengths(long[] frequencies, int maxLength){
+    
+    /* The code length of each character. */
+    byte[] lengths = new byte[frequencies.length];
+    
+    /* The characters that occur, sorted by frequency and then by character. */
+    int n = 0;
+    for (long f : frequencies){
+      if (f != 0)
+        n++;
+    }
+    
+    long[] keys = new long[n];
+    Integer[] order = new Integer[n];
+    int[] characters = new int[n];
+    long[] weights = new long[n];
+    
+    for (int c = 0, i = 0; c < frequencies.length; c++){
+      if (frequencies[c] != 0){
+        characters[i] = c;
+        order[i] = i;
+        keys[i] = frequencies[c];
+        i++;
+      }
+    }
+    
+    Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+    
+    /* The characters in order of frequency. */
+    int[] sortedCharacters = new int[n];
+    for (int i = 0; i < n; i++){
+      sortedCharacters[i] = characters[order[i]];
+      weights[i] = keys[order[i]];
+    }
+    
+    if (n == 0)
+      return lengths;
+    
+    if (n == 1){
+      lengths[sortedCharacters[0]] = 1;
+      return lengths;
+    }
+    
+    if (maxLength < 1 || maxLength < 64 - Long.numberOfLeadingZeros(n - 1))
+      throw new IllegalArgumentException(n + " characters do not fit in codes of " + maxLength + " bits.");
+    
+    /* The items of each level's list: a character index, or -1 for a package. */
+    int[][] items = new int[maxLength][];
+    
+    /* The weights of the current level's list. */
+    long[] current = weights;
+    items[0] = new int[n];
+    for (int i = 0; i < n; i++)
+      items[0][i] = i;
+    
+    /* Builds each level by merging the characters with the packages of the level before. */
+    for (int level = 1; level < maxLength; level++){
+      
+      /* The number of packages of pairs of the previous list. */
+      int packages = current.length / 2;
+      
+      long[] merged = new long[n + packages];
+      items[level] = new int[n + packages];
+      
+      /* Merges the characters and the packages in order of weight, characters first on ties. */
+      int leaf = 0;
+      int pack = 0;
+      for (int i = 0; i < merged.length; i++){
+        
+        long packageWeight = pack < packages ? current[2 * pack] + current[2 * pack + 1] : Long.MAX_VALUE;
+        
+        if (leaf < n && weights[leaf] <= packageWeight){
+          merged[i] = weights[leaf];
+          items[level][i] = leaf++;
+        } else {
+          merged[i] = packageWeight;
+          items[level][i] = -1;
+          pack++;
+        }
+      }
+      
+      current = merged;
+    }
+    
+    /* Counts the appearances of each character in the cheapest 2n - 2 items, level by level. */
+    int take = 2 * n - 2;
+    for (int level = maxLength - 1; level >= 0; level--){
+      
+      int packages = 0;
+      
+      for (int i = 0; i < take; i++){
+        if (items[level][i] >= 0)
+          lengths[sortedCharacters[items[level][i]]]++;
+        else
+          packages++;
+      }
+      
+      /* Each package taken stands for two items of the level below. */
+      take = 2 * packages;
+    }
+    
+    return lengths;
+    
+  }
+  
+  /**
+   * Gets the compression penalty of a length-limited code compared to the optimal code,
+   * as the fraction of extra encoded bits. For example, 0.01 means the limited code
+   * encodes to 1% more bits.
+   * 
+   * @param frequencies - the number of occurrences of each character, indexed by character
+   * @param limitedLengths - the code lengths within the limit
+   * @param optimalLengths - the code lengths of the unrestricted Huffman tree
+   * @return  the fraction of extra bits encoded by the limited code
+   */
+  public static double getCompressionPenalty(long[] frequencies, byte[] limitedLengths, byte[] optimalLengths){
+    
+    long limitedBits = getEncodedBits(frequencies, limitedLengths);
+    long optimalBits = getEncodedBits(frequencies, optimalLengths);
+    
+    if (optimalBits == 0)
+      return 0;
+    
+    return (double) (limitedBits - optimalBits) / optimalBits;
+    
+  }
+  
+  /**
+   * Gets the number of bits the characters encode to with the given code lengths.
+   * 
+   * @param frequencies - the number of occurrences of each character, indexed by character
+   * @param lengths - the code length of each character, indexed by character
+   * @return  the total number of encoded bits
+   */
+  public static long getEncodedBits(long[] frequencies, byte[] lengths){
+    
+    long bits = 0;
+    
+    for (int c = 0; c < frequencies.length; c++)
+      bits += frequencies[c] * lengths[c];
+    
+    return bits;
+    
+  }
+  
+}
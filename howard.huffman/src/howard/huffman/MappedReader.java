@@ -0,0 +1,234 @@
+package howard.huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Checksum;
+
+/**
+ * A reader of the characters of a UTF-8 file through memory-mapped chunks.
+ * This class is included in the Huffman encoding project.
+ * The file is mapped with FileChannel.map() a chunk at a time, and its characters are
+ * decoded straight from the mapped bytes, so the bytes are never copied onto the heap.
+ * Each chunk ends on a whole UTF-8 character and is at most CHUNK_SIZE bytes long,
+ * which lets files larger than 2 GB be read through mappings of at most 1 GB.
+ * Malformed input is replaced in the same way as an InputStreamReader does.
+ * 
+ * @author Shaun Howard
+ */
+public class MappedReader extends Reader {
+  
+  /** The largest number of bytes mapped at once. */
+  public static final int CHUNK_SIZE = 1 << 30;
+  
+  /** The longest a UTF-8 character can be, in bytes. */
+  private static final int MAX_UTF8_LENGTH = 4;
+  
+  /** The value of pending when no low surrogate is held back. */
+  private static final int NONE = -1;
+  
+  /** The file being read. */
+  private final FileChannel channel;
+  
+  /** The largest number of bytes of a chunk. */
+  private final int chunkSize;
+  
+  /** The checksum to update with each chunk, or null. */
+  private final Checksum checksum;
+  
+  /** The decoder of the chunks' characters. */
+  private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  
+  /** The mapped chunk being decoded. */
+  private ByteBuffer chunk = ByteBuffer.allocate(0);
+  
+  /** The position in the file of the next chunk. */
+  private long position;
+  
+  /** The low surrogate of a pair whose high surrogate was read alone, or NONE. */
+  private int pending = NONE;
+  
+  /**
+   * Constructor for the mapped reader.
+   * 
+   * @param fileName - the name of the file to read
+   * @throws IOException - if the file cannot be opened
+   */
+  public MappedReader(String fileName) throws IOException {
+    this(fileName, null);
+  }
+  
+  /**
+   * Constructor for the mapped reader, which updates a checksum with the bytes of the file
+   * as they are mapped.
+   * 
+   * @param fileName - the name of the file to read
+   * @param checksum - the checksum to update with the bytes of the file, or null
+   * @throws IOException - if the file cannot be opened
+   */
+  public MappedReader(String fileName, Checksum checksum) throws IOException {
+    this(fileName, checksum, CHUNK_SIZE);
+  }
+  
+  /**
+   * Constructor for the mapped reader with the given chunk size.
+   * Package protected by default.
+   * 
+   * @param fileName - the name of the file to read
+   * @param checksum - the checksum to update with the bytes of the file, or null
+   * @param chunkSize - the largest number of bytes to map at once, more than MAX_UTF8_LENGTH
+   * @throws IOException - if the file cannot be opened
+   */
+  MappedReader(String fileName, Checksum checksum, int chunkSize) throws IOException {
+    this.channel = FileChannel.open(new File(fileName).toPath(), StandardOpenOption.READ);
+    this.checksum = checksum;
+    this.chunkSize = chunkSize;
+  }
+  
+  /**
+   * Gets the size of the file being read.
+   * 
+   * @return  the size of the file in bytes
+   * @throws IOException - if the size cannot be read
+   */
+  public long size() throws IOException {
+    return channel.size();
+  }
+  
+  /**
+   * Reads characters into part of an array, decoding them from the mapped chunks.
+   * A read of more than one character never ends between the two characters of a
+   * surrogate pair, as the decoder only writes a pair when both of them fit. A read
+   * with room for one character gets the high surrogate of a pair alone, and the next
+   * read starts with its low surrogate.
+   * 
+   * @param buffer - the array to read characters into
+   * @param offset - the index of the first character to read into
+   * @param length - the largest number of characters to read
+   * @return  the number of characters read, or -1 at the end of the file
+   * @throws IOException - if the file cannot be mapped
+   */
+  @Override
+  public int read(char[] buffer, int offset, int length) throws IOException {
+    
+    if (length == 0)
+      return 0;
+    
+    /* Finishes a surrogate pair split by the last read. */
+    if (pending != NONE){
+      buffer[offset] = (char) pending;
+      pending = NONE;
+      return 1;
+    }
+    
+    /* The characters decoded into the array. */
+    CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+    
+    while (out.position() == offset){
+      
+      /* Maps the next chunk once the current one is decoded. */
+      if (!chunk.hasRemaining() && !nextChunk())
+        return -1;
+      
+      /* A surrogate pair does not fit in one character, so it is decoded on the side. */
+      if (decode(out).isOverflow() && out.position() == offset){
+        
+        CharBuffer pair = CharBuffer.allocate(2);
+        decode(pair);
+        pair.flip();
+        
+        out.put(pair.get());
+        if (pair.hasRemaining())
+          pending = pair.get();
+      }
+    }
+    
+    return out.position() - offset;
+  }
+  
+  /**
+   * Decodes characters of the current chunk into a buffer. Each chunk holds whole
+   * characters, so it is decoded as a whole input of its own, and the decoder is reset
+   * once the chunk is used up.
+   * 
+   * @param out - the buffer to decode characters into
+   * @return  the result of the decoder, OVERFLOW if the buffer filled up first
+   */
+  private CoderResult decode(CharBuffer out){
+    
+    CoderResult result = decoder.decode(chunk, out, true);
+    
+    if (result.isUnderflow()){
+      decoder.flush(out);
+      decoder.reset();
+    }
+    
+    return result;
+  }
+  
+  /**
+   * Maps the next chunk of the file, updating the checksum with its bytes.
+   * 
+   * @return  whether there was another chunk to map
+   * @throws IOException - if the file cannot be mapped
+   */
+  private boolean nextChunk() throws IOException {
+    
+    if (position >= channel.size())
+      return false;
+    
+    /* The end of the chunk, moved to the start of the next whole character. */
+    long end = getCharacterBoundary(channel, Math.min(position + chunkSize - MAX_UTF8_LENGTH, channel.size()));
+    
+    chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+    position = end;
+    
+    if (checksum != null)
+      checksum.update(chunk.duplicate());
+    
+    return true;
+  }
+  
+  /**
+   * Gets the position of the first byte at or after the given position that starts a
+   * UTF-8 character, skipping at most three continuation bytes.
+   * Package protected by default.
+   * 
+   * @param channel - the file to look in
+   * @param position - the position to start looking from
+   * @return  the position of the start of a character, or the size of the file
+   * @throws IOException - if the file cannot be read
+   */
+  static long getCharacterBoundary(FileChannel channel, long position) throws IOException {
+    
+    /* The bytes at the position. */
+    ByteBuffer lead = ByteBuffer.allocate(MAX_UTF8_LENGTH - 1);
+    channel.read(lead, position);
+    
+    for (int i = 0; i < lead.position() && (lead.get(i) & 0xC0) == 0x80; i++)
+      position++;
+    
+    return position;
+  }
+  
+  /**
+   * Closes the file. The mapped chunks are released when they are garbage collected.
+   * 
+   * @throws IOException - if the file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+  
+}
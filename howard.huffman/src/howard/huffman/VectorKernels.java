@@ -0,0 +1,92 @@
+package howard.huffman;
+
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels on the Java Vector API, for packing the '0' and '1' debug representation into bytes.
+ * This class is included in the Huffman encoding project.
+ * The packer is the word kernel of WordKernels run on the eight lanes of a 512-bit long
+ * vector at once, as AVX-512 processors have: the characters are loaded as longs,
+ * low byte first, and each lane gathers its eight bits into its top byte with one
+ * multiply, after which the lanes are narrowed to bytes and stored together. The check
+ * against '0' and '1' is gathered across the vectors and tested once at the end, so the
+ * loop has no branch. Like the word kernels, it does only the whole vectors of its input
+ * and returns where it stopped.
+ * 
+ * The class needs the incubator module jdk.incubator.vector, given to both javac and java
+ * with "--add-modules jdk.incubator.vector". It is loaded only by WordKernels, and only
+ * once the module is found and isSupported() finds 512-bit vectors, so without either
+ * the word kernels run instead.
+ * 
+ * @author Shaun Howard
+ */
+final class VectorKernels {
+  
+  /** Eight longs of characters. */
+  private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_512;
+  
+  /** A byte for each lane of LONGS, which the packed bytes are narrowed to. */
+  private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_64;
+  
+  /** The number of characters of one vector. */
+  private static final int LENGTH = LONGS.vectorByteSize();
+  
+  /** Eight '0' characters as Latin-1 bytes in one long. */
+  private static final long ZEROS = 0x3030303030303030L;
+  
+  /** The bits of a long that are not the lowest bit of a byte. */
+  private static final long HIGH_BITS = 0xFEFEFEFEFEFEFEFEL;
+  
+  /** The multiplier that gathers the lowest bit of each byte into the top byte, the low byte first. */
+  private static final long GATHER = 0x8040201008040201L;
+  
+  /**
+   * Private constructor, as the class has only static kernels.
+   */
+  private VectorKernels(){
+  }
+  
+  /**
+   * Checks whether the processor has vectors as wide as LONGS, rather than the JVM
+   * working them out a piece at a time.
+   * Package protected by default.
+   * 
+   * @return  true if the kernels can run on whole vectors of the processor
+   */
+  static boolean isSupported(){
+    return LongVector.SPECIES_PREFERRED.vectorBitSize() >= LONGS.vectorBitSize();
+  }
+  
+  /**
+   * Packs the whole vectors of the given '0' and '1' characters, as Latin-1 bytes, into
+   * one byte for each eight, the first character the most significant bit.
+   * Package protected by default.
+   * 
+   * @param bits - the characters as Latin-1 bytes
+   * @param packed - the bytes to pack into, from the first
+   * @return  the number of characters packed, or -1 if a vector holds a character other than '0' and '1'
+   */
+  static int pack(byte[] bits, byte[] packed){
+    
+    /* The bits of the characters other than the bit of each, gathered over all vectors. */
+    LongVector errors = LongVector.zero(LONGS);
+    int i = 0;
+    
+    for (int end = bits.length - LENGTH; i <= end; i += LENGTH){
+      
+      LongVector words = LongVector.fromByteArray(LONGS, bits, i, ByteOrder.LITTLE_ENDIAN).lanewise(VectorOperators.XOR, ZEROS);
+      errors = errors.or(words.and(HIGH_BITS));
+      
+      words.mul(GATHER).lanewise(VectorOperators.LSHR, 56).convertShape(VectorOperators.L2B, BYTES, 0)
+          .reinterpretAsBytes().intoArray(packed, i >>> 3);
+    }
+    
+    return errors.reduceLanes(VectorOperators.OR) != 0 ? -1 : i;
+  }
+  
+}
@@ -0,0 +1,151 @@
+package howard.huffman;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Kernels that work on eight bytes at a time in one long, for packing the '0' and '1'
+ * debug representation into bytes.
+ * This class is included in the Huffman encoding project.
+ * The packer reads the characters through a byte array view of longs, checks eight of
+ * them against '0' and '1' with one mask and gathers their bits into a byte with one
+ * multiply. It does only the whole words of its input and returns where it stopped,
+ * and the caller finishes the rest with its scalar loop, so the results are the same
+ * bit for bit whichever path runs.
+ * 
+ * Whether the kernels run is checked once, when the class is loaded: they are turned
+ * off if the view of longs cannot be made or read, or if the system property
+ * "howard.huffman.scalar" is "true", and the scalar loops are used instead. When the
+ * JVM runs with "--add-modules jdk.incubator.vector" on a processor with 512-bit
+ * vectors, the VectorKernels pack as many whole vectors as they can first, and the
+ * words finish what is left; the system property "howard.huffman.vector" set to
+ * "false" keeps to the words alone.
+ * 
+ * The byte histogram has no kernel here. Reading it a long at a time was measured
+ * slower than FrequencyCounter's four bytes at a time, as counting is bound by the
+ * increments to the sub-histograms rather than by reading the bytes.
+ * 
+ * @author Shaun Howard
+ */
+final class WordKernels {
+  
+  /** Eight bytes of an array as one long, the first byte the most significant. */
+  private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+  
+  /** Eight '0' characters as Latin-1 bytes in one long. */
+  private static final long ZEROS = 0x3030303030303030L;
+  
+  /** The bits of a long that are not the lowest bit of a byte. */
+  private static final long HIGH_BITS = 0xFEFEFEFEFEFEFEFEL;
+  
+  /** The multiplier that gathers the lowest bit of each byte into the top byte, the first byte first. */
+  private static final long GATHER = 0x0102040810204080L;
+  
+  /** Whether the word kernels are used instead of the scalar loops, checked after LONGS is made. */
+  static final boolean ENABLED = isSupported();
+  
+  /** Whether the VectorKernels run ahead of the word kernels, checked after ENABLED. */
+  static final boolean VECTOR = isVectorSupported();
+  
+  /**
+   * Private constructor, as the class has only static kernels.
+   */
+  private WordKernels(){
+  }
+  
+  /**
+   * Packs the whole words of the given '0' and '1' characters, as Latin-1 bytes, into
+   * one byte each, the first character the most significant bit, with the VectorKernels
+   * first if they run.
+   * Package protected by default.
+   * 
+   * @param bits - the characters as Latin-1 bytes
+   * @param packed - the bytes to pack into, from the first
+   * @return  the number of characters packed, or -1 if a word holds a character other than '0' and '1'
+   */
+  static int pack(byte[] bits, byte[] packed){
+    
+    int i = VECTOR ? VectorKernels.pack(bits, packed) : 0;
+    return i < 0 ? -1 : packWords(bits, packed, i);
+  }
+  
+  /**
+   * Packs the whole words of the given '0' and '1' characters from a position on, eight
+   * characters to a long, without the VectorKernels.
+   * Package protected by default.
+   * 
+   * @param bits - the characters as Latin-1 bytes
+   * @param packed - the bytes to pack into
+   * @param from - the first character to pack, a multiple of 8
+   * @return  the number of characters packed in all, or -1 if a word holds a character other than '0' and '1'
+   */
+  static int packWords(byte[] bits, byte[] packed, int from){
+    
+    int i = from;
+    
+    for (int end8 = bits.length & ~7; i < end8; i += 8){
+      
+      /* The lowest bit of each byte is the bit of its character; any other bit is an error. */
+      long word = (long) LONGS.get(bits, i) ^ ZEROS;
+      
+      if ((word & HIGH_BITS) != 0)
+        return -1;
+      
+      packed[i >>> 3] = (byte) ((word * GATHER) >>> 56);
+    }
+    
+    return i;
+  }
+  
+  /**
+   * Checks whether the word kernels can run here and have not been turned off.
+   * 
+   * @return  true if the word kernels are used
+   */
+  private static boolean isSupported(){
+    
+    if (Boolean.getBoolean("howard.huffman.scalar"))
+      return false;
+    
+    try {
+      byte[] probe = { '0', '1', '1', '0', '0', '0', '0', '1' };
+      byte[] packed = new byte[1];
+      return packWords(probe, packed, 0) == 8 && packed[0] == 0x61;
+    } catch (RuntimeException | LinkageError e) {
+      return false;
+    }
+  }
+  
+  /**
+   * Checks whether the VectorKernels can run here: the word kernels run, the module
+   * jdk.incubator.vector was added to the JVM, the kernels have not been turned off,
+   * the processor has their vectors, and they pack a probe the same as the word
+   * kernels do.
+   * 
+   * @return  true if the VectorKernels are used
+   */
+  private static boolean isVectorSupported(){
+    
+    if (!ENABLED || "false".equals(System.getProperty("howard.huffman.vector"))
+        || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+      return false;
+    
+    try {
+      
+      /* Two of the widest vectors of characters, in a pattern that is not the same in every byte. */
+      byte[] probe = new byte[128];
+      for (int i = 0; i < probe.length; i++)
+        probe[i] = (byte) ('0' + (i * 7 / 3 & 1));
+      
+      byte[] packed = new byte[16], expected = new byte[16];
+      return VectorKernels.isSupported() && VectorKernels.pack(probe, packed) > 0 && packWords(probe, expected, 0) == probe.length
+          && Arrays.equals(packed, expected);
+      
+    } catch (RuntimeException | LinkageError e) {
+      return false;
+    }
+  }
+  
+}
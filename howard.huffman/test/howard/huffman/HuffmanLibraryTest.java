@@ -0,0 +1,969 @@
+package howard.huffman;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The test class for the Huffman encoding Library class.
+ * This test class is vital because the Huffman Library class utilizes all the other classes in the package.
+ * I used System.out.print to test these methods because it was the most efficient way to debug, so that's what
+ * this class mostly consists of. I also have Huffman_coder create the binary in the output text file from the given
+ * input text file.
+ * 
+ * The input file is the checked-in textFiles/InputFile.txt, read relative to the project
+ * folder that Maven and Eclipse run the tests from, and the output and restored files
+ * are temporary files made for each test.
+ * 
+ * @author Shaun Howard
+ *
+ */
+public class HuffmanLibraryTest {
+  
+  /** 
+   * These are the file paths of the files used to test the class. The output and
+   * restored files are made in setUp() and deleted in tearDown().
+   */
+  private String inputFile = "textFiles" + File.separator + "InputFile.txt";
+  private String outputFile;
+  private String restoredFile;
+  
+  /* The input file as a String. */
+  private String inputAsString;
+  
+  /* The output file as a String. */
+  private String outputAsString;
+  
+  /* The initial, unsorted H Linked List created from the input file String. */
+  private HLinkedList hList;
+  
+  /* The sorted H Linked List, sorted with respect to character frequencies. */
+  private HLinkedList sortedHList;
+  
+  /* The H Tree created from the input file. */
+  private HTree tree;
+  
+  /**
+   * Creates an H Tree from the given input file for testing.
+   */
+  @Before
+  public void setUp(){
+    
+    try{
+      
+      /* Make the temporary output and restored files. */
+      outputFile = File.createTempFile("huffman", ".huf").getPath();
+      restoredFile = File.createTempFile("huffman", ".out").getPath();
+      
+      /* Read input file as String. */
+      inputAsString = HuffmanLibrary.readFileAsString(inputFile);
+      
+      /* Read output file as String. */
+      outputAsString = HuffmanLibrary.readFileAsString(outputFile);
+      
+    } catch (Exception e) {
+      
+      System.out.println("File Not Found.");
+      
+    }
+    
+    System.out.println("Please note, these tests do not necessarily run in order.");
+    
+    /* Create the initial Huffman linked list from the input String. */
+    hList = HuffmanLibrary.createHList(inputAsString);
+    
+    /* Create the sorted Huffman linked list from the unsorted list. */
+    sortedHList = HuffmanLibrary.getSortedLinkedList(hList);
+    
+    /* Create the Huffman tree from the sorted linked list. */
+    tree = new HTree(HuffmanLibrary.getSortedLinkedList(hList));
+    
+  }
+  
+  /**
+   * Deletes the temporary output and restored files.
+   */
+  @After
+  public void tearDown(){
+    new File(outputFile).delete();
+    new File(restoredFile).delete();
+  }
+  
+  /**
+   * Test method for readFileAsString().
+   * Prints the contents of the input text file to console.
+   */
+  @Test
+  public void testReadFileAsString() {  
+    
+    System.out.println("Here are the contents of the input file : ");
+    System.out.print(HuffmanLibrary.readFileAsString(inputFile));
+    System.out.println();
+    System.out.println();
+    
+  }
+  
+  /**
+   * Test method for createHList.
+   * Prints the characters and their elements of the unsorted linked list to console.
+   */
+  @Test
+  public void testCreateHList() {
+    
+    HTreeNode node = hList.getHeadNode();
+    System.out.println("These are the contents of the initial unsorted H Linked List.");
+    System.out.println("Character : Frequency");
+    while (node != null){
+      System.out.println(node.getElement() + " : " + node.getFrequency());
+      node = node.next();
+    }
+    System.out.println();
+  }
+  
+  /**
+   * Test method for getSortedLinkedList().
+   * Prints the characters and their frequencies from the sorted linked list to console.
+   */
+  @Test
+  public void testGetSortedLinkedList() {
+    
+    HTreeNode node = sortedHList.getHeadNode();
+    int sum = 0;
+    System.out.println("Here are the contents of the sorted H Linked List: ");
+    System.out.println("Character : Frequency");
+    
+    /* Gets the characters and their frequencies and prints them. */
+    while (node != null){
+      System.out.println(node.getElement() + " : " + node.getFrequency());
+      sum = sum + node.getFrequency();
+      node = node.next();
+    }
+    
+    System.out.println();
+    System.out.println("Total sum of all frequencies is : " + sum);
+    
+  }
+  
+  /**
+   * Test method for createHuffmanTree.
+   * Prints the root element(nothing) and the root frequency(sum of all character frequencies) to console.
+   */
+  @Test
+  public void testCreateHuffmanTree() {
+    System.out.println("The tree root should have no element : " + tree.getRoot().getElement());
+    System.out.println("The tree root frequency should equal the sum of all frequencies.");
+    System.out.println("The tree root frequency is : " + tree.getRoot().getFrequency());
+    
+  }
+  
+  /**
+   * Test method for Huffman_coder().
+   * Reads the output binary file and prints output String to console.
+   */
+  @Test
+  public void testHuffman_coder() {
+    
+    /* Tests if this method works by outputFile's contents. */
+    HuffmanLibrary.Huffman_coder(inputFile, outputFile);
+    System.out.println("Here are the contents of the output binary file:");
+    
+    /* Output binary file contents to console. */
+    System.out.print(outputAsString);
+  }
+  
+  /**
+   * Test method for Huffman_decoder().
+   * Encodes the input file, decodes the output file, and checks that the restored file
+   * matches the input file.
+   */
+  @Test
+  public void testHuffman_decoder() {
+    
+    HuffmanLibrary.Huffman_coder(inputFile, outputFile);
+    HuffmanLibrary.Huffman_decoder(outputFile, restoredFile);
+    
+    assertEquals(inputAsString, HuffmanLibrary.readFileAsString(restoredFile));
+  }
+  
+  /**
+   * Test method for the canonical codes of the H Tree.
+   * Checks that two texts with the same character frequencies in a different order
+   * get the same codes, so the encoding depends only on the frequencies.
+   */
+  @Test
+  public void testCanonicalCharacterCodes() {
+    
+    Hashtable<String, String> codes = new Hashtable<String, String>();
+    Hashtable<String, String> reorderedCodes = new Hashtable<String, String>();
+    
+    HuffmanLibrary.createHuffmanTree(HuffmanLibrary.createHList("abracadabra")).getCanonicalCharacterCodes(codes);
+    HuffmanLibrary.createHuffmanTree(HuffmanLibrary.createHList("rbadcaaarab")).getCanonicalCharacterCodes(reorderedCodes);
+    
+    System.out.println("Canonical codes : " + codes);
+    assertEquals(codes, reorderedCodes);
+  }
+  
+  /**
+   * Test method for the length-limited H Tree.
+   * Builds a tree from Fibonacci frequencies, whose Huffman codes grow one bit longer with
+   * each character, and checks that no code is longer than the limit.
+   */
+  @Test
+  public void testLengthLimitedHuffmanTree() {
+    
+    StringBuilder text = new StringBuilder();
+    for (int i = 0, count = 1, next = 1; i < 20; i++, next = count + (count = next))
+      for (int j = 0; j < count; j++)
+        text.append((char) ('a' + i));
+    
+    HLinkedList list = HuffmanLibrary.createHList(text.toString());
+    
+    System.out.println("Unlimited max code length : " + HTree.getMaxCodeLength(HuffmanLibrary.createHuffmanTree(list).getRoot()));
+    assertTrue(HTree.getMaxCodeLength(HuffmanLibrary.createHuffmanTree(list, 8).getRoot()) <= 8);
+  }
+  
+  /**
+   * Test method for Huffman_coder() with blocks.
+   * Encodes the input file in small blocks, with a shared code table and with a code
+   * table per block, and checks that each restored file matches the input file.
+   */
+  @Test
+  public void testBlockHuffman_coder() {
+    
+    HuffmanOptions options = new HuffmanOptions();
+    options.setBlockSize(1000);
+    options.setParallelism(2);
+    
+    for (boolean blockTables : new boolean[] { false, true }){
+      
+      options.setBlockTables(blockTables);
+      HuffmanLibrary.Huffman_coder(inputFile, outputFile, options);
+      HuffmanLibrary.Huffman_decoder(outputFile, restoredFile);
+      
+      assertEquals(inputAsString, HuffmanLibrary.readFileAsString(restoredFile));
+    }
+  }
+  
+  /**
+   * Test method for reading a corrupt block index.
+   * Reads a header whose block index claims nearly 2^31 blocks and then ends, and checks
+   * that it fails as a corrupt file rather than by allocating the arrays of every block.
+   * Then decodes a block of garbage that claims more original bytes than it holds, and
+   * checks that the restored file, extended for the block, is truncated again. Last,
+   * checks that a block claiming more compressed bytes than the file has, or more
+   * symbols than its bits can hold, is rejected before anything is allocated for it.
+   */
+  @Test
+  public void testCorruptBlockIndex() throws IOException {
+    
+    byte[] header = { 'H', 'U', 'F', HuffmanHeader.VERSION, HuffmanHeader.FLAG_BLOCKS, 0, 0,
+        (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 };
+    
+    String message = null;
+    try {
+      HuffmanHeader.read(new ByteArrayInputStream(header), HuffmanLibrary.ALPHABET_SIZE);
+    } catch (IOException e) {
+      message = e.getClass().getSimpleName();
+    }
+    
+    assertEquals("EOFException", message);
+    
+    /* The decoder reports the file as corrupt and goes on, without writing the restored file. */
+    Files.write(new File(outputFile).toPath(), header);
+    HuffmanLibrary.Huffman_decoder(outputFile, restoredFile);
+    
+    assertEquals(0, new File(restoredFile).length());
+    
+    /* A block that fails to decode leaves no restored file behind. */
+    Files.write(new File(outputFile).toPath(), getBlockFile(10, 1000, 80, 10));
+    HuffmanLibrary.Huffman_decoder(outputFile, restoredFile);
+    
+    assertEquals(0, new File(restoredFile).length());
+    
+    /* A block longer than the file is not read into a buffer of its claimed length. */
+    Files.write(new File(outputFile).toPath(), getBlockFile(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 64));
+    HuffmanLibrary.Huffman_decoder(outputFile, restoredFile);
+    
+    assertEquals(0, new File(restoredFile).length());
+    
+    /* A block of more symbols than it has bits is rejected when the index is read. */
+    message = null;
+    try {
+      HuffmanHeader.read(new ByteArrayInputStream(getBlockFile(10, 1000, 81, 10)), HuffmanLibrary.ALPHABET_SIZE);
+    } catch (IOException e) {
+      message = e.getMessage();
+    }
+    
+    assertEquals("Block index is corrupt.", message);
+  }
+  
+  /**
+   * Gets a compressed file of raw bytes with one block that has its own code table,
+   * with the given block index entry and data of 0xFF bytes.
+   * 
+   * @param compressedLength - the number of compressed bytes of the block in the index
+   * @param originalLength - the number of original bytes of the block in the index
+   * @param symbolCount - the number of symbols of the block in the index
+   * @param dataLength - the number of bytes of data after the header
+   * @return  the bytes of the file
+   * @throws IOException - if the header cannot be written
+   */
+  private static byte[] getBlockFile(long compressedLength, long originalLength, long symbolCount, int dataLength) throws IOException {
+    
+    ByteArrayOutputStream file = new ByteArrayOutputStream();
+    file.write(new byte[]{ 'H', 'U', 'F', HuffmanHeader.VERSION,
+        HuffmanHeader.FLAG_BLOCKS | HuffmanHeader.FLAG_BYTES | HuffmanHeader.FLAG_BLOCK_TABLES });
+    
+    HuffmanHeader.writeVarint(file, symbolCount);
+    HuffmanHeader.writeVarint(file, 1);
+    HuffmanHeader.writeVarint(file, compressedLength);
+    HuffmanHeader.writeVarint(file, originalLength);
+    HuffmanHeader.writeVarint(file, symbolCount);
+    
+    byte[] data = new byte[dataLength];
+    Arrays.fill(data, (byte) 0xFF);
+    file.write(data);
+    
+    return file.toByteArray();
+  }
+  
+  /**
+   * Test method for Huffman_coder() with raw bytes.
+   * Encodes bytes that are not valid UTF-8, as one stream and in blocks with a code table
+   * per block, and checks that each restored file matches them byte for byte.
+   */
+  @Test
+  public void testBinaryHuffman_coder() throws IOException {
+    
+    /* Every byte value, with the low values far more frequent. */
+    byte[] bytes = new byte[10000];
+    for (int i = 0; i < bytes.length; i++)
+      bytes[i] = (byte) (i % 7 == 0 ? i : i % 5);
+    
+    File binaryFile = File.createTempFile("binary", ".dat");
+    binaryFile.deleteOnExit();
+    Files.write(binaryFile.toPath(), bytes);
+    
+    HuffmanOptions options = new HuffmanOptions();
+    options.setBinary(true);
+    
+    HuffmanLibrary.Huffman_coder(binaryFile.getPath(), outputFile, options);
+    HuffmanLibrary.Huffman_decoder(outputFile, restoredFile);
+    assertArrayEquals(bytes, Files.readAllBytes(new File(restoredFile).toPath()));
+    
+    options.setBlockSize(1000);
+    options.setBlockTables(true);
+    
+    HuffmanLibrary.Huffman_coder(binaryFile.getPath(), outputFile, options);
+    HuffmanLibrary.Huffman_decoder(outputFile, restoredFile);
+    assertArrayEquals(bytes, Files.readAllBytes(new File(restoredFile).toPath()));
+  }
+  
+  /**
+   * Test method for the HuffmanListener of the options.
+   * Checks that the metrics of an encoding and a decoding match the sizes of the files,
+   * and that no code averages fewer bits than the entropy.
+   */
+  @Test
+  public void testHuffmanListener() {
+    
+    /* The metrics given to the listener, encoding first. */
+    final List<HuffmanMetrics> reported = new ArrayList<HuffmanMetrics>();
+    
+    HuffmanOptions options = new HuffmanOptions();
+    options.setListener(new HuffmanListener(){
+      
+      @Override
+      public void encoded(HuffmanMetrics metrics){
+        reported.add(metrics);
+      }
+      
+      @Override
+      public void decoded(HuffmanMetrics metrics){
+        reported.add(metrics);
+      }
+    });
+    
+    HuffmanLibrary.Huffman_coder(inputFile, outputFile, options);
+    HuffmanLibrary.Huffman_decoder(outputFile, restoredFile, options);
+    
+    assertEquals(2, reported.size());
+    
+    HuffmanMetrics encoded = reported.get(0);
+    assertEquals(new File(inputFile).length(), encoded.getOriginalBytes());
+    assertEquals(new File(outputFile).length(), encoded.getCompressedBytes());
+    assertTrue(encoded.getEntropy() <= encoded.getBitsPerSymbol());
+    assertTrue(encoded.getTotalTime() > 0);
+    
+    HuffmanMetrics decoded = reported.get(1);
+    assertEquals(encoded.getOriginalBytes(), decoded.getOriginalBytes());
+    assertEquals(encoded.getCompressedBytes(), decoded.getCompressedBytes());
+    assertTrue(decoded.getTime(HuffmanMetrics.Stage.DECODE) > 0);
+  }
+  
+  /**
+   * Test method for HuffmanCodec.
+   * Builds one codec from the input file and uses it from several threads at once
+   * to encode and decode the lines of the file as separate messages.
+   */
+  @Test
+  public void testHuffmanCodec() throws Exception {
+    
+    final HuffmanCodec codec = new HuffmanCodec(HuffmanLibrary.countCharacters(inputFile));
+    final String[] lines = HuffmanLibrary.readFileAsString(inputFile).split("\n");
+    
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+    
+    for (int thread = 0; thread < 4; thread++){
+      results.add(pool.submit(() -> {
+        
+        for (String line : lines){
+          if (!line.equals(codec.decodeString(codec.encode(line))))
+            return false;
+        }
+        return true;
+      }));
+    }
+    
+    for (Future<Boolean> result : results)
+      assertTrue(result.get());
+    
+    pool.shutdown();
+  }
+  
+  /**
+   * Test method for HuffmanTrainer and HuffmanDictionary.
+   * Trains a dictionary on the lines of the input file, saves and reloads it, and checks
+   * that each line is restored, that the lines shrink, and that a message that would
+   * not shrink is stored.
+   */
+  @Test
+  public void testHuffmanDictionary() throws IOException {
+    
+    String[] lines = HuffmanLibrary.readFileAsString(inputFile).split("\n");
+    
+    HuffmanTrainer trainer = new HuffmanTrainer();
+    for (String line : lines)
+      trainer.add(line);
+    
+    /* Saves the dictionary and reads it back, as a decoder elsewhere would. */
+    ByteArrayOutputStream saved = new ByteArrayOutputStream();
+    trainer.train(7).write(saved);
+    HuffmanDictionary dictionary = HuffmanDictionary.read(new ByteArrayInputStream(saved.toByteArray()));
+    
+    long original = 0, encoded = 0;
+    for (String line : lines){
+      
+      byte[] message = dictionary.encode(line);
+      assertEquals(7, HuffmanDictionary.getDictionaryId(message));
+      assertEquals(line, dictionary.decodeString(message));
+      
+      original += line.getBytes(StandardCharsets.UTF_8).length;
+      encoded += message.length;
+    }
+    assertTrue(encoded < original);
+    
+    /* Bytes that are rare in the corpus are stored, with one byte of header. */
+    byte[] rare = { (byte) 0xFE, (byte) 0xFF, 0x01, 0x02 };
+    assertEquals(rare.length + 1, dictionary.encode(rare).length);
+    assertArrayEquals(rare, dictionary.decode(dictionary.encode(rare)));
+  }
+  
+  /**
+   * Tests the round trip of a file through the adaptive Huffman streams, with a flush
+   * part way, after which the bytes so far can be decoded without the rest. The file is
+   * longer than MAX_WEIGHT, so the weights are halved along the way.
+   */
+  @Test
+  public void testAdaptiveHuffmanStreams() throws IOException {
+    
+    byte[] input = Files.readAllBytes(new File(inputFile).toPath());
+    assertTrue(input.length > AdaptiveHuffmanTree.MAX_WEIGHT);
+    int half = input.length / 2;
+    
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    AdaptiveHuffmanOutputStream out = new AdaptiveHuffmanOutputStream(compressed);
+    out.write(input, 0, half);
+    out.flush();
+    
+    /* Decodes the first half from what has been flushed alone. */
+    AdaptiveHuffmanInputStream partial = new AdaptiveHuffmanInputStream(new ByteArrayInputStream(compressed.toByteArray()));
+    byte[] first = new byte[half];
+    for (int read = 0; read < half; )
+      read += partial.read(first, read, half - read);
+    assertArrayEquals(Arrays.copyOf(input, half), first);
+    
+    out.write(input, half, input.length - half);
+    out.close();
+    assertTrue(compressed.size() < input.length);
+    
+    AdaptiveHuffmanInputStream in = new AdaptiveHuffmanInputStream(new ByteArrayInputStream(compressed.toByteArray()));
+    ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    for (int read; (read = in.read(buffer)) >= 0; )
+      decoded.write(buffer, 0, read);
+    in.close();
+    
+    assertArrayEquals(input, decoded.toByteArray());
+  }
+  
+  /**
+   * Tests the round trip of a file through the block streams and channels, with a sync
+   * flush part way, after which the bytes so far can be read without the rest.
+   */
+  @Test
+  public void testHuffmanStreams() throws IOException {
+    
+    byte[] input = Files.readAllBytes(new File(inputFile).toPath());
+    int half = input.length / 2;
+    
+    HuffmanOptions options = new HuffmanOptions();
+    options.setBlockSize(4096);
+    
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    HuffmanOutputStream out = new HuffmanOutputStream(compressed, options, true);
+    out.write(input, 0, half);
+    out.flush();
+    
+    /* Reads the first half from what has been flushed alone. */
+    HuffmanInputStream partial = new HuffmanInputStream(new ByteArrayInputStream(compressed.toByteArray()));
+    assertArrayEquals(Arrays.copyOf(input, half), partial.readNBytes(half));
+    
+    /* A block of one byte value, and the rest of the file. */
+    byte[] same = new byte[1000];
+    Arrays.fill(same, (byte) 'a');
+    out.write(same);
+    out.write(input, half, input.length - half);
+    out.close();
+    assertTrue(compressed.size() < input.length);
+    
+    HuffmanInputStream in = new HuffmanInputStream(new ByteArrayInputStream(compressed.toByteArray()));
+    assertArrayEquals(Arrays.copyOf(input, half), in.readNBytes(half));
+    assertArrayEquals(same, in.readNBytes(same.length));
+    assertArrayEquals(Arrays.copyOfRange(input, half, input.length), in.readAllBytes());
+    
+    /* The same through the channels, with direct buffers. */
+    ByteArrayOutputStream channelled = new ByteArrayOutputStream();
+    HuffmanWritableChannel writable = new HuffmanWritableChannel(Channels.newChannel(channelled), options, false);
+    ByteBuffer source = ByteBuffer.allocateDirect(input.length);
+    source.put(input).flip();
+    assertEquals(input.length, writable.write(source));
+    writable.close();
+    
+    HuffmanReadableChannel readable = new HuffmanReadableChannel(Channels.newChannel(new ByteArrayInputStream(channelled.toByteArray())));
+    ByteBuffer target = ByteBuffer.allocateDirect(input.length);
+    while (target.hasRemaining() && readable.read(target) >= 0);
+    assertEquals(-1, readable.read(ByteBuffer.allocate(1)));
+    readable.close();
+    
+    byte[] output = new byte[input.length];
+    target.flip();
+    target.get(output);
+    assertArrayEquals(input, output);
+  }
+  
+  /**
+   * Test method for the order-1 context mode of Huffman_coder().
+   * Checks that the input file is restored, that it compresses better than with one
+   * table, and that the number of tables is bounded.
+   */
+  @Test
+  public void testContextHuffman_coder() throws IOException {
+    
+    HuffmanOptions options = new HuffmanOptions();
+    options.setBinary(true);
+    
+    HuffmanLibrary.Huffman_coder(inputFile, outputFile, options);
+    long order0 = new File(outputFile).length();
+    
+    options.setContextTables(4);
+    HuffmanLibrary.Huffman_coder(inputFile, outputFile, options);
+    assertTrue(new File(outputFile).length() < order0);
+    
+    HuffmanLibrary.Huffman_decoder(outputFile, restoredFile);
+    assertArrayEquals(Files.readAllBytes(new File(inputFile).toPath()), Files.readAllBytes(new File(restoredFile).toPath()));
+    
+    try (InputStream in = new FileInputStream(outputFile)) {
+      assertTrue(HuffmanHeader.read(in, HuffmanLibrary.ALPHABET_SIZE).getContextModel().getTableCount() <= 4);
+    }
+  }
+  
+  /**
+   * Test method for the CodeTableCache of the options.
+   * Checks that a file like one coded before reuses its table and is restored, and
+   * that a file unlike it misses the cache.
+   */
+  @Test
+  public void testCodeTableCache() throws IOException {
+    
+    CodeTableCache cache = new CodeTableCache(2, 0.05);
+    HuffmanOptions options = new HuffmanOptions();
+    options.setBinary(true);
+    options.setCodeTableCache(cache);
+    
+    File binaryFile = File.createTempFile("cached", ".dat");
+    binaryFile.deleteOnExit();
+    
+    /* Two snapshots of skewed bytes that differ in a few places, then bytes of another spread. */
+    Random random = new Random(7);
+    byte[][] snapshots = new byte[3][100000];
+    for (int i = 0; i < snapshots[0].length; i++){
+      snapshots[0][i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(256) : random.nextInt(8));
+      snapshots[1][i] = i % 1000 == 0 ? (byte) 200 : snapshots[0][i];
+      snapshots[2][i] = (byte) (64 + random.nextInt(64));
+    }
+    
+    for (int n = 0; n < snapshots.length; n++){
+      
+      Files.write(binaryFile.toPath(), snapshots[n]);
+      HuffmanLibrary.Huffman_coder(binaryFile.getPath(), outputFile, options);
+      assertEquals(n == 0 ? 0 : 1, cache.getHits());
+      
+      HuffmanLibrary.Huffman_decoder(outputFile, restoredFile);
+      assertArrayEquals(snapshots[n], Files.readAllBytes(new File(restoredFile).toPath()));
+    }
+    
+    assertEquals(2, cache.getMisses());
+    assertEquals(2, cache.size());
+  }
+  
+  /**
+   * Test method for Huffman_coder() in blocks of interleaved streams.
+   * Encodes the input file as text and as raw bytes, in blocks whose symbols do not
+   * divide evenly between the streams, and checks that each restored file matches.
+   */
+  @Test
+  public void testInterleavedHuffman_coder() throws IOException {
+    
+    HuffmanOptions options = new HuffmanOptions();
+    options.setBlockSize(1001);
+    options.setParallelism(2);
+    options.setInterleaved(true);
+    
+    for (boolean binary : new boolean[] { false, true }){
+      
+      options.setBinary(binary);
+      options.setBlockTables(binary);
+      HuffmanLibrary.Huffman_coder(inputFile, outputFile, options);
+      HuffmanLibrary.Huffman_decoder(outputFile, restoredFile);
+      
+      assertArrayEquals(Files.readAllBytes(new File(inputFile).toPath()), Files.readAllBytes(new File(restoredFile).toPath()));
+    }
+  }
+  
+  /**
+   * Test method for the word kernels, which must give the same results as the scalar loops.
+   * Packs bit strings of lengths around a word and a vector and a longer one with and
+   * without the kernels, which run the vector kernels first when the build adds their
+   * module, checks the word kernels alone and the vector kernels called directly too,
+   * as they are otherwise only used where the processor has 512-bit vectors, and checks
+   * that a character other than '0' or '1' is rejected by all of them.
+   */
+  @Test
+  public void testWordKernels() throws Exception {
+    
+    Random random = new Random(11);
+    
+    for (int length : new int[] { 0, 1, 7, 8, 9, 15, 16, 17, 31, 33, 63, 64, 65, 127, 128, 136, 191, 192, 200, 4099 }){
+      
+      StringBuilder bits = new StringBuilder();
+      for (int i = 0; i < length; i++)
+        bits.append(random.nextBoolean() ? '1' : '0');
+      
+      byte[] scalar = BinaryFileWriter.toByteSequence(bits.toString(), false);
+      assertArrayEquals(scalar, BinaryFileWriter.toByteSequence(bits.toString(), true));
+      
+      /* The word kernels alone, as they run without the vector kernels. */
+      byte[] packed = new byte[scalar.length];
+      assertEquals(length & ~7, WordKernels.packWords(bits.toString().getBytes(StandardCharsets.ISO_8859_1), packed, 0));
+      assertArrayEquals(Arrays.copyOf(scalar, length >>> 3), Arrays.copyOf(packed, length >>> 3));
+      
+      /* The vector kernels, on any processor, finished by the word kernels. */
+      byte[] vectors = new byte[scalar.length];
+      int vectorLength = VectorKernels.pack(bits.toString().getBytes(StandardCharsets.ISO_8859_1), vectors);
+      assertEquals(length & ~63, vectorLength);
+      assertEquals(length & ~7, WordKernels.packWords(bits.toString().getBytes(StandardCharsets.ISO_8859_1), vectors, vectorLength));
+      assertArrayEquals(Arrays.copyOf(packed, length >>> 3), Arrays.copyOf(vectors, length >>> 3));
+      
+      /* A bad character in a whole word and in the tail. */
+      for (int bad = 0; bad < length; bad += Math.max(1, length / 3)){
+        
+        bits.setCharAt(bad, bad % 2 == 0 ? '2' : '\u0130');
+        
+        for (boolean words : new boolean[] { false, true }){
+          
+          String message = null;
+          try {
+            BinaryFileWriter.toByteSequence(bits.toString(), words);
+          } catch (Exception e) {
+            message = e.getMessage();
+          }
+          
+          assertEquals("error in format", message);
+        }
+        
+        if (bad < (length & ~7))
+          assertEquals(-1, WordKernels.packWords(bits.toString().getBytes(StandardCharsets.ISO_8859_1), packed, 0));
+        
+        if (bad < (length & ~63))
+          assertEquals(-1, VectorKernels.pack(bits.toString().getBytes(StandardCharsets.ISO_8859_1), vectors));
+        
+        bits.setCharAt(bad, '0');
+      }
+    }
+  }
+  
+  /**
+   * Test method for MappedReader.
+   * Reads a file that starts with an emoji and has surrogate pairs and multi-byte
+   * characters across its chunk boundaries, one character at a time, with reads of one
+   * and three characters and with whole buffers, and checks that each gets the text.
+   */
+  @Test(timeout = 10000)
+  public void testMappedReader() throws IOException {
+    
+    String text = "\uD83D\uDE00 caf\u00E9 \uD83D\uDC4D\u4E2D\uD840\uDC0B a\uD83D\uDE00\uD83D\uDE00";
+    File textFile = File.createTempFile("mapped", ".txt");
+    textFile.deleteOnExit();
+    Files.write(textFile.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    
+    for (int chunkSize : new int[] { 5, 7, 64, MappedReader.CHUNK_SIZE }){
+      
+      try (MappedReader reader = new MappedReader(textFile.getPath(), null, chunkSize)) {
+        StringBuilder read = new StringBuilder();
+        for (int c = reader.read(); c != -1; c = reader.read())
+          read.append((char) c);
+        assertEquals(text, read.toString());
+      }
+      
+      for (int length : new int[] { 1, 3, 1024 }){
+        try (MappedReader reader = new MappedReader(textFile.getPath(), null, chunkSize)) {
+          
+          StringBuilder read = new StringBuilder();
+          char[] buffer = new char[length + 1];
+          for (int n = reader.read(buffer, 1, length); n != -1; n = reader.read(buffer, 1, length))
+            read.append(buffer, 1, n);
+          
+          assertEquals(text, read.toString());
+        }
+      }
+    }
+  }
+  
+  /**
+   * Test method for Huffman_coder() with code points.
+   * Encodes text of emoji, supplementary CJK characters, other scripts and Latin-1 as
+   * code points and as characters, checks that both restore the text, that the code
+   * points are counted one per surrogate pair and that they code it smaller, then checks
+   * a CodePointMap of many sparse code points against the values put in it.
+   */
+  @Test
+  public void testCodePointHuffman_coder() throws IOException {
+    
+    StringBuilder text = new StringBuilder();
+    Random random = new Random(5);
+    String[] pieces = { "\uD83D\uDE00", "\uD83D\uDC4D", "\uD840\uDC0B", "\u4E2D", "\u03B1", "caf\u00E9 ", "the " };
+    
+    for (int i = 0; i < 5000; i++)
+      text.append(pieces[random.nextInt(pieces.length)]);
+    
+    File textFile = File.createTempFile("codepoints", ".txt");
+    textFile.deleteOnExit();
+    Files.write(textFile.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+    
+    long[] sizes = new long[2];
+    
+    for (boolean codePoints : new boolean[] { false, true }){
+      
+      HuffmanOptions options = new HuffmanOptions();
+      options.setCodePoints(codePoints);
+      HuffmanLibrary.Huffman_coder(textFile.getPath(), outputFile, options);
+      HuffmanLibrary.Huffman_decoder(outputFile, restoredFile);
+      
+      assertArrayEquals(Files.readAllBytes(textFile.toPath()), Files.readAllBytes(new File(restoredFile).toPath()));
+      sizes[codePoints ? 1 : 0] = new File(outputFile).length();
+      
+      try (InputStream in = new FileInputStream(outputFile)) {
+        HuffmanHeader header = HuffmanHeader.read(in, HuffmanLibrary.ALPHABET_SIZE);
+        assertEquals(codePoints, header.hasFlag(HuffmanHeader.FLAG_CODE_POINTS));
+        assertEquals(codePoints ? text.codePointCount(0, text.length()) : text.length(), header.getSymbolCount());
+      }
+    }
+    
+    assertTrue(sizes[1] < sizes[0]);
+    
+    /* Sparse code points over the whole range, past several doublings of the table. */
+    CodePointMap map = new CodePointMap();
+    for (int i = 0; i < 20000; i++)
+      map.put((i * 55) % (Character.MAX_CODE_POINT + 1), i);
+    
+    assertEquals(20000, map.size());
+    for (int i = 0; i < 20000; i++)
+      assertEquals(i, map.get((i * 55) % (Character.MAX_CODE_POINT + 1)));
+    
+    assertEquals(CodePointMap.NONE, map.get(1));
+    assertEquals(CodePointMap.NONE, map.get(0x10FFFE));
+  }
+  
+  /**
+   * Test method for HuffmanBatch.
+   * Compresses a directory of files, one of them in a subdirectory and one empty, into
+   * an output directory inside it, on two threads with memory for one file at a time,
+   * and checks that every file is compressed once and restored, and that the summary
+   * has a line for each file and for the totals. Then compresses a missing file in
+   * blocks and checks that it fails with its reason and leaves no compressed file.
+   */
+  @Test
+  public void testHuffmanBatch() throws Exception {
+    
+    Path directory = Files.createTempDirectory("batch");
+    
+    try {
+      
+      Path output = directory.resolve("out");
+      Files.createDirectories(directory.resolve("sub"));
+      
+      String[] names = { "a.txt", "b.txt", "empty.txt", "sub/c.txt" };
+      byte[] text = Files.readAllBytes(new File(inputFile).toPath());
+      
+      for (int i = 0; i < names.length; i++)
+        Files.write(directory.resolve(names[i]), names[i].startsWith("empty") ? new byte[0] : Arrays.copyOf(text, text.length / (i + 1)));
+      
+      HuffmanBatch batch = new HuffmanBatch(new HuffmanOptions(), 2, HuffmanBatch.FILE_MEMORY);
+      List<HuffmanBatch.Result> results = batch.compress(directory, output);
+      
+      /* A second run skips the compressed files of the first in the output directory. */
+      results = batch.compress(directory, output);
+      assertEquals(names.length, results.size());
+      
+      for (int i = 0; i < names.length; i++){
+        
+        HuffmanBatch.Result result = results.get(i);
+        assertTrue(result.isSuccess());
+        assertEquals(output.resolve(names[i] + HuffmanBatch.SUFFIX), result.getOutput());
+        assertEquals(Files.size(directory.resolve(names[i])), result.getSize());
+        
+        HuffmanLibrary.Huffman_decoder(result.getOutput().toString(), restoredFile);
+        assertArrayEquals(Files.readAllBytes(directory.resolve(names[i])), Files.readAllBytes(new File(restoredFile).toPath()));
+      }
+      
+      StringWriter summary = new StringWriter();
+      HuffmanBatch.writeSummary(results, summary);
+      assertEquals(names.length + 2, summary.toString().split("\n").length);
+      
+      /* A missing file fails with its reason and leaves no compressed file, in blocks on one thread too. */
+      HuffmanOptions options = new HuffmanOptions();
+      options.setBlockSize(1000);
+      Path missing = directory.resolve("missing.txt");
+      
+      results = new HuffmanBatch(options, 2, HuffmanBatch.FILE_MEMORY).compress(directory,
+          Arrays.asList(directory.resolve(names[0]), missing), output);
+      
+      assertTrue(results.get(0).isSuccess());
+      assertEquals(null, results.get(0).getError());
+      assertTrue(!results.get(1).isSuccess());
+      assertTrue(results.get(1).getError().contains("missing.txt"));
+      assertTrue(!Files.exists(results.get(1).getOutput()));
+      
+      HuffmanLibrary.Huffman_decoder(results.get(0).getOutput().toString(), restoredFile);
+      assertArrayEquals(Files.readAllBytes(directory.resolve(names[0])), Files.readAllBytes(new File(restoredFile).toPath()));
+      
+      summary = new StringWriter();
+      HuffmanBatch.writeSummary(results, summary);
+      assertTrue(summary.toString().split("\n")[2].contains("\tfailed\t"));
+      
+    } finally {
+      deleteTree(directory);
+    }
+  }
+  
+  /**
+   * Test method for HuffmanBatch with files of the same name.
+   * Compresses a list of two files named a.txt in different directories, neither under
+   * the root, so both would be compressed to a.txt.huf in the output directory, and checks
+   * that the first is compressed and restored and the second fails with the clash
+   * without writing over the first's compressed file.
+   */
+  @Test
+  public void testHuffmanBatchClash() throws Exception {
+    
+    Path directory = Files.createTempDirectory("batch");
+    
+    try {
+      
+      Path first = directory.resolve("x").resolve("a.txt");
+      Path second = directory.resolve("y").resolve("a.txt");
+      Files.createDirectories(first.getParent());
+      Files.createDirectories(second.getParent());
+      
+      byte[] text = Files.readAllBytes(new File(inputFile).toPath());
+      Files.write(first, Arrays.copyOf(text, text.length / 2));
+      Files.write(second, Arrays.copyOf(text, text.length / 3));
+      
+      Path output = directory.resolve("out");
+      List<HuffmanBatch.Result> results = new HuffmanBatch(new HuffmanOptions(), 2, HuffmanBatch.FILE_MEMORY)
+          .compress(directory.resolve("root"), Arrays.asList(first, second), output);
+      
+      assertEquals(output.resolve("a.txt" + HuffmanBatch.SUFFIX), results.get(0).getOutput());
+      assertEquals(results.get(0).getOutput(), results.get(1).getOutput());
+      assertTrue(results.get(0).isSuccess());
+      assertTrue(!results.get(1).isSuccess());
+      assertTrue(results.get(1).getError().contains("a.txt" + HuffmanBatch.SUFFIX));
+      
+      HuffmanLibrary.Huffman_decoder(results.get(0).getOutput().toString(), restoredFile);
+      assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(new File(restoredFile).toPath()));
+      
+      StringWriter summary = new StringWriter();
+      HuffmanBatch.writeSummary(results, summary);
+      assertTrue(summary.toString().split("\n")[1].contains("\tok\t"));
+      assertTrue(summary.toString().split("\n")[2].contains("\tfailed\t"));
+      
+    } finally {
+      deleteTree(directory);
+    }
+  }
+  
+  /**
+   * Deletes a directory and everything under it, deepest paths first.
+   * 
+   * @param directory - the directory to delete
+   * @throws IOException - if a path cannot be deleted
+   */
+  private static void deleteTree(Path directory) throws IOException {
+    
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+        Files.delete(path);
+    }
+  }
+  
+}